@@ -178,7 +178,7 @@ public class ConfigPropertyModule extends ClassLoaderModule {
               stopDo();
             } else {
               final StatisticsService statisticsService = this.moduleLoader.getStatisticsService();
-              statisticsService.collateStatistics();
+              statisticsService.collateStatistics(getBusinessApplicationNames());
             }
           } catch (final Throwable e) {
             throw transaction.setRollbackOnly(e);
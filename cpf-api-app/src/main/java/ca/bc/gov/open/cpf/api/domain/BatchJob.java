@@ -16,8 +16,10 @@
 package ca.bc.gov.open.cpf.api.domain;
 
 import java.sql.Timestamp;
+import java.util.Arrays;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -25,6 +27,7 @@ import org.jeometry.common.data.identifier.Identifier;
 import org.jeometry.common.data.type.DataType;
 import org.jeometry.common.io.PathName;
 
+import ca.bc.gov.open.cpf.api.scheduler.BatchJobJournal;
 import ca.bc.gov.open.cpf.api.scheduler.BatchJobRequestExecutionGroup;
 import ca.bc.gov.open.cpf.api.scheduler.BatchJobScheduler;
 import ca.bc.gov.open.cpf.api.scheduler.BatchJobService;
@@ -66,6 +69,10 @@ public class BatchJob extends DelegatingRecord implements Common {
 
   public static final String FAILED_REQUEST_RANGE = "FAILED_REQUEST_RANGE";
 
+  public static final String NUM_COMPLETED_REQUESTS = "NUM_COMPLETED_REQUESTS";
+
+  public static final String NUM_FAILED_REQUESTS = "NUM_FAILED_REQUESTS";
+
   public static final String NUM_SUBMITTED_GROUPS = "NUM_SUBMITTED_GROUPS";
 
   public static final String NUM_SUBMITTED_REQUESTS = "NUM_SUBMITTED_REQUESTS";
@@ -80,6 +87,14 @@ public class BatchJob extends DelegatingRecord implements Common {
 
   public static final String WHEN_STATUS_CHANGED = "WHEN_STATUS_CHANGED";
 
+  /**
+   * The fields displayed in job lists. Excludes the parameter, property and range CLOBs, the
+   * completed and failed counts are stored in their own columns.
+   */
+  public static final List<String> SUMMARY_FIELD_NAMES = Arrays.asList(BATCH_JOB_ID, USER_ID,
+    BUSINESS_APPLICATION_NAME, JOB_STATUS, NUM_SUBMITTED_REQUESTS, NUM_COMPLETED_REQUESTS,
+    NUM_FAILED_REQUESTS, WHEN_CREATED, WHEN_UPDATED);
+
   private final RangeSet completedGroups;
 
   private final RangeSet completedRequests;
@@ -261,6 +276,10 @@ public class BatchJob extends DelegatingRecord implements Common {
     return getInteger(NUM_SUBMITTED_GROUPS, 0);
   }
 
+  public int getScheduledGroupCount() {
+    return this.scheduledGroups.size();
+  }
+
   public String getScheduledGroups() {
     return this.scheduledGroups.toString();
   }
@@ -337,15 +356,10 @@ public class BatchJob extends DelegatingRecord implements Common {
     setValue(Common.WHEN_UPDATED, timestamp);
     setValue(Common.WHO_UPDATED, username);
 
-    final RecordStore recordStore = batchJobService.getRecordStore();
-    final Record batchJobStatusChange = recordStore
-      .newRecord(BatchJobStatusChange.BATCH_JOB_STATUS_CHANGE);
-    batchJobStatusChange.setValue(BatchJobStatusChange.BATCH_JOB_ID, this, BATCH_JOB_ID);
-    batchJobStatusChange.setValue(BatchJobStatusChange.JOB_STATUS, jobStatus);
-    batchJobStatusChange.setValue(Common.WHEN_CREATED, timestamp);
-    batchJobStatusChange.setValue(Common.WHO_UPDATED, username);
-    final CpfDataAccessObject dataAccessObject = batchJobService.getDataAccessObject();
-    dataAccessObject.write(batchJobStatusChange);
+    final Identifier batchJobId = getIdentifier();
+    final BatchJobJournal jobJournal = batchJobService.getJobJournal();
+    Transaction
+      .afterCommit(() -> jobJournal.addStatusChange(batchJobId, jobStatus, time, username));
   }
 
   public synchronized boolean setStatus(final BatchJobService batchJobService,
@@ -372,6 +386,8 @@ public class BatchJob extends DelegatingRecord implements Common {
     setValue(COMPLETED_GROUP_RANGE, this.completedGroups.toString());
     setValue(FAILED_REQUEST_RANGE, this.failedRequests.toString());
     setValue(COMPLETED_REQUEST_RANGE, this.completedRequests.toString());
+    setValue(NUM_COMPLETED_REQUESTS, this.completedRequests.size());
+    setValue(NUM_FAILED_REQUESTS, this.failedRequests.size());
     final RecordState state = getState();
     if (state == RecordState.MODIFIED) {
       final RecordStore recordStore = getRecordStore();
@@ -64,12 +64,16 @@ import com.revolsys.record.query.Q;
 import com.revolsys.record.query.Query;
 import com.revolsys.record.schema.RecordDefinition;
 import com.revolsys.record.schema.RecordStore;
+import com.revolsys.transaction.Propagation;
 import com.revolsys.transaction.Transaction;
 import com.revolsys.transaction.Transactionable;
 import com.revolsys.ui.web.controller.PathAliasController;
 import com.revolsys.util.Property;
 
 public class CpfDataAccessObject implements Transactionable {
+  /** The maximum number of values in an IN list supported by Oracle. */
+  private static final int MAX_IN_VALUES = 1000;
+
   public static String getUsername() {
     final SecurityContext securityContext = SecurityContextHolder.getContext();
     final Authentication authentication = securityContext.getAuthentication();
@@ -188,6 +192,56 @@ public class CpfDataAccessObject implements Transactionable {
     return this.recordStore.deleteRecords(query);
   }
 
+  /**
+   * Delete the jobs and their status change, result and file records using one
+   * DELETE ... WHERE BATCH_JOB_ID IN (...) statement per table for each
+   * {@link #MAX_IN_VALUES} jobs.
+   *
+   * @param batchJobIds The batch job ids.
+   * @return The number of jobs deleted.
+   */
+  public int deleteBatchJobs(final List<Identifier> batchJobIds) {
+    int count = 0;
+    final int size = batchJobIds.size();
+    for (int i = 0; i < size; i += MAX_IN_VALUES) {
+      final int toIndex = Math.min(i + MAX_IN_VALUES, size);
+      count += deleteBatchJobsIn(batchJobIds.subList(i, toIndex));
+    }
+    return count;
+  }
+
+  private int deleteBatchJobsIn(final List<Identifier> batchJobIds) {
+    if (batchJobIds.isEmpty()) {
+      return 0;
+    } else {
+      final JdbcRecordStore jdbcRecordStore = (JdbcRecordStore)this.recordStore;
+      final Object[] parameters = new Object[batchJobIds.size()];
+      final StringBuilder where = new StringBuilder(" WHERE BATCH_JOB_ID IN (");
+      for (int i = 0; i < parameters.length; i++) {
+        if (i > 0) {
+          where.append(", ");
+        }
+        where.append('?');
+        parameters[i] = batchJobIds.get(i).getLong(0);
+      }
+      where.append(')');
+      try {
+        for (final String tableName : Arrays.asList("CPF.CPF_BATCH_JOB_STATUS_CHANGE",
+          "CPF.CPF_BATCH_JOB_RESULTS", "CPF.CPF_BATCH_JOB_FILES")) {
+          JdbcUtils.executeUpdate(jdbcRecordStore, "DELETE FROM " + tableName + where, parameters);
+        }
+        final int count = JdbcUtils.executeUpdate(jdbcRecordStore,
+          "DELETE FROM CPF.CPF_BATCH_JOBS" + where, parameters);
+        for (final Identifier batchJobId : batchJobIds) {
+          clearBatchJob(batchJobId);
+        }
+        return count;
+      } catch (final Throwable e) {
+        throw new RuntimeException("Unable to delete jobs " + batchJobIds, e);
+      }
+    }
+  }
+
   public int deleteBatchJobResults(final Identifier batchJobId) {
     final Query query = Query.equal(this.batchJobResultRecordDefinition,
       BatchJobResult.BATCH_JOB_ID, batchJobId);
@@ -375,23 +429,39 @@ public class CpfDataAccessObject implements Transactionable {
     }
   }
 
-  public List<Record> getBatchJobsForUser(final String consumerKey) {
-    final Query query = Query.equal(this.batchJobRecordDefinition, BatchJob.USER_ID, consumerKey);
-    query.addOrderBy(BatchJob.BATCH_JOB_ID, false);
+  /**
+   * Get a page of the summary fields of the user's jobs ordered by descending
+   * job id. The page starts after the last job id from the previous page so
+   * that each page is read directly from the BATCH_JOBS_USER_IDX index.
+   *
+   * @param consumerKey The user's consumer key.
+   * @param businessApplicationName The business application name, or null for all applications.
+   * @param afterBatchJobId The last job id of the previous page, or null for the first page.
+   * @param limit The maximum number of jobs to return.
+   * @return The job summary records.
+   */
+  public List<Record> getBatchJobSummariesForUser(final String consumerKey,
+    final String businessApplicationName, final Long afterBatchJobId, final int limit) {
+    final Query query = newBatchJobSummaryQuery(consumerKey, businessApplicationName,
+      afterBatchJobId);
+    query.setLimit(limit);
     try (
       final Reader<Record> reader = this.recordStore.getRecords(query)) {
       return reader.toList();
     }
   }
 
-  public List<Record> getBatchJobsForUserAndApplication(final String consumerKey,
-    final String businessApplicationName) {
-    final Map<String, Object> filter = new LinkedHashMap<>();
-    filter.put(BatchJob.USER_ID, consumerKey);
-    filter.put(BatchJob.BUSINESS_APPLICATION_NAME, businessApplicationName);
-    final Query query = Query.and(this.batchJobRecordDefinition, filter);
-
-    query.addOrderBy(BatchJob.BATCH_JOB_ID, false);
+  /**
+   * Get the statistics records for the business application ordered by start time using the
+   * APPLICATION_STATISTICS_APP_IDX index.
+   *
+   * @param businessApplicationName The business application name.
+   * @return The statistics records.
+   */
+  public List<Record> getBusinessApplicationStatistics(final String businessApplicationName) {
+    final Query query = Query.equal(this.businessApplicationStatisticsRecordDefinition,
+      BusinessApplicationStatistics.BUSINESS_APPLICATION_NAME, businessApplicationName);
+    query.addOrderBy(BusinessApplicationStatistics.START_TIMESTAMP, true);
     try (
       final Reader<Record> reader = this.recordStore.getRecords(query)) {
       return reader.toList();
@@ -453,14 +523,16 @@ public class CpfDataAccessObject implements Transactionable {
   }
 
   /**
-   * Get all the jobs that are either marked for deletion, or that have had a
-   * status change timestamp less than the passed timestamp.
+   * Get the ids of up to limit jobs that are either marked for deletion, or
+   * that have had a status change timestamp less than the passed timestamp.
    *
    * @param keepUntilTimestamp The timestamp of the maximum age of the completed
    *          jobs to be retained.
+   * @param limit The maximum number of job ids to return.
    * @return The batch job ids.
    */
-  public List<Identifier> getOldBatchJobIds(final Timestamp keepUntilTimestamp) {
+  public List<Identifier> getOldBatchJobIds(final Timestamp keepUntilTimestamp,
+    final int limit) {
     final Query query = new Query(this.batchJobRecordDefinition);
     query.setFieldNames(BatchJob.BATCH_JOB_ID);
     final And and = new And(
@@ -469,6 +541,8 @@ public class CpfDataAccessObject implements Transactionable {
       Q.lessThan(this.batchJobRecordDefinition.getField(BatchJob.WHEN_STATUS_CHANGED),
         keepUntilTimestamp));
     query.setWhereCondition(and);
+    query.addOrderBy(BatchJob.BATCH_JOB_ID, true);
+    query.setLimit(limit);
     try (
       final Reader<Record> batchJobs = this.recordStore.getRecords(query)) {
       final List<Identifier> batchJobIds = new ArrayList<>();
@@ -608,6 +682,32 @@ public class CpfDataAccessObject implements Transactionable {
     }
   }
 
+  /**
+   * Insert the new records using a single writer in a new transaction. Unlike
+   * {@link #write(Record)} the WHO_CREATED and WHEN_CREATED values from the records are kept.
+   *
+   * @param records The records to insert.
+   */
+  public void insertRecords(final List<Record> records) {
+    try (
+      Transaction transaction = this.recordStore.newTransaction(Propagation.REQUIRES_NEW)) {
+      try (
+        RecordWriter writer = this.recordStore.newRecordWriter()) {
+        for (final Record record : records) {
+          final RecordDefinition recordDefinition = record.getRecordDefinition();
+          if (recordDefinition.getIdFieldIndex() != -1 && record.getIdentifier() == null) {
+            final Identifier id = this.recordStore
+              .newPrimaryIdentifier(recordDefinition.getPathName());
+            record.setIdentifier(id);
+          }
+          writer.write(record);
+        }
+      } catch (final Throwable e) {
+        throw transaction.setRollbackOnly(e);
+      }
+    }
+  }
+
   private void insertStatistics(final BusinessApplicationStatistics statistics,
     final String businessApplicationName, final DurationType durationType, final Date startTime,
     final String valuesString) {
@@ -627,6 +727,32 @@ public class CpfDataAccessObject implements Transactionable {
     statistics.setDatabaseId(databaseId);
   }
 
+  /**
+   * Construct a new query for the {@link BatchJob#SUMMARY_FIELD_NAMES} of the
+   * user's jobs ordered by descending job id.
+   *
+   * @param consumerKey The user's consumer key.
+   * @param businessApplicationName The business application name, or null for all applications.
+   * @param afterBatchJobId Only include jobs with an id less than this id, or null for all jobs.
+   * @return The query.
+   */
+  public Query newBatchJobSummaryQuery(final String consumerKey,
+    final String businessApplicationName, final Long afterBatchJobId) {
+    Condition where = Q.equal(BatchJob.USER_ID, consumerKey);
+    if (businessApplicationName != null) {
+      where = Q.and(where, Q.equal(BatchJob.BUSINESS_APPLICATION_NAME, businessApplicationName));
+    }
+    if (afterBatchJobId != null) {
+      where = Q.and(where, Q.lessThan(
+        this.batchJobRecordDefinition.getField(BatchJob.BATCH_JOB_ID), afterBatchJobId));
+    }
+    final Query query = new Query(this.batchJobRecordDefinition);
+    query.setWhereCondition(where);
+    query.setFieldNames(BatchJob.SUMMARY_FIELD_NAMES);
+    query.addOrderBy(BatchJob.BATCH_JOB_ID, false);
+    return query;
+  }
+
   public BatchJob newBatchJob() {
     final Record record = newRecord(BatchJob.BATCH_JOB);
     final Identifier batchJobId = this.recordStore.newPrimaryIdentifier(BatchJob.BATCH_JOB);
@@ -737,7 +863,7 @@ public class CpfDataAccessObject implements Transactionable {
     final DurationType durationType = statistics.getDurationType();
     final Date startTime = statistics.getStartTime();
 
-    final Map<String, Long> values = statistics.toMap();
+    final Map<String, Object> values = statistics.toMap();
     if (values.isEmpty()) {
       if (databaseId != null) {
         deleteBusinessApplicationStatistics(databaseId);
@@ -745,20 +871,18 @@ public class CpfDataAccessObject implements Transactionable {
     } else {
       final String valuesString = Json.toString(values);
 
-      final Record applicationStatistics;
       if (databaseId == null) {
         insertStatistics(statistics, businessApplicationName, durationType, startTime,
           valuesString);
       } else if (statistics.isModified()) {
-        applicationStatistics = this.recordStore
-          .getRecord(BusinessApplicationStatistics.APPLICATION_STATISTICS, databaseId);
-        if (applicationStatistics == null) {
+        final JdbcRecordStore jdbcRecordStore = (JdbcRecordStore)this.recordStore;
+        final String sql = "UPDATE CPF.CPF_APPLICATION_STATISTICS SET STATISTIC_VALUES = ? "
+          + "WHERE APPLICATION_STATISTIC_ID = ?";
+        final int count = JdbcUtils.executeUpdate(jdbcRecordStore, sql, valuesString,
+          databaseId.getLong(0));
+        if (count == 0) {
           insertStatistics(statistics, businessApplicationName, durationType, startTime,
             valuesString);
-        } else {
-          applicationStatistics.setValue(BusinessApplicationStatistics.STATISTIC_VALUES,
-            valuesString);
-          this.recordStore.updateRecord(applicationStatistics);
         }
       }
 
@@ -771,6 +895,7 @@ public class CpfDataAccessObject implements Transactionable {
 
     final String sql = "UPDATE CPF.CPF_BATCH_JOBS SET " + "COMPLETED_REQUEST_RANGE = null, "//
       + "FAILED_REQUEST_RANGE = concat('1~', NUM_SUBMITTED_REQUESTS), "//
+      + "NUM_COMPLETED_REQUESTS = 0, NUM_FAILED_REQUESTS = NUM_SUBMITTED_REQUESTS, "//
       + "JOB_STATUS = 'resultsCreated', COMPLETED_TIMESTAMP = ?, WHEN_STATUS_CHANGED = ?, WHEN_UPDATED = ?, WHO_UPDATED = ? "
       + "WHERE JOB_STATUS = 'creatingRequests' AND BATCH_JOB_ID = ?";
     try {
@@ -790,6 +915,7 @@ public class CpfDataAccessObject implements Transactionable {
     final String sql = "UPDATE CPF.CPF_BATCH_JOBS SET " //
       + "NUM_SUBMITTED_REQUESTS = ?, "//
       + "FAILED_REQUEST_RANGE = ?, "//
+      + "NUM_FAILED_REQUESTS = ?, "//
       + "GROUP_SIZE = ?, "//
       + "NUM_SUBMITTED_GROUPS = ?, "//
       + "LAST_SCHEDULED_TIMESTAMP = ?, "//
@@ -799,7 +925,7 @@ public class CpfDataAccessObject implements Transactionable {
       + "WHERE JOB_STATUS IN ('creatingRequests') AND BATCH_JOB_ID = ?";
     final Timestamp now = new Timestamp(System.currentTimeMillis());
     final boolean result = JdbcUtils.executeUpdate(jdbcRecordStore, sql, numSubmittedRequests,
-      numFailedRequests, groupSize, numGroups, now, now, now, getUsername(),
+      numFailedRequests, numFailedRequests, groupSize, numGroups, now, now, now, getUsername(),
       batchJobId.getLong(0)) == 1;
     return result;
   }
@@ -63,6 +63,9 @@ public abstract class AbstractBatchJobChannelProcess extends ThreadPoolExecutor
 
   private int taskCount = 0;
 
+  /** The time taken to process each job. */
+  private final LatencyHistogram processTime = new LatencyHistogram();
+
   public AbstractBatchJobChannelProcess(final String jobStatusToProcess) {
     super(0, 1, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new NamedThreadFactory());
     this.jobStatusToProcess = jobStatusToProcess;
@@ -122,11 +125,24 @@ public abstract class AbstractBatchJobChannelProcess extends ThreadPoolExecutor
     return this.in;
   }
 
+  public LatencyHistogram getProcessTime() {
+    return this.processTime;
+  }
+
   @Override
   public ProcessNetwork getProcessNetwork() {
     return this.processNetwork;
   }
 
+  /**
+   * Get the number of jobs that have been scheduled but not yet started processing.
+   *
+   * @return The number of scheduled jobs.
+   */
+  public int getScheduledCount() {
+    return this.scheduledIds.size();
+  }
+
   protected abstract boolean processJob(final Identifier batchJobId);
 
   @Override
@@ -190,7 +206,9 @@ public abstract class AbstractBatchJobChannelProcess extends ThreadPoolExecutor
             synchronized (this.scheduledIds) {
               this.scheduledIds.remove(batchJobId);
             }
+            final long startTime = System.currentTimeMillis();
             final boolean success = processJob(batchJobId);
+            this.processTime.record(System.currentTimeMillis() - startTime);
             if (!success) {
               schedule(batchJobId);
             }
@@ -0,0 +1,99 @@
+/*
+ * Copyright © 2008-2016, Province of British Columbia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.bc.gov.open.cpf.api.scheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Base class for placement policies with module affinity. A worker isn't given a group for a
+ * module it hasn't executed recently if another worker with a free slot has, so the plugin
+ * instances already loaded on that worker are reused.
+ */
+public abstract class AbstractGroupPlacementPolicy implements GroupPlacementPolicy {
+
+  private boolean moduleAffinity = true;
+
+  private long moduleAffinityTime = 5 * 60 * 1000;
+
+  @Override
+  public List<String> getModuleNames(final BatchJobService batchJobService, final Worker worker,
+    final List<String> moduleNames) {
+    List<String> placementModuleNames = selectModuleNames(batchJobService, worker, moduleNames);
+    if (this.moduleAffinity && !placementModuleNames.isEmpty()) {
+      final long minTime = System.currentTimeMillis() - this.moduleAffinityTime;
+      final List<Worker> workers = batchJobService.getConnectedWorkers();
+      final List<String> affinityModuleNames = new ArrayList<>();
+      for (final String moduleName : placementModuleNames) {
+        if (worker.getModuleLastExecutionTime(moduleName) >= minTime
+          || !isWarmOnOtherWorker(workers, worker, moduleName, minTime)) {
+          affinityModuleNames.add(moduleName);
+        }
+      }
+      placementModuleNames = affinityModuleNames;
+    }
+    return placementModuleNames;
+  }
+
+  public long getModuleAffinityTime() {
+    return this.moduleAffinityTime / 1000;
+  }
+
+  public boolean isModuleAffinity() {
+    return this.moduleAffinity;
+  }
+
+  /**
+   * Check if another worker that can be given a group recently executed a group for the module.
+   *
+   * @param workers The workers.
+   * @param worker The worker asking for a group.
+   * @param moduleName The module name.
+   * @param minTime The time the group must have been executed after.
+   * @return True if there is another worker.
+   */
+  private boolean isWarmOnOtherWorker(final List<Worker> workers, final Worker worker,
+    final String moduleName, final long minTime) {
+    for (final Worker otherWorker : workers) {
+      if (otherWorker != worker && otherWorker.hasFreeSlot()
+        && otherWorker.isModuleStarted(moduleName)
+        && otherWorker.getModuleLastExecutionTime(moduleName) >= minTime) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Select the modules the worker can be given a group from, before the module affinity is
+   * applied.
+   *
+   * @param batchJobService The batch job service.
+   * @param worker The worker asking for a group.
+   * @param moduleNames The modules started on the worker that have groups waiting for a worker.
+   * @return The modules to give the worker a group from.
+   */
+  protected abstract List<String> selectModuleNames(BatchJobService batchJobService,
+    Worker worker, List<String> moduleNames);
+
+  public void setModuleAffinity(final boolean moduleAffinity) {
+    this.moduleAffinity = moduleAffinity;
+  }
+
+  public void setModuleAffinityTime(final long moduleAffinityTime) {
+    this.moduleAffinityTime = moduleAffinityTime * 1000;
+  }
+}
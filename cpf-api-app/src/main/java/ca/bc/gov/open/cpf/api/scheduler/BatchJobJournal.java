@@ -0,0 +1,474 @@
+/*
+ * Copyright © 2008-2016, Province of British Columbia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.bc.gov.open.cpf.api.scheduler;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.jeometry.common.data.identifier.Identifier;
+import org.jeometry.common.date.Dates;
+import org.jeometry.common.logging.Logs;
+
+import ca.bc.gov.open.cpf.api.domain.BatchJob;
+import ca.bc.gov.open.cpf.api.domain.BatchJobStatusChange;
+import ca.bc.gov.open.cpf.api.domain.Common;
+import ca.bc.gov.open.cpf.api.domain.CpfDataAccessObject;
+
+import com.revolsys.collection.list.Lists;
+import com.revolsys.collection.map.LinkedHashMapEx;
+import com.revolsys.collection.map.MapEx;
+import com.revolsys.io.FileUtil;
+import com.revolsys.record.Record;
+import com.revolsys.record.io.format.tsv.Tsv;
+import com.revolsys.record.io.format.tsv.TsvWriter;
+import com.revolsys.record.schema.RecordStore;
+
+/**
+ * An append-only journal of the events in the life of a job (status changes, group dispatch,
+ * completion and rescheduling). The events are added to a buffer by the scheduler threads and
+ * written in bulk by a background thread, so processing a job never waits for a database insert
+ * or a file lock.
+ *
+ * Each batch of events is appended to the daily journal file journal/events-yyyy-MM-dd.tsv with
+ * one line per event (time in milliseconds, batchJobId, event, value, user or worker). The status
+ * changes in a batch are also inserted into CPF_BATCH_JOB_STATUS_CHANGE in one transaction and the
+ * completed jobs are appended to jobs/jobs-yyyy-MM-dd.tsv.
+ * {@link #getTimeline(Identifier, long, long)} reads the events for a job back from the journal
+ * files.
+ *
+ * The status change records are not inserted in the transaction that changed the job's status,
+ * so the status history can lag behind the job. If a status change can't be inserted it is
+ * logged as an error and retried with the following batches, up to
+ * {@link #MAX_STATUS_CHANGE_ATTEMPTS} attempts.
+ */
+public class BatchJobJournal implements Runnable {
+  private static class Event {
+    private final long time;
+
+    private final Identifier batchJobId;
+
+    private final String event;
+
+    private final String value;
+
+    private final String who;
+
+    private final List<Object> jobValues;
+
+    private int attemptCount;
+
+    private Event(final long time, final Identifier batchJobId, final String event,
+      final String value, final String who, final List<Object> jobValues) {
+      this.time = time;
+      this.batchJobId = batchJobId;
+      this.event = event;
+      this.value = value;
+      this.who = who;
+      this.jobValues = jobValues;
+    }
+
+    private String getDate() {
+      return Dates.format("yyyy-MM-dd", new Timestamp(this.time));
+    }
+
+    private MapEx toMap() {
+      final MapEx map = new LinkedHashMapEx();
+      map.put("time", new Timestamp(this.time));
+      map.put("event", this.event);
+      map.put("value", this.value);
+      map.put("who", this.who);
+      return map;
+    }
+
+    private void write(final Writer writer) throws IOException {
+      writer.write(Long.toString(this.time));
+      writer.write('\t');
+      writer.write(this.batchJobId.toString());
+      writer.write('\t');
+      writer.write(this.event);
+      writer.write('\t');
+      writeValue(writer, this.value);
+      writer.write('\t');
+      writeValue(writer, this.who);
+      writer.write('\n');
+    }
+  }
+
+  public static final String GROUP_COMPLETED = "groupCompleted";
+
+  public static final String GROUP_DISPATCHED = "groupDispatched";
+
+  public static final String GROUP_RESCHEDULED = "groupRescheduled";
+
+  public static final String JOB_COMPLETED = "jobCompleted";
+
+  public static final String JOB_STATUS = "jobStatus";
+
+  /** The number of times a status change insert is attempted before it is discarded. */
+  private static final int MAX_STATUS_CHANGE_ATTEMPTS = 3;
+
+  private static final ArrayList<String> JOB_TSV_FIELD_NAMES = Lists.newArray(
+    BatchJob.BUSINESS_APPLICATION_NAME, BatchJob.BATCH_JOB_ID, BatchJob.USER_ID,
+    BatchJob.WHEN_CREATED, BatchJob.COMPLETED_TIMESTAMP, BatchJob.NUM_SUBMITTED_REQUESTS,
+    BatchJob.FAILED_REQUEST_RANGE, BatchJob.INPUT_DATA_CONTENT_TYPE,
+    BatchJob.RESULT_DATA_CONTENT_TYPE);
+
+  private static Event newEvent(final String line) {
+    final String[] values = line.split("\t", -1);
+    if (values.length < 5) {
+      return null;
+    } else {
+      final long time = Long.parseLong(values[0]);
+      final Identifier batchJobId = Identifier.newIdentifier(Long.valueOf(values[1]));
+      final String value = values[3].isEmpty() ? null : values[3];
+      final String who = values[4].isEmpty() ? null : values[4];
+      return new Event(time, batchJobId, values[2], value, who, null);
+    }
+  }
+
+  private static void writeValue(final Writer writer, final String value) throws IOException {
+    if (value != null) {
+      writer.write(value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' '));
+    }
+  }
+
+  private final BatchJobService batchJobService;
+
+  private File directory;
+
+  private List<Event> events = new ArrayList<>();
+
+  /** The status changes that failed to insert, only used by the journal thread. */
+  private List<Event> retryStatusChanges = new ArrayList<>();
+
+  private int batchSize = 1000;
+
+  private long flushInterval = 1000;
+
+  private boolean running;
+
+  private Thread thread;
+
+  public BatchJobJournal(final BatchJobService batchJobService) {
+    this.batchJobService = batchJobService;
+  }
+
+  private void add(final Event event) {
+    synchronized (this) {
+      this.events.add(event);
+      if (this.events.size() >= this.batchSize) {
+        notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Add the completed job to the journal and the daily completed jobs file.
+   *
+   * @param batchJob The completed job.
+   */
+  public void addCompletedJob(final BatchJob batchJob) {
+    final Timestamp completedTime = batchJob.getValue(BatchJob.COMPLETED_TIMESTAMP);
+    final long time = completedTime == null ? System.currentTimeMillis() : completedTime.getTime();
+    final List<Object> jobValues = batchJob.getValues(JOB_TSV_FIELD_NAMES);
+    add(new Event(time, batchJob.getIdentifier(), JOB_COMPLETED, null, null, jobValues));
+  }
+
+  /**
+   * Add an event for the job to the journal.
+   *
+   * @param batchJobId The job identifier.
+   * @param event The event type (e.g. {@link #GROUP_DISPATCHED}).
+   * @param value The value for the event (e.g. the group identifier).
+   * @param who The worker or user that caused the event.
+   */
+  public void addEvent(final Identifier batchJobId, final String event, final String value,
+    final String who) {
+    if (batchJobId != null) {
+      add(new Event(System.currentTimeMillis(), batchJobId, event, value, who, null));
+    }
+  }
+
+  /**
+   * Add the status change for the job to the journal. The CPF_BATCH_JOB_STATUS_CHANGE record is
+   * inserted with the next batch of events.
+   *
+   * @param batchJobId The job identifier.
+   * @param jobStatus The new job status.
+   * @param time The time the status was changed.
+   * @param username The user that changed the status.
+   */
+  public void addStatusChange(final Identifier batchJobId, final String jobStatus,
+    final long time, final String username) {
+    add(new Event(time, batchJobId, JOB_STATUS, jobStatus, username, null));
+  }
+
+  public int getBatchSize() {
+    return this.batchSize;
+  }
+
+  public long getFlushInterval() {
+    return this.flushInterval;
+  }
+
+  public synchronized int getQueuedCount() {
+    return this.events.size();
+  }
+
+  /**
+   * Get the events for the job in the order they occurred, reading the journal files from the day
+   * the job was created to the day of the job's last event.
+   *
+   * @param batchJobId The job identifier.
+   * @param fromTime The time the job was created.
+   * @param toTime The time of the job's last event, or the current time for jobs in progress.
+   * @return The list of events.
+   */
+  public List<MapEx> getTimeline(final Identifier batchJobId, final long fromTime,
+    final long toTime) {
+    final List<Event> jobEvents = new ArrayList<>();
+    final File directory = this.directory;
+    if (directory != null) {
+      final String prefix = "\t" + batchJobId + "\t";
+      final Map<String, File> files = new TreeMap<>();
+      for (long time = fromTime; time < toTime; time += TimeUnit.DAYS.toMillis(1)) {
+        final String date = Dates.format("yyyy-MM-dd", new Timestamp(time));
+        files.put(date, new File(directory, "events-" + date + ".tsv"));
+      }
+      final String toDate = Dates.format("yyyy-MM-dd", new Timestamp(toTime));
+      files.put(toDate, new File(directory, "events-" + toDate + ".tsv"));
+      for (final File file : files.values()) {
+        if (file.exists()) {
+          try (
+            BufferedReader reader = Files.newBufferedReader(file.toPath(),
+              StandardCharsets.UTF_8)) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+              final int index = line.indexOf('\t');
+              if (index != -1 && line.startsWith(prefix, index)) {
+                final Event event = newEvent(line);
+                if (event != null) {
+                  jobEvents.add(event);
+                }
+              }
+            }
+          } catch (final Throwable e) {
+            Logs.error(this, "Unable to read job journal: " + file, e);
+          }
+        }
+      }
+    }
+    synchronized (this) {
+      for (final Event event : this.events) {
+        if (event.batchJobId.equals(batchJobId)) {
+          jobEvents.add(event);
+        }
+      }
+    }
+    jobEvents.sort(Comparator.comparingLong(event -> event.time));
+    final List<MapEx> timeline = new ArrayList<>();
+    for (final Event event : jobEvents) {
+      timeline.add(event.toMap());
+    }
+    return timeline;
+  }
+
+  @Override
+  public void run() {
+    boolean running = true;
+    while (running) {
+      final List<Event> batch;
+      synchronized (this) {
+        if (this.running && this.events.size() < this.batchSize) {
+          try {
+            wait(this.flushInterval);
+          } catch (final InterruptedException e) {
+            this.running = false;
+          }
+        }
+        running = this.running;
+        batch = this.events;
+        this.events = new ArrayList<>();
+      }
+      if (!batch.isEmpty() || !this.retryStatusChanges.isEmpty()) {
+        write(batch);
+      }
+    }
+    if (!this.retryStatusChanges.isEmpty()) {
+      Logs.error(this, "Unable to record " + this.retryStatusChanges.size()
+        + " job status changes before the journal was stopped");
+    }
+  }
+
+  public void setBatchSize(final int batchSize) {
+    if (batchSize > 0) {
+      this.batchSize = batchSize;
+    }
+  }
+
+  /**
+   * Set the directory the journal files are written to. If the directory is not set only the
+   * status changes are recorded.
+   *
+   * @param directory The directory.
+   */
+  public void setDirectory(final File directory) {
+    this.directory = directory;
+  }
+
+  public void setFlushInterval(final long flushInterval) {
+    if (flushInterval > 0) {
+      this.flushInterval = flushInterval;
+    }
+  }
+
+  public synchronized void start() {
+    if (!this.running) {
+      this.running = true;
+      this.thread = new Thread(this, "cpfJobJournal");
+      this.thread.setDaemon(true);
+      this.thread.start();
+    }
+  }
+
+  /**
+   * Stop the background thread, waiting for the buffered events to be written.
+   */
+  public void stop() {
+    final Thread thread;
+    synchronized (this) {
+      this.running = false;
+      thread = this.thread;
+      this.thread = null;
+      notifyAll();
+    }
+    if (thread != null) {
+      try {
+        thread.join(TimeUnit.SECONDS.toMillis(30));
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private void write(final List<Event> events) {
+    final Map<String, List<Event>> eventsByDate = new TreeMap<>();
+    final Map<String, List<Event>> completedJobsByDate = new TreeMap<>();
+    final List<Event> statusChanges = new ArrayList<>();
+    for (final Event event : events) {
+      final String date = event.getDate();
+      eventsByDate.computeIfAbsent(date, key -> new ArrayList<>()).add(event);
+      if (JOB_STATUS.equals(event.event)) {
+        statusChanges.add(event);
+      } else if (event.jobValues != null) {
+        completedJobsByDate.computeIfAbsent(date, key -> new ArrayList<>()).add(event);
+      }
+    }
+    writeStatusChanges(statusChanges);
+    final File directory = this.directory;
+    if (directory != null) {
+      directory.mkdirs();
+      for (final Map.Entry<String, List<Event>> entry : eventsByDate.entrySet()) {
+        final File file = new File(directory, "events-" + entry.getKey() + ".tsv");
+        try (
+          Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8,
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+          for (final Event event : entry.getValue()) {
+            event.write(writer);
+          }
+        } catch (final Throwable e) {
+          Logs.error(this, "Unable to write job journal: " + file, e);
+        }
+      }
+    }
+    final File appLogDirectory = this.batchJobService.getAppLogDirectory();
+    if (appLogDirectory != null) {
+      final File jobsDirectory = FileUtil.getDirectory(appLogDirectory, "jobs");
+      for (final Map.Entry<String, List<Event>> entry : completedJobsByDate.entrySet()) {
+        final File jobsFile = FileUtil.getFile(jobsDirectory, "jobs-" + entry.getKey() + ".tsv");
+        final boolean newFile = !jobsFile.exists();
+        try (
+          Writer jobsWriter = new FileWriter(jobsFile, true);
+          TsvWriter jobsTsvWriter = Tsv.plainWriter(jobsWriter)) {
+          if (newFile) {
+            jobsTsvWriter.write(JOB_TSV_FIELD_NAMES);
+          }
+          for (final Event event : entry.getValue()) {
+            jobsTsvWriter.write(event.jobValues);
+          }
+        } catch (final Throwable e) {
+          Logs.error(this, "Unable to log jobs to:" + jobsFile, e);
+        }
+      }
+    }
+  }
+
+  private void writeStatusChanges(final List<Event> newStatusChanges) {
+    final CpfDataAccessObject dataAccessObject = this.batchJobService.getDataAccessObject();
+    final List<Event> statusChanges = new ArrayList<>(this.retryStatusChanges);
+    statusChanges.addAll(newStatusChanges);
+    if (dataAccessObject != null && !statusChanges.isEmpty()) {
+      this.retryStatusChanges = new ArrayList<>();
+      final RecordStore recordStore = dataAccessObject.getRecordStore();
+      final List<Record> records = new ArrayList<>();
+      for (final Event event : statusChanges) {
+        final Timestamp timestamp = new Timestamp(event.time);
+        final Record record = recordStore.newRecord(BatchJobStatusChange.BATCH_JOB_STATUS_CHANGE);
+        record.setValue(BatchJobStatusChange.BATCH_JOB_ID, event.batchJobId);
+        record.setValue(BatchJobStatusChange.JOB_STATUS, event.value);
+        record.setValue(Common.WHO_CREATED, event.who);
+        record.setValue(Common.WHEN_CREATED, timestamp);
+        record.setValue(Common.WHO_UPDATED, event.who);
+        record.setValue(Common.WHEN_UPDATED, timestamp);
+        records.add(record);
+      }
+      try {
+        dataAccessObject.insertRecords(records);
+      } catch (final Throwable e) {
+        Logs.error(this, "Unable to record " + records.size()
+          + " job status changes, inserting one at a time", e);
+        for (int i = 0; i < records.size(); i++) {
+          final Event event = statusChanges.get(i);
+          final Record record = records.get(i);
+          try {
+            dataAccessObject.insertRecords(Collections.singletonList(record));
+          } catch (final Throwable e1) {
+            event.attemptCount++;
+            if (event.attemptCount < MAX_STATUS_CHANGE_ATTEMPTS) {
+              this.retryStatusChanges.add(event);
+            } else {
+              Logs.error(this, "Unable to record job status change after "
+                + MAX_STATUS_CHANGE_ATTEMPTS + " attempts: " + record, e1);
+            }
+          }
+        }
+      }
+    }
+  }
+}
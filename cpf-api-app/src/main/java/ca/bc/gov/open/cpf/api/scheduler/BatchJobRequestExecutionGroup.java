@@ -59,10 +59,45 @@ public class BatchJobRequestExecutionGroup {
 
   private final BatchJob batchJob;
 
+  /** The group this group is a speculative copy of, null if this group is not a copy. */
+  private final BatchJobRequestExecutionGroup originalGroup;
+
+  /** The speculative copy of this group, only set on the original group. */
+  private BatchJobRequestExecutionGroup speculativeGroup;
+
+  /** Flag indicating a result was accepted from the group or its copy, set on the original. */
+  private boolean resultAccepted;
+
+  /** Flag indicating the original failed while its copy was executing, set on the original. */
+  private boolean originalFailed;
+
+  private BatchJobRequestExecutionGroup(final BatchJobRequestExecutionGroup originalGroup) {
+    this.consumerKey = originalGroup.consumerKey;
+    this.batchJob = originalGroup.batchJob;
+    this.businessApplication = originalGroup.businessApplication;
+    this.moduleName = originalGroup.moduleName;
+    this.businessApplicationParameterMap = originalGroup.businessApplicationParameterMap;
+    this.resultDataContentType = originalGroup.resultDataContentType;
+    this.scheduleTimestamp = originalGroup.scheduleTimestamp;
+    this.sequenceNumber = originalGroup.sequenceNumber;
+    this.baseId = originalGroup.baseId;
+    this.originalGroup = originalGroup;
+    this.id = this.baseId + "-" + originalGroup.attempt.incrementAndGet();
+  }
+
   public BatchJobRequestExecutionGroup(final String consumerKey, final BatchJob batchJob,
     final BusinessApplication businessApplication,
     final Map<String, String> businessApplicationParameterMap, final String resultDataContentType,
     final Timestamp scheduleTimestamp, final int sequenceNumber) {
+    this(consumerKey, batchJob, businessApplication, businessApplicationParameterMap,
+      resultDataContentType, scheduleTimestamp, sequenceNumber,
+      batchJob.getIdentifier() + "-" + sequenceNumber);
+  }
+
+  protected BatchJobRequestExecutionGroup(final String consumerKey, final BatchJob batchJob,
+    final BusinessApplication businessApplication,
+    final Map<String, String> businessApplicationParameterMap, final String resultDataContentType,
+    final Timestamp scheduleTimestamp, final int sequenceNumber, final String baseId) {
     this.consumerKey = consumerKey;
     this.batchJob = batchJob;
     this.businessApplication = businessApplication;
@@ -71,20 +106,79 @@ public class BatchJobRequestExecutionGroup {
     this.resultDataContentType = resultDataContentType;
     this.scheduleTimestamp = scheduleTimestamp;
     this.sequenceNumber = sequenceNumber;
-    this.baseId = getBatchJobId() + "-" + sequenceNumber;
+    this.baseId = baseId;
+    this.originalGroup = null;
     resetId();
   }
 
+  /**
+   * Accept the result from this group. Only the first result from a group and its speculative
+   * copy is accepted.
+   *
+   * @return True if the result was accepted, false if a result was already accepted.
+   */
+  public boolean acceptResult() {
+    final BatchJobRequestExecutionGroup originalGroup = getOriginalGroup();
+    synchronized (originalGroup) {
+      if (originalGroup.resultAccepted) {
+        return false;
+      } else {
+        originalGroup.resultAccepted = true;
+        return true;
+      }
+    }
+  }
+
   public void cancel() {
     this.batchJob.removeGroup(this);
     cancelInternal();
   }
 
+  /**
+   * Cancel this execution of the group without returning the group to the job's groups to
+   * process, used when the result from the other execution of the group was accepted.
+   */
+  public void cancelExecution() {
+    this.cancelled = true;
+  }
+
   public void cancelInternal() {
     this.batchJob.cancelScheduledGroup(this.sequenceNumber);
     this.cancelled = true;
   }
 
+  /**
+   * Record that this execution of the group failed.
+   *
+   * @return True if the original group must be rescheduled, false if the other execution of the
+   * group is still executing.
+   */
+  public boolean executionFailed() {
+    final BatchJobRequestExecutionGroup originalGroup = getOriginalGroup();
+    synchronized (originalGroup) {
+      final BatchJobRequestExecutionGroup speculativeGroup = originalGroup.speculativeGroup;
+      if (originalGroup.resultAccepted) {
+        return false;
+      } else if (this == originalGroup) {
+        if (speculativeGroup == null) {
+          return true;
+        } else if (speculativeGroup.executionStartTime > 0 && !speculativeGroup.cancelled) {
+          originalGroup.originalFailed = true;
+          return false;
+        } else {
+          speculativeGroup.cancelled = true;
+          originalGroup.speculativeGroup = null;
+          return true;
+        }
+      } else {
+        final boolean reschedule = originalGroup.originalFailed;
+        originalGroup.speculativeGroup = null;
+        originalGroup.originalFailed = false;
+        return reschedule;
+      }
+    }
+  }
+
   public String getBaseId() {
     return this.baseId;
   }
@@ -141,6 +235,37 @@ public class BatchJobRequestExecutionGroup {
     return this.numFailedRequests;
   }
 
+  /**
+   * Get the original group, this group if it is not a speculative copy.
+   *
+   * @return The original group.
+   */
+  public BatchJobRequestExecutionGroup getOriginalGroup() {
+    if (this.originalGroup == null) {
+      return this;
+    } else {
+      return this.originalGroup;
+    }
+  }
+
+  /**
+   * Get the group or speculative copy that is executing at the same time as this group.
+   *
+   * @return The other execution, null if there isn't one.
+   */
+  public BatchJobRequestExecutionGroup getOtherExecution() {
+    final BatchJobRequestExecutionGroup originalGroup = getOriginalGroup();
+    synchronized (originalGroup) {
+      if (this == originalGroup) {
+        return originalGroup.speculativeGroup;
+      } else if (originalGroup.originalFailed) {
+        return null;
+      } else {
+        return originalGroup;
+      }
+    }
+  }
+
   public String getResultDataContentType() {
     return this.resultDataContentType;
   }
@@ -161,8 +286,27 @@ public class BatchJobRequestExecutionGroup {
     return this.cancelled || this.batchJob.isCancelled();
   }
 
+  public boolean isSpeculative() {
+    return this.originalGroup != null;
+  }
+
+  /**
+   * Create a speculative copy of this group to execute on another worker.
+   *
+   * @return The copy, null if the group already has a copy or a result was accepted.
+   */
+  public synchronized BatchJobRequestExecutionGroup newSpeculativeGroup() {
+    if (this.originalGroup == null && this.speculativeGroup == null && !this.resultAccepted
+      && !isCancelled()) {
+      this.speculativeGroup = new BatchJobRequestExecutionGroup(this);
+      return this.speculativeGroup;
+    } else {
+      return null;
+    }
+  }
+
   public void resetId() {
-    this.id = getBatchJobId() + "-" + this.sequenceNumber + "-" + this.attempt.incrementAndGet();
+    this.id = this.baseId + "-" + this.attempt.incrementAndGet();
   }
 
   public void setExecutionStartTime(final long executionStartTime) {
@@ -163,6 +163,17 @@ public class BatchJobScheduler extends ThreadPoolExecutor
     return this.processNetwork;
   }
 
+  /**
+   * Get the number of jobs waiting for a scheduler thread to create their next group.
+   *
+   * @return The number of queued jobs.
+   */
+  public int getQueuedJobCount() {
+    synchronized (this.queuedJobById) {
+      return this.queuedJobById.size();
+    }
+  }
+
   private int getScheduledGroupCount(final String businessApplicationName) {
     synchronized (this.scheduledGroupsByBusinessApplication) {
       final Collection<BatchJobRequestExecutionGroup> values = this.scheduledGroupsByBusinessApplication
@@ -16,11 +16,9 @@
 package ca.bc.gov.open.cpf.api.scheduler;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringWriter;
-import java.io.Writer;
 import java.math.BigDecimal;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -33,32 +31,29 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
-import javax.mail.internet.MimeMessage;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.websocket.Session;
 
-import org.apache.http.HttpEntity;
-import org.apache.http.HttpResponse;
-import org.apache.http.StatusLine;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.DefaultHttpClient;
 import org.jeometry.common.data.identifier.Identifier;
 import org.jeometry.common.data.type.DataType;
 import org.jeometry.common.data.type.DataTypes;
@@ -66,7 +61,6 @@ import org.jeometry.common.date.Dates;
 import org.jeometry.common.logging.Logs;
 import org.springframework.http.MediaType;
 import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.util.StopWatch;
 
 import ca.bc.gov.open.cpf.api.controller.CpfConfig;
@@ -86,13 +80,14 @@ import ca.bc.gov.open.cpf.plugin.impl.BusinessApplication;
 import ca.bc.gov.open.cpf.plugin.impl.BusinessApplicationRegistry;
 import ca.bc.gov.open.cpf.plugin.impl.ConfigPropertyLoader;
 import ca.bc.gov.open.cpf.plugin.impl.PluginAdaptor;
+import ca.bc.gov.open.cpf.plugin.impl.geometry.GeometryConverter;
+import ca.bc.gov.open.cpf.plugin.impl.geometry.WkbGeometryCodec;
 import ca.bc.gov.open.cpf.plugin.impl.log.AppLogUtil;
 import ca.bc.gov.open.cpf.plugin.impl.module.Module;
 import ca.bc.gov.open.cpf.plugin.impl.module.ModuleEvent;
 import ca.bc.gov.open.cpf.plugin.impl.module.ModuleEventListener;
 import ca.bc.gov.open.cpf.plugin.impl.security.SecurityServiceFactory;
 
-import com.revolsys.collection.list.Lists;
 import com.revolsys.collection.map.LinkedHashMapEx;
 import com.revolsys.collection.map.MapEx;
 import com.revolsys.collection.map.Maps;
@@ -117,8 +112,6 @@ import com.revolsys.record.io.format.csv.Csv;
 import com.revolsys.record.io.format.html.XhtmlMapWriter;
 import com.revolsys.record.io.format.json.Json;
 import com.revolsys.record.io.format.kml.Kml22Constants;
-import com.revolsys.record.io.format.tsv.Tsv;
-import com.revolsys.record.io.format.tsv.TsvWriter;
 import com.revolsys.record.property.FieldProperties;
 import com.revolsys.record.query.Condition;
 import com.revolsys.record.query.Q;
@@ -139,12 +132,6 @@ public class BatchJobService implements ModuleEventListener {
 
   private static final String DATE_TIME_FORMAT = "yyyy-MM-dd HH:mm:ss";
 
-  private static final ArrayList<String> JOB_TSV_FIELD_NAMES = Lists.newArray(
-    BatchJob.BUSINESS_APPLICATION_NAME, BatchJob.BATCH_JOB_ID, BatchJob.USER_ID,
-    BatchJob.WHEN_CREATED, BatchJob.COMPLETED_TIMESTAMP, BatchJob.NUM_SUBMITTED_REQUESTS,
-    BatchJob.FAILED_REQUEST_RANGE, BatchJob.INPUT_DATA_CONTENT_TYPE,
-    BatchJob.RESULT_DATA_CONTENT_TYPE);
-
   private static final Pattern RANGE_PATTERN = Pattern.compile("bytes=(\\d+)?-(\\d+)?");
 
   private static long capacityErrorTime;
@@ -209,7 +196,7 @@ public class BatchJobService implements ModuleEventListener {
 
   public static void setStructuredInputDataValue(final String sridString,
     final Map<String, Object> requestParemeters, final FieldDefinition field, Object parameterValue,
-    final boolean setValue) {
+    final boolean setValue, final GeometryUrlResolver geometryUrlResolver) {
     final DataType dataType = field.getDataType();
     final Class<?> dataClass = dataType.getJavaClass();
     if (Geometry.class.isAssignableFrom(dataClass)) {
@@ -221,7 +208,7 @@ public class BatchJobService implements ModuleEventListener {
           geometry = (Geometry)parameterValue;
           if (geometry.getHorizontalCoordinateSystemId() == 0 && Property.hasValue(sridString)) {
             final int srid = Integer.parseInt(sridString);
-            final GeometryFactory sourceGeometryFactory = GeometryFactory.floating3d(srid);
+            final GeometryFactory sourceGeometryFactory = GeometryConverter.floating3d(srid);
             geometry = sourceGeometryFactory.geometry(geometry);
           }
         } else {
@@ -230,15 +217,12 @@ public class BatchJobService implements ModuleEventListener {
             wkt = wkt.trim();
           }
           if (wkt.startsWith("http")) {
-            wkt = UrlUtil.getContent(wkt + "/feature.wkt?srid=3005");
-            if (!wkt.startsWith("SRID")) {
-              wkt = "SRID=3005;" + wkt;
-            }
+            wkt = geometryUrlResolver.getWkt(wkt);
           }
           try {
             if (Property.hasValue(sridString)) {
               final int srid = Integer.parseInt(sridString);
-              final GeometryFactory sourceGeometryFactory = GeometryFactory.floating3d(srid);
+              final GeometryFactory sourceGeometryFactory = GeometryConverter.floating3d(srid);
               geometry = sourceGeometryFactory.geometry(wkt, false);
             } else {
               geometry = geometryFactory.geometry(wkt, false);
@@ -248,7 +232,7 @@ public class BatchJobService implements ModuleEventListener {
           }
         }
         if (geometryFactory.isHasHorizontalCoordinateSystem()) {
-          geometry = geometryFactory.geometry(geometry);
+          geometry = GeometryConverter.convert(geometry, geometryFactory);
         }
         final Boolean validateGeometry = field.getProperty(FieldProperties.VALIDATE_GEOMETRY);
         if (geometry.getHorizontalCoordinateSystemId() == 0) {
@@ -299,6 +283,24 @@ public class BatchJobService implements ModuleEventListener {
 
   private NamedChannelBundle<BatchJobRequestExecutionGroup> groupsToSchedule = new NamedChannelBundle<>();
 
+  /** The number of groups in groupsToSchedule for each module. */
+  private final Map<String, AtomicInteger> groupsToScheduleCountByModule = new ConcurrentHashMap<>();
+
+  /** The number of groups given to workers since startup. */
+  private final LongAdder dispatchedGroupCount = new LongAdder();
+
+  /** Selects the modules a worker asking for a group is given a group from. */
+  private GroupPlacementPolicy groupPlacementPolicy = new LeastLoadedGroupPlacementPolicy();
+
+  /** The time each module's waiting groups were first left for other workers by the policy. */
+  private final Map<String, Long> placementDeferredTimeByModule = new ConcurrentHashMap<>();
+
+  /** The maximum time the placement policy can leave a module's groups for other workers. */
+  private long placementMaxDeferTime = 5 * 1000;
+
+  /** The time taken to save the results of a group returned from a worker. */
+  private final LatencyHistogram groupResultSaveTime = new LatencyHistogram();
+
   /** The class used to send email. */
   private JavaMailSender mailSender;
 
@@ -320,7 +322,17 @@ public class BatchJobService implements ModuleEventListener {
 
   private CpfDataAccessObject dataAccessObject;
 
-  private final Map<String, Worker> workersById = new TreeMap<>();
+  /**
+   * The workers by id. Updates are synchronized on the map, workers are looked up without a lock
+   * for each poll from a worker.
+   */
+  private final Map<String, Worker> workersById = new ConcurrentSkipListMap<>();
+
+  /**
+   * The workers connected to this server, replaced when a worker connects or disconnects so the
+   * placement policy doesn't lock the workers for each poll.
+   */
+  private volatile List<Worker> connectedWorkers = Collections.emptyList();
 
   private final Map<String, Worker> workersByKey = new TreeMap<>();
 
@@ -333,12 +345,63 @@ public class BatchJobService implements ModuleEventListener {
 
   private RecordStore recordStore;
 
-  private final Object jobTsvFileSync = new Object();
-
   private File appLogDirectory;
 
   private BatchJobUpdator jobUpdator = new BatchJobUpdator();
 
+  private final InstantModeExecutor instantModeExecutor = new InstantModeExecutor(this);
+
+  /** Records the job events in bulk in the background. */
+  private final BatchJobJournal jobJournal = new BatchJobJournal(this);
+
+  /** Delivers the job completion notifications in the background. */
+  private final NotificationDispatcher notificationDispatcher = new NotificationDispatcher(this);
+
+  /** Fetches and caches the WKT for geometry parameters specified as a URL. */
+  private final GeometryUrlResolver geometryUrlResolver = new GeometryUrlResolver();
+
+  /** Instant mode groups, these are given to workers before the groups in groupsToSchedule. */
+  private final LinkedList<InstantModeExecutionGroup> instantModeGroupsToSchedule = new LinkedList<>();
+
+  /** Flag indicating if copies of slow groups are executed on idle workers near job completion. */
+  private boolean speculativeExecutionEnabled = false;
+
+  /** The maximum number of groups a job can have executing for its groups to be copied. */
+  private int speculativeMaxRemainingGroups = 10;
+
+  /** The minimum time (milliseconds) a group must have been executing before it is copied. */
+  private long speculativeMinExecutionTime = 60 * 1000;
+
+  /** The multiple of the application's median group time a group must exceed to be copied. */
+  private double speculativeTimeMultiple = 3.0;
+
+  /** Speculative copies of slow groups, only given to workers that have no other groups. */
+  private final LinkedList<BatchJobRequestExecutionGroup> speculativeGroupsToSchedule = new LinkedList<>();
+
+  /** The number of speculative copies given to workers since startup. */
+  private final LongAdder speculativeGroupCount = new LongAdder();
+
+  /**
+   * Add the group event to the job journal. Instant mode groups aren't part of a batch job so
+   * they aren't journaled.
+   */
+  private void addGroupEvent(final BatchJobRequestExecutionGroup group, final String event,
+    final String workerId) {
+    if (!(group instanceof InstantModeExecutionGroup)) {
+      this.jobJournal.addEvent(group.getBatchJobId(), event, group.getId(), workerId);
+    }
+  }
+
+  private void addGroupsToScheduleCount(final String moduleName, final int delta) {
+    if (moduleName != null) {
+      final AtomicInteger count = this.groupsToScheduleCountByModule.computeIfAbsent(moduleName,
+        name -> new AtomicInteger());
+      if (count.addAndGet(delta) < 0) {
+        count.set(0);
+      }
+    }
+  }
+
   protected void addPreProcessedJobId(final Identifier batchJobId) {
     synchronized (this.preprocesedJobIds) {
       this.preprocesedJobIds.add(batchJobId);
@@ -375,9 +438,36 @@ public class BatchJobService implements ModuleEventListener {
         final BusinessApplication businessApplication = group.getBusinessApplication();
         final AppLog log = businessApplication.getLog();
         log.info("Reschedule\tGroup execution\tgroupId=" + groupId);
+        addGroupEvent(group, BatchJobJournal.GROUP_RESCHEDULED, worker.getId());
 
-        group.resetId();
-        rescheduleGroup(group);
+        rescheduleFailedGroup(group);
+      }
+    }
+  }
+
+  /**
+   * Cancel the other execution of a group after the result from the group was accepted. If the
+   * other execution was given to a worker the worker is sent a cancelGroup message.
+   *
+   * @param group The group the result was accepted from.
+   */
+  public void cancelOtherExecution(final BatchJobRequestExecutionGroup group) {
+    final BatchJobRequestExecutionGroup otherGroup = group.getOtherExecution();
+    if (otherGroup != null) {
+      otherGroup.cancelExecution();
+      final String otherGroupId = otherGroup.getId();
+      for (final Worker worker : getWorkers()) {
+        if (worker.getExecutingGroup(otherGroupId) == otherGroup) {
+          worker.removeExecutingGroup(otherGroupId);
+          final MapEx message = new LinkedHashMapEx();
+          message.put("type", "cancelGroup");
+          message.put("batchJobId", otherGroup.getBatchJobId());
+          message.put("groupId", otherGroupId);
+          worker.sendMessage(message);
+          final AppLog log = otherGroup.getBusinessApplication().getLog();
+          log.info("Cancel\tGroup execution\tgroupId={}\tworkerId={}", otherGroupId,
+            worker.getId());
+        }
       }
     }
   }
@@ -393,18 +483,42 @@ public class BatchJobService implements ModuleEventListener {
     this.jobController.deleteJob(batchJobId);
   }
 
+  /**
+   * Delete jobs that have already been completed or cancelled so they don't
+   * need to be cancelled first.
+   *
+   * @param batchJobIds The batch job ids.
+   * @return The number of jobs deleted.
+   */
+  public int deleteCompletedJobs(final List<Identifier> batchJobIds) {
+    synchronized (this.preprocesedJobIds) {
+      this.preprocesedJobIds.removeAll(batchJobIds);
+    }
+    return this.jobController.deleteJobs(batchJobIds);
+  }
+
   @PreDestroy
   public void destory() {
     this.running = false;
+    this.jobJournal.stop();
     this.authorizationService = null;
     this.businessApplicationRegistry = null;
     this.connectedWorkerCounts.clear();
+    this.connectedWorkers = Collections.emptyList();
     this.dataAccessObject = null;
     this.recordStore = null;
     if (this.groupsToSchedule != null) {
       this.groupsToSchedule.close();
       this.groupsToSchedule = null;
     }
+    synchronized (this.instantModeGroupsToSchedule) {
+      for (final InstantModeExecutionGroup group : this.instantModeGroupsToSchedule) {
+        group.cancel();
+      }
+      this.instantModeGroupsToSchedule.clear();
+    }
+    this.geometryUrlResolver.close();
+    this.notificationDispatcher.stop();
     this.mailSender = null;
     if (this.postProcess != null) {
       this.postProcess.getIn().writeDisconnect();
@@ -426,7 +540,11 @@ public class BatchJobService implements ModuleEventListener {
     this.securityServiceFactory = null;
     this.userClassBaseUrls.clear();
     this.workersById.clear();
-    this.jobController = null;
+    if (this.jobController != null) {
+      this.jobController.close();
+      this.jobController = null;
+    }
+    this.instantModeExecutor.close();
   }
 
   public void downloadBatchJobResult(final HttpServletRequest request,
@@ -458,21 +576,29 @@ public class BatchJobService implements ModuleEventListener {
         final Matcher matcher = RANGE_PATTERN.matcher(range);
         if (matcher.matches()) {
           hasRange = true;
-          response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
           final String from = matcher.group(1);
+          final String to = matcher.group(2);
           if (Property.hasValue(from)) {
-            fromIndex = Integer.parseInt(from);
+            fromIndex = Long.parseLong(from);
+            if (Property.hasValue(to)) {
+              toIndex = Math.min(Long.parseLong(to), size - 1);
+            }
+          } else if (Property.hasValue(to)) {
+            // Suffix range containing the last n bytes
+            fromIndex = Math.max(0, size - Long.parseLong(to));
           }
-          final String to = matcher.group(2);
-          if (Property.hasValue(to)) {
-            toIndex = Integer.parseInt(to);
+          if (fromIndex > toIndex) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader("Content-Range", "bytes */" + size);
+            return;
           }
+          response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
         }
       }
 
       if (jsonCallback == null) {
         response.setHeader("Accept-Ranges", "bytes");
-        response.setHeader("Content-Length", Long.toString(size));
+        response.setHeader("Content-Length", Long.toString(toIndex - fromIndex + 1));
         final java.util.Date lastModified = batchJobResult.getValue(Common.WHEN_CREATED);
 
         final String lastModifiedString = Dates.format("EEE, dd MMM yyyy HH:mm:ss z", lastModified);
@@ -641,6 +767,29 @@ public class BatchJobService implements ModuleEventListener {
     return this.daysToKeepOldJobs;
   }
 
+  public long getDispatchedGroupCount() {
+    return this.dispatchedGroupCount.sum();
+  }
+
+  /**
+   * Get the estimated time to execute a group for the business application, the median group
+   * execution time from today's statistics or this month's if there are none for today.
+   *
+   * @param businessApplicationName The business application name.
+   * @return The time in milliseconds, 0 if there are no statistics.
+   */
+  public long getEstimatedGroupTime(final String businessApplicationName) {
+    long medianTime = this.statisticsService
+      .getStatistics(businessApplicationName, DurationType.DAY.getId())
+      .getExecutedGroupsTimeP50();
+    if (medianTime <= 0) {
+      medianTime = this.statisticsService
+        .getStatistics(businessApplicationName, DurationType.MONTH.getId())
+        .getExecutedGroupsTimeP50();
+    }
+    return Math.max(0, medianTime);
+  }
+
   public java.sql.Date getExpiryDate(final Date completionTimestamp) {
     if (completionTimestamp == null) {
       return null;
@@ -674,14 +823,65 @@ public class BatchJobService implements ModuleEventListener {
         geometryFactory.getScaleXY());
       final double scaleZ = Maps.getDouble(parameters, "resultScaleFactorZ",
         geometryFactory.getScaleZ());
-      return GeometryFactory.fixed(srid, axisCount, scaleXY, scaleXY, scaleZ);
+      return GeometryConverter.fixed(srid, axisCount, scaleXY, scaleZ);
     }
   }
 
+  public GeometryUrlResolver getGeometryUrlResolver() {
+    return this.geometryUrlResolver;
+  }
+
   public int getGroupResultCount() {
     return this.groupResultCount.get();
   }
 
+  public LatencyHistogram getGroupResultSaveTime() {
+    return this.groupResultSaveTime;
+  }
+
+  public GroupPlacementPolicy getGroupPlacementPolicy() {
+    return this.groupPlacementPolicy;
+  }
+
+  /**
+   * Get the number of groups in groupsToSchedule for a module.
+   *
+   * @param moduleName The module name.
+   * @return The number of groups waiting for a worker.
+   */
+  public int getGroupsToScheduleCount(final String moduleName) {
+    final AtomicInteger count = this.groupsToScheduleCountByModule.get(moduleName);
+    if (count == null) {
+      return 0;
+    } else {
+      return count.get();
+    }
+  }
+
+  /**
+   * Get the number of groups in groupsToSchedule for each module.
+   *
+   * @return The map from module name to the number of groups waiting for a worker.
+   */
+  public Map<String, Integer> getGroupsToScheduleCounts() {
+    final Map<String, Integer> counts = new TreeMap<>();
+    for (final Entry<String, AtomicInteger> entry : this.groupsToScheduleCountByModule
+      .entrySet()) {
+      counts.put(entry.getKey(), entry.getValue().get());
+    }
+    return counts;
+  }
+
+  public int getInstantModeGroupsToScheduleCount() {
+    synchronized (this.instantModeGroupsToSchedule) {
+      return this.instantModeGroupsToSchedule.size();
+    }
+  }
+
+  public InstantModeExecutor getInstantModeExecutor() {
+    return this.instantModeExecutor;
+  }
+
   public JobController getJobController() {
     return this.jobController;
   }
@@ -690,6 +890,10 @@ public class BatchJobService implements ModuleEventListener {
     return this.jobController;
   }
 
+  public BatchJobJournal getJobJournal() {
+    return this.jobJournal;
+  }
+
   public int getLargestGroupResultCount() {
     return this.largestGroupResultCount;
   }
@@ -725,7 +929,20 @@ public class BatchJobService implements ModuleEventListener {
           if (groupsToSchedule == null) {
             return Collections.emptyMap();
           } else {
-            group = groupsToSchedule.read(waitTime, moduleNames);
+            group = pollInstantModeGroup(moduleNames);
+            if (group == null) {
+              group = readGroup(groupsToSchedule, workerId, moduleNames, waitTime);
+              if (group == null) {
+                group = pollInstantModeGroup(moduleNames);
+                if (group == null) {
+                  group = pollSpeculativeGroup(workerId, moduleNames);
+                }
+              } else {
+                final String moduleName = group.getModuleName();
+                addGroupsToScheduleCount(moduleName, -1);
+                this.placementDeferredTimeByModule.remove(moduleName);
+              }
+            }
           }
         }
       } catch (final ClosedException e) {
@@ -766,10 +983,12 @@ public class BatchJobService implements ModuleEventListener {
                   response.put("resultDataContentType", group.getResultDataContentType());
                 }
                 final AppLog log = businessApplication.getLog();
-                log.info("Start\tGroup execution\tgroupId=" + groupId + "\tworkerId=" + workerId);
+                log.info("Start\tGroup execution\tgroupId={}\tworkerId={}", groupId, workerId);
+                addGroupEvent(group, BatchJobJournal.GROUP_DISPATCHED, workerId);
                 response.put("consumerKey", group.getconsumerKey());
               } finally {
                 worker.addExecutingGroup(moduleName, moduleStartTime, group);
+                this.dispatchedGroupCount.increment();
               }
             }
           }
@@ -779,6 +998,37 @@ public class BatchJobService implements ModuleEventListener {
     return response;
   }
 
+  public NotificationDispatcher getNotificationDispatcher() {
+    return this.notificationDispatcher;
+  }
+
+  /**
+   * Get the modules a worker can be given a group from using the placement policy. Modules the
+   * policy has left for other workers for longer than placementMaxDeferTime are added back so
+   * their groups are never left waiting.
+   *
+   * @param placementPolicy The placement policy.
+   * @param worker The worker.
+   * @param waitingModuleNames The modules started on the worker that have groups waiting.
+   * @return The module names, an empty list if the worker shouldn't be given a group.
+   */
+  private List<String> getPlacementModuleNames(final GroupPlacementPolicy placementPolicy,
+    final Worker worker, final List<String> waitingModuleNames) {
+    final List<String> placementModuleNames = new ArrayList<>(
+      placementPolicy.getModuleNames(this, worker, waitingModuleNames));
+    final long currentTime = System.currentTimeMillis();
+    for (final String moduleName : waitingModuleNames) {
+      if (!placementModuleNames.contains(moduleName)) {
+        final long deferredTime = this.placementDeferredTimeByModule
+          .computeIfAbsent(moduleName, name -> currentTime);
+        if (currentTime - deferredTime > this.placementMaxDeferTime) {
+          placementModuleNames.add(moduleName);
+        }
+      }
+    }
+    return placementModuleNames;
+  }
+
   public BatchJobPostProcess getPostProcess() {
     return this.postProcess;
   }
@@ -787,6 +1037,10 @@ public class BatchJobService implements ModuleEventListener {
     return this.preProcess;
   }
 
+  public BatchJobScheduler getScheduler() {
+    return this.scheduler;
+  }
+
   public RecordStore getRecordStore() {
     return this.recordStore;
   }
@@ -795,6 +1049,27 @@ public class BatchJobService implements ModuleEventListener {
     return this.securityServiceFactory.getSecurityService(module, consumerKey);
   }
 
+  /**
+   * Get the time a group for the business application must have been executing before a
+   * speculative copy is created. Applications without any group statistics are not copied.
+   *
+   * @param businessApplicationName The business application name.
+   * @return The time in milliseconds.
+   */
+  private long getSpeculativeExecutionTime(final String businessApplicationName) {
+    final long medianTime = getEstimatedGroupTime(businessApplicationName);
+    if (medianTime <= 0) {
+      return Long.MAX_VALUE;
+    } else {
+      return Math.max(this.speculativeMinExecutionTime,
+        (long)(medianTime * this.speculativeTimeMultiple));
+    }
+  }
+
+  public long getSpeculativeGroupCount() {
+    return this.speculativeGroupCount.sum();
+  }
+
   public StatisticsService getStatisticsService() {
     return this.statisticsService;
   }
@@ -808,10 +1083,7 @@ public class BatchJobService implements ModuleEventListener {
   }
 
   public Worker getWorker(final String workerId) {
-    synchronized (this.workersById) {
-      final Worker worker = this.workersById.get(workerId);
-      return worker;
-    }
+    return this.workersById.get(workerId);
   }
 
   public Worker getWorkerByKey(final String workerKey) {
@@ -821,6 +1093,17 @@ public class BatchJobService implements ModuleEventListener {
     }
   }
 
+  /**
+   * Get the workers that are connected to this server. Workers that have disconnected but not yet
+   * been removed by resetHungWorkers are excluded. The list is a read only snapshot taken when a
+   * worker last connected or disconnected, the load of each worker is current.
+   *
+   * @return The workers.
+   */
+  public List<Worker> getConnectedWorkers() {
+    return this.connectedWorkers;
+  }
+
   public List<Worker> getWorkers() {
     synchronized (this.workersById) {
       return new ArrayList<>(this.workersByKey.values());
@@ -834,6 +1117,15 @@ public class BatchJobService implements ModuleEventListener {
       this.authorizationService);
     this.businessApplicationRegistry.addModuleEventListener(this.securityServiceFactory);
     this.recordStore = this.dataAccessObject.getRecordStore();
+    if (this.appLogDirectory != null) {
+      this.notificationDispatcher
+        .setDirectory(FileUtil.getDirectory(this.appLogDirectory, "notifications"));
+    }
+    this.notificationDispatcher.start();
+    if (this.appLogDirectory != null) {
+      this.jobJournal.setDirectory(FileUtil.getDirectory(this.appLogDirectory, "journal"));
+    }
+    this.jobJournal.start();
     Logs.info(this, "Started");
   }
 
@@ -872,13 +1164,17 @@ public class BatchJobService implements ModuleEventListener {
               if (action.equals(ModuleEvent.STOP)) {
                 final NamedChannelBundle<BatchJobRequestExecutionGroup> groupsToSchedule = this.groupsToSchedule;
                 if (groupsToSchedule != null) {
-                  groupsToSchedule.remove(businessApplicationName);
+                  // The groups to schedule and their counts are by module name
+                  groupsToSchedule.remove(moduleName);
+                  this.groupsToScheduleCountByModule.remove(moduleName);
                 }
                 if (this.scheduler != null) {
                   this.scheduler.clearBusinessApplication(businessApplicationName);
                 }
                 this.dataAccessObject.clearBatchJobs(businessApplicationName);
+                this.instantModeExecutor.getResultCache().clear(businessApplicationName);
               } else if (action.equals(ModuleEvent.START)) {
+                this.instantModeExecutor.getResultCache().clear(businessApplicationName);
                 this.dataAccessObject.clearBatchJobs(businessApplicationName);
                 resetProcessingBatchJobs(moduleName, businessApplicationName);
                 resetCreatingRequestsBatchJobs(moduleName, businessApplicationName);
@@ -1028,25 +1324,8 @@ public class BatchJobService implements ModuleEventListener {
             final String username = CpfDataAccessObject.getUsername();
             batchJob.setValue(Common.WHO_UPDATED, username);
 
-            synchronized (this.jobTsvFileSync) {
-              final File jobsDirectory = FileUtil.getDirectory(this.appLogDirectory, "jobs");
-
-              final String dateString = Dates.format("yyyy-MM-dd", now);
-              final File jobsFile = FileUtil.getFile(jobsDirectory, "jobs-" + dateString + ".tsv");
-              final boolean newFile = !jobsFile.exists();
-              try (
-                Writer jobsWriter = new FileWriter(jobsFile, true);
-                TsvWriter jobsTsvWriter = Tsv.plainWriter(jobsWriter)) {
-                if (newFile) {
-                  jobsTsvWriter.write(JOB_TSV_FIELD_NAMES);
-                }
-                final List<Object> values = batchJob.getValues(JOB_TSV_FIELD_NAMES);
-                jobsTsvWriter.write(values);
-              } catch (final Throwable e) {
-                Logs.error(this, "Unable to log job to:" + jobsFile, e);
-              }
-            }
             batchJob.update();
+            Transaction.afterCommit(() -> this.jobJournal.addCompletedJob(batchJob));
             sendNotification(batchJobId, batchJob);
           }
           final int numCompletedRequests = batchJob.getNumCompletedRequests();
@@ -1164,6 +1443,7 @@ public class BatchJobService implements ModuleEventListener {
     final com.revolsys.io.Writer<Record> structuredDataWriter,
     final RecordDefinition resultRecordDefinition, final Map<String, Object> defaultProperties,
     final Map<String, Object> resultData) {
+    WkbGeometryCodec.decodeValues(resultRecordDefinition, resultData);
     final Record structuredResult = Records.newRecord(resultRecordDefinition, resultData);
 
     final String propertiesString = (String)resultData.get("customizationProperties");
@@ -1180,6 +1460,52 @@ public class BatchJobService implements ModuleEventListener {
     }
   }
 
+  private InstantModeExecutionGroup pollInstantModeGroup(final List<String> moduleNames) {
+    synchronized (this.instantModeGroupsToSchedule) {
+      for (final Iterator<InstantModeExecutionGroup> iterator = this.instantModeGroupsToSchedule
+        .iterator(); iterator.hasNext();) {
+        final InstantModeExecutionGroup group = iterator.next();
+        if (group.isCancelled()) {
+          iterator.remove();
+        } else if (moduleNames == null || moduleNames.contains(group.getModuleName())) {
+          iterator.remove();
+          return group;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Get a speculative copy of a group for a worker that has no other groups to execute. Copies
+   * are never given to the worker executing the original group.
+   *
+   * @param workerId The worker identifier.
+   * @param moduleNames The modules loaded on the worker.
+   * @return The copy, null if there are none for the worker.
+   */
+  private BatchJobRequestExecutionGroup pollSpeculativeGroup(final String workerId,
+    final List<String> moduleNames) {
+    final Worker worker = getWorker(workerId);
+    if (worker != null) {
+      synchronized (this.speculativeGroupsToSchedule) {
+        for (final Iterator<BatchJobRequestExecutionGroup> iterator = this.speculativeGroupsToSchedule
+          .iterator(); iterator.hasNext();) {
+          final BatchJobRequestExecutionGroup group = iterator.next();
+          if (group.isCancelled() || group.getOriginalGroup().isCancelled()) {
+            iterator.remove();
+          } else if ((moduleNames == null || moduleNames.contains(group.getModuleName()))
+            && worker.getExecutingGroup(group.getBaseId()) == null) {
+            iterator.remove();
+            this.speculativeGroupCount.increment();
+            return group;
+          }
+        }
+      }
+    }
+    return null;
+  }
+
   public void preProcess(final Identifier batchJobId) {
     if (this.preProcess != null) {
       SendToChannelAfterCommit.send(this.preProcess.getIn(), batchJobId);
@@ -1194,6 +1520,58 @@ public class BatchJobService implements ModuleEventListener {
     return jobPreProcessTask.process();
   }
 
+  /**
+   * Read the next group for a worker from groupsToSchedule. If any of the worker's modules have
+   * groups waiting the placement policy selects the modules the worker is given a group from.
+   *
+   * @param groupsToSchedule The groups to schedule.
+   * @param workerId The worker identifier.
+   * @param moduleNames The modules loaded on the worker.
+   * @param waitTime The maximum time to wait for a group.
+   * @return The group, null if there wasn't one for the worker.
+   */
+  private BatchJobRequestExecutionGroup readGroup(
+    final NamedChannelBundle<BatchJobRequestExecutionGroup> groupsToSchedule,
+    final String workerId, final List<String> moduleNames, final long waitTime) {
+    final GroupPlacementPolicy placementPolicy = this.groupPlacementPolicy;
+    final Worker worker = getWorker(workerId);
+    if (placementPolicy != null && worker != null && moduleNames != null) {
+      final Map<String, Integer> waitingCounts = new LinkedHashMap<>();
+      for (final String moduleName : moduleNames) {
+        final int count = getGroupsToScheduleCount(moduleName);
+        if (count <= 0) {
+          this.placementDeferredTimeByModule.remove(moduleName);
+        } else if (worker.isModuleStarted(moduleName)) {
+          waitingCounts.put(moduleName, count);
+        }
+      }
+      if (!waitingCounts.isEmpty()) {
+        final List<String> placementModuleNames = getPlacementModuleNames(placementPolicy, worker,
+          new ArrayList<>(waitingCounts.keySet()));
+        final long placementWaitTime = Math.min(waitTime, 1000);
+        if (placementModuleNames.isEmpty()) {
+          // Leave the waiting groups for the workers preferred by the placement policy
+          ThreadUtil.pause(placementWaitTime);
+          return null;
+        } else {
+          final BatchJobRequestExecutionGroup group = groupsToSchedule.read(placementWaitTime,
+            placementModuleNames);
+          if (group != null) {
+            return group;
+          }
+          // The counts were stale, reset them unless they changed while waiting
+          for (final String moduleName : placementModuleNames) {
+            final AtomicInteger count = this.groupsToScheduleCountByModule.get(moduleName);
+            if (count != null) {
+              count.compareAndSet(waitingCounts.get(moduleName), 0);
+            }
+          }
+        }
+      }
+    }
+    return groupsToSchedule.read(waitTime, moduleNames);
+  }
+
   protected void removePreProcessedJobId(final Identifier batchJobId) {
     synchronized (this.preprocesedJobIds) {
       this.preprocesedJobIds.remove(batchJobId);
@@ -1203,13 +1581,29 @@ public class BatchJobService implements ModuleEventListener {
   public void rescheduleGroup(final BatchJobRequestExecutionGroup group) {
     if (this.running) {
       final BatchJob batchJob = group.getBatchJob();
-      if (batchJob != null) {
+      if (group instanceof InstantModeExecutionGroup || group.isSpeculative()) {
+        scheduleGroup(group);
+      } else if (batchJob != null) {
         batchJob.rescheduleGroup(group);
         scheduleGroup(group);
       }
     }
   }
 
+  /**
+   * Reschedule a group whose execution failed on a worker. If the group has a speculative copy
+   * the original is only rescheduled once neither the original nor the copy is executing.
+   *
+   * @param group The group or speculative copy that failed.
+   */
+  private void rescheduleFailedGroup(final BatchJobRequestExecutionGroup group) {
+    if (group.executionFailed()) {
+      final BatchJobRequestExecutionGroup originalGroup = group.getOriginalGroup();
+      originalGroup.resetId();
+      rescheduleGroup(originalGroup);
+    }
+  }
+
   public void resetCreatingRequestsBatchJobs(final String moduleName,
     final String businessApplicationName) {
     final AppLog log = getAppLog(businessApplicationName);
@@ -1263,36 +1657,33 @@ public class BatchJobService implements ModuleEventListener {
   public void resetHungWorkers() {
     final Timestamp lastIdleTime = new Timestamp(
       System.currentTimeMillis() - this.maxWorkerWaitTime * 2);
+    final List<Worker> hungWorkers = new ArrayList<>();
     synchronized (this.workersById) {
-      final ArrayList<String> workerIds = new ArrayList<>(this.workersById.keySet());
-      for (final String workerId : workerIds) {
-        if (!this.connectedWorkerCounts.containsKey(workerId)) {
-          Worker worker = getWorker(workerId);
-          if (worker != null) {
-            final Timestamp workerTimestamp = worker.getLastConnectTime();
-            if (workerTimestamp == null || workerTimestamp.before(lastIdleTime)) {
-              worker = this.workersById.remove(workerId);
-              this.workersByKey.remove(worker.getKey());
-              final Map<String, BatchJobRequestExecutionGroup> groupsById = worker
-                .getExecutingGroupsById();
-              if (groupsById != null) {
-                synchronized (groupsById) {
-                  for (final BatchJobRequestExecutionGroup group : new ArrayList<>(
-                    groupsById.values())) {
-                    final String groupId = group.getId();
-                    Logs.debug(this, "Rescheduling group " + groupId + " from worker " + workerId);
-                    worker.removeExecutingGroup(groupId);
-                    group.resetId();
-                    rescheduleGroup(group);
-                  }
-                }
-              }
-            }
+      for (final Iterator<Worker> iterator = this.workersById.values().iterator(); iterator
+        .hasNext();) {
+        final Worker worker = iterator.next();
+        if (!this.connectedWorkerCounts.containsKey(worker.getId())) {
+          final Timestamp workerTimestamp = worker.getLastConnectTime();
+          if (workerTimestamp == null || workerTimestamp.before(lastIdleTime)) {
+            iterator.remove();
+            this.workersByKey.remove(worker.getKey());
+            hungWorkers.add(worker);
           }
         }
       }
     }
-
+    // Reschedule the groups outside the workers lock so dispatching groups isn't blocked
+    for (final Worker worker : hungWorkers) {
+      final String workerId = worker.getId();
+      for (final BatchJobRequestExecutionGroup group : worker.getExecutingGroups()) {
+        final String groupId = group.getId();
+        Logs.debug(this, "Rescheduling group " + groupId + " from worker " + workerId);
+        if (worker.removeExecutingGroup(groupId) != null) {
+          addGroupEvent(group, BatchJobJournal.GROUP_RESCHEDULED, workerId);
+          rescheduleFailedGroup(group);
+        }
+      }
+    }
   }
 
   /**
@@ -1312,6 +1703,7 @@ public class BatchJobService implements ModuleEventListener {
       if (groupsToSchedule != null) {
         final Collection<BatchJobRequestExecutionGroup> groups = groupsToSchedule
           .remove(moduleName);
+        this.groupsToScheduleCountByModule.remove(moduleName);
         if (groups != null) {
           for (final BatchJobRequestExecutionGroup group : groups) {
             group.cancel();
@@ -1409,7 +1801,21 @@ public class BatchJobService implements ModuleEventListener {
       final String moduleName = module.getName();
       final NamedChannelBundle<BatchJobRequestExecutionGroup> groupsToSchedule = this.groupsToSchedule;
       if (groupsToSchedule != null) {
-        groupsToSchedule.write(moduleName, group);
+        if (group instanceof InstantModeExecutionGroup) {
+          synchronized (this.instantModeGroupsToSchedule) {
+            this.instantModeGroupsToSchedule.add((InstantModeExecutionGroup)group);
+          }
+          // Wake up any workers waiting for a group so they pick up the instant group
+          groupsToSchedule.notifyReaders();
+        } else if (group.isSpeculative()) {
+          synchronized (this.speculativeGroupsToSchedule) {
+            this.speculativeGroupsToSchedule.add(group);
+          }
+          groupsToSchedule.notifyReaders();
+        } else {
+          addGroupsToScheduleCount(moduleName, 1);
+          groupsToSchedule.write(moduleName, group);
+        }
       }
     }
   }
@@ -1423,6 +1829,49 @@ public class BatchJobService implements ModuleEventListener {
     }
   }
 
+  /**
+   * Create speculative copies of the groups that have been executing for much longer than the
+   * application's median group time, for jobs that only have a few groups left. The first result
+   * returned from the original or the copy is used and the other execution is cancelled.
+   */
+  public void scheduleSpeculativeGroups() {
+    if (this.running && this.speculativeExecutionEnabled) {
+      final long currentTime = System.currentTimeMillis();
+      final Map<String, Long> executionTimeByApplication = new HashMap<>();
+      boolean scheduled = false;
+      for (final Worker worker : getWorkers()) {
+        for (final BatchJobRequestExecutionGroup group : worker.getExecutingGroups()) {
+          final BatchJob batchJob = group.getBatchJob();
+          if (!(group instanceof InstantModeExecutionGroup) && !group.isSpeculative()
+            && !group.isCancelled() && !batchJob.hasAvailableGroup()
+            && batchJob.getScheduledGroupCount() <= this.speculativeMaxRemainingGroups) {
+            final long executionTime = executionTimeByApplication.computeIfAbsent(
+              group.getBusinessApplicationName(), this::getSpeculativeExecutionTime);
+            final long executionStartTime = group.getExecutionStartTime();
+            if (executionStartTime > 0 && currentTime - executionStartTime > executionTime) {
+              final BatchJobRequestExecutionGroup speculativeGroup = group.newSpeculativeGroup();
+              if (speculativeGroup != null) {
+                synchronized (this.speculativeGroupsToSchedule) {
+                  this.speculativeGroupsToSchedule.add(speculativeGroup);
+                }
+                final AppLog log = group.getBusinessApplication().getLog();
+                log.info("Speculative\tGroup execution\tgroupId={}\tcopyId={}", group.getId(),
+                  speculativeGroup.getId());
+                scheduled = true;
+              }
+            }
+          }
+        }
+      }
+      if (scheduled) {
+        final NamedChannelBundle<BatchJobRequestExecutionGroup> groupsToSchedule = this.groupsToSchedule;
+        if (groupsToSchedule != null) {
+          groupsToSchedule.notifyReaders();
+        }
+      }
+    }
+  }
+
   /**
    * @param batchJobId The Record identifier.
    * @param batchJob The BatchJob.
@@ -1452,7 +1901,7 @@ public class BatchJobService implements ModuleEventListener {
         final Map<String, Object> jobMap = toMap(batchJob, batchJobUrl, 0);
         final String subject = "CPF Job " + batchJobId + " status";
 
-        URI notificationUri = new URI(notificationUrl);
+        final URI notificationUri = new URI(notificationUrl);
         final String scheme = notificationUri.getScheme();
         if (scheme != null) {
           if (scheme.equals("mailto")) {
@@ -1463,18 +1912,11 @@ public class BatchJobService implements ModuleEventListener {
             writer.write(jobMap);
             writer.close();
 
-            final MimeMessage message = this.mailSender.createMimeMessage();
-
-            final MimeMessageHelper messageHelper = new MimeMessageHelper(message);
-            messageHelper.setTo(notificationUri.getSchemeSpecificPart());
-            messageHelper.setSubject(subject);
-            messageHelper.setFrom(this.fromEmail);
-            messageHelper.setText(bodyOut.toString(), true);
-            this.mailSender.send(message);
+            sendNotification(batchJobId, notificationUrl, "text/html", subject,
+              bodyOut.toString());
           } else if (scheme.equals("http") || scheme.equals("https")) {
             notificationUrl = UrlUtil.getUrl(notificationUrl,
               Collections.singletonMap("batchJobUrl", batchJobUrl));
-            notificationUri = new URI(notificationUrl);
             final StringWriter bodyOut = new StringWriter();
             final String contentType = batchJob.getValue(BatchJob.RESULT_DATA_CONTENT_TYPE);
             final MapWriterFactory writerFactory = IoFactory
@@ -1487,26 +1929,8 @@ public class BatchJobService implements ModuleEventListener {
               writer.setProperty("title", subject);
               writer.write(jobMap);
               writer.close();
-              final HttpEntity body = new StringEntity(bodyOut.toString());
-              try (
-                @SuppressWarnings("deprecation")
-                final CloseableHttpClient client = new DefaultHttpClient()) {
-                final HttpPost request = new HttpPost(notificationUri);
-                request.setHeader("Content-type", contentType);
-                request.setEntity(body);
-                final HttpResponse response = client.execute(request);
-                final HttpEntity entity = response.getEntity();
-                try {
-                  final StatusLine statusLine = response.getStatusLine();
-                  if (statusLine.getStatusCode() >= 400) {
-                    Logs.error(this, "Unable to send notification for Record #" + batchJobId
-                      + " to " + notificationUrl + " response=" + statusLine);
-                  }
-                } finally {
-                  final InputStream content = entity.getContent();
-                  FileUtil.closeSilent(content);
-                }
-              }
+              sendNotification(batchJobId, notificationUrl, contentType, subject,
+                bodyOut.toString());
             }
           }
         }
@@ -1517,6 +1941,17 @@ public class BatchJobService implements ModuleEventListener {
     }
   }
 
+  /**
+   * Queue the notification to be sent by the {@link NotificationDispatcher} once the current
+   * transaction has been committed.
+   */
+  private void sendNotification(final Identifier batchJobId, final String url,
+    final String contentType, final String subject, final String body) {
+    final String id = batchJobId.toString();
+    Transaction.afterCommit(
+      () -> this.notificationDispatcher.send(id, url, contentType, subject, body));
+  }
+
   public void sendWorkerMessage(final MapEx message) {
     synchronized (this.workersById) {
       for (final Worker worker : this.workersById.values()) {
@@ -1566,6 +2001,18 @@ public class BatchJobService implements ModuleEventListener {
     this.fromEmail = fromEmail;
   }
 
+  public void setGeometryUrlCacheTimeToLiveSeconds(final int timeToLiveSeconds) {
+    this.geometryUrlResolver.setTimeToLiveSeconds(timeToLiveSeconds);
+  }
+
+  public void setGeometryUrlThreadCount(final int threadCount) {
+    this.geometryUrlResolver.setThreadCount(threadCount);
+  }
+
+  public void setGroupPlacementPolicy(final GroupPlacementPolicy groupPlacementPolicy) {
+    this.groupPlacementPolicy = groupPlacementPolicy;
+  }
+
   public void setJsonpEnabled(final boolean jsonpEnabled) {
     this.jsonpEnabled = jsonpEnabled;
   }
@@ -1583,6 +2030,10 @@ public class BatchJobService implements ModuleEventListener {
     this.maxWorkerWaitTime = maxWorkerWaitTime * 1000;
   }
 
+  public void setPlacementMaxDeferTime(final long placementMaxDeferTime) {
+    this.placementMaxDeferTime = placementMaxDeferTime * 1000;
+  }
+
   public void setPostProcess(final BatchJobPostProcess postProcess) {
     this.postProcess = postProcess;
     postProcess.getIn().writeConnect();
@@ -1597,6 +2048,22 @@ public class BatchJobService implements ModuleEventListener {
     this.scheduler = scheduler;
   }
 
+  public void setSpeculativeExecutionEnabled(final boolean speculativeExecutionEnabled) {
+    this.speculativeExecutionEnabled = speculativeExecutionEnabled;
+  }
+
+  public void setSpeculativeMaxRemainingGroups(final int speculativeMaxRemainingGroups) {
+    this.speculativeMaxRemainingGroups = speculativeMaxRemainingGroups;
+  }
+
+  public void setSpeculativeMinExecutionTimeSeconds(final long speculativeMinExecutionTime) {
+    this.speculativeMinExecutionTime = speculativeMinExecutionTime * 1000;
+  }
+
+  public void setSpeculativeTimeMultiple(final double speculativeTimeMultiple) {
+    this.speculativeTimeMultiple = speculativeTimeMultiple;
+  }
+
   public void setTimeoutForCapacityErrors(final long timeoutForCapacityErrors) {
     this.timeoutForCapacityErrors = timeoutForCapacityErrors * 60 * 1000;
   }
@@ -1639,6 +2106,7 @@ public class BatchJobService implements ModuleEventListener {
       final long time = System.currentTimeMillis();
       final Timestamp lastConnectTime = new Timestamp(time);
       worker.setLastConnectTime(lastConnectTime);
+      updateConnectedWorkers();
     }
   }
 
@@ -1674,6 +2142,7 @@ public class BatchJobService implements ModuleEventListener {
           worker.setSession(null);
         }
       }
+      updateConnectedWorkers();
     }
   }
 
@@ -1732,6 +2201,7 @@ public class BatchJobService implements ModuleEventListener {
   public void updateBatchJobExecutionGroupFromResponse(final Worker worker, final BatchJob batchJob,
     final BatchJobRequestExecutionGroup group, final InputStream in) {
     final String groupId = group.getId();
+    final long startTime = System.currentTimeMillis();
     try {
       final int sequenceNumber = group.getSequenceNumber();
       final Identifier batchJobId = batchJob.getIdentifier();
@@ -1740,13 +2210,16 @@ public class BatchJobService implements ModuleEventListener {
         this.jobController.setGroupResult(batchJobId, sequenceNumber, in);
       }
       batchJob.addCompletedGroup(sequenceNumber);
+      this.jobJournal.addEvent(batchJobId, BatchJobJournal.GROUP_COMPLETED, groupId,
+        worker.getId());
       if (batchJob.isCompleted()) {
         batchJob.setStatus(this, BatchJobStatus.PROCESSING, BatchJobStatus.PROCESSED);
         postProcess(batchJobId);
       } else if (batchJob.hasAvailableGroup()) {
         scheduleJob(batchJob);
       }
-      this.scheduler.groupFinished(group);
+      this.scheduler.groupFinished(group.getOriginalGroup());
+      this.groupResultSaveTime.record(System.currentTimeMillis() - startTime);
     } catch (final Throwable e) {
       if (isDatabaseResourcesException(e)) {
         Logs.error(this, "Tablespace error saving group results: " + groupId);
@@ -1757,20 +2230,67 @@ public class BatchJobService implements ModuleEventListener {
     }
   }
 
+  /**
+   * Replace the connected workers snapshot. Must be called while synchronized on workersById.
+   */
+  private void updateConnectedWorkers() {
+    final List<Worker> workers = new ArrayList<>();
+    for (final Worker worker : this.workersByKey.values()) {
+      if (this.connectedWorkerCounts.containsKey(worker.getId())) {
+        workers.add(worker);
+      }
+    }
+    this.connectedWorkers = Collections.unmodifiableList(workers);
+  }
+
+  /**
+   * Update the groups executing on the worker from the groups started and finished since the
+   * worker's last message. If a message was missed or the digest of the groups is different the
+   * worker is asked to send all of its executing groups.
+   *
+   * @param worker The worker.
+   * @param startedGroupIds The groups started since the last message.
+   * @param finishedGroupIds The groups finished since the last message.
+   * @param sequence The sequence number of the message.
+   * @param digest The digest of the groups executing on the worker.
+   */
   public void updateWorkerExecutingGroups(final Worker worker,
-    final List<String> executingGroupIds) {
+    final List<String> startedGroupIds, final List<String> finishedGroupIds,
+    final long sequence, final String digest) {
+    if (worker.updateReportedGroupIds(startedGroupIds, finishedGroupIds, sequence, digest)) {
+      updateWorkerExecutingGroups(worker);
+    } else {
+      final MapEx message = new LinkedHashMapEx();
+      message.put("type", "executingGroupIdsRequest");
+      worker.sendMessage(message);
+    }
+  }
+
+  /**
+   * Reschedule the groups dispatched to the worker more than a minute ago that the worker has not
+   * reported as executing.
+   *
+   * @param worker The worker.
+   */
+  private void updateWorkerExecutingGroups(final Worker worker) {
     final long minStartTime = System.currentTimeMillis() - 60 * 1000;
     final List<BatchJobRequestExecutionGroup> executingGroups = worker.getExecutingGroups();
     for (final BatchJobRequestExecutionGroup executionGroup : executingGroups) {
       if (executionGroup.getExecutionStartTime() < minStartTime) {
         final String groupId = executionGroup.getId();
-        if (!executingGroupIds.contains(groupId)) {
+        if (!worker.isReportedGroupId(groupId)) {
           cancelGroup(worker, groupId);
         }
       }
     }
   }
 
+  public void updateWorkerExecutingGroups(final Worker worker,
+    final List<String> executingGroupIds, final long sequence) {
+    worker.setReportedGroupIds(executingGroupIds, sequence);
+    updateWorkerExecutingGroups(worker);
+  }
+
   public void waitIfTablespaceError(final Class<?> logClass) {
     final long currentTime = System.currentTimeMillis();
     final long waitTime = capacityErrorTime + this.timeoutForCapacityErrors - currentTime;
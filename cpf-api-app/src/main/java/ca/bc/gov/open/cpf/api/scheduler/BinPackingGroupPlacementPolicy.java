@@ -0,0 +1,139 @@
+/*
+ * Copyright © 2008-2016, Province of British Columbia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.bc.gov.open.cpf.api.scheduler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ca.bc.gov.open.cpf.plugin.impl.module.Module;
+
+/**
+ * Gives the groups for the most expensive modules to the workers with the most free capacity.
+ * The cost of a module's groups is the largest median group execution time of the module's
+ * business applications. The free capacity of a worker is its CPUs scaled by the fraction of
+ * its group slots and heap memory that are free.
+ */
+public class BinPackingGroupPlacementPolicy extends AbstractGroupPlacementPolicy {
+
+  private static class ModuleCost {
+    private final long cost;
+
+    private final long time = System.currentTimeMillis();
+
+    private ModuleCost(final long cost) {
+      this.cost = cost;
+    }
+  }
+
+  private long costCacheTime = 60 * 1000;
+
+  private final Map<String, ModuleCost> costByModuleName = new ConcurrentHashMap<>();
+
+  private double minFreeMemoryFraction = 0.1;
+
+  public long getCostCacheTime() {
+    return this.costCacheTime / 1000;
+  }
+
+  private double getFreeCapacity(final Worker worker) {
+    final double freeSlotFraction = Math.max(0, 1 - worker.getLoad());
+    return Math.max(1, worker.getCpuCount()) * freeSlotFraction * worker.getFreeMemoryFraction();
+  }
+
+  public double getMinFreeMemoryFraction() {
+    return this.minFreeMemoryFraction;
+  }
+
+  private long getModuleCost(final BatchJobService batchJobService, final String moduleName) {
+    ModuleCost moduleCost = this.costByModuleName.get(moduleName);
+    if (moduleCost == null || moduleCost.time < System.currentTimeMillis() - this.costCacheTime) {
+      long cost = 0;
+      final Module module = batchJobService.getModule(moduleName);
+      if (module != null) {
+        for (final String businessApplicationName : module.getBusinessApplicationNames()) {
+          cost = Math.max(cost, batchJobService.getEstimatedGroupTime(businessApplicationName));
+        }
+      }
+      moduleCost = new ModuleCost(cost);
+      this.costByModuleName.put(moduleName, moduleCost);
+    }
+    return moduleCost.cost;
+  }
+
+  @Override
+  protected List<String> selectModuleNames(final BatchJobService batchJobService,
+    final Worker worker, final List<String> moduleNames) {
+    if (moduleNames.size() < 2) {
+      return moduleNames;
+    } else {
+      final Map<String, Long> costByModuleName = new HashMap<>();
+      for (final String moduleName : moduleNames) {
+        costByModuleName.put(moduleName, getModuleCost(batchJobService, moduleName));
+      }
+      final List<String> sortedModuleNames = new ArrayList<>(moduleNames);
+      sortedModuleNames.sort((moduleName1, moduleName2) -> Long
+        .compare(costByModuleName.get(moduleName2), costByModuleName.get(moduleName1)));
+
+      final int moduleIndex;
+      if (worker.getFreeMemoryFraction() < this.minFreeMemoryFraction) {
+        moduleIndex = sortedModuleNames.size() - 1;
+      } else {
+        // Rank the worker by free capacity against the other workers that can run the modules
+        final double freeCapacity = getFreeCapacity(worker);
+        int workerCount = 1;
+        int workerRank = 0;
+        for (final Worker otherWorker : batchJobService.getConnectedWorkers()) {
+          if (otherWorker != worker && otherWorker.hasFreeSlot()
+            && isAnyModuleStarted(otherWorker, moduleNames)) {
+            workerCount++;
+            if (getFreeCapacity(otherWorker) > freeCapacity) {
+              workerRank++;
+            }
+          }
+        }
+        moduleIndex = workerRank * sortedModuleNames.size() / workerCount;
+      }
+      return Collections.singletonList(sortedModuleNames.get(moduleIndex));
+    }
+  }
+
+  private boolean isAnyModuleStarted(final Worker worker, final List<String> moduleNames) {
+    for (final String moduleName : moduleNames) {
+      if (worker.isModuleStarted(moduleName)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public void setCostCacheTime(final long costCacheTime) {
+    this.costCacheTime = costCacheTime * 1000;
+  }
+
+  /**
+   * Set the fraction of a worker's heap memory that must be free for it to be given groups for
+   * any module other than the cheapest.
+   *
+   * @param minFreeMemoryFraction The fraction of the heap memory.
+   */
+  public void setMinFreeMemoryFraction(final double minFreeMemoryFraction) {
+    this.minFreeMemoryFraction = minFreeMemoryFraction;
+  }
+}
@@ -15,15 +15,19 @@
  */
 package ca.bc.gov.open.cpf.api.scheduler;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.jeometry.common.data.identifier.Identifier;
 import org.jeometry.common.date.Dates;
@@ -31,7 +35,6 @@ import org.jeometry.common.io.PathName;
 import org.springframework.util.StopWatch;
 
 import com.revolsys.collection.set.Sets;
-import com.revolsys.util.Property;
 
 public class BusinessApplicationStatistics {
   public static final PathName APPLICATION_STATISTICS = PathName
@@ -53,71 +56,60 @@ public class BusinessApplicationStatistics {
     "applicationExecutedFailedRequestsCount", "applicationExecutedGroupsCount",
     "applicationExecutedRequestsCount", "applicationExecutedTime", "completedFailedRequestsCount",
     "completedJobsCount", "completedRequestsCount", "completedTime", "executedGroupsCount",
-    "executedRequestsCount", "executedTime", "postProcessedJobsCount", "postProcessedRequestsCount",
-    "postProcessedTime", "preProcessedJobsCount", "preProcessedRequestsCount", "preProcessedTime",
-    "submittedJobsCount", "submittedJobsTime");
+    "executedRequestsCount", "executedTime", "instantModeCacheHitBytes",
+    "instantModeCacheHitsCount", "instantModeCacheMissesCount", "postProcessedJobsCount",
+    "postProcessedRequestsCount", "postProcessedTime", "preProcessedJobsCount",
+    "preProcessedRequestsCount", "preProcessedTime", "submittedJobsCount", "submittedJobsTime",
+    "workerBindTime", "workerDecodeTime", "workerDownloadTime", "workerEncodeTime",
+    "workerExecuteTime", "workerInstantiateTime", "workerStageTimesGroupsCount",
+    "workerUploadTime");
+
+  /**
+   * The stages of executing a group on a worker, the total time for each stage is recorded in
+   * the statistic returned by {@link #getWorkerStageStatisticName(String)}.
+   */
+  public static final List<String> WORKER_STAGE_NAMES = Arrays.asList("download", "decode",
+    "bind", "instantiate", "execute", "encode", "upload");
+
+  /**
+   * The statistics that record a {@link LatencyHistogram} of the time in milliseconds for each
+   * execution group.
+   */
+  public static final List<String> HISTOGRAM_NAMES = Arrays
+    .asList("applicationExecutedGroupsHistogram", "executedGroupsHistogram");
 
   public static final String APPLICATION_STATISTIC_ID = "APPLICATION_STATISTIC_ID";
 
+  public static String getWorkerStageStatisticName(final String stageName) {
+    return "worker" + Character.toUpperCase(stageName.charAt(0)) + stageName.substring(1)
+      + "Time";
+  }
+
   public static BusinessApplicationStatistics newStatistics(final String businessApplicationName,
     final DurationType durationType) {
     final String id = durationType.getId();
     return new BusinessApplicationStatistics(businessApplicationName, id);
   }
 
-  private long applicationExecutedFailedRequestsCount;
-
-  private long applicationExecutedGroupsCount;
-
-  private long applicationExecutedRequestsCount;
-
-  private long applicationExecutedTime;
-
   private final String businessApplicationName;
 
   private Identifier databaseId;
 
-  private long completedFailedRequestsCount;
-
-  private long completedJobsCount;
-
-  private long completedRequestsCount;
-
-  private long completedTime;
-
   private DurationType durationType;
 
   private Date endTime;
 
-  private long executedGroupsCount;
-
-  private long executedRequestsCount;
-
-  private long executedTime;
-
   private String id;
 
-  private long postProcessedJobsCount;
-
-  private long postProcessedRequestsCount;
-
-  private long postProcessedTime;
-
-  private long preProcessedJobsCount;
-
-  private long preProcessedRequestsCount;
-
-  private long preProcessedTime;
-
   private Date startTime;
 
-  private long submittedJobsCount;
+  private final String dateString;
 
-  private long submittedJobsTime;
+  private volatile boolean modified;
 
-  private final String dateString;
+  private final Map<String, LongAdder> values = new HashMap<>();
 
-  private boolean modified;
+  private final Map<String, LatencyHistogram> histograms = new HashMap<>();
 
   public BusinessApplicationStatistics(final String businessApplicationName, final String id) {
     DurationType durationType;
@@ -184,24 +176,38 @@ public class BusinessApplicationStatistics {
     this.dateString = Dates.format(pattern, startTime);
     this.id = dateString;
     this.modified = false;
+    for (final String statisticName : STATISTIC_NAMES) {
+      this.values.put(statisticName, new LongAdder());
+    }
+    for (final String histogramName : HISTOGRAM_NAMES) {
+      this.histograms.put(histogramName, new LatencyHistogram());
+    }
   }
 
-  public long addStatistic(final String statisticName, final Long value) {
-    if (STATISTIC_NAMES.contains(statisticName)) {
-      Long totalValue = Property.getSimple(this, statisticName);
+  public void addStatistic(final String statisticName, final long value) {
+    final LongAdder total = this.values.get(statisticName);
+    if (total != null) {
       if (value > 0) {
-        totalValue += value;
-        Property.setSimple(this, statisticName, totalValue);
+        total.add(value);
         this.modified = true;
       }
-      return totalValue;
     } else {
-      return 0;
+      final LatencyHistogram histogram = this.histograms.get(statisticName);
+      if (histogram != null) {
+        histogram.record(value);
+        this.modified = true;
+      }
     }
   }
 
   public void addStatistic(final String name, final Object value) {
-    if (value instanceof Number) {
+    if (value instanceof Map) {
+      final LatencyHistogram histogram = this.histograms.get(name);
+      if (histogram != null) {
+        histogram.add((Map<?, ?>)value);
+        this.modified = true;
+      }
+    } else if (value instanceof Number) {
       final Number number = (Number)value;
       addStatistic(name, number.longValue());
     } else if (value instanceof StopWatch) {
@@ -222,11 +228,18 @@ public class BusinessApplicationStatistics {
 
   public void addStatistics(final BusinessApplicationStatistics savedStatistics) {
     for (final String name : STATISTIC_NAMES) {
-      final Long value = Property.getSimple(savedStatistics, name);
+      final long value = savedStatistics.getValue(name);
       if (value > 0) {
         addStatistic(name, value);
       }
     }
+    for (final String name : HISTOGRAM_NAMES) {
+      final LatencyHistogram histogram = savedStatistics.histograms.get(name);
+      if (!histogram.isEmpty()) {
+        this.histograms.get(name).add(histogram);
+        this.modified = true;
+      }
+    }
   }
 
   public void addStatistics(final Map<String, ? extends Object> values) {
@@ -238,8 +251,11 @@ public class BusinessApplicationStatistics {
   }
 
   public void clearStatistics() {
-    for (final String statisticName : STATISTIC_NAMES) {
-      Property.setSimple(this, statisticName, 0);
+    for (final LongAdder value : this.values.values()) {
+      value.reset();
+    }
+    for (final LatencyHistogram histogram : this.histograms.values()) {
+      histogram.clear();
     }
     this.modified = true;
   }
@@ -280,14 +296,14 @@ public class BusinessApplicationStatistics {
   }
 
   public long getApplicationExecutedFailedRequestsCount() {
-    return this.applicationExecutedFailedRequestsCount;
+    return getValue("applicationExecutedFailedRequestsCount");
   }
 
   public long getApplicationExecutedGroupsAverageTime() {
-    if (this.applicationExecutedGroupsCount == 0) {
+    if (getApplicationExecutedGroupsCount() == 0) {
       return 0;
     } else {
-      return this.applicationExecutedTime / this.applicationExecutedGroupsCount;
+      return getApplicationExecutedTime() / getApplicationExecutedGroupsCount();
     }
   }
 
@@ -296,14 +312,26 @@ public class BusinessApplicationStatistics {
   }
 
   public long getApplicationExecutedGroupsCount() {
-    return this.applicationExecutedGroupsCount;
+    return getValue("applicationExecutedGroupsCount");
+  }
+
+  public long getApplicationExecutedGroupsTimeP50() {
+    return getPercentile("applicationExecutedGroupsHistogram", 50);
+  }
+
+  public long getApplicationExecutedGroupsTimeP95() {
+    return getPercentile("applicationExecutedGroupsHistogram", 95);
+  }
+
+  public long getApplicationExecutedGroupsTimeP99() {
+    return getPercentile("applicationExecutedGroupsHistogram", 99);
   }
 
   public long getApplicationExecutedRequestsAverageTime() {
-    if (this.applicationExecutedRequestsCount == 0) {
+    if (getApplicationExecutedRequestsCount() == 0) {
       return 0;
     } else {
-      return this.applicationExecutedTime / this.applicationExecutedRequestsCount;
+      return getApplicationExecutedTime() / getApplicationExecutedRequestsCount();
     }
   }
 
@@ -312,11 +340,11 @@ public class BusinessApplicationStatistics {
   }
 
   public long getApplicationExecutedRequestsCount() {
-    return this.applicationExecutedRequestsCount;
+    return getValue("applicationExecutedRequestsCount");
   }
 
   public long getApplicationExecutedTime() {
-    return this.applicationExecutedTime;
+    return getValue("applicationExecutedTime");
   }
 
   public String getApplicationExecutedTimeFormatted() {
@@ -328,14 +356,14 @@ public class BusinessApplicationStatistics {
   }
 
   public long getCompletedFailedRequestsCount() {
-    return this.completedFailedRequestsCount;
+    return getValue("completedFailedRequestsCount");
   }
 
   public long getCompletedJobsAverageTime() {
-    if (this.completedJobsCount == 0) {
+    if (getCompletedJobsCount() == 0) {
       return 0;
     } else {
-      return this.completedTime / this.completedJobsCount;
+      return getCompletedTime() / getCompletedJobsCount();
     }
   }
 
@@ -344,14 +372,14 @@ public class BusinessApplicationStatistics {
   }
 
   public long getCompletedJobsCount() {
-    return this.completedJobsCount;
+    return getValue("completedJobsCount");
   }
 
   public long getCompletedRequestsAverageTime() {
-    if (this.completedRequestsCount == 0) {
+    if (getCompletedRequestsCount() == 0) {
       return 0;
     } else {
-      return this.completedTime / this.completedRequestsCount;
+      return getCompletedTime() / getCompletedRequestsCount();
     }
   }
 
@@ -360,11 +388,11 @@ public class BusinessApplicationStatistics {
   }
 
   public long getCompletedRequestsCount() {
-    return this.completedRequestsCount;
+    return getValue("completedRequestsCount");
   }
 
   public long getCompletedTime() {
-    return this.completedTime;
+    return getValue("completedTime");
   }
 
   public String getCompletedTimeFormatted() {
@@ -384,10 +412,10 @@ public class BusinessApplicationStatistics {
   }
 
   public long getExecutedGroupsAverageTime() {
-    if (this.executedGroupsCount == 0) {
+    if (getExecutedGroupsCount() == 0) {
       return 0;
     } else {
-      return this.executedTime / this.executedGroupsCount;
+      return getExecutedTime() / getExecutedGroupsCount();
     }
   }
 
@@ -396,14 +424,26 @@ public class BusinessApplicationStatistics {
   }
 
   public long getExecutedGroupsCount() {
-    return this.executedGroupsCount;
+    return getValue("executedGroupsCount");
+  }
+
+  public long getExecutedGroupsTimeP50() {
+    return getPercentile("executedGroupsHistogram", 50);
+  }
+
+  public long getExecutedGroupsTimeP95() {
+    return getPercentile("executedGroupsHistogram", 95);
+  }
+
+  public long getExecutedGroupsTimeP99() {
+    return getPercentile("executedGroupsHistogram", 99);
   }
 
   public long getExecutedRequestsAverageTime() {
-    if (this.executedRequestsCount == 0) {
+    if (getExecutedRequestsCount() == 0) {
       return 0;
     } else {
-      return this.executedTime / this.executedRequestsCount;
+      return getExecutedTime() / getExecutedRequestsCount();
     }
   }
 
@@ -412,11 +452,11 @@ public class BusinessApplicationStatistics {
   }
 
   public long getExecutedRequestsCount() {
-    return this.executedRequestsCount;
+    return getValue("executedRequestsCount");
   }
 
   public long getExecutedTime() {
-    return this.executedTime;
+    return getValue("executedTime");
   }
 
   public String getExecutedTimeFormatted() {
@@ -427,6 +467,27 @@ public class BusinessApplicationStatistics {
     return this.id;
   }
 
+  public long getInstantModeCacheHitBytes() {
+    return getValue("instantModeCacheHitBytes");
+  }
+
+  public long getInstantModeCacheHitPercent() {
+    final long requestsCount = getInstantModeCacheHitsCount() + getInstantModeCacheMissesCount();
+    if (requestsCount == 0) {
+      return 0;
+    } else {
+      return getInstantModeCacheHitsCount() * 100 / requestsCount;
+    }
+  }
+
+  public long getInstantModeCacheHitsCount() {
+    return getValue("instantModeCacheHitsCount");
+  }
+
+  public long getInstantModeCacheMissesCount() {
+    return getValue("instantModeCacheMissesCount");
+  }
+
   public DurationType getParentDurationType() {
     return this.durationType.getParentDurationType();
   }
@@ -440,11 +501,20 @@ public class BusinessApplicationStatistics {
     }
   }
 
+  public long getPercentile(final String histogramName, final double percentile) {
+    final LatencyHistogram histogram = this.histograms.get(histogramName);
+    if (histogram == null) {
+      return 0;
+    } else {
+      return histogram.getPercentile(percentile);
+    }
+  }
+
   public long getPostProcessedJobsAverageTime() {
-    if (this.postProcessedJobsCount == 0) {
+    if (getPostProcessedJobsCount() == 0) {
       return 0;
     } else {
-      return this.postProcessedTime / this.postProcessedJobsCount;
+      return getPostProcessedTime() / getPostProcessedJobsCount();
     }
   }
 
@@ -453,14 +523,14 @@ public class BusinessApplicationStatistics {
   }
 
   public long getPostProcessedJobsCount() {
-    return this.postProcessedJobsCount;
+    return getValue("postProcessedJobsCount");
   }
 
   public long getPostProcessedRequestsAverageTime() {
-    if (this.postProcessedRequestsCount == 0) {
+    if (getPostProcessedRequestsCount() == 0) {
       return 0;
     } else {
-      return this.postProcessedTime / this.postProcessedRequestsCount;
+      return getPostProcessedTime() / getPostProcessedRequestsCount();
     }
   }
 
@@ -469,11 +539,11 @@ public class BusinessApplicationStatistics {
   }
 
   public long getPostProcessedRequestsCount() {
-    return this.postProcessedRequestsCount;
+    return getValue("postProcessedRequestsCount");
   }
 
   public long getPostProcessedTime() {
-    return this.postProcessedTime;
+    return getValue("postProcessedTime");
   }
 
   public String getPostProcessedTimeFormatted() {
@@ -481,10 +551,10 @@ public class BusinessApplicationStatistics {
   }
 
   public long getPreProcessedJobsAverageTime() {
-    if (this.preProcessedJobsCount == 0) {
+    if (getPreProcessedJobsCount() == 0) {
       return 0;
     } else {
-      return this.preProcessedTime / this.preProcessedJobsCount;
+      return getPreProcessedTime() / getPreProcessedJobsCount();
     }
   }
 
@@ -493,14 +563,14 @@ public class BusinessApplicationStatistics {
   }
 
   public long getPreProcessedJobsCount() {
-    return this.preProcessedJobsCount;
+    return getValue("preProcessedJobsCount");
   }
 
   public long getPreProcessedRequestsAverageTime() {
-    if (this.preProcessedRequestsCount == 0) {
+    if (getPreProcessedRequestsCount() == 0) {
       return 0;
     } else {
-      return this.preProcessedTime / this.preProcessedRequestsCount;
+      return getPreProcessedTime() / getPreProcessedRequestsCount();
     }
   }
 
@@ -509,11 +579,11 @@ public class BusinessApplicationStatistics {
   }
 
   public long getPreProcessedRequestsCount() {
-    return this.preProcessedRequestsCount;
+    return getValue("preProcessedRequestsCount");
   }
 
   public long getPreProcessedTime() {
-    return this.preProcessedTime;
+    return getValue("preProcessedTime");
   }
 
   public String getPreProcessedTimeFormatted() {
@@ -525,10 +595,10 @@ public class BusinessApplicationStatistics {
   }
 
   public long getSubmittedJobsAverageTime() {
-    if (this.submittedJobsCount == 0) {
+    if (getSubmittedJobsCount() == 0) {
       return 0;
     } else {
-      return this.submittedJobsTime / this.submittedJobsCount;
+      return getSubmittedJobsTime() / getSubmittedJobsCount();
     }
   }
 
@@ -537,52 +607,98 @@ public class BusinessApplicationStatistics {
   }
 
   public long getSubmittedJobsCount() {
-    return this.submittedJobsCount;
+    return getValue("submittedJobsCount");
   }
 
   public long getSubmittedJobsTime() {
-    return this.submittedJobsTime;
+    return getValue("submittedJobsTime");
   }
 
   public String getSubmittedJobsTimeFormatted() {
     return formatTime(getSubmittedJobsTime());
   }
 
+  public long getValue(final String statisticName) {
+    final LongAdder value = this.values.get(statisticName);
+    if (value == null) {
+      return 0;
+    } else {
+      return value.sum();
+    }
+  }
+
+  /**
+   * Get the average and total time of each worker stage, and the percentage of the total time
+   * of all the stages.
+   *
+   * @return The list of stage times.
+   */
+  public List<Map<String, Object>> getWorkerStageTimes() {
+    final long groupCount = getWorkerStageTimesGroupsCount();
+    long totalTime = 0;
+    for (final String stageName : WORKER_STAGE_NAMES) {
+      totalTime += getValue(getWorkerStageStatisticName(stageName));
+    }
+    final List<Map<String, Object>> stageTimes = new ArrayList<>();
+    for (final String stageName : WORKER_STAGE_NAMES) {
+      final long time = getValue(getWorkerStageStatisticName(stageName));
+      final Map<String, Object> stageTime = new LinkedHashMap<>();
+      stageTime.put("name", Character.toUpperCase(stageName.charAt(0)) + stageName.substring(1));
+      if (groupCount == 0) {
+        stageTime.put("averageTime", formatTime(0));
+      } else {
+        stageTime.put("averageTime", formatTime(time / groupCount));
+      }
+      stageTime.put("totalTime", formatTime(time));
+      if (totalTime == 0) {
+        stageTime.put("percent", 0);
+      } else {
+        stageTime.put("percent", Math.round(time * 1000.0 / totalTime) / 10.0);
+      }
+      stageTimes.add(stageTime);
+    }
+    return stageTimes;
+  }
+
+  public long getWorkerStageTimesGroupsCount() {
+    return getValue("workerStageTimesGroupsCount");
+  }
+
   public boolean isModified() {
     return this.modified;
   }
 
   public void setApplicationExecutedFailedRequestsCount(
     final long applicationExecutedFailedRequestsCount) {
-    this.applicationExecutedFailedRequestsCount = applicationExecutedFailedRequestsCount;
+    setValue("applicationExecutedFailedRequestsCount", applicationExecutedFailedRequestsCount);
   }
 
   public void setApplicationExecutedGroupsCount(final long applicationExecutedGroupsCount) {
-    this.applicationExecutedGroupsCount = applicationExecutedGroupsCount;
+    setValue("applicationExecutedGroupsCount", applicationExecutedGroupsCount);
   }
 
   public void setApplicationExecutedRequestsCount(final long applicationExecutedRequestsCount) {
-    this.applicationExecutedRequestsCount = applicationExecutedRequestsCount;
+    setValue("applicationExecutedRequestsCount", applicationExecutedRequestsCount);
   }
 
   public void setApplicationExecutedTime(final long applicationExecutedTime) {
-    this.applicationExecutedTime = applicationExecutedTime;
+    setValue("applicationExecutedTime", applicationExecutedTime);
   }
 
   public void setCompletedFailedRequestsCount(final long completedFailedRequestsCount) {
-    this.completedFailedRequestsCount = completedFailedRequestsCount;
+    setValue("completedFailedRequestsCount", completedFailedRequestsCount);
   }
 
   public void setCompletedJobsCount(final long completedJobsCount) {
-    this.completedJobsCount = completedJobsCount;
+    setValue("completedJobsCount", completedJobsCount);
   }
 
   public void setCompletedRequestsCount(final long completedRequestsCount) {
-    this.completedRequestsCount = completedRequestsCount;
+    setValue("completedRequestsCount", completedRequestsCount);
   }
 
   public void setCompletedTime(final long completedTime) {
-    this.completedTime = completedTime;
+    setValue("completedTime", completedTime);
   }
 
   public void setDatabaseId(final Identifier databaseId) {
@@ -598,47 +714,59 @@ public class BusinessApplicationStatistics {
   }
 
   public void setExecutedGroupsCount(final long executedGroupsCount) {
-    this.executedGroupsCount = executedGroupsCount;
+    setValue("executedGroupsCount", executedGroupsCount);
   }
 
   public void setExecutedRequestsCount(final long executedRequestsCount) {
-    this.executedRequestsCount = executedRequestsCount;
+    setValue("executedRequestsCount", executedRequestsCount);
   }
 
   public void setExecutedTime(final long executedTime) {
-    this.executedTime = executedTime;
+    setValue("executedTime", executedTime);
   }
 
   public void setId(final String id) {
     this.id = id;
   }
 
+  public void setInstantModeCacheHitBytes(final long instantModeCacheHitBytes) {
+    setValue("instantModeCacheHitBytes", instantModeCacheHitBytes);
+  }
+
+  public void setInstantModeCacheHitsCount(final long instantModeCacheHitsCount) {
+    setValue("instantModeCacheHitsCount", instantModeCacheHitsCount);
+  }
+
+  public void setInstantModeCacheMissesCount(final long instantModeCacheMissesCount) {
+    setValue("instantModeCacheMissesCount", instantModeCacheMissesCount);
+  }
+
   public void setModified(final boolean modified) {
     this.modified = modified;
   }
 
   public void setPostProcessedJobsCount(final long postProcessedJobsCount) {
-    this.postProcessedJobsCount = postProcessedJobsCount;
+    setValue("postProcessedJobsCount", postProcessedJobsCount);
   }
 
   public void setPostProcessedRequestsCount(final long postProcessedRequestsCount) {
-    this.postProcessedRequestsCount = postProcessedRequestsCount;
+    setValue("postProcessedRequestsCount", postProcessedRequestsCount);
   }
 
   public void setPostProcessedTime(final long postProcessedTime) {
-    this.postProcessedTime = postProcessedTime;
+    setValue("postProcessedTime", postProcessedTime);
   }
 
   public void setPreProcessedJobsCount(final long preProcessedJobsCount) {
-    this.preProcessedJobsCount = preProcessedJobsCount;
+    setValue("preProcessedJobsCount", preProcessedJobsCount);
   }
 
   public void setPreProcessedRequestsCount(final long preProcessedRequestsCount) {
-    this.preProcessedRequestsCount = preProcessedRequestsCount;
+    setValue("preProcessedRequestsCount", preProcessedRequestsCount);
   }
 
   public void setPreProcessedTime(final long preProcessedTime) {
-    this.preProcessedTime = preProcessedTime;
+    setValue("preProcessedTime", preProcessedTime);
   }
 
   public void setStartTime(final Date startTime) {
@@ -646,21 +774,58 @@ public class BusinessApplicationStatistics {
   }
 
   public void setSubmittedJobsCount(final long submittedJobsCount) {
-    this.submittedJobsCount = submittedJobsCount;
+    setValue("submittedJobsCount", submittedJobsCount);
   }
 
   public void setSubmittedJobsTime(final long submittedJobsTime) {
-    this.submittedJobsTime = submittedJobsTime;
+    setValue("submittedJobsTime", submittedJobsTime);
+  }
+
+  public void setValue(final String statisticName, final long value) {
+    final LongAdder total = this.values.get(statisticName);
+    if (total != null) {
+      total.reset();
+      total.add(value);
+    }
   }
 
-  public Map<String, Long> toMap() {
-    final Map<String, Long> statistics = new TreeMap<>();
+  /**
+   * Get the non-zero statistics and reset them to zero. Statistics added by other threads while
+   * the snapshot is taken are either included in the snapshot or left for the next snapshot.
+   *
+   * @return The statistics.
+   */
+  public Map<String, Object> snapshotAndReset() {
+    final Map<String, Object> statistics = new TreeMap<>();
     for (final String name : STATISTIC_NAMES) {
-      final Long value = Property.getSimple(this, name);
+      final long value = this.values.get(name).sumThenReset();
       if (value > 0) {
         statistics.put(name, value);
       }
     }
+    for (final String name : HISTOGRAM_NAMES) {
+      final Map<String, Long> bucketCounts = this.histograms.get(name).snapshotAndReset();
+      if (!bucketCounts.isEmpty()) {
+        statistics.put(name, bucketCounts);
+      }
+    }
+    return statistics;
+  }
+
+  public Map<String, Object> toMap() {
+    final Map<String, Object> statistics = new TreeMap<>();
+    for (final String name : STATISTIC_NAMES) {
+      final long value = getValue(name);
+      if (value > 0) {
+        statistics.put(name, value);
+      }
+    }
+    for (final String name : HISTOGRAM_NAMES) {
+      final LatencyHistogram histogram = this.histograms.get(name);
+      if (!histogram.isEmpty()) {
+        statistics.put(name, histogram.toMap());
+      }
+    }
     return statistics;
   }
 
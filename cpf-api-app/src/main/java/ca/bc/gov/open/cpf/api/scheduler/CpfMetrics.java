@@ -0,0 +1,412 @@
+/*
+ * Copyright © 2008-2016, Province of British Columbia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.bc.gov.open.cpf.api.scheduler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+import org.jeometry.common.logging.Logs;
+
+import ca.bc.gov.open.cpf.api.scheduler.spi.adminjobs.RemoveOldBatchJobs;
+
+import com.revolsys.jdbc.io.DataSourceImpl;
+
+/**
+ * Live operational metrics sampled on demand from the scheduler, worker and statistics
+ * services. Nothing is recorded by this class, each read takes the current queue depths and
+ * counters so there is no cost when the metrics are not being read.
+ *
+ * The metrics are written in the Prometheus text exposition format by
+ * {@link #writePrometheus(Writer)} and are registered as the read only attributes of the
+ * {@value #OBJECT_NAME} JMX MBean. Times are in milliseconds. The preProcess, postProcess and
+ * groupResultSave stage times are the times of the database transactions for those stages.
+ */
+public class CpfMetrics implements DynamicMBean {
+  private static class MetricFamily {
+    private final String name;
+
+    private final String type;
+
+    private final String help;
+
+    private final Map<String, Number> values = new LinkedHashMap<>();
+
+    private MetricFamily(final String name, final String type, final String help) {
+      this.name = name;
+      this.type = type;
+      this.help = help;
+    }
+
+    private MetricFamily addValue(final Number value) {
+      this.values.put(this.name, value);
+      return this;
+    }
+
+    private MetricFamily addValue(final String labels, final Number value) {
+      return addValue("", labels, value);
+    }
+
+    private MetricFamily addValue(final String suffix, final String labels, final Number value) {
+      this.values.put(this.name + suffix + "{" + labels + "}", value);
+      return this;
+    }
+  }
+
+  public static final String OBJECT_NAME = "ca.bc.gov.open.cpf:type=CpfMetrics";
+
+  private static final double[] QUANTILES = {
+    0.5, 0.95, 0.99
+  };
+
+  private static String label(final String name, final String value) {
+    final String escapedValue = value.replace("\\", "\\\\")
+      .replace("\"", "\\\"")
+      .replace("\n", "\\n");
+    return name + "=\"" + escapedValue + "\"";
+  }
+
+  private BatchJobService batchJobService;
+
+  @Resource
+  private DataSourceImpl cpfDataSource;
+
+  private ObjectName objectName;
+
+  private RemoveOldBatchJobs removeOldBatchJobs;
+
+  private void addHistogram(final MetricFamily family, final String labels,
+    final LatencyHistogram histogram) {
+    for (final double quantile : QUANTILES) {
+      final String quantileLabels = labels + "," + label("quantile", Double.toString(quantile));
+      family.addValue(quantileLabels, histogram.getPercentile(quantile * 100));
+    }
+    family.addValue("_count", labels, histogram.getCount());
+  }
+
+  private void addThreadPool(final MetricFamily activeFamily, final MetricFamily maxFamily,
+    final String poolName, final ThreadPoolExecutor pool) {
+    if (pool != null) {
+      final String labels = label("pool", poolName);
+      activeFamily.addValue(labels, pool.getActiveCount());
+      maxFamily.addValue(labels, pool.getMaximumPoolSize());
+    }
+  }
+
+  @PreDestroy
+  public void close() {
+    final ObjectName objectName = this.objectName;
+    if (objectName != null) {
+      this.objectName = null;
+      try {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+      } catch (final JMException e) {
+        Logs.debug(this, "Unable to unregister " + objectName, e);
+      }
+    }
+    this.batchJobService = null;
+    this.removeOldBatchJobs = null;
+  }
+
+  private List<MetricFamily> collect() {
+    final List<MetricFamily> families = new ArrayList<>();
+    final BatchJobService batchJobService = this.batchJobService;
+    if (batchJobService == null) {
+      return families;
+    }
+    final MetricFamily groupsToSchedule = new MetricFamily("cpf_groups_to_schedule", "gauge",
+      "Groups waiting for a worker by module.");
+    for (final Entry<String, Integer> entry : batchJobService.getGroupsToScheduleCounts()
+      .entrySet()) {
+      groupsToSchedule.addValue(label("module", entry.getKey()), entry.getValue());
+    }
+    families.add(groupsToSchedule);
+
+    families.add(new MetricFamily("cpf_instant_mode_groups_to_schedule", "gauge",
+      "Instant mode groups waiting for a worker.")
+        .addValue(batchJobService.getInstantModeGroupsToScheduleCount()));
+
+    final MetricFamily instantModeQueued = new MetricFamily("cpf_instant_mode_queued_requests",
+      "gauge", "Instant mode requests waiting for an executor thread by business application.");
+    for (final Entry<String, Integer> entry : batchJobService.getInstantModeExecutor()
+      .getQueueSizes()
+      .entrySet()) {
+      instantModeQueued.addValue(label("business_application", entry.getKey()), entry.getValue());
+    }
+    families.add(instantModeQueued);
+
+    final BatchJobScheduler scheduler = batchJobService.getScheduler();
+    final BatchJobPreProcess preProcess = batchJobService.getPreProcess();
+    final BatchJobPostProcess postProcess = batchJobService.getPostProcess();
+    final MetricFamily backlog = new MetricFamily("cpf_job_backlog", "gauge",
+      "Jobs waiting for a thread by processing stage.");
+    if (preProcess != null) {
+      backlog.addValue(label("stage", "preProcess"), preProcess.getScheduledCount());
+    }
+    if (scheduler != null) {
+      backlog.addValue(label("stage", "schedule"), scheduler.getQueuedJobCount());
+    }
+    if (postProcess != null) {
+      backlog.addValue(label("stage", "postProcess"), postProcess.getScheduledCount());
+    }
+    families.add(backlog);
+
+    final MetricFamily activeThreads = new MetricFamily("cpf_thread_pool_active_threads",
+      "gauge", "Threads executing a task by thread pool.");
+    final MetricFamily maxThreads = new MetricFamily("cpf_thread_pool_max_threads", "gauge",
+      "Maximum number of threads by thread pool.");
+    addThreadPool(activeThreads, maxThreads, "preProcess", preProcess);
+    addThreadPool(activeThreads, maxThreads, "scheduler", scheduler);
+    addThreadPool(activeThreads, maxThreads, "postProcess", postProcess);
+    activeThreads.addValue(label("pool", "groupResult"), batchJobService.getGroupResultCount());
+    families.add(activeThreads);
+    families.add(maxThreads);
+
+    final List<Worker> workers = batchJobService.getWorkers();
+    families.add(new MetricFamily("cpf_workers", "gauge", "Connected workers.")
+      .addValue(workers.size()));
+    final MetricFamily executingGroups = new MetricFamily("cpf_worker_executing_groups", "gauge",
+      "Groups executing on each worker.");
+    final MetricFamily maxGroups = new MetricFamily("cpf_worker_max_groups", "gauge",
+      "Maximum number of groups each worker can execute at once.");
+    final MetricFamily slotUtilisation = new MetricFamily("cpf_worker_slot_utilisation", "gauge",
+      "Fraction of each worker's group slots that are in use.");
+    final MetricFamily cpus = new MetricFamily("cpf_worker_cpus", "gauge",
+      "CPUs reported by each worker.");
+    final MetricFamily freeMemory = new MetricFamily("cpf_worker_free_memory_bytes", "gauge",
+      "Free heap memory reported by each worker when it last asked for a group.");
+    for (final Worker worker : workers) {
+      final String labels = label("worker", worker.getId());
+      final int executingCount = worker.getExecutingGroupCount();
+      final int maxCount = worker.getMaxExecutingGroupCount();
+      executingGroups.addValue(labels, executingCount);
+      if (maxCount > 0) {
+        maxGroups.addValue(labels, maxCount);
+        slotUtilisation.addValue(labels, (double)executingCount / maxCount);
+      }
+      final int cpuCount = worker.getCpuCount();
+      if (cpuCount > 0) {
+        cpus.addValue(labels, cpuCount);
+      }
+      if (worker.getMaxMemory() > 0) {
+        freeMemory.addValue(labels, worker.getFreeMemory());
+      }
+    }
+    families.add(executingGroups);
+    families.add(maxGroups);
+    families.add(slotUtilisation);
+    families.add(cpus);
+    families.add(freeMemory);
+
+    final StatisticsService statisticsService = batchJobService.getStatisticsService();
+    families.add(new MetricFamily("cpf_groups_dispatched_total", "counter",
+      "Groups given to workers since startup.")
+        .addValue(batchJobService.getDispatchedGroupCount()));
+    families.add(new MetricFamily("cpf_groups_speculative_total", "counter",
+      "Speculative copies of slow groups given to workers since startup.")
+        .addValue(batchJobService.getSpeculativeGroupCount()));
+    families.add(new MetricFamily("cpf_groups_completed_total", "counter",
+      "Groups completed by workers since startup.")
+        .addValue(statisticsService.getCompletedGroupCount()));
+
+    final NotificationDispatcher notificationDispatcher = batchJobService
+      .getNotificationDispatcher();
+    families.add(new MetricFamily("cpf_notifications_total", "counter",
+      "Job notifications by outcome since startup.")
+        .addValue(label("outcome", "delivered"), notificationDispatcher.getDeliveredCount())
+        .addValue(label("outcome", "failed"), notificationDispatcher.getFailedCount())
+        .addValue(label("outcome", "retried"), notificationDispatcher.getRetryCount()));
+    families.add(new MetricFamily("cpf_notifications_queued", "gauge",
+      "Job notifications waiting to be delivered or retried.")
+        .addValue(notificationDispatcher.getQueuedCount()));
+    families.add(new MetricFamily("cpf_job_journal_queued", "gauge",
+      "Job events waiting to be written to the job journal.")
+        .addValue(batchJobService.getJobJournal().getQueuedCount()));
+
+    final RemoveOldBatchJobs removeOldBatchJobs = this.removeOldBatchJobs;
+    if (removeOldBatchJobs != null) {
+      families.add(new MetricFamily("cpf_old_jobs_deleted_total", "counter",
+        "Old batch jobs deleted since startup.")
+          .addValue(removeOldBatchJobs.getTotalJobsDeleted()));
+      families.add(new MetricFamily("cpf_old_jobs_delete_errors_total", "counter",
+        "Errors deleting old batch jobs since startup.")
+          .addValue(removeOldBatchJobs.getTotalErrorCount()));
+      families.add(new MetricFamily("cpf_old_jobs_last_run", "gauge",
+        "Old batch jobs deleted and skipped by the last or current removal run.")
+          .addValue(label("outcome", "deleted"), removeOldBatchJobs.getLastRunJobsDeleted())
+          .addValue(label("outcome", "skipped"), removeOldBatchJobs.getLastRunJobsSkipped()));
+    }
+
+    final MetricFamily stageTime = new MetricFamily("cpf_stage_time_milliseconds", "summary",
+      "Time taken by each processing stage since startup.");
+    if (preProcess != null) {
+      addHistogram(stageTime, label("stage", "preProcess"), preProcess.getProcessTime());
+    }
+    addHistogram(stageTime, label("stage", "groupExecution"),
+      statisticsService.getGroupExecutionTime());
+    addHistogram(stageTime, label("stage", "groupResultSave"),
+      batchJobService.getGroupResultSaveTime());
+    if (postProcess != null) {
+      addHistogram(stageTime, label("stage", "postProcess"), postProcess.getProcessTime());
+    }
+    families.add(stageTime);
+
+    final MetricFamily notificationTime = new MetricFamily(
+      "cpf_notification_delivery_time_milliseconds", "summary",
+      "Time from a job notification being queued to it being delivered.");
+    addHistogram(notificationTime, label("type", "all"), notificationDispatcher.getDeliveryTime());
+    families.add(notificationTime);
+
+    final DataSourceImpl dataSource = this.cpfDataSource;
+    if (dataSource != null) {
+      families.add(new MetricFamily("cpf_db_connections", "gauge",
+        "Database connections by state.")
+          .addValue(label("state", "active"), dataSource.getNumActive())
+          .addValue(label("state", "idle"), dataSource.getNumIdle())
+          .addValue(label("state", "max"), dataSource.getMaxTotal()));
+    }
+    return families;
+  }
+
+  @Override
+  public Object getAttribute(final String attribute) throws AttributeNotFoundException {
+    final Number value = getValues().get(attribute);
+    if (value == null) {
+      throw new AttributeNotFoundException(attribute);
+    } else {
+      return value;
+    }
+  }
+
+  @Override
+  public AttributeList getAttributes(final String[] attributes) {
+    final Map<String, Number> values = getValues();
+    final AttributeList attributeList = new AttributeList();
+    for (final String attribute : attributes) {
+      final Number value = values.get(attribute);
+      if (value != null) {
+        attributeList.add(new Attribute(attribute, value));
+      }
+    }
+    return attributeList;
+  }
+
+  public BatchJobService getBatchJobService() {
+    return this.batchJobService;
+  }
+
+  @Override
+  public MBeanInfo getMBeanInfo() {
+    final List<MBeanAttributeInfo> attributes = new ArrayList<>();
+    for (final MetricFamily family : collect()) {
+      for (final Entry<String, Number> entry : family.values.entrySet()) {
+        final String name = entry.getKey();
+        final String type = entry.getValue().getClass().getName();
+        attributes.add(new MBeanAttributeInfo(name, type, family.help, true, false, false));
+      }
+    }
+    return new MBeanInfo(getClass().getName(), "Concurrent Processing Framework metrics",
+      attributes.toArray(new MBeanAttributeInfo[attributes.size()]), null, null, null);
+  }
+
+  /**
+   * Get the current value of all the metrics.
+   *
+   * @return The map from the metric name, including any labels, to the value.
+   */
+  public Map<String, Number> getValues() {
+    final Map<String, Number> values = new LinkedHashMap<>();
+    for (final MetricFamily family : collect()) {
+      values.putAll(family.values);
+    }
+    return values;
+  }
+
+  @PostConstruct
+  public void init() {
+    try {
+      final ObjectName objectName = new ObjectName(OBJECT_NAME);
+      final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      if (!server.isRegistered(objectName)) {
+        server.registerMBean(this, objectName);
+        this.objectName = objectName;
+      }
+    } catch (final JMException e) {
+      Logs.error(this, "Unable to register " + OBJECT_NAME, e);
+    }
+  }
+
+  @Override
+  public Object invoke(final String actionName, final Object[] params, final String[] signature)
+    throws ReflectionException {
+    throw new ReflectionException(new NoSuchMethodException(actionName));
+  }
+
+  @Override
+  public void setAttribute(final Attribute attribute) throws AttributeNotFoundException {
+    throw new AttributeNotFoundException(attribute.getName() + " is read only");
+  }
+
+  @Override
+  public AttributeList setAttributes(final AttributeList attributes) {
+    return new AttributeList();
+  }
+
+  public void setBatchJobService(final BatchJobService batchJobService) {
+    this.batchJobService = batchJobService;
+  }
+
+  public void setRemoveOldBatchJobs(final RemoveOldBatchJobs removeOldBatchJobs) {
+    this.removeOldBatchJobs = removeOldBatchJobs;
+  }
+
+  /**
+   * Write the metrics in the Prometheus text exposition format (version 0.0.4).
+   *
+   * @param writer The writer to write the metrics to.
+   * @throws IOException If the metrics could not be written.
+   */
+  public void writePrometheus(final Writer writer) throws IOException {
+    for (final MetricFamily family : collect()) {
+      writer.write("# HELP " + family.name + " " + family.help + "\n");
+      writer.write("# TYPE " + family.name + " " + family.type + "\n");
+      for (final Entry<String, Number> entry : family.values.entrySet()) {
+        writer.write(entry.getKey() + " " + entry.getValue() + "\n");
+      }
+    }
+    writer.flush();
+  }
+}
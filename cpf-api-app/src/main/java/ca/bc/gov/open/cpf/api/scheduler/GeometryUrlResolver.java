@@ -0,0 +1,287 @@
+/*
+ * Copyright © 2008-2016, Province of British Columbia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.bc.gov.open.cpf.api.scheduler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.revolsys.geometry.model.Geometry;
+import com.revolsys.parallel.NamedThreadFactory;
+import com.revolsys.record.Record;
+import com.revolsys.record.schema.FieldDefinition;
+import com.revolsys.record.schema.RecordDefinition;
+import com.revolsys.util.UrlUtil;
+
+/**
+ * Resolve geometry request parameters specified as a URL (e.g. a Geomark) to the WKT of the
+ * geometry. The URLs are fetched on a bounded thread pool so the pre-processing of a job can
+ * request the URLs for the following records before they are needed. The WKT for each URL is
+ * cached for {@link #setTimeToLiveSeconds(int)} so identical URLs in a job, or in jobs
+ * submitted at the same time, are only fetched once. Failed fetches are not cached so the URL
+ * is fetched again the next time it is requested.
+ */
+public class GeometryUrlResolver {
+  private static class CacheEntry {
+    private final CompletableFuture<String> wkt;
+
+    private final long expiryTime;
+
+    private CacheEntry(final CompletableFuture<String> wkt, final long expiryTime) {
+      this.wkt = wkt;
+      this.expiryTime = expiryTime;
+    }
+  }
+
+  private static class LruMap extends LinkedHashMap<String, CacheEntry> {
+    private static final long serialVersionUID = 1L;
+
+    private final int maxSize;
+
+    private LruMap(final int maxSize) {
+      super(16, 0.75f, true);
+      this.maxSize = maxSize;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(final Entry<String, CacheEntry> eldest) {
+      return size() > this.maxSize;
+    }
+  }
+
+  /** The default maximum number of URLs to cache. */
+  public static final int DEFAULT_CACHE_SIZE = 10000;
+
+  private final LruMap cache;
+
+  private ThreadPoolExecutor executor;
+
+  private int threadCount = 8;
+
+  private int timeToLiveSeconds = 600;
+
+  private boolean closed;
+
+  public GeometryUrlResolver() {
+    this(DEFAULT_CACHE_SIZE);
+  }
+
+  public GeometryUrlResolver(final int cacheSize) {
+    this.cache = new LruMap(cacheSize);
+  }
+
+  public synchronized void close() {
+    this.closed = true;
+    if (this.executor != null) {
+      this.executor.shutdownNow();
+      this.executor = null;
+    }
+    this.cache.clear();
+  }
+
+  /**
+   * Fetch the WKT for the geometry URL. Subclasses can override this to read the geometry
+   * using a different service.
+   *
+   * @param url The geometry URL.
+   * @return The WKT of the geometry.
+   */
+  protected String fetchWkt(final String url) {
+    String wkt = UrlUtil.getContent(url + "/feature.wkt?srid=3005");
+    if (!wkt.startsWith("SRID")) {
+      wkt = "SRID=3005;" + wkt;
+    }
+    return wkt;
+  }
+
+  private synchronized ThreadPoolExecutor getExecutor() {
+    if (this.closed) {
+      throw new IllegalStateException("Geometry URL resolver is closed");
+    } else if (this.executor == null) {
+      this.executor = new ThreadPoolExecutor(this.threadCount, this.threadCount, 60,
+        TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+        new NamedThreadFactory().setNamePrefix("cpfGeometryUrl"));
+      this.executor.allowCoreThreadTimeOut(true);
+    }
+    return this.executor;
+  }
+
+  public int getThreadCount() {
+    return this.threadCount;
+  }
+
+  public int getTimeToLiveSeconds() {
+    return this.timeToLiveSeconds;
+  }
+
+  /**
+   * Get the WKT for the geometry URL, waiting for the fetch to complete if it is in progress.
+   *
+   * @param url The geometry URL.
+   * @return The WKT of the geometry.
+   * @throws IllegalArgumentException If the geometry could not be read from the URL.
+   */
+  public String getWkt(final String url) {
+    final CompletableFuture<String> wkt = resolve(url);
+    try {
+      return wkt.join();
+    } catch (final CompletionException e) {
+      throw new IllegalArgumentException("unable to read geometry from " + url, e.getCause());
+    }
+  }
+
+  /**
+   * Wrap the records iterator so that the records are read ahead of the caller and any geometry
+   * URLs in the records are fetched in the background before the record is returned.
+   * Exceptions reading a record are thrown when that record would have been returned.
+   *
+   * @param records The records to read.
+   * @param recordDefinition The record definition used to find the geometry fields.
+   * @return The iterator returning the same records in the same order.
+   */
+  public Iterator<Record> prefetch(final Iterator<Record> records,
+    final RecordDefinition recordDefinition) {
+    final List<String> geometryFieldNames = new ArrayList<>();
+    for (final FieldDefinition field : recordDefinition.getFields()) {
+      final Class<?> dataClass = field.getDataType().getJavaClass();
+      if (Geometry.class.isAssignableFrom(dataClass)) {
+        geometryFieldNames.add(field.getName());
+      }
+    }
+    if (geometryFieldNames.isEmpty()) {
+      return records;
+    } else {
+      final int readAheadCount = this.threadCount * 32;
+      return new Iterator<Record>() {
+        private final ArrayDeque<Object> buffer = new ArrayDeque<>();
+
+        private void fill() {
+          while (this.buffer.size() < readAheadCount && records.hasNext()) {
+            try {
+              final Record record = records.next();
+              for (final String fieldName : geometryFieldNames) {
+                final Object value = record.getValue(fieldName);
+                if (value instanceof String) {
+                  final String url = ((String)value).trim();
+                  if (url.startsWith("http")) {
+                    prefetch(url);
+                  }
+                }
+              }
+              this.buffer.add(record);
+            } catch (final RuntimeException e) {
+              this.buffer.add(e);
+            }
+          }
+        }
+
+        @Override
+        public boolean hasNext() {
+          fill();
+          return !this.buffer.isEmpty();
+        }
+
+        @Override
+        public Record next() {
+          fill();
+          final Object next = this.buffer.poll();
+          if (next == null) {
+            throw new NoSuchElementException();
+          } else if (next instanceof RuntimeException) {
+            throw (RuntimeException)next;
+          } else {
+            return (Record)next;
+          }
+        }
+      };
+    }
+  }
+
+  /**
+   * Start fetching the WKT for the geometry URL if it isn't already cached or being fetched.
+   *
+   * @param url The geometry URL.
+   */
+  public void prefetch(final String url) {
+    resolve(url);
+  }
+
+  private CompletableFuture<String> resolve(final String url) {
+    final long time = System.currentTimeMillis();
+    CompletableFuture<String> wkt;
+    synchronized (this) {
+      final CacheEntry entry = this.cache.get(url);
+      if (entry != null && entry.expiryTime > time && !entry.wkt.isCompletedExceptionally()) {
+        return entry.wkt;
+      }
+      wkt = new CompletableFuture<>();
+      final long expiryTime = time + this.timeToLiveSeconds * 1000L;
+      this.cache.put(url, new CacheEntry(wkt, expiryTime));
+    }
+    final CompletableFuture<String> result = wkt;
+    getExecutor().execute(() -> {
+      try {
+        result.complete(fetchWkt(url));
+      } catch (final Throwable e) {
+        result.completeExceptionally(e);
+        removeFailed(url, result);
+      }
+    });
+    return result;
+  }
+
+  private synchronized void removeFailed(final String url, final CompletableFuture<String> wkt) {
+    final CacheEntry entry = this.cache.get(url);
+    if (entry != null && entry.wkt == wkt) {
+      this.cache.remove(url);
+    }
+  }
+
+  public synchronized void setThreadCount(final int threadCount) {
+    this.threadCount = Math.max(1, threadCount);
+    if (this.executor != null) {
+      if (this.threadCount > this.executor.getMaximumPoolSize()) {
+        this.executor.setMaximumPoolSize(this.threadCount);
+        this.executor.setCorePoolSize(this.threadCount);
+      } else {
+        this.executor.setCorePoolSize(this.threadCount);
+        this.executor.setMaximumPoolSize(this.threadCount);
+      }
+    }
+  }
+
+  public synchronized void setTimeToLiveSeconds(final int timeToLiveSeconds) {
+    this.timeToLiveSeconds = Math.max(0, timeToLiveSeconds);
+    // Expire entries that are older than the new time to live
+    final long maxExpiryTime = System.currentTimeMillis() + this.timeToLiveSeconds * 1000L;
+    for (final Iterator<CacheEntry> entries = this.cache.values().iterator(); entries
+      .hasNext();) {
+      final CacheEntry entry = entries.next();
+      if (entry.expiryTime > maxExpiryTime) {
+        entries.remove();
+      }
+    }
+  }
+}
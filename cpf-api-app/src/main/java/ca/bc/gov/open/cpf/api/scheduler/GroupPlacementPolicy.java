@@ -0,0 +1,36 @@
+/*
+ * Copyright © 2008-2016, Province of British Columbia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.bc.gov.open.cpf.api.scheduler;
+
+import java.util.List;
+
+/**
+ * Selects the modules a worker asking for a group is given a group from. Implementations are
+ * called for each request from a worker and must be fast and thread safe.
+ */
+public interface GroupPlacementPolicy {
+  /**
+   * Select the modules the worker can be given a group from.
+   *
+   * @param batchJobService The batch job service.
+   * @param worker The worker asking for a group.
+   * @param moduleNames The modules started on the worker that have groups waiting for a worker.
+   * @return The modules to give the worker a group from, an empty list if the groups should be
+   * left for other workers.
+   */
+  List<String> getModuleNames(BatchJobService batchJobService, Worker worker,
+    List<String> moduleNames);
+}
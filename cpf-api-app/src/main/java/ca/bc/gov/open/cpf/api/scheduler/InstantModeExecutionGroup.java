@@ -0,0 +1,151 @@
+/*
+ * Copyright © 2008-2016, Province of British Columbia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.bc.gov.open.cpf.api.scheduler;
+
+import java.io.InputStream;
+import java.sql.Timestamp;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jeometry.common.data.identifier.Identifier;
+import org.jeometry.common.data.type.DataTypes;
+
+import ca.bc.gov.open.cpf.plugin.impl.BusinessApplication;
+import ca.bc.gov.open.cpf.plugin.impl.geometry.WkbGeometryCodec;
+
+import com.revolsys.collection.map.MapEx;
+import com.revolsys.io.map.MapReader;
+import com.revolsys.record.io.format.json.Json;
+import com.revolsys.record.io.format.tsv.Tsv;
+import com.revolsys.record.schema.RecordDefinition;
+import com.revolsys.util.Property;
+
+/**
+ * An execution group containing a single instant mode request that is executed on a worker. The
+ * group isn't part of a batch job, it uses the batch job id 0 and the parameters are passed to the
+ * worker as the application parameters. The results are passed to the {@link InstantModeRequest}
+ * waiting for them.
+ */
+public class InstantModeExecutionGroup extends BatchJobRequestExecutionGroup {
+  private static final Identifier INSTANT_BATCH_JOB_ID = Identifier.newIdentifier(0L);
+
+  private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+  private static Map<String, String> toParameterMap(final Map<String, Object> parameters) {
+    final Map<String, String> parameterMap = new LinkedHashMap<>();
+    for (final Entry<String, Object> entry : parameters.entrySet()) {
+      final String name = entry.getKey();
+      final Object value = entry.getValue();
+      if (value != null) {
+        parameterMap.put(name, DataTypes.toString(value));
+      }
+    }
+    return parameterMap;
+  }
+
+  private final InstantModeRequest request;
+
+  private RuntimeException error;
+
+  public InstantModeExecutionGroup(final String consumerKey,
+    final BusinessApplication businessApplication, final Map<String, Object> parameters,
+    final InstantModeRequest request) {
+    this(consumerKey, businessApplication, parameters, request, SEQUENCE.incrementAndGet());
+  }
+
+  private InstantModeExecutionGroup(final String consumerKey,
+    final BusinessApplication businessApplication, final Map<String, Object> parameters,
+    final InstantModeRequest request, final int sequenceNumber) {
+    super(consumerKey, null, businessApplication, toParameterMap(parameters), null,
+      new Timestamp(System.currentTimeMillis()), sequenceNumber,
+      INSTANT_BATCH_JOB_ID + "-" + sequenceNumber);
+    this.request = request;
+  }
+
+  @Override
+  public void cancel() {
+    cancelInternal();
+  }
+
+  @Override
+  public void cancelInternal() {
+    this.request.close();
+  }
+
+  @Override
+  public Identifier getBatchJobId() {
+    return INSTANT_BATCH_JOB_ID;
+  }
+
+  @Override
+  public boolean isCancelled() {
+    return this.request.isCancelled();
+  }
+
+  /**
+   * Record the first error returned by the worker for the request.
+   *
+   * @param in The tab separated error file.
+   */
+  public synchronized void setErrors(final InputStream in) {
+    try (
+      MapReader errorReader = Tsv.mapReader(in)) {
+      for (final MapEx error : errorReader) {
+        if (this.error == null) {
+          final String errorCode = error.getString("errorCode");
+          final String message = error.getString("message");
+          if ("BAD_INPUT_DATA_VALUE".equals(errorCode)) {
+            this.error = new IllegalArgumentException(message);
+          } else {
+            this.error = new RuntimeException(errorCode + ": " + message);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Pass the results returned by the worker to the waiting request.
+   *
+   * @param in The tab separated result file.
+   */
+  public synchronized void setResults(final InputStream in) {
+    if (this.error == null) {
+      final RecordDefinition resultRecordDefinition = getBusinessApplication()
+        .getResultRecordDefinition();
+      try (
+        MapReader resultReader = Tsv.mapReader(in)) {
+        for (final MapEx result : resultReader) {
+          WkbGeometryCodec.decodeValues(resultRecordDefinition, result);
+          final String propertiesString = result.getString("customizationProperties");
+          if (Property.hasValue(propertiesString)) {
+            result.put("customizationProperties", Json.toObjectMap(propertiesString));
+          }
+          if (!this.request.addResult(result)) {
+            return;
+          }
+        }
+        this.request.setCompleted();
+      } catch (final Throwable e) {
+        this.request.setError(e);
+      }
+    } else {
+      this.request.setError(this.error);
+    }
+  }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright © 2008-2016, Province of British Columbia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.bc.gov.open.cpf.api.scheduler;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import ca.bc.gov.open.cpf.plugin.impl.BusinessApplication;
+import ca.bc.gov.open.cpf.plugin.impl.PluginAdaptor;
+
+import com.revolsys.parallel.NamedThreadFactory;
+
+/**
+ * Executes instant mode requests on a bounded thread pool for each business application. The
+ * pool size and queue length are taken from the instantModeMaxConcurrentRequests and
+ * instantModeMaxQueuedRequests of the business application. If the pool and queue are full a
+ * {@link RejectedExecutionException} is thrown so the caller can ask the client to retry later.
+ *
+ * <p>If instantModeExecuteOnWorker is enabled the request is sent to a worker as a single request
+ * {@link InstantModeExecutionGroup} that is scheduled before any batch job groups. The same
+ * limits apply to the number of requests waiting for a worker.</p>
+ *
+ * <p>If instantModeResultCacheSize is enabled the results are returned from the
+ * {@link InstantModeResultCache} without executing the plug-in.</p>
+ */
+public class InstantModeExecutor {
+  private final BatchJobService batchJobService;
+
+  private final Map<String, ThreadPoolExecutor> executorByBusinessApplicationName = new HashMap<>();
+
+  private final Map<String, Semaphore> workerPermitsByBusinessApplicationName = new HashMap<>();
+
+  private final Map<String, Integer> workerPermitCountByBusinessApplicationName = new HashMap<>();
+
+  private final InstantModeResultCache resultCache = new InstantModeResultCache();
+
+  private boolean closed;
+
+  public InstantModeExecutor(final BatchJobService batchJobService) {
+    this.batchJobService = batchJobService;
+  }
+
+  public synchronized void close() {
+    this.closed = true;
+    for (final ThreadPoolExecutor executor : this.executorByBusinessApplicationName.values()) {
+      executor.shutdownNow();
+    }
+    this.executorByBusinessApplicationName.clear();
+    this.workerPermitsByBusinessApplicationName.clear();
+    this.workerPermitCountByBusinessApplicationName.clear();
+    this.resultCache.clear();
+  }
+
+  /**
+   * Schedule the plug-in for execution. The plug-in is only created on the web server if the
+   * request isn't returned from the cache or sent to a worker.
+   *
+   * @param businessApplication The business application.
+   * @param consumerKey The consumer key of the user making the request.
+   * @param parameters The request parameters.
+   * @return The request used to read the results.
+   * @throws RejectedExecutionException If the limits for the business application are reached.
+   */
+  public InstantModeRequest execute(final BusinessApplication businessApplication,
+    final String consumerKey, final Map<String, Object> parameters) {
+    final String cacheKey = this.resultCache.getKey(businessApplication, consumerKey,
+      parameters);
+    final List<Map<String, Object>> cachedResults = this.resultCache
+      .getResults(businessApplication, cacheKey);
+    if (cachedResults != null) {
+      return new InstantModeRequest(cachedResults);
+    }
+    final InstantModeRequest request = newRequest(businessApplication, consumerKey, parameters);
+    if (cacheKey != null) {
+      request.setResultCache(this.resultCache, businessApplication, cacheKey);
+    }
+    return request;
+  }
+
+  private InstantModeRequest newRequest(final BusinessApplication businessApplication,
+    final String consumerKey, final Map<String, Object> parameters) {
+    final long timeout = Math.max(0, businessApplication.getInstantModeTimeout()) * 1000L;
+    if (businessApplication.isInstantModeExecuteOnWorker()) {
+      final Semaphore permits = getWorkerPermits(businessApplication);
+      if (!permits.tryAcquire()) {
+        throw new RejectedExecutionException(
+          "Too many instant requests for " + businessApplication.getName());
+      } else if (this.batchJobService.getWorkers().isEmpty()) {
+        permits.release();
+        throw new RejectedExecutionException("No workers are connected");
+      } else {
+        final InstantModeRequest request = new InstantModeRequest(null, timeout);
+        request.setPermits(permits);
+        final InstantModeExecutionGroup group = new InstantModeExecutionGroup(consumerKey,
+          businessApplication, parameters, request);
+        this.batchJobService.scheduleGroup(group);
+        return request;
+      }
+    } else {
+      final PluginAdaptor plugin = this.batchJobService
+        .getBusinessApplicationPlugin(businessApplication);
+      plugin.setParameters(parameters);
+      final ThreadPoolExecutor executor = getExecutor(businessApplication);
+      final InstantModeRequest request = new InstantModeRequest(plugin, timeout);
+      final Future<?> future = executor.submit(request);
+      request.setFuture(future);
+      return request;
+    }
+  }
+
+  private synchronized ThreadPoolExecutor getExecutor(
+    final BusinessApplication businessApplication) {
+    if (this.closed) {
+      throw new RejectedExecutionException("Instant mode executor is closed");
+    }
+    final String businessApplicationName = businessApplication.getName();
+    final int maxConcurrentRequests = Math.max(1,
+      businessApplication.getInstantModeMaxConcurrentRequests());
+    final int maxQueuedRequests = Math.max(0,
+      businessApplication.getInstantModeMaxQueuedRequests());
+
+    ThreadPoolExecutor executor = this.executorByBusinessApplicationName
+      .get(businessApplicationName);
+    if (executor != null) {
+      final BlockingQueue<Runnable> queue = executor.getQueue();
+      if (queue.size() + queue.remainingCapacity() != maxQueuedRequests) {
+        // The queue can't be resized, let the old one drain and create a new one
+        executor.shutdown();
+        executor = null;
+      } else if (executor.getMaximumPoolSize() < maxConcurrentRequests) {
+        executor.setMaximumPoolSize(maxConcurrentRequests);
+        executor.setCorePoolSize(maxConcurrentRequests);
+      } else if (executor.getMaximumPoolSize() > maxConcurrentRequests) {
+        executor.setCorePoolSize(maxConcurrentRequests);
+        executor.setMaximumPoolSize(maxConcurrentRequests);
+      }
+    }
+    if (executor == null) {
+      BlockingQueue<Runnable> queue;
+      if (maxQueuedRequests == 0) {
+        queue = new SynchronousQueue<>();
+      } else {
+        queue = new ArrayBlockingQueue<>(maxQueuedRequests);
+      }
+      executor = new ThreadPoolExecutor(maxConcurrentRequests, maxConcurrentRequests, 60,
+        TimeUnit.SECONDS, queue,
+        new NamedThreadFactory().setNamePrefix("cpfInstant-" + businessApplicationName));
+      executor.allowCoreThreadTimeOut(true);
+      this.executorByBusinessApplicationName.put(businessApplicationName, executor);
+    }
+    return executor;
+  }
+
+  public InstantModeResultCache getResultCache() {
+    return this.resultCache;
+  }
+
+  private synchronized Semaphore getWorkerPermits(final BusinessApplication businessApplication) {
+    if (this.closed) {
+      throw new RejectedExecutionException("Instant mode executor is closed");
+    }
+    final String businessApplicationName = businessApplication.getName();
+    final int permitCount = Math.max(1, businessApplication.getInstantModeMaxConcurrentRequests())
+      + Math.max(0, businessApplication.getInstantModeMaxQueuedRequests());
+    Semaphore permits = this.workerPermitsByBusinessApplicationName.get(businessApplicationName);
+    final Integer currentPermitCount = this.workerPermitCountByBusinessApplicationName
+      .get(businessApplicationName);
+    if (permits == null || currentPermitCount != permitCount) {
+      // Requests using the old permits release them to the old semaphore
+      permits = new Semaphore(permitCount);
+      this.workerPermitsByBusinessApplicationName.put(businessApplicationName, permits);
+      this.workerPermitCountByBusinessApplicationName.put(businessApplicationName, permitCount);
+    }
+    return permits;
+  }
+
+  public synchronized Map<String, Integer> getQueueSizes() {
+    final Map<String, Integer> queueSizes = new HashMap<>();
+    for (final Entry<String, ThreadPoolExecutor> entry : this.executorByBusinessApplicationName
+      .entrySet()) {
+      final String businessApplicationName = entry.getKey();
+      final ThreadPoolExecutor executor = entry.getValue();
+      queueSizes.put(businessApplicationName, executor.getQueue().size());
+    }
+    return queueSizes;
+  }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright © 2008-2016, Province of British Columbia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.bc.gov.open.cpf.api.scheduler;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.jeometry.common.exception.Exceptions;
+
+import ca.bc.gov.open.cpf.plugin.impl.BusinessApplication;
+import ca.bc.gov.open.cpf.plugin.impl.PluginAdaptor;
+
+/**
+ * An instant mode request running on an {@link InstantModeExecutor} thread or a worker. The
+ * results are handed to the web request thread through a small bounded queue as they are
+ * generated so they can be written to the response without holding the full result list in
+ * memory. If the results for the request were cached they are returned directly from the
+ * {@link InstantModeResultCache}.
+ */
+public class InstantModeRequest implements Runnable {
+  private static final Object END = new Object();
+
+  private final PluginAdaptor plugin;
+
+  private final BlockingQueue<Object> results = new ArrayBlockingQueue<>(100);
+
+  private final long timeout;
+
+  private volatile boolean cancelled;
+
+  private volatile boolean timedOut;
+
+  private Future<?> future;
+
+  private Semaphore permits;
+
+  private final Iterator<Map<String, Object>> cachedResults;
+
+  private InstantModeResultCache resultCache;
+
+  private BusinessApplication businessApplication;
+
+  private String cacheKey;
+
+  private List<Map<String, Object>> resultsToCache;
+
+  /**
+   * @param cachedResults The results from the {@link InstantModeResultCache}.
+   */
+  public InstantModeRequest(final List<Map<String, Object>> cachedResults) {
+    this.plugin = null;
+    this.timeout = 0;
+    this.cachedResults = cachedResults.iterator();
+  }
+
+  /**
+   * @param plugin The plug-in to execute or null if the results will be added by a worker.
+   * @param timeout The maximum time in milliseconds to wait for a result (0 to wait forever).
+   */
+  public InstantModeRequest(final PluginAdaptor plugin, final long timeout) {
+    this.plugin = plugin;
+    this.timeout = timeout;
+    this.cachedResults = null;
+  }
+
+  boolean addResult(final Map<String, Object> result) {
+    return put(result);
+  }
+
+  /**
+   * Cancel the request if it hasn't finished and release any resources used by the request.
+   */
+  public synchronized void close() {
+    this.cancelled = true;
+    if (this.future != null) {
+      this.future.cancel(true);
+      this.future = null;
+    }
+    if (this.permits != null) {
+      this.permits.release();
+      this.permits = null;
+    }
+  }
+
+  public boolean isCacheHit() {
+    return this.cachedResults != null;
+  }
+
+  public boolean isCacheMiss() {
+    return this.cacheKey != null;
+  }
+
+  public boolean isCancelled() {
+    return this.cancelled;
+  }
+
+  public boolean isTimedOut() {
+    return this.timedOut;
+  }
+
+  /**
+   * Get the next result, waiting for the plug-in to generate it.
+   *
+   * @return The result or null if there are no more results or the request timed out.
+   */
+  @SuppressWarnings("unchecked")
+  public Map<String, Object> next() {
+    if (this.cachedResults != null) {
+      if (this.cachedResults.hasNext()) {
+        return this.cachedResults.next();
+      } else {
+        return null;
+      }
+    }
+    try {
+      Object result;
+      if (this.timeout > 0) {
+        result = this.results.poll(this.timeout, TimeUnit.MILLISECONDS);
+        if (result == null) {
+          this.timedOut = true;
+          close();
+          return null;
+        }
+      } else {
+        result = this.results.take();
+      }
+      if (result == END) {
+        if (this.resultsToCache != null) {
+          this.resultCache.setResults(this.businessApplication, this.cacheKey,
+            this.resultsToCache);
+          this.resultsToCache = null;
+        }
+        return null;
+      } else if (result instanceof Throwable) {
+        this.resultsToCache = null;
+        return Exceptions.throwUncheckedException((Throwable)result);
+      } else {
+        final Map<String, Object> resultMap = (Map<String, Object>)result;
+        if (this.resultsToCache != null) {
+          if (this.resultsToCache.size() < InstantModeResultCache.MAX_CACHED_RESULTS) {
+            this.resultsToCache.add(resultMap);
+          } else {
+            this.resultsToCache = null;
+          }
+        }
+        return resultMap;
+      }
+    } catch (final InterruptedException e) {
+      close();
+      return Exceptions.throwUncheckedException(e);
+    }
+  }
+
+  private boolean put(final Object value) {
+    try {
+      while (!this.cancelled) {
+        if (this.results.offer(value, 1, TimeUnit.SECONDS)) {
+          return true;
+        }
+      }
+    } catch (final InterruptedException e) {
+      this.cancelled = true;
+    }
+    return false;
+  }
+
+  @Override
+  public void run() {
+    try {
+      if (!this.cancelled) {
+        this.plugin.execute((result) -> {
+          if (!put(result)) {
+            throw new CancellationException();
+          }
+        });
+      }
+      setCompleted();
+    } catch (final Throwable e) {
+      setError(e);
+    }
+  }
+
+  void setCompleted() {
+    put(END);
+  }
+
+  void setError(final Throwable e) {
+    put(e);
+  }
+
+  /**
+   * Add the results to the cache once all the results have been read.
+   */
+  void setResultCache(final InstantModeResultCache resultCache,
+    final BusinessApplication businessApplication, final String cacheKey) {
+    this.resultCache = resultCache;
+    this.businessApplication = businessApplication;
+    this.cacheKey = cacheKey;
+    this.resultsToCache = new ArrayList<>();
+  }
+
+  synchronized void setFuture(final Future<?> future) {
+    this.future = future;
+    if (this.cancelled) {
+      future.cancel(true);
+    }
+  }
+
+  synchronized void setPermits(final Semaphore permits) {
+    if (this.cancelled) {
+      permits.release();
+    } else {
+      this.permits = permits;
+    }
+  }
+}
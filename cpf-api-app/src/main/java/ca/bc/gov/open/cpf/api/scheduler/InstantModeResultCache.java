@@ -0,0 +1,197 @@
+/*
+ * Copyright © 2008-2016, Province of British Columbia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.bc.gov.open.cpf.api.scheduler;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.jeometry.common.data.type.DataTypes;
+import org.springframework.security.crypto.codec.Hex;
+
+import ca.bc.gov.open.cpf.plugin.impl.BusinessApplication;
+import ca.bc.gov.open.cpf.plugin.impl.module.Module;
+
+import com.revolsys.util.Booleans;
+
+/**
+ * A cache of the results of instant mode requests for business applications that enable
+ * instantModeResultCacheSize. The key is a hash of the canonical parameter values and the time
+ * the module was started so a restarted or upgraded module never returns stale results. For
+ * business applications that use the security service the consumer key is part of the key so
+ * results that depend on the user's authorization are never returned to another user. Each
+ * business application has a least recently used cache limited to instantModeResultCacheSize
+ * entries that expire after instantModeResultCacheTimeToLive seconds.
+ */
+public class InstantModeResultCache {
+  private static class CacheEntry {
+    private final List<Map<String, Object>> results;
+
+    private final long expiryTime;
+
+    private CacheEntry(final List<Map<String, Object>> results, final long expiryTime) {
+      this.results = results;
+      this.expiryTime = expiryTime;
+    }
+  }
+
+  private static class LruMap extends LinkedHashMap<String, CacheEntry> {
+    private static final long serialVersionUID = 1L;
+
+    private int maxSize;
+
+    private LruMap(final int maxSize) {
+      super(16, 0.75f, true);
+      this.maxSize = maxSize;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(final Entry<String, CacheEntry> eldest) {
+      return size() > this.maxSize;
+    }
+  }
+
+  /** The maximum number of results for a request to be cached. */
+  public static final int MAX_CACHED_RESULTS = 1000;
+
+  private final Map<String, LruMap> cacheByBusinessApplicationName = new HashMap<>();
+
+  public synchronized void clear() {
+    this.cacheByBusinessApplicationName.clear();
+  }
+
+  public synchronized void clear(final String businessApplicationName) {
+    this.cacheByBusinessApplicationName.remove(businessApplicationName);
+  }
+
+  /**
+   * Get the cached results for the request.
+   *
+   * @param businessApplication The business application.
+   * @param key The key returned from {@link #getKey(BusinessApplication, String, Map)}.
+   * @return The results or null if there are no cached results.
+   */
+  public synchronized List<Map<String, Object>> getResults(
+    final BusinessApplication businessApplication, final String key) {
+    if (key != null) {
+      final LruMap cache = this.cacheByBusinessApplicationName.get(businessApplication.getName());
+      if (cache != null) {
+        final CacheEntry entry = cache.get(key);
+        if (entry != null) {
+          if (entry.expiryTime > System.currentTimeMillis()) {
+            return entry.results;
+          } else {
+            cache.remove(key);
+          }
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Get the cache key for the request parameters.
+   *
+   * @param businessApplication The business application.
+   * @param consumerKey The consumer key of the user making the request.
+   * @param parameters The request parameters.
+   * @return The key or null if the results for the business application can't be cached.
+   */
+  public String getKey(final BusinessApplication businessApplication, final String consumerKey,
+    final Map<String, Object> parameters) {
+    if (businessApplication.getInstantModeResultCacheSize() <= 0) {
+      return null;
+    } else if (Booleans.isTrue(parameters.get("cpfPluginTest"))) {
+      // Test mode results are generated randomly
+      return null;
+    } else {
+      final Module module = businessApplication.getModule();
+      final long startedTime = module.getStartedTime();
+      if (startedTime <= 0) {
+        return null;
+      } else {
+        final StringBuilder text = new StringBuilder();
+        text.append(module.getName());
+        text.append('\n');
+        text.append(startedTime);
+        if (businessApplication.isSecurityServiceRequired()) {
+          text.append('\n');
+          text.append(consumerKey);
+        }
+        final Map<String, Object> sortedParameters = new TreeMap<>(parameters);
+        for (final Entry<String, Object> entry : sortedParameters.entrySet()) {
+          final String name = entry.getKey();
+          final Object value = entry.getValue();
+          text.append('\n');
+          text.append(name);
+          text.append('=');
+          if (value != null) {
+            text.append(DataTypes.toString(value).replace("\\", "\\\\").replace("\n", "\\n"));
+          }
+        }
+        try {
+          final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+          final byte[] hash = digest.digest(text.toString().getBytes(StandardCharsets.UTF_8));
+          return new String(Hex.encode(hash));
+        } catch (final NoSuchAlgorithmException e) {
+          throw new IllegalStateException("No SHA-256 algorithm available!");
+        }
+      }
+    }
+  }
+
+  /**
+   * Cache the results of a request that completed successfully.
+   *
+   * @param businessApplication The business application.
+   * @param key The key returned from {@link #getKey(BusinessApplication, String, Map)}.
+   * @param results The results.
+   */
+  public synchronized void setResults(final BusinessApplication businessApplication,
+    final String key, final List<Map<String, Object>> results) {
+    final int maxSize = businessApplication.getInstantModeResultCacheSize();
+    final String businessApplicationName = businessApplication.getName();
+    if (key == null || maxSize <= 0) {
+      this.cacheByBusinessApplicationName.remove(businessApplicationName);
+    } else {
+      LruMap cache = this.cacheByBusinessApplicationName.get(businessApplicationName);
+      if (cache == null) {
+        cache = new LruMap(maxSize);
+        this.cacheByBusinessApplicationName.put(businessApplicationName, cache);
+      } else {
+        cache.maxSize = maxSize;
+      }
+      final long timeToLive = Math
+        .max(1, businessApplication.getInstantModeResultCacheTimeToLive()) * 1000L;
+      final long expiryTime = System.currentTimeMillis() + timeToLive;
+      cache.put(key, new CacheEntry(Collections.unmodifiableList(results), expiryTime));
+      // Shrink if the maximum size was reduced
+      for (final Iterator<String> keys = cache.keySet().iterator(); keys.hasNext()
+        && cache.size() > maxSize;) {
+        keys.next();
+        keys.remove();
+      }
+    }
+  }
+}
@@ -164,6 +164,10 @@ public class JobPreProcessTask {
     return null;
   }
 
+  public GeometryUrlResolver getGeometryUrlResolver() {
+    return this.batchJobService.getGeometryUrlResolver();
+  }
+
   public boolean process() {
     this.batchJobService.addPreProcessedJobId(this.batchJobId);
     AppLog log = null;
@@ -241,8 +245,10 @@ public class JobPreProcessTask {
                           final Reader<Record> inputDataReader = new MapReaderRecordReader(
                             requestRecordDefinition, mapReader)) {
 
-                          for (final Iterator<Record> iterator = inputDataReader
-                              .iterator(); iterator.hasNext();) {
+                          final GeometryUrlResolver geometryUrlResolver = getGeometryUrlResolver();
+                          for (final Iterator<Record> iterator = geometryUrlResolver.prefetch(
+                            inputDataReader.iterator(), requestRecordDefinition); iterator
+                              .hasNext();) {
                             numSubmittedRequests++;
                             try {
                               final Record inputDataRecord = iterator.next();
@@ -0,0 +1,217 @@
+/*
+ * Copyright © 2008-2016, Province of British Columbia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.bc.gov.open.cpf.api.scheduler;
+
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free histogram of times in milliseconds with log-linear buckets in the style of an HDR
+ * histogram. Values below 16 have their own bucket, larger values are grouped into 16 buckets
+ * for each power of 2 so the percentiles are accurate to within 1/16 (6.25%) of the value.
+ * Values above {@link #MAX_VALUE} (about 49 days) are recorded in the last bucket. The bucket
+ * counts are only allocated when the first value is recorded.
+ */
+public class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 4;
+
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+  private static final int VALUE_BITS = 32;
+
+  private static final long MAX_VALUE = (1L << VALUE_BITS) - 1;
+
+  private static final int BUCKET_COUNT = (VALUE_BITS - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+  static int getBucketIndex(final long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int)Math.max(0, value);
+    } else {
+      final long boundedValue = Math.min(value, MAX_VALUE);
+      final int exponent = 63 - Long.numberOfLeadingZeros(boundedValue);
+      final int shift = exponent - SUB_BUCKET_BITS;
+      final int subBucket = (int)(boundedValue >>> shift) & SUB_BUCKET_COUNT - 1;
+      return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+  }
+
+  /**
+   * Get the highest value that would be recorded in the bucket.
+   */
+  static long getBucketValue(final int index) {
+    if (index < SUB_BUCKET_COUNT) {
+      return index;
+    } else {
+      final int shift = index / SUB_BUCKET_COUNT - 1;
+      final long subBucket = SUB_BUCKET_COUNT + index % SUB_BUCKET_COUNT;
+      return (subBucket + 1 << shift) - 1;
+    }
+  }
+
+  /** The bucket counts, null until a value is recorded. */
+  private volatile AtomicLongArray counts;
+
+  public void add(final LatencyHistogram histogram) {
+    final AtomicLongArray histogramCounts = histogram.counts;
+    if (histogramCounts != null) {
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+        final long count = histogramCounts.get(i);
+        if (count > 0) {
+          getCounts().addAndGet(i, count);
+        }
+      }
+    }
+  }
+
+  /**
+   * Add the bucket counts from a map created by {@link #toMap()}. Counts for buckets above the
+   * last bucket are added to the last bucket.
+   */
+  public void add(final Map<?, ?> bucketCounts) {
+    for (final Entry<?, ?> entry : bucketCounts.entrySet()) {
+      try {
+        final int index = Integer.parseInt(entry.getKey().toString());
+        final Object count = entry.getValue();
+        if (index >= 0 && count instanceof Number) {
+          final long countValue = ((Number)count).longValue();
+          if (countValue > 0) {
+            getCounts().addAndGet(Math.min(index, BUCKET_COUNT - 1), countValue);
+          }
+        }
+      } catch (final NumberFormatException e) {
+      }
+    }
+  }
+
+  public void clear() {
+    final AtomicLongArray counts = this.counts;
+    if (counts != null) {
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+        counts.set(i, 0);
+      }
+    }
+  }
+
+  public long getCount() {
+    long total = 0;
+    final AtomicLongArray counts = this.counts;
+    if (counts != null) {
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+        total += counts.get(i);
+      }
+    }
+    return total;
+  }
+
+  private AtomicLongArray getCounts() {
+    AtomicLongArray counts = this.counts;
+    if (counts == null) {
+      synchronized (this) {
+        counts = this.counts;
+        if (counts == null) {
+          counts = new AtomicLongArray(BUCKET_COUNT);
+          this.counts = counts;
+        }
+      }
+    }
+    return counts;
+  }
+
+  /**
+   * Get the value at the percentile.
+   *
+   * @param percentile The percentile (0-100).
+   * @return The value or 0 if no values were recorded.
+   */
+  public long getPercentile(final double percentile) {
+    final AtomicLongArray counts = this.counts;
+    final long count = getCount();
+    if (counts == null || count == 0) {
+      return 0;
+    } else {
+      final long rank = Math.max(1, (long)Math.ceil(percentile / 100 * count));
+      long total = 0;
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+        total += counts.get(i);
+        if (total >= rank) {
+          return getBucketValue(i);
+        }
+      }
+      return getBucketValue(BUCKET_COUNT - 1);
+    }
+  }
+
+  public boolean isEmpty() {
+    final AtomicLongArray counts = this.counts;
+    if (counts != null) {
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+        if (counts.get(i) > 0) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  public void record(final long value) {
+    getCounts().incrementAndGet(getBucketIndex(value));
+  }
+
+  /**
+   * Get the non-zero bucket counts and reset them to zero. Values recorded while the snapshot
+   * is taken are either included in the snapshot or left for the next snapshot.
+   */
+  public Map<String, Long> snapshotAndReset() {
+    final Map<String, Long> bucketCounts = new TreeMap<>();
+    final AtomicLongArray counts = this.counts;
+    if (counts != null) {
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+        if (counts.get(i) > 0) {
+          final long count = counts.getAndSet(i, 0);
+          if (count > 0) {
+            bucketCounts.put(Integer.toString(i), count);
+          }
+        }
+      }
+    }
+    return bucketCounts;
+  }
+
+  /**
+   * Get the non-zero bucket counts as a map from the bucket index to the count.
+   */
+  public Map<String, Long> toMap() {
+    final Map<String, Long> bucketCounts = new TreeMap<>();
+    final AtomicLongArray counts = this.counts;
+    if (counts != null) {
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+        final long count = counts.get(i);
+        if (count > 0) {
+          bucketCounts.put(Integer.toString(i), count);
+        }
+      }
+    }
+    return bucketCounts;
+  }
+
+  @Override
+  public String toString() {
+    return "p50=" + getPercentile(50) + ", p95=" + getPercentile(95) + ", p99="
+      + getPercentile(99);
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright © 2008-2016, Province of British Columbia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.bc.gov.open.cpf.api.scheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Gives a worker a group for a module unless the less loaded workers with the module started
+ * have enough free slots for all of the module's waiting groups.
+ */
+public class LeastLoadedGroupPlacementPolicy extends AbstractGroupPlacementPolicy {
+
+  private double loadMargin = 0.25;
+
+  public double getLoadMargin() {
+    return this.loadMargin;
+  }
+
+  @Override
+  protected List<String> selectModuleNames(final BatchJobService batchJobService,
+    final Worker worker, final List<String> moduleNames) {
+    final double maxLoad = worker.getLoad() - this.loadMargin;
+    final List<Worker> workers = batchJobService.getConnectedWorkers();
+    final List<String> placementModuleNames = new ArrayList<>();
+    for (final String moduleName : moduleNames) {
+      int freeSlotCount = 0;
+      for (final Worker otherWorker : workers) {
+        if (otherWorker != worker && otherWorker.getLoad() < maxLoad
+          && otherWorker.isModuleStarted(moduleName)) {
+          freeSlotCount += otherWorker.getFreeSlotCount();
+        }
+      }
+      if (freeSlotCount < batchJobService.getGroupsToScheduleCount(moduleName)) {
+        placementModuleNames.add(moduleName);
+      }
+    }
+    return placementModuleNames;
+  }
+
+  /**
+   * Set how much less loaded another worker must be before the groups are left for it.
+   *
+   * @param loadMargin The difference in the fraction of the group slots in use.
+   */
+  public void setLoadMargin(final double loadMargin) {
+    this.loadMargin = loadMargin;
+  }
+}
@@ -0,0 +1,505 @@
+/*
+ * Copyright © 2008-2016, Province of British Columbia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.bc.gov.open.cpf.api.scheduler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.mail.internet.MimeMessage;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.StatusLine;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.jeometry.common.logging.Logs;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+
+import com.revolsys.collection.map.MapEx;
+import com.revolsys.io.FileUtil;
+import com.revolsys.parallel.NamedThreadFactory;
+import com.revolsys.record.io.format.json.Json;
+
+/**
+ * Deliver the job completion notifications (mailto: or http(s): URLs) in the background so that
+ * post-processing a job never waits for a mail server or a client's web server.
+ *
+ * Each notification is written to a file in the notification directory before it is queued and
+ * the file is deleted once the notification is delivered or has failed. Notifications that were
+ * queued when the server was stopped are re-queued by {@link #start()}.
+ *
+ * The notifications are delivered by a bounded pool of threads using a shared pooled HTTP
+ * client. At most {@link #setMaxConcurrentPerEndpoint(int)} notifications are delivered to the
+ * same host (or the mail server) at the same time. Notifications for a busy endpoint wait in a
+ * first-in first-out queue and are started when a delivery to that endpoint finishes. Failed
+ * notifications are retried with an exponential back-off up to {@link #setMaxAttempts(int)}
+ * times. HTTP responses with a 4xx status code other than 408 or 429 are not retried.
+ */
+public class NotificationDispatcher {
+  /** The notifications being delivered to an endpoint and those waiting for a free slot. */
+  private static class Endpoint {
+    private int activeCount;
+
+    private final Queue<Notification> waiting = new ArrayDeque<>();
+
+    /**
+     * Take a delivery slot for the notification, or add it to the waiting queue if all the slots
+     * are in use.
+     *
+     * @return True if the notification can be delivered now.
+     */
+    private synchronized boolean acquire(final Notification notification, final int maxActive) {
+      if (this.activeCount < maxActive) {
+        this.activeCount++;
+        return true;
+      } else {
+        this.waiting.add(notification);
+        return false;
+      }
+    }
+
+    private synchronized int getWaitingCount() {
+      return this.waiting.size();
+    }
+
+    /**
+     * Hand the delivery slot to the next waiting notification, or free it if none are waiting.
+     *
+     * @return The notification to deliver next, or null if none are waiting.
+     */
+    private synchronized Notification release() {
+      final Notification next = this.waiting.poll();
+      if (next == null) {
+        this.activeCount--;
+      }
+      return next;
+    }
+  }
+
+  private static class Notification {
+    private final String id;
+
+    private final String batchJobId;
+
+    private final String url;
+
+    private final String contentType;
+
+    private final String subject;
+
+    private final String body;
+
+    private final long createdTime;
+
+    private int attemptCount;
+
+    private Notification(final Map<String, ? extends Object> map) {
+      this.id = (String)map.get("id");
+      this.batchJobId = (String)map.get("batchJobId");
+      this.url = (String)map.get("url");
+      this.contentType = (String)map.get("contentType");
+      this.subject = (String)map.get("subject");
+      this.body = (String)map.get("body");
+      this.createdTime = ((Number)map.get("createdTime")).longValue();
+      this.attemptCount = ((Number)map.get("attemptCount")).intValue();
+    }
+
+    private Notification(final String batchJobId, final String url, final String contentType,
+      final String subject, final String body) {
+      this.id = UUID.randomUUID().toString();
+      this.batchJobId = batchJobId;
+      this.url = url;
+      this.contentType = contentType;
+      this.subject = subject;
+      this.body = body;
+      this.createdTime = System.currentTimeMillis();
+    }
+
+    private String getEndpoint() {
+      final URI uri = URI.create(this.url);
+      if (isMail()) {
+        return "mailto:";
+      } else {
+        return uri.getScheme() + "://" + uri.getRawAuthority();
+      }
+    }
+
+    private boolean isMail() {
+      return this.url.startsWith("mailto:");
+    }
+
+    private Map<String, Object> toMap() {
+      final Map<String, Object> map = new LinkedHashMap<>();
+      map.put("id", this.id);
+      map.put("batchJobId", this.batchJobId);
+      map.put("url", this.url);
+      map.put("contentType", this.contentType);
+      map.put("subject", this.subject);
+      map.put("body", this.body);
+      map.put("createdTime", this.createdTime);
+      map.put("attemptCount", this.attemptCount);
+      return map;
+    }
+
+    @Override
+    public String toString() {
+      return "Job #" + this.batchJobId + " to " + this.url;
+    }
+  }
+
+  /** Exception for a notification that must not be retried. */
+  private static class PermanentFailureException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private PermanentFailureException(final String message) {
+      super(message);
+    }
+  }
+
+  private final BatchJobService batchJobService;
+
+  private ScheduledThreadPoolExecutor executor;
+
+  private PoolingHttpClientConnectionManager connectionManager;
+
+  private CloseableHttpClient httpClient;
+
+  private File directory;
+
+  private int threadCount = 4;
+
+  private int maxConcurrentPerEndpoint = 2;
+
+  private int maxAttempts = 8;
+
+  private long initialRetryDelay = 30 * 1000;
+
+  private long maxRetryDelay = 60 * 60 * 1000;
+
+  private int timeout = 30 * 1000;
+
+  private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+  /** The time from the notification being queued to it being delivered. */
+  private final LatencyHistogram deliveryTime = new LatencyHistogram();
+
+  private final LongAdder deliveredCount = new LongAdder();
+
+  private final LongAdder failedCount = new LongAdder();
+
+  private final LongAdder retryCount = new LongAdder();
+
+  public NotificationDispatcher(final BatchJobService batchJobService) {
+    this.batchJobService = batchJobService;
+  }
+
+  private void deleteFile(final Notification notification) {
+    final File file = getFile(notification);
+    if (file != null) {
+      file.delete();
+    }
+  }
+
+  /**
+   * Deliver the notification using a slot that was already taken on the endpoint. When the
+   * delivery finishes the slot is handed to the next notification waiting for the endpoint.
+   */
+  private void deliver(final Endpoint endpoint, final Notification notification) {
+    try {
+      if (notification.isMail()) {
+        sendMail(notification);
+      } else {
+        post(notification);
+      }
+      this.deliveryTime.record(System.currentTimeMillis() - notification.createdTime);
+      this.deliveredCount.increment();
+      deleteFile(notification);
+    } catch (final Throwable e) {
+      notification.attemptCount++;
+      if (e instanceof PermanentFailureException
+        || notification.attemptCount >= this.maxAttempts) {
+        this.failedCount.increment();
+        Logs.error(this, "Unable to send notification for " + notification + " after "
+          + notification.attemptCount + " attempts", e);
+        deleteFile(notification);
+      } else {
+        this.retryCount.increment();
+        Logs.debug(this, e);
+        writeFile(notification);
+        final long delay = Math.min(this.maxRetryDelay,
+          this.initialRetryDelay << Math.min(notification.attemptCount - 1, 20));
+        schedule(notification, delay);
+      }
+    } finally {
+      final Notification next = endpoint.release();
+      if (next != null) {
+        schedule(() -> deliver(endpoint, next), 0);
+      }
+    }
+  }
+
+  private void deliver(final Notification notification) {
+    final Endpoint endpoint = this.endpoints.computeIfAbsent(notification.getEndpoint(),
+      key -> new Endpoint());
+    if (endpoint.acquire(notification, this.maxConcurrentPerEndpoint)) {
+      deliver(endpoint, notification);
+    }
+  }
+
+  public long getDeliveredCount() {
+    return this.deliveredCount.sum();
+  }
+
+  public LatencyHistogram getDeliveryTime() {
+    return this.deliveryTime;
+  }
+
+  public long getFailedCount() {
+    return this.failedCount.sum();
+  }
+
+  private File getFile(final Notification notification) {
+    if (this.directory == null) {
+      return null;
+    } else {
+      return new File(this.directory, notification.id + ".json");
+    }
+  }
+
+  private synchronized CloseableHttpClient getHttpClient() {
+    if (this.httpClient == null) {
+      this.connectionManager = new PoolingHttpClientConnectionManager();
+      this.connectionManager.setMaxTotal(this.threadCount);
+      this.connectionManager.setDefaultMaxPerRoute(this.maxConcurrentPerEndpoint);
+      final RequestConfig requestConfig = RequestConfig.custom()
+        .setConnectTimeout(this.timeout)
+        .setConnectionRequestTimeout(this.timeout)
+        .setSocketTimeout(this.timeout)
+        .build();
+      this.httpClient = HttpClients.custom()
+        .setConnectionManager(this.connectionManager)
+        .setDefaultRequestConfig(requestConfig)
+        .build();
+    }
+    return this.httpClient;
+  }
+
+  public int getMaxAttempts() {
+    return this.maxAttempts;
+  }
+
+  public int getMaxConcurrentPerEndpoint() {
+    return this.maxConcurrentPerEndpoint;
+  }
+
+  /**
+   * Get the number of notifications waiting to be delivered or retried.
+   *
+   * @return The number of notifications.
+   */
+  public synchronized int getQueuedCount() {
+    if (this.executor == null) {
+      return 0;
+    } else {
+      int count = this.executor.getQueue().size() + this.executor.getActiveCount();
+      for (final Endpoint endpoint : this.endpoints.values()) {
+        count += endpoint.getWaitingCount();
+      }
+      return count;
+    }
+  }
+
+  public long getRetryCount() {
+    return this.retryCount.sum();
+  }
+
+  public int getThreadCount() {
+    return this.threadCount;
+  }
+
+  private void post(final Notification notification) throws IOException {
+    final HttpPost request = new HttpPost(notification.url);
+    request.setHeader("Content-type", notification.contentType);
+    request.setEntity(new StringEntity(notification.body, StandardCharsets.UTF_8));
+    final HttpResponse response = getHttpClient().execute(request);
+    try {
+      final StatusLine statusLine = response.getStatusLine();
+      final int statusCode = statusLine.getStatusCode();
+      if (statusCode >= 400) {
+        final String message = "response=" + statusLine;
+        if (statusCode < 500 && statusCode != 408 && statusCode != 429) {
+          throw new PermanentFailureException(message);
+        } else {
+          throw new IOException(message);
+        }
+      }
+    } finally {
+      EntityUtils.consumeQuietly(response.getEntity());
+    }
+  }
+
+  private void schedule(final Notification notification, final long delay) {
+    schedule(() -> deliver(notification), delay);
+  }
+
+  private void schedule(final Runnable task, final long delay) {
+    final ScheduledThreadPoolExecutor executor;
+    synchronized (this) {
+      executor = this.executor;
+    }
+    if (executor != null) {
+      executor.schedule(task, delay, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Queue the notification to be sent.
+   *
+   * @param batchJobId The batch job identifier.
+   * @param url The mailto: or http(s): URL to send the notification to.
+   * @param contentType The content type of the body.
+   * @param subject The subject of the notification.
+   * @param body The body of the notification.
+   */
+  public void send(final String batchJobId, final String url, final String contentType,
+    final String subject, final String body) {
+    final Notification notification = new Notification(batchJobId, url, contentType, subject,
+      body);
+    writeFile(notification);
+    schedule(notification, 0);
+  }
+
+  private void sendMail(final Notification notification) throws Exception {
+    final JavaMailSender mailSender = this.batchJobService.getMailSender();
+    if (mailSender == null) {
+      throw new IllegalStateException("Mail sender not configured");
+    } else {
+      final MimeMessage message = mailSender.createMimeMessage();
+      final MimeMessageHelper messageHelper = new MimeMessageHelper(message);
+      messageHelper.setTo(URI.create(notification.url).getSchemeSpecificPart());
+      messageHelper.setSubject(notification.subject);
+      messageHelper.setFrom(this.batchJobService.getFromEmail());
+      messageHelper.setText(notification.body, true);
+      mailSender.send(message);
+    }
+  }
+
+  public void setDirectory(final File directory) {
+    this.directory = directory;
+  }
+
+  public void setInitialRetryDelay(final long initialRetryDelay) {
+    this.initialRetryDelay = Math.max(1000, initialRetryDelay);
+  }
+
+  public void setMaxAttempts(final int maxAttempts) {
+    this.maxAttempts = Math.max(1, maxAttempts);
+  }
+
+  public void setMaxConcurrentPerEndpoint(final int maxConcurrentPerEndpoint) {
+    this.maxConcurrentPerEndpoint = Math.max(1, maxConcurrentPerEndpoint);
+  }
+
+  public void setMaxRetryDelay(final long maxRetryDelay) {
+    this.maxRetryDelay = maxRetryDelay;
+  }
+
+  public synchronized void setThreadCount(final int threadCount) {
+    this.threadCount = Math.max(1, threadCount);
+    if (this.executor != null) {
+      this.executor.setCorePoolSize(this.threadCount);
+    }
+  }
+
+  public void setTimeout(final int timeout) {
+    this.timeout = timeout;
+  }
+
+  /**
+   * Start the delivery threads and queue the notifications that were saved in the notification
+   * directory but not delivered before the server was stopped.
+   */
+  public void start() {
+    synchronized (this) {
+      if (this.executor == null) {
+        this.executor = new ScheduledThreadPoolExecutor(this.threadCount,
+          new NamedThreadFactory().setNamePrefix("cpfNotification"));
+      }
+    }
+    if (this.directory != null) {
+      final File[] files = this.directory.listFiles((dir, name) -> name.endsWith(".json"));
+      if (files != null) {
+        for (final File file : files) {
+          try {
+            final String text = new String(Files.readAllBytes(file.toPath()),
+              StandardCharsets.UTF_8);
+            final MapEx map = Json.toMap(text);
+            final Notification notification = new Notification(map);
+            schedule(notification, 0);
+          } catch (final Throwable e) {
+            Logs.error(this, "Unable to read notification " + file, e);
+            file.delete();
+          }
+        }
+      }
+    }
+  }
+
+  public synchronized void stop() {
+    if (this.executor != null) {
+      this.executor.shutdownNow();
+      this.executor = null;
+    }
+    // The waiting notifications are still saved in the directory and re-queued by start()
+    this.endpoints.clear();
+    FileUtil.closeSilent(this.httpClient);
+    this.httpClient = null;
+    if (this.connectionManager != null) {
+      this.connectionManager.shutdown();
+      this.connectionManager = null;
+    }
+  }
+
+  private void writeFile(final Notification notification) {
+    final File file = getFile(notification);
+    if (file != null) {
+      try {
+        final String text = Json.toString(notification.toMap());
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+      } catch (final Throwable e) {
+        Logs.error(this, "Unable to save notification " + notification + " to " + file, e);
+      }
+    }
+  }
+}
@@ -28,6 +28,7 @@ import ca.bc.gov.open.cpf.api.domain.CpfDataAccessObject;
 import ca.bc.gov.open.cpf.api.web.controller.JobController;
 import ca.bc.gov.open.cpf.client.api.ErrorCode;
 import ca.bc.gov.open.cpf.plugin.impl.BusinessApplication;
+import ca.bc.gov.open.cpf.plugin.impl.geometry.WkbGeometryCodec;
 
 import com.revolsys.io.FileUtil;
 import com.revolsys.record.Record;
@@ -71,7 +72,8 @@ public abstract class PreProcessGroup {
     this.businessApplication = businessApplication;
     this.batchJob = batchJob;
     this.jobParameters = jobParameters;
-    this.recordDefinition = businessApplication.getInternalRequestRecordDefinition();
+    this.recordDefinition = WkbGeometryCodec
+      .newEncodedRecordDefinition(businessApplication.getInternalRequestRecordDefinition());
     this.groupSequenceNumber = groupSequenceNumber;
   }
 
@@ -83,7 +85,9 @@ public abstract class PreProcessGroup {
       return false;
     } else {
       final RecordWriter writer = getWriter();
-      writer.write(requestParameters);
+      final Record groupRecord = WkbGeometryCodec.newEncodedRecord(this.recordDefinition,
+        requestParameters);
+      writer.write(groupRecord);
       this.groupSize++;
       return true;
     }
@@ -206,7 +210,7 @@ public abstract class PreProcessGroup {
       try {
         final String sridString = jobParameters.get("srid");
         BatchJobService.setStructuredInputDataValue(sridString, requestParameters, field,
-          parameterValue, true);
+          parameterValue, true, this.preProcess.getGeometryUrlResolver());
       } catch (final IllegalArgumentException e) {
         final StringWriter errorOut = new StringWriter();
         e.printStackTrace(new PrintWriter(errorOut));
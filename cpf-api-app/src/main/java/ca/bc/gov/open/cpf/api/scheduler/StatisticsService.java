@@ -26,6 +26,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
@@ -37,26 +39,44 @@ import org.jeometry.common.logging.Logs;
 import ca.bc.gov.open.cpf.api.domain.CpfDataAccessObject;
 import ca.bc.gov.open.cpf.plugin.impl.BusinessApplication;
 
-import com.revolsys.io.Reader;
 import com.revolsys.parallel.channel.Channel;
 import com.revolsys.parallel.process.BaseInProcess;
 import com.revolsys.record.Record;
 import com.revolsys.record.io.format.json.Json;
-import com.revolsys.record.query.Query;
 import com.revolsys.record.schema.RecordStore;
 import com.revolsys.transaction.Propagation;
 import com.revolsys.transaction.Transaction;
 import com.revolsys.util.Property;
 
+/**
+ * Statistics are added directly by the threads that process jobs to a lock free
+ * {@link BusinessApplicationStatistics} for the current hour of each business application. The
+ * statistics process thread periodically takes a snapshot of those statistics and adds them to the
+ * hour, day, month and year statistics that are displayed and saved to the database.
+ */
 public class StatisticsService extends BaseInProcess<Map<String, ? extends Object>> {
   public static final String COLLATE = "COLLATE";
 
+  public static final String FLUSH = "FLUSH";
+
   public static final String SAVE = "SAVE";
 
-  private Map<String, Map<String, BusinessApplicationStatistics>> statisticsByAppAndId = new HashMap<>();
+  private static final long HOUR_MILLIS = 60 * 60 * 1000;
+
+  private volatile BusinessApplicationStatistics currentHour;
+
+  private final Map<String, Map<String, BusinessApplicationStatistics>> pendingStatisticsByAppAndId = new ConcurrentHashMap<>();
+
+  private final Map<String, Map<String, BusinessApplicationStatistics>> statisticsByAppAndId = new HashMap<>();
 
   private RecordStore recordStore;
 
+  /** The number of groups completed by workers since startup. */
+  private final LongAdder completedGroupCount = new LongAdder();
+
+  /** The time from a group being given to a worker to its results being saved. */
+  private final LatencyHistogram groupExecutionTime = new LatencyHistogram();
+
   @Resource
   private CpfDataAccessObject dataAccessObject;
 
@@ -64,7 +84,7 @@ public class StatisticsService extends BaseInProcess<Map<String, ? extends Objec
   private BatchJobService batchJobService;
 
   public StatisticsService() {
-    setInBufferSize(100000);
+    setInBufferSize(1000);
   }
 
   protected void addStatisticRollUp(
@@ -82,9 +102,8 @@ public class StatisticsService extends BaseInProcess<Map<String, ? extends Objec
 
   public void addStatistics(final BusinessApplication businessApplication,
     final Map<String, Object> values) {
-    values.put("businessApplicationName", businessApplication.getName());
-    values.put("time", new Date(System.currentTimeMillis()));
-    sendStatistics(values);
+    final BusinessApplicationStatistics statistics = getPendingStatistics(businessApplication);
+    statistics.addStatistics(values);
   }
 
   protected void addStatistics(
@@ -122,90 +141,135 @@ public class StatisticsService extends BaseInProcess<Map<String, ? extends Objec
     }
   }
 
-  protected void collateAllStatistics() {
-    try (
-      Transaction transaction = this.dataAccessObject.newTransaction(Propagation.REQUIRES_NEW)) {
-      try {
-        final Map<String, Map<String, BusinessApplicationStatistics>> statisticsByAppAndId = new HashMap<>();
+  /**
+   * Load the statistics for the business applications from the database and merge them with the
+   * statistics in memory that haven't been saved. This is only required when the business
+   * application is started as the statistics are kept up to date in memory after that.
+   *
+   * @param businessApplicationNames The business application names.
+   */
+  protected void collateAllStatistics(final Collection<String> businessApplicationNames) {
+    flushPendingStatistics();
+    for (final String businessApplicationName : businessApplicationNames) {
+      try (
+        Transaction transaction = this.dataAccessObject.newTransaction(Propagation.REQUIRES_NEW)) {
+        try {
+          final Map<String, Map<String, BusinessApplicationStatistics>> statisticsByAppAndId = new HashMap<>();
 
-        collateInMemoryStatistics(statisticsByAppAndId);
+          collateInMemoryStatistics(statisticsByAppAndId, businessApplicationName);
 
-        collateDatabaseStatistics(statisticsByAppAndId);
+          collateDatabaseStatistics(statisticsByAppAndId, businessApplicationName);
 
-        collateYearStatistics(statisticsByAppAndId);
+          collateYearStatistics(statisticsByAppAndId);
 
-        saveStatistics(statisticsByAppAndId);
+          saveStatistics(statisticsByAppAndId);
 
-        setStatisticsByAppAndId(statisticsByAppAndId);
+          final Map<String, BusinessApplicationStatistics> statisticsById = getStatistics(
+            statisticsByAppAndId, businessApplicationName);
+          synchronized (this.statisticsByAppAndId) {
+            this.statisticsByAppAndId.put(businessApplicationName, statisticsById);
+          }
+        } catch (final Throwable e) {
+          throw transaction.setRollbackOnly(e);
+        }
       } catch (final Throwable e) {
-        throw transaction.setRollbackOnly(e);
+        Logs.error(this, "Unable to collate statistics for " + businessApplicationName, e);
       }
-    } catch (final Throwable e) {
-      Logs.error(this, "Unable to collate statistics", e);
     }
   }
 
-  private void collateDatabaseStatistics(
-    final Map<String, Map<String, BusinessApplicationStatistics>> statisticsByAppAndId) {
-    final Query query = new Query(BusinessApplicationStatistics.APPLICATION_STATISTICS);
-    query.addOrderBy(BusinessApplicationStatistics.START_TIMESTAMP, true);
+  /**
+   * Save the statistics for periods that have ended and delete the hour and day statistics that
+   * have been included in a saved day or month. Only the statistics modified since the last
+   * collation are written to the database.
+   */
+  protected void collateClosedStatistics() {
+    flushPendingStatistics();
+    final Date currentTime = new Date(System.currentTimeMillis());
+    List<String> businessApplicationNames;
+    synchronized (this.statisticsByAppAndId) {
+      businessApplicationNames = new ArrayList<>(this.statisticsByAppAndId.keySet());
+    }
+    for (final String businessApplicationName : businessApplicationNames) {
+      Map<String, BusinessApplicationStatistics> statisticsById;
+      synchronized (this.statisticsByAppAndId) {
+        statisticsById = this.statisticsByAppAndId.get(businessApplicationName);
+      }
+      if (statisticsById != null) {
+        try (
+          Transaction transaction = this.dataAccessObject
+            .newTransaction(Propagation.REQUIRES_NEW)) {
+          try {
+            saveStatistics(statisticsById, currentTime);
+          } catch (final Throwable e) {
+            throw transaction.setRollbackOnly(e);
+          }
+        } catch (final Throwable e) {
+          Logs.error(this, "Unable to collate statistics for " + businessApplicationName, e);
+        }
+      }
+    }
+  }
 
-    try (
-      final Reader<Record> reader = this.recordStore.getRecords(query)) {
-      for (final Record statisticsRecord : reader) {
+  private void collateDatabaseStatistics(
+    final Map<String, Map<String, BusinessApplicationStatistics>> statisticsByAppAndId,
+    final String businessApplicationName) {
+    final BusinessApplication businessApplication = this.batchJobService
+      .getBusinessApplication(businessApplicationName);
+    if (businessApplication != null) {
+      for (final Record statisticsRecord : this.dataAccessObject
+        .getBusinessApplicationStatistics(businessApplicationName)) {
         boolean delete = false;
         final Date startTime = statisticsRecord
           .getValue(BusinessApplicationStatistics.START_TIMESTAMP);
         final DurationType durationType = DurationType.getDurationType(statisticsRecord);
-        final String businessApplicationName = statisticsRecord
-          .getValue(BusinessApplicationStatistics.BUSINESS_APPLICATION_NAME);
-        final BusinessApplication businessApplication = this.batchJobService
-          .getBusinessApplication(businessApplicationName);
-        if (businessApplication != null) {
-          final String statisticsId = durationType.getId(startTime);
-          final String valuesString = statisticsRecord
-            .getValue(BusinessApplicationStatistics.STATISTIC_VALUES);
-          if (Property.hasValue(valuesString)) {
-            final Map<String, Object> values = Json.toObjectMap(valuesString);
-            if (values.isEmpty()) {
+        final String statisticsId = durationType.getId(startTime);
+        final String valuesString = statisticsRecord
+          .getValue(BusinessApplicationStatistics.STATISTIC_VALUES);
+        if (Property.hasValue(valuesString)) {
+          final Map<String, Object> values = Json.toObjectMap(valuesString);
+          if (values.isEmpty()) {
+            delete = true;
+          } else {
+            final BusinessApplicationStatistics statistics = getStatistics(statisticsByAppAndId,
+              businessApplicationName, statisticsId);
+
+            final Identifier databaseId = statisticsRecord
+              .getIdentifier(BusinessApplicationStatistics.APPLICATION_STATISTIC_ID);
+            final Identifier previousDatabaseId = statistics.getDatabaseId();
+            if (previousDatabaseId == null) {
+              statistics.setDatabaseId(databaseId);
+              statistics.addStatistics(values);
+              final String parentStatisticsId = statistics.getParentId();
+              addStatisticRollUp(statisticsByAppAndId, businessApplicationName,
+                parentStatisticsId, values);
+            } else if (!databaseId.equals(previousDatabaseId)) {
+              statistics.addStatistics(values);
+              final String parentStatisticsId = statistics.getParentId();
+              addStatisticRollUp(statisticsByAppAndId, businessApplicationName,
+                parentStatisticsId, values);
               delete = true;
-            } else {
-              final BusinessApplicationStatistics statistics = getStatistics(statisticsByAppAndId,
-                businessApplicationName, statisticsId);
-
-              final Identifier databaseId = statisticsRecord
-                .getIdentifier(BusinessApplicationStatistics.APPLICATION_STATISTIC_ID);
-              final Identifier previousDatabaseId = statistics.getDatabaseId();
-              if (previousDatabaseId == null) {
-                statistics.setDatabaseId(databaseId);
-                statistics.addStatistics(values);
-                final String parentStatisticsId = statistics.getParentId();
-                addStatisticRollUp(statisticsByAppAndId, businessApplicationName,
-                  parentStatisticsId, values);
-              } else if (!databaseId.equals(previousDatabaseId)) {
-                statistics.addStatistics(values);
-                final String parentStatisticsId = statistics.getParentId();
-                addStatisticRollUp(statisticsByAppAndId, businessApplicationName,
-                  parentStatisticsId, values);
-                delete = true;
-              }
             }
-          } else {
-            delete = true;
           }
+        } else {
+          delete = true;
+        }
 
-          if (delete && !BusinessApplicationStatistics.MONTH_OR_YEAR.contains(durationType)) {
-            this.recordStore.deleteRecord(statisticsRecord);
-          }
+        if (delete && !BusinessApplicationStatistics.MONTH_OR_YEAR.contains(durationType)) {
+          this.recordStore.deleteRecord(statisticsRecord);
         }
       }
     }
   }
 
   private void collateInMemoryStatistics(
-    final Map<String, Map<String, BusinessApplicationStatistics>> statisticsByAppAndId) {
-    final Map<String, Map<String, BusinessApplicationStatistics>> oldStatistics = getStatisticsByAppAndId();
-    for (final Map<String, BusinessApplicationStatistics> statsById : oldStatistics.values()) {
+    final Map<String, Map<String, BusinessApplicationStatistics>> statisticsByAppAndId,
+    final String businessApplicationName) {
+    Map<String, BusinessApplicationStatistics> statsById;
+    synchronized (this.statisticsByAppAndId) {
+      statsById = this.statisticsByAppAndId.get(businessApplicationName);
+    }
+    if (statsById != null) {
       for (final BusinessApplicationStatistics statistics : statsById.values()) {
         final DurationType durationType = statistics.getDurationType();
         if (durationType == DurationType.HOUR) {
@@ -223,6 +287,13 @@ public class StatisticsService extends BaseInProcess<Map<String, ? extends Objec
     sendStatistics(values);
   }
 
+  public void collateStatistics(final List<String> businessApplicationNames) {
+    final Map<String, Object> values = new HashMap<>();
+    values.put(COLLATE, Boolean.TRUE);
+    values.put("businessApplicationNames", businessApplicationNames);
+    sendStatistics(values);
+  }
+
   private void collateYearStatistics(
     final Map<String, Map<String, BusinessApplicationStatistics>> statisticsByAppAndId) {
     for (final Entry<String, Map<String, BusinessApplicationStatistics>> entry : statisticsByAppAndId
@@ -247,18 +318,84 @@ public class StatisticsService extends BaseInProcess<Map<String, ? extends Objec
   @Override
   @PreDestroy
   protected void destroy() {
+    flushPendingStatistics();
     saveAllStatistics();
     getIn().writeDisconnect();
     this.statisticsByAppAndId.clear();
   }
 
+  public void flushStatistics() {
+    final Map<String, ?> values = Collections.singletonMap(FLUSH, Boolean.TRUE);
+    sendStatistics(values);
+  }
+
+  /**
+   * Add a snapshot of the statistics added since the last flush to the hour, day, month and year
+   * statistics.
+   */
+  protected void flushPendingStatistics() {
+    final long currentTime = System.currentTimeMillis();
+    for (final Entry<String, Map<String, BusinessApplicationStatistics>> entry : this.pendingStatisticsByAppAndId
+      .entrySet()) {
+      final String businessApplicationName = entry.getKey();
+      final Map<String, BusinessApplicationStatistics> statisticsById = entry.getValue();
+      for (final Iterator<BusinessApplicationStatistics> iterator = statisticsById.values()
+        .iterator(); iterator.hasNext();) {
+        final BusinessApplicationStatistics pendingStatistics = iterator.next();
+        final Map<String, Object> values = pendingStatistics.snapshotAndReset();
+        if (!values.isEmpty()) {
+          final Date time = pendingStatistics.getStartTime();
+          for (final DurationType durationType : BusinessApplicationStatistics.DURATION_TYPES) {
+            final String statisticsId = durationType.getId(time);
+            final BusinessApplicationStatistics statistics = getStatistics(
+              businessApplicationName, statisticsId);
+            statistics.addStatistics(values);
+          }
+        }
+        // Keep the previous hour for threads that started before the end of the hour
+        if (pendingStatistics.getEndTime().getTime() + HOUR_MILLIS < currentTime) {
+          iterator.remove();
+        }
+      }
+    }
+  }
+
+  /**
+   * Get the statistics for the current hour that threads can add to without locking.
+   */
+  private BusinessApplicationStatistics getPendingStatistics(
+    final BusinessApplication businessApplication) {
+    final long time = System.currentTimeMillis();
+    BusinessApplicationStatistics currentHour = this.currentHour;
+    if (currentHour == null || time < currentHour.getStartTime().getTime()
+      || time >= currentHour.getEndTime().getTime()) {
+      currentHour = BusinessApplicationStatistics.newStatistics(null, DurationType.HOUR);
+      this.currentHour = currentHour;
+    }
+    final String statisticsId = currentHour.getId();
+
+    final String businessApplicationName = businessApplication.getName();
+    Map<String, BusinessApplicationStatistics> statisticsById = this.pendingStatisticsByAppAndId
+      .get(businessApplicationName);
+    if (statisticsById == null) {
+      statisticsById = this.pendingStatisticsByAppAndId
+        .computeIfAbsent(businessApplicationName, (name) -> new ConcurrentHashMap<>());
+    }
+    BusinessApplicationStatistics statistics = statisticsById.get(statisticsId);
+    if (statistics == null) {
+      statistics = statisticsById.computeIfAbsent(statisticsId,
+        (id) -> new BusinessApplicationStatistics(businessApplicationName, id));
+    }
+    return statistics;
+  }
+
   protected Map<String, BusinessApplicationStatistics> getStatistics(
     final Map<String, Map<String, BusinessApplicationStatistics>> statisticsByAppAndId,
     final String businessApplicationName) {
     Map<String, BusinessApplicationStatistics> statistics = statisticsByAppAndId
       .get(businessApplicationName);
     if (statistics == null) {
-      statistics = new HashMap<>();
+      statistics = new ConcurrentHashMap<>();
       statisticsByAppAndId.put(businessApplicationName, statistics);
     }
     return statistics;
@@ -277,6 +414,14 @@ public class StatisticsService extends BaseInProcess<Map<String, ? extends Objec
     return statistics;
   }
 
+  public long getCompletedGroupCount() {
+    return this.completedGroupCount.sum();
+  }
+
+  public LatencyHistogram getGroupExecutionTime() {
+    return this.groupExecutionTime;
+  }
+
   public BusinessApplicationStatistics getStatistics(final String businessApplicationName,
     final String statisticsId) {
     synchronized (this.statisticsByAppAndId) {
@@ -307,7 +452,7 @@ public class StatisticsService extends BaseInProcess<Map<String, ? extends Objec
   @Override
   protected void preRun(final Channel<Map<String, ? extends Object>> in) {
     super.preRun(in);
-    collateAllStatistics();
+    collateAllStatistics(this.batchJobService.getBusinessApplicationNames());
   }
 
   @Override
@@ -315,21 +460,22 @@ public class StatisticsService extends BaseInProcess<Map<String, ? extends Objec
     final Map<String, ? extends Object> values) {
     try {
       if (Boolean.TRUE == values.get(COLLATE)) {
-        collateAllStatistics();
+        @SuppressWarnings("unchecked")
+        final List<String> businessApplicationNames = (List<String>)values
+          .get("businessApplicationNames");
+        if (businessApplicationNames == null) {
+          collateClosedStatistics();
+        } else {
+          collateAllStatistics(businessApplicationNames);
+        }
+      } else if (Boolean.TRUE == values.get(FLUSH)) {
+        flushPendingStatistics();
       } else if (Boolean.TRUE == values.get(SAVE)) {
         @SuppressWarnings("unchecked")
         final List<String> businessApplicationNames = (List<String>)values
           .get("businessApplicationNames");
+        flushPendingStatistics();
         saveStatistics(businessApplicationNames);
-      } else {
-        final Date time = (Date)values.get("time");
-        final String businessApplicationName = (String)values.get("businessApplicationName");
-        for (final DurationType durationType : BusinessApplicationStatistics.DURATION_TYPES) {
-          final String statisticsId = durationType.getId(time);
-          final BusinessApplicationStatistics statistics = getStatistics(businessApplicationName,
-            statisticsId);
-          statistics.addStatistics(values);
-        }
       }
     } catch (final Throwable e) {
       Logs.error(this, "Unable to save statistics:" + values, e);
@@ -373,16 +519,11 @@ public class StatisticsService extends BaseInProcess<Map<String, ? extends Objec
         if (databaseId != null) {
           this.dataAccessObject.deleteBusinessApplicationStatistics(databaseId);
         }
-      } else {
+      } else if (statistics.getDatabaseId() == null || statistics.isModified()) {
         final DurationType durationType = statistics.getDurationType();
         final String currentId = durationType.getId(currentTime);
         if (!currentId.equals(statistics.getId())) {
           this.dataAccessObject.saveStatistics(statistics);
-        } else {
-          final Identifier databaseId = statistics.getDatabaseId();
-          if (databaseId != null) {
-            this.dataAccessObject.deleteBusinessApplicationStatistics(databaseId);
-          }
         }
       }
     }
@@ -411,32 +552,41 @@ public class StatisticsService extends BaseInProcess<Map<String, ? extends Objec
     }
   }
 
-  private void setStatisticsByAppAndId(
-    final Map<String, Map<String, BusinessApplicationStatistics>> statisticsByAppAndId) {
-    this.statisticsByAppAndId = statisticsByAppAndId;
-  }
-
   public long updateGroupStatistics(final BatchJobRequestExecutionGroup group,
     final BusinessApplication businessApplication, final String moduleName,
     final long applicationExecutedTime, final long groupExecutedTime, final int successCount,
-    final int errorCount) {
-    final Map<String, Object> appExecutedStatistics = new HashMap<>();
-    appExecutedStatistics.put("applicationExecutedGroupsCount", 1);
-    appExecutedStatistics.put("applicationExecutedRequestsCount", successCount + errorCount);
-    appExecutedStatistics.put("applicationExecutedFailedRequestsCount", errorCount);
-    appExecutedStatistics.put("applicationExecutedTime", applicationExecutedTime);
-    appExecutedStatistics.put("executedTime", groupExecutedTime);
-
-    addStatistics(businessApplication, appExecutedStatistics);
+    final int errorCount, final Map<String, Object> stageTimes) {
+    final BusinessApplicationStatistics appExecutedStatistics = getPendingStatistics(
+      businessApplication);
+    appExecutedStatistics.addStatistic("applicationExecutedGroupsCount", 1);
+    appExecutedStatistics.addStatistic("applicationExecutedRequestsCount",
+      successCount + errorCount);
+    appExecutedStatistics.addStatistic("applicationExecutedFailedRequestsCount", errorCount);
+    appExecutedStatistics.addStatistic("applicationExecutedTime", applicationExecutedTime);
+    appExecutedStatistics.addStatistic("applicationExecutedGroupsHistogram",
+      applicationExecutedTime);
+    appExecutedStatistics.addStatistic("executedTime", groupExecutedTime);
+    if (stageTimes != null && !stageTimes.isEmpty()) {
+      appExecutedStatistics.addStatistic("workerStageTimesGroupsCount", 1);
+      for (final String stageName : BusinessApplicationStatistics.WORKER_STAGE_NAMES) {
+        final String statisticName = BusinessApplicationStatistics
+          .getWorkerStageStatisticName(stageName);
+        appExecutedStatistics.addStatistic(statisticName, stageTimes.get(stageName));
+      }
+    }
 
     final long executionStartTime = group.getExecutionStartTime();
     final long durationInMillis = System.currentTimeMillis() - executionStartTime;
-    final Map<String, Object> executedStatistics = new HashMap<>();
-    executedStatistics.put("executedGroupsCount", 1);
-    executedStatistics.put("executedRequestsCount", successCount + errorCount);
-    executedStatistics.put("executedTime", durationInMillis);
-
-    Transaction.afterCommit(() -> addStatistics(businessApplication, executedStatistics));
+    this.completedGroupCount.increment();
+    this.groupExecutionTime.record(durationInMillis);
+    Transaction.afterCommit(() -> {
+      final BusinessApplicationStatistics executedStatistics = getPendingStatistics(
+        businessApplication);
+      executedStatistics.addStatistic("executedGroupsCount", 1);
+      executedStatistics.addStatistic("executedRequestsCount", successCount + errorCount);
+      executedStatistics.addStatistic("executedTime", durationInMillis);
+      executedStatistics.addStatistic("executedGroupsHistogram", durationInMillis);
+    });
 
     group.setNumCompletedRequests(successCount);
     group.setNumFailedRequests(errorCount);
@@ -19,6 +19,7 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -29,6 +30,8 @@ import javax.websocket.Session;
 
 import org.jeometry.common.data.identifier.Identifier;
 
+import ca.bc.gov.open.cpf.plugin.impl.GroupIdSet;
+
 import com.revolsys.collection.map.LinkedHashMapEx;
 import com.revolsys.collection.map.MapEx;
 import com.revolsys.collection.map.Maps;
@@ -36,14 +39,26 @@ import com.revolsys.util.Property;
 import com.revolsys.websocket.json.JsonAsyncSender;
 
 public class Worker implements Closeable {
+  /** The number of CPUs on the worker, 0 if not reported. */
+  private volatile int cpuCount;
+
   private final Map<String, BatchJobRequestExecutionGroup> executingGroupsById = new TreeMap<>();
 
   private final Map<String, Set<BatchJobRequestExecutionGroup>> executingGroupsIdByModule = new TreeMap<>();
 
+  /** The free heap memory on the worker when it last asked for a group, 0 if not reported. */
+  private volatile long freeMemory;
+
   private final String id;
 
   private Timestamp lastConnectTime;
 
+  /** The maximum number of groups the worker can execute at once, 0 if not reported. */
+  private volatile int maxExecutingGroupCount;
+
+  /** The maximum heap memory on the worker, 0 if not reported. */
+  private volatile long maxMemory;
+
   private final Map<String, WorkerModuleState> moduleStates = new TreeMap<>();
 
   private final long startTime;
@@ -52,6 +67,12 @@ public class Worker implements Closeable {
 
   private final String key;
 
+  /** The executing groups last reported by the worker. */
+  private final GroupIdSet reportedGroupIds = new GroupIdSet();
+
+  /** The sequence number of the last executing groups message from the worker. */
+  private long reportedSequence = -1;
+
   public Worker(final String id, final long startTime) {
     this.id = id;
     this.key = id.toLowerCase().replaceAll("[^0-9a-z]+", "_");
@@ -67,6 +88,7 @@ public class Worker implements Closeable {
       final String moduleNameAndTime = moduleName + ":" + moduleStartTime;
       Maps.addToSet(this.executingGroupsIdByModule, moduleNameAndTime, group);
     }
+    getModuleState(moduleName).setLastExecutionTime(System.currentTimeMillis());
   }
 
   public boolean cancelBatchJob(final Identifier batchJobId) {
@@ -108,6 +130,10 @@ public class Worker implements Closeable {
     this.messageSender.close();
   }
 
+  public int getCpuCount() {
+    return this.cpuCount;
+  }
+
   public BatchJobRequestExecutionGroup getExecutingGroup(final String groupId) {
     final String[] ids = groupId.split("-");
     final String baseId = ids[0] + "-" + ids[1];
@@ -120,10 +146,53 @@ public class Worker implements Closeable {
     }
   }
 
+  public int getExecutingGroupCount() {
+    synchronized (this.executingGroupsById) {
+      return this.executingGroupsById.size();
+    }
+  }
+
   public Map<String, BatchJobRequestExecutionGroup> getExecutingGroupsById() {
     return this.executingGroupsById;
   }
 
+  public long getFreeMemory() {
+    return this.freeMemory;
+  }
+
+  /**
+   * Get the fraction of the worker's heap memory that was free when it last asked for a group.
+   *
+   * @return The fraction, 1 if the worker has not reported its memory.
+   */
+  public double getFreeMemoryFraction() {
+    final long maxMemory = this.maxMemory;
+    if (maxMemory > 0) {
+      return Math.min(1, (double)this.freeMemory / maxMemory);
+    } else {
+      return 1;
+    }
+  }
+
+  public int getFreeSlotCount() {
+    return Math.max(0, getGroupCapacity() - getExecutingGroupCount());
+  }
+
+  /**
+   * Get the number of groups the worker can execute at once, the number of CPUs if the worker
+   * hasn't reported the maximum number of groups.
+   *
+   * @return The number of groups.
+   */
+  private int getGroupCapacity() {
+    final int maxExecutingGroupCount = this.maxExecutingGroupCount;
+    if (maxExecutingGroupCount > 0) {
+      return maxExecutingGroupCount;
+    } else {
+      return Math.max(1, this.cpuCount);
+    }
+  }
+
   public String getId() {
     return this.id;
   }
@@ -136,6 +205,40 @@ public class Worker implements Closeable {
     return this.lastConnectTime;
   }
 
+  /**
+   * Get the fraction of the worker's group slots in use.
+   *
+   * @return The load, 1 or more if the worker is full.
+   */
+  public double getLoad() {
+    return (double)getExecutingGroupCount() / getGroupCapacity();
+  }
+
+  public int getMaxExecutingGroupCount() {
+    return this.maxExecutingGroupCount;
+  }
+
+  public long getMaxMemory() {
+    return this.maxMemory;
+  }
+
+  /**
+   * Get the time a group for the module was last given to the worker.
+   *
+   * @param moduleName The module name.
+   * @return The time, 0 if no groups for the module were given to the worker.
+   */
+  public long getModuleLastExecutionTime(final String moduleName) {
+    synchronized (this.moduleStates) {
+      final WorkerModuleState moduleState = this.moduleStates.get(moduleName);
+      if (moduleState == null) {
+        return 0;
+      } else {
+        return moduleState.getLastExecutionTime();
+      }
+    }
+  }
+
   public List<WorkerModuleState> getModules() {
     return new ArrayList<>(this.moduleStates.values());
   }
@@ -159,6 +262,30 @@ public class Worker implements Closeable {
     return this.startTime;
   }
 
+  /**
+   * Check if the group was executing on the worker when the worker last reported its executing
+   * groups.
+   *
+   * @param groupId The group identifier.
+   * @return True if the group was reported.
+   */
+  public boolean hasFreeSlot() {
+    return getFreeSlotCount() > 0;
+  }
+
+  public boolean isModuleStarted(final String moduleName) {
+    synchronized (this.moduleStates) {
+      final WorkerModuleState moduleState = this.moduleStates.get(moduleName);
+      return moduleState != null && moduleState.isStarted();
+    }
+  }
+
+  public boolean isReportedGroupId(final String groupId) {
+    synchronized (this.reportedGroupIds) {
+      return this.reportedGroupIds.contains(groupId);
+    }
+  }
+
   public boolean isSession(final Session session) {
     return this.messageSender.isSession(session);
   }
@@ -183,14 +310,45 @@ public class Worker implements Closeable {
     this.messageSender.sendMessage(message);
   }
 
+  /**
+   * Record the capacity reported by the worker when it asked for a group.
+   *
+   * @param cpuCount The number of CPUs, 0 if not reported.
+   * @param freeMemory The free heap memory, 0 if not reported.
+   * @param maxMemory The maximum heap memory, 0 if not reported.
+   */
+  public void setCapacity(final int cpuCount, final long freeMemory, final long maxMemory) {
+    this.cpuCount = cpuCount;
+    this.freeMemory = freeMemory;
+    this.maxMemory = maxMemory;
+  }
+
   public void setLastConnectTime(final Timestamp lastConnectTime) {
     this.lastConnectTime = lastConnectTime;
   }
 
+  public void setMaxExecutingGroupCount(final int maxExecutingGroupCount) {
+    this.maxExecutingGroupCount = maxExecutingGroupCount;
+  }
+
   public boolean setMessageResult(final MapEx message) {
     return this.messageSender.setResult(message);
   }
 
+  /**
+   * Replace the reported executing groups with all the groups executing on the worker.
+   *
+   * @param groupIds The executing group identifiers.
+   * @param sequence The sequence number of the message, -1 if not sent.
+   */
+  public void setReportedGroupIds(final Collection<String> groupIds, final long sequence) {
+    synchronized (this.reportedGroupIds) {
+      this.reportedGroupIds.clear();
+      this.reportedGroupIds.addAll(groupIds);
+      this.reportedSequence = sequence;
+    }
+  }
+
   public synchronized void setSession(final Session session) {
     if (session == null) {
       this.messageSender.clearSession();
@@ -203,4 +361,31 @@ public class Worker implements Closeable {
   public String toString() {
     return getId();
   }
+
+  /**
+   * Apply the groups started and finished since the worker's last message to the reported
+   * executing groups.
+   *
+   * @param startedGroupIds The groups started since the last message.
+   * @param finishedGroupIds The groups finished since the last message.
+   * @param sequence The sequence number of the message.
+   * @param digest The digest of the groups executing on the worker.
+   * @return False if a message was missed or the digest is different, in which case the worker
+   * must be asked for all of its executing groups.
+   */
+  public boolean updateReportedGroupIds(final Collection<String> startedGroupIds,
+    final Collection<String> finishedGroupIds, final long sequence, final String digest) {
+    synchronized (this.reportedGroupIds) {
+      final boolean inSequence = this.reportedSequence != -1
+        && sequence == this.reportedSequence + 1;
+      this.reportedSequence = sequence;
+      this.reportedGroupIds.addAll(startedGroupIds);
+      this.reportedGroupIds.removeAll(finishedGroupIds);
+      if (inSequence) {
+        return digest == null || digest.equals(this.reportedGroupIds.getDigest());
+      } else {
+        return false;
+      }
+    }
+  }
 }
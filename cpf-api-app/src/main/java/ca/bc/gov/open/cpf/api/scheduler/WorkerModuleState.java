@@ -29,10 +29,17 @@ public class WorkerModuleState {
 
   private long startedTime;
 
+  /** The time a group for the module was last given to the worker. */
+  private volatile long lastExecutionTime;
+
   public WorkerModuleState(final String name) {
     this.name = name;
   }
 
+  public long getLastExecutionTime() {
+    return this.lastExecutionTime;
+  }
+
   public String getModuleError() {
     return this.moduleError;
   }
@@ -72,6 +79,10 @@ public class WorkerModuleState {
     }
   }
 
+  public void setLastExecutionTime(final long lastExecutionTime) {
+    this.lastExecutionTime = lastExecutionTime;
+  }
+
   public void setModuleError(final String moduleError) {
     this.moduleError = moduleError;
   }
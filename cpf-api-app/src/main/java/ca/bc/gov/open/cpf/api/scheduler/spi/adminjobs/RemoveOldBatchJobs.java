@@ -17,9 +17,15 @@ package ca.bc.gov.open.cpf.api.scheduler.spi.adminjobs;
 
 import java.sql.Timestamp;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.GregorianCalendar;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PreDestroy;
 
 import org.jeometry.common.data.identifier.Identifier;
 import org.jeometry.common.date.Dates;
@@ -28,12 +34,22 @@ import org.jeometry.common.logging.Logs;
 import ca.bc.gov.open.cpf.api.domain.CpfDataAccessObject;
 import ca.bc.gov.open.cpf.api.scheduler.BatchJobService;
 
+import com.revolsys.parallel.ThreadUtil;
 import com.revolsys.transaction.Propagation;
 import com.revolsys.transaction.Transaction;
 
 /**
  * Periodically delete Batch Jobs older than the specified number of days, along
  * with all the Batch Jobs associated request and result data.
+ *
+ * <p>The jobs are deleted on a background thread in batches of at most
+ * batchSize jobs, each batch in its own transaction. The rate is limited to
+ * maxJobsPerSecond so that the purge doesn't hold locks or saturate I/O for
+ * long periods after a busy week.</p>
+ *
+ * <p>If a batch can't be deleted each job in the batch is retried in its own transaction.
+ * Jobs that still fail are logged and skipped for the rest of the run so one bad job
+ * doesn't stop the remaining jobs being deleted.</p>
  */
 public class RemoveOldBatchJobs {
 
@@ -41,41 +57,207 @@ public class RemoveOldBatchJobs {
 
   private CpfDataAccessObject dataAccessObject;
 
-  public void removeOldJobs() {
+  private int batchSize = 100;
+
+  private int maxJobsPerSecond = 100;
+
+  private volatile boolean running;
+
+  private Thread thread;
+
+  private final AtomicLong totalJobsDeleted = new AtomicLong();
+
+  private final AtomicLong totalBatchesDeleted = new AtomicLong();
+
+  private final AtomicLong totalErrorCount = new AtomicLong();
+
+  private volatile long lastRunJobsDeleted;
+
+  private volatile long lastRunJobsSkipped;
+
+  private long lastRunStartTime;
+
+  private long lastRunEndTime;
+
+  @PreDestroy
+  public synchronized void close() {
+    this.running = false;
+    if (this.thread != null) {
+      this.thread.interrupt();
+      this.thread = null;
+    }
+  }
+
+  private int deleteBatch(final List<Identifier> batchJobIds, final Set<Identifier> skippedIds) {
+    try {
+      deleteJobs(batchJobIds);
+      return batchJobIds.size();
+    } catch (final Throwable e) {
+      this.totalErrorCount.incrementAndGet();
+      Logs.error(this, "Unable to delete old batch jobs, deleting each job separately", e);
+      int deletedCount = 0;
+      for (final Identifier batchJobId : batchJobIds) {
+        try {
+          deleteJobs(Collections.singletonList(batchJobId));
+          deletedCount++;
+        } catch (final Throwable e1) {
+          this.totalErrorCount.incrementAndGet();
+          skippedIds.add(batchJobId);
+          Logs.error(this, "Unable to delete old batch job " + batchJobId, e1);
+        }
+      }
+      return deletedCount;
+    }
+  }
+
+  private void deleteJobs(final List<Identifier> batchJobIds) {
     try (
       Transaction transaction = this.dataAccessObject.newTransaction(Propagation.REQUIRES_NEW)) {
       try {
-        final int dayInMilliseconds = 1000 * 60 * 60 * 24;
-
-        final Calendar cal = new GregorianCalendar(); // local time
-        final long timeNow = cal.getTimeInMillis();
-        final long timeAtMidnightThisMorning = timeNow - timeNow % dayInMilliseconds;
-        final long timeXDaysAgo = timeAtMidnightThisMorning
-          - this.batchJobService.getDaysToKeepOldJobs() * dayInMilliseconds;
-        final Timestamp keepUntilTimestamp = new Timestamp(timeXDaysAgo);
-        cal.setTimeInMillis(timeXDaysAgo);
-        cal.add(Calendar.MILLISECOND, -TimeZone.getDefault().getOffset(cal.getTimeInMillis()));
-
-        int numberJobsDeleted = 0;
-        final List<Identifier> batchJobIds = this.dataAccessObject
-          .getOldBatchJobIds(keepUntilTimestamp);
-        for (final Identifier batchJobId : batchJobIds) {
-          try {
-            this.batchJobService.deleteJob(batchJobId);
-            numberJobsDeleted++;
-          } catch (final Throwable t) {
-            Logs.error(this, "Unable to delete Batch Job " + batchJobId, t);
-          }
+        this.batchJobService.deleteCompletedJobs(batchJobIds);
+      } catch (final Throwable e) {
+        throw transaction.setRollbackOnly(e);
+      }
+    }
+  }
+
+  public int getBatchSize() {
+    return this.batchSize;
+  }
+
+  private List<Identifier> getBatchJobIds(final Timestamp keepUntilTimestamp,
+    final Set<Identifier> skippedIds) {
+    final List<Identifier> batchJobIds = this.dataAccessObject
+      .getOldBatchJobIds(keepUntilTimestamp, this.batchSize + skippedIds.size());
+    batchJobIds.removeAll(skippedIds);
+    if (batchJobIds.size() > this.batchSize) {
+      return batchJobIds.subList(0, this.batchSize);
+    } else {
+      return batchJobIds;
+    }
+  }
+
+  public long getLastRunEndTime() {
+    return this.lastRunEndTime;
+  }
+
+  public long getLastRunJobsDeleted() {
+    return this.lastRunJobsDeleted;
+  }
+
+  public long getLastRunJobsSkipped() {
+    return this.lastRunJobsSkipped;
+  }
+
+  public long getLastRunStartTime() {
+    return this.lastRunStartTime;
+  }
+
+  public int getMaxJobsPerSecond() {
+    return this.maxJobsPerSecond;
+  }
+
+  public long getTotalBatchesDeleted() {
+    return this.totalBatchesDeleted.get();
+  }
+
+  public long getTotalErrorCount() {
+    return this.totalErrorCount.get();
+  }
+
+  public long getTotalJobsDeleted() {
+    return this.totalJobsDeleted.get();
+  }
+
+  public synchronized boolean isRunning() {
+    return this.thread != null;
+  }
+
+  private void purge(final Timestamp keepUntilTimestamp, final Calendar cal) {
+    this.lastRunStartTime = System.currentTimeMillis();
+    this.lastRunJobsDeleted = 0;
+    this.lastRunJobsSkipped = 0;
+    final Set<Identifier> skippedIds = new HashSet<>();
+    try {
+      while (this.running) {
+        final long batchStartTime = System.currentTimeMillis();
+        final List<Identifier> batchJobIds;
+        try {
+          batchJobIds = getBatchJobIds(keepUntilTimestamp, skippedIds);
+        } catch (final Throwable e) {
+          this.totalErrorCount.incrementAndGet();
+          Logs.error(this, "Unable to get old batch jobs", e);
+          break;
         }
+        if (batchJobIds.isEmpty()) {
+          break;
+        } else {
+          final int deletedCount = deleteBatch(batchJobIds, skippedIds);
+          this.lastRunJobsDeleted += deletedCount;
+          this.lastRunJobsSkipped = skippedIds.size();
+          this.totalJobsDeleted.addAndGet(deletedCount);
+          if (deletedCount > 0) {
+            this.totalBatchesDeleted.incrementAndGet();
+          }
+          Logs.debug(this, this.lastRunJobsDeleted + " old batch jobs deleted");
 
-        if (numberJobsDeleted > 0) {
-          Logs.info(this, numberJobsDeleted + " old batch jobs deleted for jobs prior to "
-            + Dates.format("yyyy-MMM-dd HH:mm:ss", cal.getTime()));
+          if (this.maxJobsPerSecond > 0) {
+            final long minBatchTime = deletedCount * 1000L / this.maxJobsPerSecond;
+            final long batchTime = System.currentTimeMillis() - batchStartTime;
+            if (batchTime < minBatchTime) {
+              ThreadUtil.pause(minBatchTime - batchTime);
+            }
+          }
         }
-      } catch (final Throwable e) {
-        throw transaction.setRollbackOnly(e);
+      }
+    } finally {
+      this.lastRunEndTime = System.currentTimeMillis();
+      synchronized (this) {
+        this.thread = null;
       }
     }
+    if (this.lastRunJobsDeleted > 0) {
+      Logs.info(this,
+        this.lastRunJobsDeleted + " old batch jobs deleted for jobs prior to "
+          + Dates.format("yyyy-MMM-dd HH:mm:ss", cal.getTime()) + " in "
+          + (this.lastRunEndTime - this.lastRunStartTime) / 1000 + "s");
+    }
+    if (this.lastRunJobsSkipped > 0) {
+      Logs.error(this, this.lastRunJobsSkipped + " old batch jobs could not be deleted");
+    }
+  }
+
+  public synchronized void removeOldJobs() {
+    if (this.thread == null) {
+      final int dayInMilliseconds = 1000 * 60 * 60 * 24;
+
+      final Calendar cal = new GregorianCalendar(); // local time
+      final long timeNow = cal.getTimeInMillis();
+      final long timeAtMidnightThisMorning = timeNow - timeNow % dayInMilliseconds;
+      final long timeXDaysAgo = timeAtMidnightThisMorning
+        - this.batchJobService.getDaysToKeepOldJobs() * dayInMilliseconds;
+      final Timestamp keepUntilTimestamp = new Timestamp(timeXDaysAgo);
+      cal.setTimeInMillis(timeXDaysAgo);
+      cal.add(Calendar.MILLISECOND, -TimeZone.getDefault().getOffset(cal.getTimeInMillis()));
+
+      this.running = true;
+      this.thread = new Thread(() -> purge(keepUntilTimestamp, cal), "cpf-RemoveOldBatchJobs");
+      this.thread.setDaemon(true);
+      this.thread.start();
+    } else {
+      Logs.info(this, "Previous removal of old batch jobs still running");
+    }
+  }
+
+  /**
+   * Set the maximum number of jobs to delete in each transaction.
+   *
+   * @param batchSize The maximum number of jobs to delete in each transaction.
+   */
+  public void setBatchSize(final int batchSize) {
+    if (batchSize > 0) {
+      this.batchSize = batchSize;
+    }
   }
 
   public void setBatchJobService(final BatchJobService batchJobService) {
@@ -95,4 +277,13 @@ public class RemoveOldBatchJobs {
     this.batchJobService.setDaysToKeepOldJobs(daysToKeepOldJobs);
   }
 
+  /**
+   * Set the maximum number of jobs to delete per second, 0 for no limit.
+   *
+   * @param maxJobsPerSecond The maximum number of jobs to delete per second.
+   */
+  public void setMaxJobsPerSecond(final int maxJobsPerSecond) {
+    this.maxJobsPerSecond = Math.max(0, maxJobsPerSecond);
+  }
+
 }
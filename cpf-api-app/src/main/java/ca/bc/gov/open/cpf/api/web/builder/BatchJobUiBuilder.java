@@ -43,6 +43,8 @@ import ca.bc.gov.open.cpf.plugin.impl.BusinessApplication;
 import ca.bc.gov.open.cpf.plugin.impl.module.Module;
 
 import com.revolsys.record.Record;
+import com.revolsys.record.query.Q;
+import com.revolsys.record.query.Query;
 import com.revolsys.record.io.format.xml.XmlWriter;
 import com.revolsys.ui.html.builder.HtmlUiBuilder;
 import com.revolsys.ui.html.serializer.key.ActionFormKeySerializer;
@@ -116,9 +118,18 @@ public class BatchJobUiBuilder extends CpfUiBuilder {
     }
   }
 
+  /**
+   * Write the number of completed requests. Job lists use the {@link BatchJob#SUMMARY_FIELD_NAMES}
+   * records so the count is read from the stored count column.
+   */
   public void completedCount(final XmlWriter out, final Object object) {
-    final BatchJob batchJob = (BatchJob)object;
-    final int count = batchJob.getCompletedCount();
+    final int count;
+    if (object instanceof BatchJob) {
+      final BatchJob batchJob = (BatchJob)object;
+      count = batchJob.getCompletedCount();
+    } else {
+      count = getCount((Record)object, BatchJob.NUM_COMPLETED_REQUESTS);
+    }
     out.text(count);
   }
 
@@ -146,14 +157,14 @@ public class BatchJobUiBuilder extends CpfUiBuilder {
     }
   }
 
-  @Override
-  protected Record convertRecord(final Record batchJob) {
-    return getBatchJobService().getBatchJob(batchJob);
-  }
-
   public void failedCount(final XmlWriter out, final Object object) {
-    final BatchJob batchJob = (BatchJob)object;
-    final int count = batchJob.getFailedCount();
+    final int count;
+    if (object instanceof BatchJob) {
+      final BatchJob batchJob = (BatchJob)object;
+      count = batchJob.getFailedCount();
+    } else {
+      count = getCount((Record)object, BatchJob.NUM_FAILED_REQUESTS);
+    }
     out.text(count);
   }
 
@@ -175,6 +186,15 @@ public class BatchJobUiBuilder extends CpfUiBuilder {
     }
   }
 
+  private int getCount(final Record batchJob, final String fieldName) {
+    final Integer count = batchJob.getInteger(fieldName);
+    if (count == null) {
+      return 0;
+    } else {
+      return count;
+    }
+  }
+
   @Override
   public Object getProperty(final Object object, final String keyName) {
     if (keyName.startsWith("BUSINESS_APPLICATION_NAME") && object instanceof Record) {
@@ -351,7 +371,10 @@ public class BatchJobUiBuilder extends CpfUiBuilder {
     throws IOException {
     checkAdminOrAnyModuleAdminExceptSecurity();
     HttpServletUtils.setAttribute("title", "Batch Jobs");
-    return newDataTableHandler(request, "list");
+    final Map<String, Object> parameters = new HashMap<>();
+    parameters.put("serverSide", Boolean.TRUE);
+    parameters.put("query", newSummaryQuery(null));
+    return newDataTableHandler(request, "list", parameters);
   }
 
   public void module(final XmlWriter out, final Object object) {
@@ -422,10 +445,8 @@ public class BatchJobUiBuilder extends CpfUiBuilder {
     getModuleBusinessApplication(moduleName, businessApplicationName);
 
     final Map<String, Object> parameters = new HashMap<>();
-
-    final Map<String, Object> filter = new HashMap<>();
-    filter.put("BUSINESS_APPLICATION_NAME", businessApplicationName);
-    parameters.put("filter", filter);
+    parameters.put("serverSide", Boolean.TRUE);
+    parameters.put("query", newSummaryQuery(businessApplicationName));
 
     return newDataTableHandlerOrRedirect(request, response, "moduleAppList",
       BusinessApplication.class, "moduleView", parameters);
@@ -487,6 +508,15 @@ public class BatchJobUiBuilder extends CpfUiBuilder {
     return tabs;
   }
 
+  private Query newSummaryQuery(final String businessApplicationName) {
+    final Query query = new Query(BatchJob.BATCH_JOB);
+    query.setFieldNames(BatchJob.SUMMARY_FIELD_NAMES);
+    if (businessApplicationName != null) {
+      query.setWhereCondition(Q.equal(BatchJob.BUSINESS_APPLICATION_NAME, businessApplicationName));
+    }
+    return query;
+  }
+
   public void scheduledGroups(final XmlWriter out, final Object object) {
     final BatchJob batchJob = (BatchJob)object;
     final String text = batchJob.getScheduledGroups();
@@ -164,6 +164,12 @@ public class BusinessApplicationStatisticsUiBuilder extends CpfUiBuilder {
     addLabel("applicationExecutedGroupsCount", "# App Groups Executed");
     addLabel("applicationExecutedRequestsCount", "# App Requests Completed");
     addLabel("applicationExecutedFailedRequestsCount", "# App Requests Failed");
+    addLabel("applicationExecutedGroupsTimeP50", "App Group p50 (ms)");
+    addLabel("applicationExecutedGroupsTimeP95", "App Group p95 (ms)");
+    addLabel("applicationExecutedGroupsTimeP99", "App Group p99 (ms)");
+    addLabel("instantModeCacheHitsCount", "# Instant Cache Hits");
+    addLabel("instantModeCacheMissesCount", "# Instant Cache Misses");
+    addLabel("instantModeCacheHitBytes", "Instant Cache Bytes Served");
   }
 
   @Override
@@ -174,7 +180,9 @@ public class BusinessApplicationStatisticsUiBuilder extends CpfUiBuilder {
         Lists.newArray("moduleAppViewLink", "module.name_link", "module.started",
           "businessApplication.name_link", "submittedJobsCount", "completedJobsCount",
           "applicationExecutedGroupsCount", "applicationExecutedRequestsCount",
-          "applicationExecutedFailedRequestsCount"));
+          "applicationExecutedFailedRequestsCount", "applicationExecutedGroupsTimeP50",
+          "applicationExecutedGroupsTimeP95", "applicationExecutedGroupsTimeP99",
+          "instantModeCacheHitsCount"));
     }
 
     addPage(new Page("hourList", "Hour", "/admin/dashboard/hour/"));
@@ -199,7 +207,8 @@ public class BusinessApplicationStatisticsUiBuilder extends CpfUiBuilder {
   }, title = "Dashboard", method = RequestMethod.GET, fieldNames = {
     "listModuleAppViewLink", "durationType", "submittedJobsCount", "completedJobsCount",
     "applicationExecutedGroupsCount", "applicationExecutedRequestsCount",
-    "applicationExecutedFailedRequestsCount"
+    "applicationExecutedFailedRequestsCount", "applicationExecutedGroupsTimeP50",
+    "applicationExecutedGroupsTimeP95", "applicationExecutedGroupsTimeP99"
   }, columnSortOrder = @ColumnSortOrder("listModuleAppViewLink"))
   @ResponseBody
   public Object moduleAppList(final HttpServletRequest request, final HttpServletResponse response,
@@ -166,6 +166,12 @@ public class BusinessApplicationUiBuilder extends CpfUiBuilder {
     addField(new CheckBoxField("testModeEnabled"));
     addField(new SpelExpressionField("batchModePermission", true));
     addField(new SpelExpressionField("instantModePermission", true));
+    addField(new IntegerField("instantModeMaxConcurrentRequests", true));
+    addField(new IntegerField("instantModeMaxQueuedRequests", true));
+    addField(new CheckBoxField("instantModeExecuteOnWorker"));
+    addField(new IntegerField("instantModeTimeout", true));
+    addField(new IntegerField("instantModeResultCacheSize", true));
+    addField(new IntegerField("instantModeResultCacheTimeToLive", true));
     addField(new IntegerField("maxRequestsPerJob", true));
     addField(new IntegerField("maxConcurrentRequests", true));
     addField(new IntegerField("numRequestsPerWorker", true));
@@ -183,6 +189,7 @@ public class BusinessApplicationUiBuilder extends CpfUiBuilder {
     addKeySerializer(new BulletListKeySerializer("inputDataContentTypes"));
     addKeySerializer(new BulletListKeySerializer("resultDataContentTypes"));
     addKeySerializer(new BooleanImageKeySerializer("testModeEnabled"));
+    addKeySerializer(new BooleanImageKeySerializer("instantModeExecuteOnWorker"));
   }
 
   @RequestMapping(value = {
@@ -211,7 +218,10 @@ public class BusinessApplicationUiBuilder extends CpfUiBuilder {
     RequestMethod.GET, RequestMethod.POST
   }, fieldNames = {
     "logLevel", "testModeEnabled", "batchModePermission", "instantModePermission",
-    "maxRequestsPerJob", "maxConcurrentRequests", "numRequestsPerWorker",
+    "instantModeMaxConcurrentRequests", "instantModeMaxQueuedRequests",
+    "instantModeExecuteOnWorker", "instantModeTimeout", "instantModeResultCacheSize",
+    "instantModeResultCacheTimeToLive", "maxRequestsPerJob", "maxConcurrentRequests",
+    "numRequestsPerWorker",
   }, title = "Edit Business Application {businessApplicationName}")
   @ResponseBody
   public Element moduleEdit(final HttpServletRequest request, final HttpServletResponse response,
@@ -330,7 +340,10 @@ public class BusinessApplicationUiBuilder extends CpfUiBuilder {
   }, title = "Business Application {businessApplicationName}", method = RequestMethod.GET,
       fieldNames = {
         "name", "module_name_link", "title", "descriptionUrl", "logLevel", "testModeEnabled",
-        "batchModePermission", "instantModePermission", "geometryFactory", "validateGeometry",
+        "batchModePermission", "instantModePermission", "instantModeMaxConcurrentRequests",
+        "instantModeMaxQueuedRequests", "instantModeExecuteOnWorker", "instantModeTimeout",
+        "instantModeResultCacheSize", "instantModeResultCacheTimeToLive", "geometryFactory",
+        "validateGeometry",
         "perRequestInputData", "inputDataContentTypes", "hasGeometryRequestAttribute",
         "perRequestResultData", "resultDataContentTypes", "hasCustomizationProperties",
         "resultListProperty", "hasResultListCustomizationProperties", "hasGeometryResultAttribute",
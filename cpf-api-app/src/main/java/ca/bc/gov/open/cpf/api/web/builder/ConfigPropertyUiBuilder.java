@@ -63,7 +63,9 @@ public class ConfigPropertyUiBuilder extends CpfUiBuilder {
 
   private final List<String> INTERNAL_APP_PROPERTY_NAMES = Arrays.asList("maxConcurrentRequests",
     "numRequestsPerWorker", "maxRequestsPerJob", "logLevel", "batchModePermission",
-    "instantModePermission", "testModeEnabled");
+    "instantModePermission", "instantModeMaxConcurrentRequests", "instantModeMaxQueuedRequests",
+    "instantModeExecuteOnWorker", "instantModeTimeout", "instantModeResultCacheSize",
+    "instantModeResultCacheTimeToLive", "testModeEnabled");
 
   public ConfigPropertyUiBuilder() {
     super("configProperty", ConfigProperty.CONFIG_PROPERTY, "CONFIG_PROPERTY_ID",
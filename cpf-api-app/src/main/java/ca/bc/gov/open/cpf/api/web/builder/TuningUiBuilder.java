@@ -16,6 +16,7 @@
 package ca.bc.gov.open.cpf.api.web.builder;
 
 import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -38,6 +39,7 @@ import ca.bc.gov.open.cpf.api.scheduler.BatchJobPostProcess;
 import ca.bc.gov.open.cpf.api.scheduler.BatchJobPreProcess;
 import ca.bc.gov.open.cpf.api.scheduler.BatchJobScheduler;
 import ca.bc.gov.open.cpf.api.scheduler.BatchJobService;
+import ca.bc.gov.open.cpf.api.scheduler.CpfMetrics;
 
 import com.revolsys.jdbc.io.DataSourceImpl;
 import com.revolsys.record.Record;
@@ -79,6 +81,9 @@ public class TuningUiBuilder extends CpfUiBuilder {
   @Resource
   private DataSourceImpl cpfDataSource;
 
+  @Resource
+  private CpfMetrics cpfMetrics;
+
   public TuningUiBuilder() {
     setTypeName("tuning");
     setTableName(ConfigProperty.CONFIG_PROPERTY);
@@ -239,6 +244,22 @@ public class TuningUiBuilder extends CpfUiBuilder {
     return newDataTableHandler(request, "list", rows);
   }
 
+  /**
+   * Write the live queue, worker and throughput metrics in the Prometheus text exposition
+   * format so they can be scraped by a monitoring server.
+   */
+  @RequestMapping(value = {
+    "/admin/tuning/metrics"
+  }, title = "Metrics", method = RequestMethod.GET)
+  public void metrics(final HttpServletResponse response) throws IOException {
+    checkAdminOrAnyModuleAdmin();
+    response.setContentType("text/plain; version=0.0.4; charset=utf-8");
+    try (
+      Writer writer = response.getWriter()) {
+      this.cpfMetrics.writePrometheus(writer);
+    }
+  }
+
   @Override
   public boolean validateForm(final UiBuilderObjectForm form) {
     final int preProcessPoolSize = form.getField("preProcessPoolSize").getValue(DataTypes.INT);
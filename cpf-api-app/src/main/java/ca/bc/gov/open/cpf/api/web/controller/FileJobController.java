@@ -25,6 +25,10 @@ import java.text.DecimalFormatSymbols;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.jeometry.common.data.identifier.Identifier;
 import org.jeometry.common.exception.Exceptions;
@@ -40,6 +44,7 @@ import ca.bc.gov.open.cpf.plugin.impl.BusinessApplication;
 
 import com.revolsys.collection.map.MapEx;
 import com.revolsys.io.FileUtil;
+import com.revolsys.parallel.NamedThreadFactory;
 import com.revolsys.record.query.Q;
 import com.revolsys.record.query.Query;
 import com.revolsys.spring.resource.Resource;
@@ -74,9 +79,19 @@ public class FileJobController extends AbstractJobController {
 
   private final File rootDirectory;
 
+  /** Deletes the job directories in the background so large jobs don't block the caller. */
+  private final ThreadPoolExecutor deleteExecutor = new ThreadPoolExecutor(1, 1, 60,
+    TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory());
+
   public FileJobController(final BatchJobService batchJobService, final File rootDirectory) {
     super(batchJobService.getDataAccessObject());
     this.rootDirectory = rootDirectory;
+    this.deleteExecutor.allowCoreThreadTimeOut(true);
+  }
+
+  @Override
+  public void close() {
+    this.deleteExecutor.shutdown();
   }
 
   protected void deleteDirectory(final Identifier jobId, final File directory) {
@@ -85,13 +100,32 @@ public class FileJobController extends AbstractJobController {
     }
   }
 
+  protected void deleteDirectoryAsync(final Identifier jobId) {
+    final File jobDirectory = getJobDirectory(jobId);
+    try {
+      this.deleteExecutor.execute(() -> deleteDirectory(jobId, jobDirectory));
+    } catch (final RejectedExecutionException e) {
+      deleteDirectory(jobId, jobDirectory);
+    }
+  }
+
   @Override
   public void deleteJob(final Identifier jobId) {
     try {
       super.deleteJob(jobId);
     } finally {
-      final File jobDirectory = getJobDirectory(jobId);
-      deleteDirectory(jobId, jobDirectory);
+      deleteDirectoryAsync(jobId);
+    }
+  }
+
+  @Override
+  public int deleteJobs(final List<Identifier> jobIds) {
+    try {
+      return super.deleteJobs(jobIds);
+    } finally {
+      for (final Identifier jobId : jobIds) {
+        deleteDirectoryAsync(jobId);
+      }
     }
   }
 
@@ -44,11 +44,26 @@ public interface JobController {
 
   String JOB_INPUTS = "jobInputs";
 
+  default void close() {
+  }
+
   default void deleteJob(final Identifier jobId) {
     final CpfDataAccessObject dataAccessObject = getDataAccessObject();
     dataAccessObject.deleteBatchJob(jobId);
   }
 
+  /**
+   * Delete the jobs and all their files. Implementations may delete any files
+   * outside of the database asynchronously.
+   *
+   * @param jobIds The job ids.
+   * @return The number of jobs deleted.
+   */
+  default int deleteJobs(final List<Identifier> jobIds) {
+    final CpfDataAccessObject dataAccessObject = getDataAccessObject();
+    return dataAccessObject.deleteBatchJobs(jobIds);
+  }
+
   CpfDataAccessObject getDataAccessObject();
 
   List<MapEx> getFiles(final Identifier jobId, final String path);
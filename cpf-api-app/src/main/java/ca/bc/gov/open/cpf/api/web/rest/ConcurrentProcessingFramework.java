@@ -16,9 +16,11 @@
 package ca.bc.gov.open.cpf.api.web.rest;
 
 import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.PushbackInputStream;
 import java.io.Writer;
 import java.net.URL;
 import java.sql.Date;
@@ -38,6 +40,7 @@ import java.util.ListIterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
@@ -74,7 +77,9 @@ import ca.bc.gov.open.cpf.api.domain.BatchJobStatus;
 import ca.bc.gov.open.cpf.api.domain.BatchJobStatusChange;
 import ca.bc.gov.open.cpf.api.domain.Common;
 import ca.bc.gov.open.cpf.api.domain.CpfDataAccessObject;
+import ca.bc.gov.open.cpf.api.scheduler.BatchJobJournal;
 import ca.bc.gov.open.cpf.api.scheduler.BatchJobService;
+import ca.bc.gov.open.cpf.api.scheduler.InstantModeRequest;
 import ca.bc.gov.open.cpf.api.scheduler.StatisticsService;
 import ca.bc.gov.open.cpf.api.web.builder.BatchJobResultUiBuilder;
 import ca.bc.gov.open.cpf.api.web.builder.BatchJobUiBuilder;
@@ -84,7 +89,7 @@ import ca.bc.gov.open.cpf.api.web.builder.ErrorsTableSerializer;
 import ca.bc.gov.open.cpf.api.web.controller.JobController;
 import ca.bc.gov.open.cpf.plugin.api.log.AppLog;
 import ca.bc.gov.open.cpf.plugin.impl.BusinessApplication;
-import ca.bc.gov.open.cpf.plugin.impl.PluginAdaptor;
+import ca.bc.gov.open.cpf.plugin.impl.geometry.WkbGeometryCodec;
 import ca.bc.gov.open.cpf.plugin.impl.log.AppLogUtil;
 
 import com.revolsys.collection.map.LinkedHashMapEx;
@@ -105,6 +110,7 @@ import com.revolsys.record.io.RecordWriterFactory;
 import com.revolsys.record.io.format.csv.Csv;
 import com.revolsys.record.io.format.json.Json;
 import com.revolsys.record.io.format.tsv.Tsv;
+import com.revolsys.record.query.Query;
 import com.revolsys.record.schema.FieldDefinition;
 import com.revolsys.record.schema.RecordDefinition;
 import com.revolsys.record.schema.RecordDefinitionImpl;
@@ -165,6 +171,7 @@ import com.revolsys.util.HtmlElem;
 import com.revolsys.util.Property;
 import com.revolsys.util.RsCoreDataTypes;
 import com.revolsys.util.Strings;
+import com.revolsys.util.UrlUtil;
 import com.vividsolutions.jts.geom.Geometry;
 
 /**
@@ -186,6 +193,40 @@ import com.vividsolutions.jts.geom.Geometry;
  */
 @Controller
 public class ConcurrentProcessingFramework {
+  /**
+   * Count the bytes written to the response so the size of cached instant mode results can be
+   * recorded in the statistics.
+   */
+  private static class CountingOutputStream extends FilterOutputStream {
+    private long count;
+
+    private CountingOutputStream(final OutputStream out) {
+      super(out);
+    }
+
+    public long getCount() {
+      return this.count;
+    }
+
+    @Override
+    public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+      this.out.write(bytes, offset, length);
+      this.count += length;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+      this.out.write(b);
+      this.count++;
+    }
+  }
+
+  /** The number of jobs in a page of the job lists if the limit parameter isn't specified. */
+  private static final int DEFAULT_JOB_PAGE_SIZE = 100;
+
+  /** The maximum number of jobs in a page of the job lists. */
+  private static final int MAX_JOB_PAGE_SIZE = 1000;
+
   private static PageInfo addPage(final PageInfo parent, final Object path, final String title) {
     final String url = MediaTypeUtil.getUrlWithExtension(path.toString());
     return parent.addPage(url, title);
@@ -276,6 +317,48 @@ public class ConcurrentProcessingFramework {
       Dates.format(DateFormat.DEFAULT, DateFormat.SHORT, timestamp));
   }
 
+  /**
+   * Add the status links for a page of the user's jobs. If the page is full the
+   * nextPageUrl attribute is set to the URL of the next page, with the request's other
+   * parameters.
+   */
+  private List<Record> addBatchJobStatusLinks(final PageInfo page, final String consumerKey,
+    final String businessApplicationName, final Integer limit, final Long afterBatchJobId) {
+    int pageSize;
+    if (limit == null || limit <= 0) {
+      pageSize = DEFAULT_JOB_PAGE_SIZE;
+    } else {
+      pageSize = Math.min(limit, MAX_JOB_PAGE_SIZE);
+    }
+    final List<Record> batchJobs = this.dataAccessObject.getBatchJobSummariesForUser(consumerKey,
+      businessApplicationName, afterBatchJobId, pageSize);
+    for (final Record job : batchJobs) {
+      addBatchJobStatusLink(page, job);
+    }
+    if (!batchJobs.isEmpty() && batchJobs.size() == pageSize) {
+      final Record lastJob = batchJobs.get(batchJobs.size() - 1);
+      final Identifier lastBatchJobId = lastJob.getIdentifier(BatchJob.BATCH_JOB_ID);
+      String url = HttpServletUtils.getFullRequestUrl();
+      final int queryIndex = url.indexOf('?');
+      if (queryIndex != -1) {
+        url = url.substring(0, queryIndex);
+      }
+      final Map<String, Object> parameters = new LinkedHashMap<>();
+      final HttpServletRequest request = HttpServletUtils.getRequest();
+      for (final Entry<String, String[]> parameter : request.getParameterMap().entrySet()) {
+        final String name = parameter.getKey();
+        final String[] values = parameter.getValue();
+        if (!"limit".equals(name) && !"after".equals(name) && values.length > 0) {
+          parameters.put(name, values[0]);
+        }
+      }
+      parameters.put("limit", pageSize);
+      parameters.put("after", lastBatchJobId.getLong(0));
+      page.setAttribute("nextPageUrl", UrlUtil.getUrl(url, parameters));
+    }
+    return batchJobs;
+  }
+
   private void addField(final Map<String, String> fieldSectionMap, final PanelGroup panelGroup,
     final String fieldName, final Element field, final String labelUrl, final String label,
     final String instructions) {
@@ -592,6 +675,12 @@ public class ConcurrentProcessingFramework {
    * <p>The service parameters must be passed
    *  using the multipart/form-data encoding in the body of a HTTP POST request (e.g. a HTML form).</p>
    *
+   * <p>Alternatively the input data can be sent as the body of the HTTP POST request with the
+   * Content-Type header set to the media type of the input data. The other parameters must
+   * then be passed in the query string. The body is streamed directly to the job input
+   * without being buffered, so the 20MB multi-part limit does not apply. Chunked transfer
+   * encoding is supported for data whose size is not known in advance.</p>
+   *
    * <p>In addition to the standard parameters listed in the API each business
    * application has additional job and request parameters. The
    * <a href= "#ca.bc.gov.open.cpf.api.web.rest.ConcurrentProcessingFramework.getBusinessApplicationsMultiple">Get Business Applications Multiple</a>
@@ -619,8 +708,8 @@ public class ConcurrentProcessingFramework {
    * in the same order.</p>
    *
    * <p class="note">NOTE: The maximum size including all parameters and protocol overhead of a
-   * multi-part request is 20MB. Therefore inputDataUrl should be used instead
-   * of inputData where possible.</p>
+   * multi-part request is 20MB. Therefore inputDataUrl or the request body should be used
+   * instead of inputData where possible.</p>
    *
    *
    * @param businessApplicationName The name of the business application.
@@ -707,10 +796,21 @@ public class ConcurrentProcessingFramework {
 
       batchJob.setValue(BatchJob.RESULT_DATA_CONTENT_TYPE, defaultResultDataContentType);
       String inputDataContentType = defaultInputDataContentType;
+      final InputStream inputDataBody;
+      try {
+        inputDataBody = getInputDataBody();
+      } catch (final IOException e) {
+        Logs.error(this, "Error reading request body", e);
+        return newErrorView("Error reading request body",
+          HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+      }
       final List<String> inputContentTypes = new ArrayList<>();
-      if (inputDataContentTypes == null) {
-      } else {
+      if (inputDataContentTypes != null) {
         inputContentTypes.addAll(Arrays.asList(inputDataContentTypes));
+      } else if (inputDataBody != null) {
+        inputContentTypes.add(HttpServletUtils.getRequest().getContentType());
+      }
+      if (!inputContentTypes.isEmpty()) {
         for (final ListIterator<String> iterator = inputContentTypes.listIterator(); iterator
           .hasNext();) {
           final String inputContentType = iterator.next();
@@ -767,7 +867,8 @@ public class ConcurrentProcessingFramework {
         inputDataUrls = cleanInputDataUrls(inputDataUrls);
         inputDataFiles = cleanInputDataFiles(inputDataFiles);
 
-        if (inputDataUrls.isEmpty() == inputDataFiles.isEmpty()) {
+        final boolean hasInputData = inputDataBody != null || !inputDataFiles.isEmpty();
+        if (inputDataUrls.isEmpty() != hasInputData) {
           final String inputDataMessage = "The inputData file or inputDataUrl parameter must be specified, but not both";
           if (inputDataUrls.isEmpty()) {
             parameterErrors.add(Arrays.asList("inputData", "[binary content]", inputDataMessage));
@@ -779,8 +880,11 @@ public class ConcurrentProcessingFramework {
           }
         } else if (businessApplication.isPerRequestInputData()) {
           if (parameterErrors.isEmpty()) {
-            batchJob.setValue(BatchJob.NUM_SUBMITTED_REQUESTS,
-              inputDataFiles.size() + inputDataUrls.size());
+            int numRequests = inputDataFiles.size() + inputDataUrls.size();
+            if (inputDataBody != null) {
+              numRequests++;
+            }
+            batchJob.setValue(BatchJob.NUM_SUBMITTED_REQUESTS, numRequests);
             this.dataAccessObject.write(batchJob.getRecord());
             final long time = System.currentTimeMillis();
             batchJob.setStatus(this.batchJobService, BatchJobStatus.SUBMITTED, time);
@@ -788,7 +892,12 @@ public class ConcurrentProcessingFramework {
             batchJob.setStatus(this.batchJobService, BatchJobStatus.PROCESSING, time + 2);
             batchJob.update();
             int requestSequenceNumber = 0;
-            if (inputDataUrls.isEmpty()) {
+            if (inputDataBody != null) {
+              final com.revolsys.spring.resource.Resource resource = new InputStreamResource("in",
+                inputDataBody);
+              this.jobController.setGroupInput(batchJobId, ++requestSequenceNumber,
+                inputDataContentType, resource);
+            } else if (inputDataUrls.isEmpty()) {
               for (final MultipartFile file : inputDataFiles) {
                 try (
                   final InputStream in = file.getInputStream()) {
@@ -807,8 +916,8 @@ public class ConcurrentProcessingFramework {
             this.batchJobService.scheduleJob(batchJob);
           }
         } else {
-          createStructuredJob(parameterErrors, batchJobId, batchJob, inputDataFiles, inputDataUrls,
-            inputDataContentType);
+          createStructuredJob(parameterErrors, batchJobId, batchJob, inputDataBody, inputDataFiles,
+            inputDataUrls, inputDataContentType);
         }
       } catch (final IOException e) {
         Logs.error(this, "Error creating job: ", e);
@@ -1038,7 +1147,7 @@ public class ConcurrentProcessingFramework {
               } else {
                 try {
                   BatchJobService.setStructuredInputDataValue(srid, inputData, fieldDefinition,
-                    value, true);
+                    value, true, this.batchJobService.getGeometryUrlResolver());
                 } catch (final IllegalArgumentException e) {
                   parameterErrors.add(Arrays.asList(parameterName, value, e.getMessage()));
                 }
@@ -1079,10 +1188,12 @@ public class ConcurrentProcessingFramework {
         } else {
           inputData.put(BusinessApplication.SEQUENCE_NUMBER, 1);
           final StringWriter writer = new StringWriter();
+          final RecordDefinition groupRecordDefinition = WkbGeometryCodec
+            .newEncodedRecordDefinition(requestRecordDefinition);
           try (
-            RecordWriter groupWriter = Tsv.newRecordWriter(requestRecordDefinition, writer, false,
+            RecordWriter groupWriter = Tsv.newRecordWriter(groupRecordDefinition, writer, false,
               false)) {
-            groupWriter.write(inputData);
+            groupWriter.write(WkbGeometryCodec.newEncodedRecord(groupRecordDefinition, inputData));
           }
           this.jobController.setGroupInput(batchJobId, 1, Tsv.MIME_TYPE, writer);
         }
@@ -1120,9 +1231,14 @@ public class ConcurrentProcessingFramework {
   }
 
   private boolean createStructuredJob(final List<List<String>> parameterErrors,
-    final Identifier batchJobId, final BatchJob batchJob, final List<MultipartFile> inputDataFiles,
-    final List<String> inputDataUrls, final String contentType) throws IOException {
-    if (!inputDataFiles.isEmpty()) {
+    final Identifier batchJobId, final BatchJob batchJob, final InputStream inputDataBody,
+    final List<MultipartFile> inputDataFiles, final List<String> inputDataUrls,
+    final String contentType) throws IOException {
+    if (inputDataBody != null) {
+      this.dataAccessObject.write(batchJob.getRecord());
+      final JobController jobController = this.batchJobService.getJobController();
+      jobController.newJobInputFile(batchJobId, contentType, inputDataBody);
+    } else if (!inputDataFiles.isEmpty()) {
       if (inputDataFiles.size() == 1) {
         this.dataAccessObject.write(batchJob.getRecord());
 
@@ -1512,6 +1628,11 @@ public class ConcurrentProcessingFramework {
    * @web.response.status 200 <p>The resource will be returned in the body of the HTTP response in the requested format.</p>
    * @web.response.status 403 <p>If the user does not have permission for this resource on the business application.</p>
    * @web.response.status 404 <p>If the business application does not exist, or is not enabled.</p>
+   * @web.response.status 503 <p>If the maximum number of concurrent and queued instant requests
+   * for the business application has been reached. The Retry-After header contains the number of
+   * seconds to wait before retrying the request.</p>
+   * @web.response.status 504 <p>If the result was not returned within the instant mode timeout
+   * for the business application.</p>
    */
   @RequestMapping(value = {
     "/ws/apps/{businessApplicationName}/instant",
@@ -1537,8 +1658,6 @@ public class ConcurrentProcessingFramework {
     if (businessApplication == null) {
       return null;
     } else {
-      final PluginAdaptor plugin = this.batchJobService
-        .getBusinessApplicationPlugin(businessApplication);
       CpfUiBuilder.checkPermission(businessApplication.getInstantModeExpression(),
         "No instant mode permission for " + businessApplication.getName());
 
@@ -1586,7 +1705,7 @@ public class ConcurrentProcessingFramework {
                 fieldDefinition.validate(value);
                 try {
                   BatchJobService.setStructuredInputDataValue(srid, requestParameters,
-                    fieldDefinition, value, true);
+                    fieldDefinition, value, true, this.batchJobService.getGeometryUrlResolver());
                 } catch (final IllegalArgumentException e) {
                   throw new IllegalArgumentException(
                     "Parameter value is not valid " + name + " " + value, e);
@@ -1597,9 +1716,6 @@ public class ConcurrentProcessingFramework {
             }
             final Map<String, Object> parameters = new LinkedHashMap<>(requestParameters);
             addTestParameters(businessApplication, parameters);
-            plugin.setParameters(parameters);
-            plugin.execute();
-            final List<Map<String, Object>> list = plugin.getResults();
             HttpServletUtils.setAttribute("contentDispositionFileName", businessApplicationName);
             final RecordDefinition resultRecordDefinition = businessApplication
               .getResultRecordDefinition();
@@ -1610,8 +1726,24 @@ public class ConcurrentProcessingFramework {
               HttpServletUtils.setAttribute(name, value);
             }
 
+            final HttpServletResponse response = HttpServletUtils.getResponse();
+            final InstantModeRequest instantModeRequest;
             try {
-              final HttpServletResponse response = HttpServletUtils.getResponse();
+              final String consumerKey = getConsumerKey();
+              instantModeRequest = this.batchJobService.getInstantModeExecutor()
+                .execute(businessApplication, consumerKey, parameters);
+            } catch (final RejectedExecutionException e) {
+              response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+              response.setHeader("Retry-After", "1");
+              return null;
+            }
+            try {
+              // Wait for the first result so plug-in errors are returned before the response starts
+              Map<String, Object> structuredResultMap = instantModeRequest.next();
+              if (instantModeRequest.isTimedOut()) {
+                response.setStatus(HttpServletResponse.SC_GATEWAY_TIMEOUT);
+                return null;
+              }
 
               final RecordWriterFactory writerFactory = IoFactory
                 .factoryByMediaType(RecordWriterFactory.class, format);
@@ -1625,8 +1757,9 @@ public class ConcurrentProcessingFramework {
                 response.setHeader("Content-Disposition", "attachment; filename=" + fileName);
               }
 
-              final OutputStreamResource resource = new OutputStreamResource("result",
+              final CountingOutputStream out = new CountingOutputStream(
                 response.getOutputStream());
+              final OutputStreamResource resource = new OutputStreamResource("result", out);
               final GeometryFactory geometryFactory = GeometryFactory.fixed(resultSrid,
                 resultNumAxis, resultScaleFactorXy, resultScaleFactorXy, resultScaleFactorZ);
               final RecordWriter writer = this.batchJobService.newStructuredResultWriter(resource,
@@ -1641,7 +1774,7 @@ public class ConcurrentProcessingFramework {
               int i = 1;
               final Map<String, Object> defaultProperties = new HashMap<>(writer.getProperties());
 
-              for (final Map<String, Object> structuredResultMap : list) {
+              while (structuredResultMap != null) {
                 final Record structuredResult = Records.newRecord(resultRecordDefinition,
                   structuredResultMap);
 
@@ -1660,12 +1793,24 @@ public class ConcurrentProcessingFramework {
                   writer.setProperties(defaultProperties);
                 }
                 i++;
-
+                structuredResultMap = instantModeRequest.next();
               }
               writer.close();
+              final Map<String, Object> statistics = new HashMap<>();
+              if (instantModeRequest.isCacheHit()) {
+                statistics.put("instantModeCacheHitsCount", 1);
+                statistics.put("instantModeCacheHitBytes", out.getCount());
+              } else if (instantModeRequest.isCacheMiss()) {
+                statistics.put("instantModeCacheMissesCount", 1);
+              }
+              if (!statistics.isEmpty()) {
+                this.statisticsService.addStatistics(businessApplication, statistics);
+              }
               return null;
             } catch (final IOException e) {
               return Exceptions.throwUncheckedException(e);
+            } finally {
+              instantModeRequest.close();
             }
           } else {
 
@@ -1727,7 +1872,13 @@ public class ConcurrentProcessingFramework {
    *   </table>
    * </div>
    *
+   * <p>The jobs are returned in descending job id order, at most limit jobs (default 100,
+   * maximum 1000) per page. If there may be more jobs the nextPageUrl attribute contains the URL
+   * of the next page.</p>
+   *
    * @param businessApplicationName The name of the business application.
+   * @param limit The maximum number of jobs to return.
+   * @param afterBatchJobId Return the jobs after the job with this id (from the previous page).
    * @return The resource.
    *
    * @web.response.status 200 <p>The resource will be returned in the body of the HTTP response in the requested format.</p>
@@ -1737,7 +1888,9 @@ public class ConcurrentProcessingFramework {
   }, method = RequestMethod.GET)
   @ResponseBody
   public Object getBusinessApplicationsJobs(
-    @PathVariable("businessApplicationName") final String businessApplicationName) {
+    @PathVariable("businessApplicationName") final String businessApplicationName,
+    @RequestParam(value = "limit", required = false) final Integer limit,
+    @RequestParam(value = "after", required = false) final Long afterBatchJobId) {
     final BusinessApplication businessApplication = this.batchJobUiBuilder
       .getBusinessApplication(businessApplicationName);
     if (businessApplication == null || !businessApplication.isEnabled()) {
@@ -1748,11 +1901,9 @@ public class ConcurrentProcessingFramework {
       ConcurrentProcessingFramework.checkPermission(businessApplication);
       if (HtmlUiBuilder.isDataTableCallback()) {
         final Map<String, Object> parameters = new HashMap<>();
-
-        final Map<String, Object> filter = new HashMap<>();
-        filter.put(BatchJob.USER_ID, consumerKey);
-        filter.put(BatchJob.BUSINESS_APPLICATION_NAME, businessApplicationName);
-        parameters.put("filter", filter);
+        final Query query = this.dataAccessObject.newBatchJobSummaryQuery(consumerKey,
+          businessApplicationName, null);
+        parameters.put("query", query);
 
         return this.batchJobUiBuilder.newDataTableMap("clientAppList", parameters);
       } else if (MediaTypeUtil.isHtmlPage()) {
@@ -1762,11 +1913,8 @@ public class ConcurrentProcessingFramework {
       } else {
         final String title = businessApplication.getTitle();
         final PageInfo page = newRootPageInfo(title + " Batch Jobs");
-        final List<Record> batchJobs = this.dataAccessObject
-          .getBatchJobsForUserAndApplication(consumerKey, businessApplicationName);
-        for (final Record job : batchJobs) {
-          addBatchJobStatusLink(page, job);
-        }
+        final List<Record> batchJobs = addBatchJobStatusLinks(page, consumerKey,
+          businessApplicationName, limit, afterBatchJobId);
         final Object table = this.batchJobUiBuilder.newDataTableHandler("clientList", batchJobs);
         if (table instanceof Element) {
           final Element element = (Element)table;
@@ -2566,6 +2714,35 @@ public class ConcurrentProcessingFramework {
     return container;
   }
 
+  /**
+   * Get the body of a POST request that contains the input data directly (i.e. not a
+   * multipart/form-data or form URL encoded request). A zero-length body is treated as no body
+   * so the inputDataUrl parameter is used.
+   *
+   * @return The input stream for the request body, or null if the input data was not sent as
+   * the request body.
+   */
+  private InputStream getInputDataBody() throws IOException {
+    final HttpServletRequest request = HttpServletUtils.getRequest();
+    if (request != null && "POST".equals(request.getMethod())) {
+      final String contentType = request.getContentType();
+      if (Property.hasValue(contentType)) {
+        final String mediaType = contentType.toLowerCase();
+        if (!mediaType.startsWith("multipart/")
+          && !mediaType.startsWith("application/x-www-form-urlencoded")
+          && request.getContentLengthLong() != 0) {
+          final PushbackInputStream in = new PushbackInputStream(request.getInputStream());
+          final int firstByte = in.read();
+          if (firstByte != -1) {
+            in.unread(firstByte);
+            return in;
+          }
+        }
+      }
+    }
+    return null;
+  }
+
   public String getInputMediaType(final BusinessApplication application, String inputContentType) {
     if (Property.hasValue(inputContentType)) {
       if (!inputContentType.contains("/")) {
@@ -2622,6 +2799,12 @@ public class ConcurrentProcessingFramework {
    *   </table>
    * </div>
    *
+   * <p>The jobs are returned in descending job id order, at most limit jobs (default 100,
+   * maximum 1000) per page. If there may be more jobs the nextPageUrl attribute contains the URL
+   * of the next page.</p>
+   *
+   * @param limit The maximum number of jobs to return.
+   * @param afterBatchJobId Return the jobs after the job with this id (from the previous page).
    * @return The resource.
    *
    * @web.response.status 200 <p>The resource will be returned in the body of the HTTP response in the requested format.</p>
@@ -2630,14 +2813,13 @@ public class ConcurrentProcessingFramework {
     "/ws/jobs"
   }, method = RequestMethod.GET)
   @ResponseBody
-  public Object getJobs() {
+  public Object getJobs(@RequestParam(value = "limit", required = false) final Integer limit,
+    @RequestParam(value = "after", required = false) final Long afterBatchJobId) {
     final String consumerKey = getConsumerKey();
     if (HtmlUiBuilder.isDataTableCallback()) {
       final Map<String, Object> parameters = new HashMap<>();
-
-      final Map<String, Object> filter = new HashMap<>();
-      filter.put(BatchJob.USER_ID, consumerKey);
-      parameters.put("filter", filter);
+      parameters.put("query",
+        this.dataAccessObject.newBatchJobSummaryQuery(consumerKey, null, null));
 
       return this.batchJobUiBuilder.newDataTableMap("clientList", parameters);
     } else if (MediaTypeUtil.isHtmlPage()) {
@@ -2649,10 +2831,7 @@ public class ConcurrentProcessingFramework {
       return null;
     } else {
       final PageInfo page = newRootPageInfo("Batch Jobs");
-      final List<Record> batchJobs = this.dataAccessObject.getBatchJobsForUser(consumerKey);
-      for (final Record job : batchJobs) {
-        addBatchJobStatusLink(page, job);
-      }
+      addBatchJobStatusLinks(page, consumerKey, null, limit, afterBatchJobId);
       return page;
     }
   }
@@ -2973,6 +3152,80 @@ public class ConcurrentProcessingFramework {
     }
   }
 
+  /**
+   * <p>Get the timeline of events for a user's job. The timeline includes each status change and
+   * the dispatch, completion and rescheduling of each group of requests. Events are recorded in
+   * the background so the most recent events may take a second or two to appear.</p>
+   *
+   * <div class="table-responsive">
+   *   <table class="table table-condensed table-striped tabled-bordered">
+   *     <caption>Event Fields</caption>
+   *     <thead>
+   *       <tr>
+   *         <th>Attribute</th>
+   *         <th>Description</th>
+   *       </tr>
+   *     </thead>
+   *     <tbody>
+   *       <tr>
+   *         <td>time</td>
+   *         <td>The time the event occurred.</td>
+   *       </tr>
+   *       <tr>
+   *         <td>event</td>
+   *         <td>The type of event jobStatus, groupDispatched, groupCompleted, groupRescheduled, jobCompleted.</td>
+   *       </tr>
+   *       <tr>
+   *         <td>value</td>
+   *         <td>The new job status or the group identifier.</td>
+   *       </tr>
+   *       <tr>
+   *         <td>who</td>
+   *         <td>The user that changed the status or the worker that executed the group.</td>
+   *       </tr>
+   *     </tbody>
+   *   </table>
+   * </div>
+   *
+   * @param batchJobId The unique identifier of the job.
+   * @return The resource.
+   *
+   * @web.response.status 200 <p>The resource will be returned in the body of the HTTP response in the requested format.</p>
+   */
+  @RequestMapping(value = {
+    "/ws/jobs/{batchJobId}/timeline"
+  }, method = RequestMethod.GET)
+  @ResponseBody
+  public Map<String, ? extends Object> getJobsTimeline(
+    @PathVariable("batchJobId") final Long batchJobId) {
+    final String consumerKey = getConsumerKey();
+    final Identifier batchJobIdentifier = Identifier.newIdentifier(batchJobId);
+    final BatchJob batchJob = this.batchJobService.getBatchJob(batchJobIdentifier, consumerKey);
+    if (batchJob == null) {
+      throw new PageNotFoundException("Batch Job " + batchJobIdentifier + " does not exist.");
+    } else {
+      final Timestamp whenCreated = batchJob.getValue(Common.WHEN_CREATED);
+      final Timestamp completedTimestamp = batchJob.getValue(BatchJob.COMPLETED_TIMESTAMP);
+      long toTime;
+      if (completedTimestamp == null) {
+        toTime = System.currentTimeMillis();
+      } else {
+        // Status changes such as the download are journaled after the job completes
+        toTime = completedTimestamp.getTime();
+        final Timestamp whenStatusChanged = batchJob.getValue(BatchJob.WHEN_STATUS_CHANGED);
+        if (whenStatusChanged != null) {
+          toTime = Math.max(toTime, whenStatusChanged.getTime());
+        }
+      }
+      final BatchJobJournal jobJournal = this.batchJobService.getJobJournal();
+      final MapEx map = new NamedLinkedHashMapEx("JobTimeline");
+      map.put("batchJobId", batchJobIdentifier);
+      map.put("events",
+        jobJournal.getTimeline(batchJobIdentifier, whenCreated.getTime(), toTime));
+      return map;
+    }
+  }
+
   private List<Map<String, Object>> getRequestAttributeList(
     final BusinessApplication businessApplication) {
     final List<Map<String, Object>> parameters = new ArrayList<>();
@@ -0,0 +1,141 @@
+/*
+ * Copyright © 2008-2016, Province of British Columbia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.bc.gov.open.cpf.api.web.service;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ca.bc.gov.open.cpf.plugin.impl.module.Module;
+
+import com.revolsys.util.Hex;
+import com.revolsys.util.UrlUtil;
+
+/**
+ * The SHA-256 digest and size of each jar of a started module. Workers use the manifest to
+ * only download the jars that are not already in their local content addressed jar cache,
+ * and the digest is used as the ETag when a jar is downloaded.
+ */
+public class ModuleJarManifest {
+  private final String moduleName;
+
+  private final long moduleTime;
+
+  private final List<String> digests = new ArrayList<>();
+
+  private final List<Long> sizes = new ArrayList<>();
+
+  public ModuleJarManifest(final Module module) {
+    this.moduleName = module.getName();
+    this.moduleTime = module.getStartedTime();
+    final List<URL> jarUrls = module.getJarUrls();
+    if (jarUrls != null) {
+      for (final URL url : jarUrls) {
+        String digest = null;
+        long size = 0;
+        try (
+          InputStream in = UrlUtil.getInputStream(url)) {
+          final MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+          final byte[] buffer = new byte[8192];
+          for (int count = in.read(buffer); count != -1; count = in.read(buffer)) {
+            messageDigest.update(buffer, 0, count);
+            size += count;
+          }
+          digest = Hex.toHex(messageDigest.digest());
+        } catch (final Throwable e) {
+          module.addModuleError("Error reading jar " + url, e);
+          size = 0;
+        }
+        this.digests.add(digest);
+        this.sizes.add(size);
+      }
+    }
+  }
+
+  /**
+   * Get the digest of the jar.
+   *
+   * @param jarIndex The index of the jar.
+   * @return The hex encoded SHA-256 digest or null if the jar could not be read.
+   */
+  public String getDigest(final int jarIndex) {
+    if (jarIndex >= 0 && jarIndex < this.digests.size()) {
+      return this.digests.get(jarIndex);
+    } else {
+      return null;
+    }
+  }
+
+  /**
+   * Get the ETag for the jar.
+   *
+   * @param jarIndex The index of the jar.
+   * @return The quoted digest or null if the jar could not be read.
+   */
+  public String getETag(final int jarIndex) {
+    final String digest = getDigest(jarIndex);
+    if (digest == null) {
+      return null;
+    } else {
+      return "\"" + digest + "\"";
+    }
+  }
+
+  public List<Map<String, Object>> getJars() {
+    final List<Map<String, Object>> jars = new ArrayList<>();
+    for (int i = 0; i < this.digests.size(); i++) {
+      final String digest = this.digests.get(i);
+      if (digest != null) {
+        final Map<String, Object> jar = new LinkedHashMap<>();
+        jar.put("index", i);
+        jar.put("sha256", digest);
+        jar.put("size", this.sizes.get(i));
+        jars.add(jar);
+      }
+    }
+    return Collections.unmodifiableList(jars);
+  }
+
+  public String getModuleName() {
+    return this.moduleName;
+  }
+
+  public long getModuleTime() {
+    return this.moduleTime;
+  }
+
+  public long getSize(final int jarIndex) {
+    if (jarIndex >= 0 && jarIndex < this.sizes.size()) {
+      return this.sizes.get(jarIndex);
+    } else {
+      return 0;
+    }
+  }
+
+  /**
+   * Check if the jar could be read so the manifest contains every jar of the module.
+   *
+   * @return True if all the jars were read.
+   */
+  public boolean isComplete() {
+    return !this.digests.contains(null);
+  }
+}
@@ -65,6 +65,7 @@ public class WorkerServerMessageHandler implements ModuleEventListener {
   private final Map<String, BiConsumer<MapEx, Worker>> messageHandlers = new LinkedHashMap<>();
 
   public WorkerServerMessageHandler() {
+    this.messageHandlers.put("executingGroupDelta", this::executingGroupDelta);
     this.messageHandlers.put("executingGroupIds", this::executingGroupIds);
     this.messageHandlers.put("failedGroupId", this::failedGroupId);
     this.messageHandlers.put("moduleConfigLoad", this::moduleConfigLoad);
@@ -86,10 +87,22 @@ public class WorkerServerMessageHandler implements ModuleEventListener {
     }
   }
 
+  @SuppressWarnings("unchecked")
+  private void executingGroupDelta(final MapEx message, final Worker worker) {
+    final List<String> startedGroupIds = (List<String>)message.get("startedGroupIds");
+    final List<String> finishedGroupIds = (List<String>)message.get("finishedGroupIds");
+    final Long sequence = message.getLong("sequence");
+    final String digest = message.getString("digest");
+    this.batchJobService.updateWorkerExecutingGroups(worker, startedGroupIds, finishedGroupIds,
+      sequence == null ? -1 : sequence, digest);
+  }
+
   private void executingGroupIds(final MapEx message, final Worker worker) {
     @SuppressWarnings("unchecked")
     final List<String> executingGroupIds = (List<String>)message.get("executingGroupIds");
-    this.batchJobService.updateWorkerExecutingGroups(worker, executingGroupIds);
+    final Long sequence = message.getLong("sequence");
+    this.batchJobService.updateWorkerExecutingGroups(worker, executingGroupIds,
+      sequence == null ? -1 : sequence);
   }
 
   private void failedGroupId(final MapEx message, final Worker worker) {
@@ -24,6 +24,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
@@ -44,6 +45,7 @@ import ca.bc.gov.open.cpf.api.domain.BatchJob;
 import ca.bc.gov.open.cpf.api.domain.CpfDataAccessObject;
 import ca.bc.gov.open.cpf.api.scheduler.BatchJobRequestExecutionGroup;
 import ca.bc.gov.open.cpf.api.scheduler.BatchJobService;
+import ca.bc.gov.open.cpf.api.scheduler.InstantModeExecutionGroup;
 import ca.bc.gov.open.cpf.api.scheduler.StatisticsService;
 import ca.bc.gov.open.cpf.api.scheduler.Worker;
 import ca.bc.gov.open.cpf.api.web.controller.JobController;
@@ -58,6 +60,7 @@ import com.revolsys.collection.range.RangeSet;
 import com.revolsys.io.FileUtil;
 import com.revolsys.record.Record;
 import com.revolsys.record.io.format.csv.Csv;
+import com.revolsys.record.io.format.json.Json;
 import com.revolsys.spring.resource.InputStreamResource;
 import com.revolsys.transaction.Transaction;
 import com.revolsys.ui.web.annotation.RequestMapping;
@@ -79,6 +82,9 @@ public class WorkerWebService {
   @Resource
   private StatisticsService statisticsService;
 
+  /** The jar manifest for the current start of each module. */
+  private final Map<String, ModuleJarManifest> jarManifestByModuleName = new ConcurrentHashMap<>();
+
   private void checkRunning() {
     if (!this.batchJobService.isRunning()) {
       throw new IllegalStateException("Application is not running");
@@ -90,6 +96,7 @@ public class WorkerWebService {
     this.batchJobService = null;
     this.dataAccessObject = null;
     this.jobController = null;
+    this.jarManifestByModuleName.clear();
   }
 
   @RequestMapping("/worker/workers/{workerId}/jobs/{batchJobId}/groups/{groupId}/inputData")
@@ -159,7 +166,8 @@ public class WorkerWebService {
         response.setContentType(Csv.MIME_TYPE);
         try (
           final OutputStream out = response.getOutputStream()) {
-          if (businessApplication.isPerRequestInputData()) {
+          if (businessApplication.isPerRequestInputData()
+            || group instanceof InstantModeExecutionGroup) {
             try (
               PrintWriter printWriter = new PrintWriter(out)) {
               printWriter.println(BusinessApplication.SEQUENCE_NUMBER);
@@ -198,6 +206,16 @@ public class WorkerWebService {
     } else {
       final URL url = module.getJarUrl(jarIndex);
       if (url != null) {
+        final ModuleJarManifest jarManifest = getJarManifest(module);
+        final String etag = jarManifest.getETag(jarIndex);
+        if (etag != null) {
+          response.setHeader("ETag", etag);
+          if (etag.equals(request.getHeader("If-None-Match"))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+          }
+          response.setContentLengthLong(jarManifest.getSize(jarIndex));
+        }
         try (
           final InputStream in = UrlUtil.getInputStream(url);
           final OutputStream out = response.getOutputStream()) {
@@ -210,6 +228,51 @@ public class WorkerWebService {
 
   }
 
+  /**
+   * Get the jar manifest for the module, reusing the previous manifest if the module has not
+   * been restarted.
+   */
+  private ModuleJarManifest getJarManifest(final Module module) {
+    final String moduleName = module.getName();
+    final long moduleTime = module.getStartedTime();
+    return this.jarManifestByModuleName.compute(moduleName, (name, jarManifest) -> {
+      if (jarManifest == null || jarManifest.getModuleTime() != moduleTime) {
+        return new ModuleJarManifest(module);
+      } else {
+        return jarManifest;
+      }
+    });
+  }
+
+  /**
+   * Get the SHA-256 digest and size of each of the module's jars so workers can only download
+   * the jars missing from their jar cache.
+   */
+  @RequestMapping(value = {
+    "/worker/modules/{moduleName}/{moduleTime}/jars"
+  }, method = RequestMethod.GET)
+  @ResponseBody
+  public Map<String, Object> getModuleJarManifest(final HttpServletRequest request,
+    final HttpServletResponse response, @PathVariable("moduleName") final String moduleName,
+    @PathVariable("moduleTime") final Long moduleTime) throws IOException {
+    checkRunning();
+    final Module module = this.batchJobService.getModule(moduleName);
+    if (module == null || !module.isStarted() || module.getStartedTime() != moduleTime) {
+      throw new PageNotFoundException();
+    } else {
+      final ModuleJarManifest jarManifest = getJarManifest(module);
+      if (jarManifest.isComplete()) {
+        final MapEx result = new NamedLinkedHashMapEx("ModuleJars");
+        result.put("moduleName", moduleName);
+        result.put("moduleTime", moduleTime);
+        result.put("jars", jarManifest.getJars());
+        return result;
+      } else {
+        throw new PageNotFoundException();
+      }
+    }
+  }
+
   @RequestMapping(value = {
     "/worker/modules/{moduleName}/{moduleTime}/urls"
   }, method = RequestMethod.GET)
@@ -252,8 +315,12 @@ public class WorkerWebService {
     if (group != null) {
       synchronized (group) {
         if (!group.isCancelled()) {
-          final int sequenceNumber = group.getSequenceNumber();
-          this.jobController.setGroupError(batchJobId, sequenceNumber, in);
+          if (group instanceof InstantModeExecutionGroup) {
+            ((InstantModeExecutionGroup)group).setErrors(in);
+          } else {
+            final int sequenceNumber = group.getSequenceNumber();
+            this.jobController.setGroupError(batchJobId, sequenceNumber, in);
+          }
         }
       }
     }
@@ -316,28 +383,38 @@ public class WorkerWebService {
     @RequestParam(value = "groupExecutedTime", defaultValue = "0") final Long groupExecutedTime, //
     @RequestParam(value = "applicationExecutedTime",
         defaultValue = "0") final Long applicationExecutedTime, //
+    @RequestParam(value = "stageTimes", defaultValue = "") final String stageTimesString, //
     final InputStream in) {
     checkRunning();
+    Map<String, Object> stageTimes = null;
+    if (Property.hasValue(stageTimesString)) {
+      stageTimes = Json.toObjectMap(stageTimesString);
+    }
     final Worker worker = this.batchJobService.getWorker(workerId);
     if (worker != null) {
       final BatchJobRequestExecutionGroup group = worker.removeExecutingGroup(groupId);
-      if (group != null && !group.isCancelled()) {
-        synchronized (group) {
+      if (group instanceof InstantModeExecutionGroup) {
+        postInstantModeExecutionGroupResults(workerId, (InstantModeExecutionGroup)group,
+          failedRequestRange, groupExecutedTime, applicationExecutedTime, stageTimes, in);
+      } else if (group != null && !group.isCancelled()) {
+        final BatchJobRequestExecutionGroup originalGroup = group.getOriginalGroup();
+        synchronized (originalGroup) {
           final BatchJob batchJob = group.getBatchJob();
-          if (!batchJob.isCompleted()) {
+          if (!batchJob.isCompleted() && group.acceptResult()) {
             final RangeSet completedRequests = batchJob.addCompletedRequests(completedRequestRange);
             final RangeSet failedRequests = batchJob.addFailedRequests(failedRequestRange);
             if (in != null) {
               this.batchJobService.updateBatchJobExecutionGroupFromResponse(worker, batchJob, group,
                 in);
             }
-            batchJob.removeGroup(group);
+            batchJob.removeGroup(originalGroup);
+            this.batchJobService.cancelOtherExecution(group);
             this.batchJobService.updateBatchJob(batchJob);
             final BusinessApplication businessApplication = group.getBusinessApplication();
             final String moduleName = businessApplication.getModuleName();
             final long executionTime = this.statisticsService.updateGroupStatistics(group,
               businessApplication, moduleName, applicationExecutedTime, groupExecutedTime,
-              completedRequests.size(), failedRequests.size());
+              completedRequests.size(), failedRequests.size(), stageTimes);
             final AppLog appLog = businessApplication.getLog();
             appLog.info("End\tGroup execution\tgroupId=" + groupId + "\tworkerId=" + workerId
               + "\ttime=" + executionTime / 1000.0);
@@ -347,6 +424,29 @@ public class WorkerWebService {
     }
   }
 
+  private void postInstantModeExecutionGroupResults(final String workerId,
+    final InstantModeExecutionGroup group, final String failedRequestRange,
+    final long groupExecutedTime, final long applicationExecutedTime,
+    final Map<String, Object> stageTimes, final InputStream in) {
+    synchronized (group) {
+      if (!group.isCancelled()) {
+        group.setResults(in);
+      }
+      int failedCount = 0;
+      if (Property.hasValue(failedRequestRange)) {
+        failedCount = 1;
+      }
+      final BusinessApplication businessApplication = group.getBusinessApplication();
+      final String moduleName = businessApplication.getModuleName();
+      final long executionTime = this.statisticsService.updateGroupStatistics(group,
+        businessApplication, moduleName, applicationExecutedTime, groupExecutedTime,
+        1 - failedCount, failedCount, stageTimes);
+      final AppLog appLog = businessApplication.getLog();
+      appLog.info("End\tInstant execution\tgroupId=" + group.getId() + "\tworkerId=" + workerId
+        + "\ttime=" + executionTime / 1000.0);
+    }
+  }
+
   @RequestMapping(value = "/worker/workers/{workerId}/{workerStartTime}/jobs/groups/nextId",
       method = RequestMethod.POST)
   @ResponseBody
@@ -355,13 +455,25 @@ public class WorkerWebService {
     @PathVariable("workerStartTime") final long workerStartTime, //
     @RequestParam(value = "moduleName", required = false) final List<String> moduleNames,
     @RequestParam(value = "maxMessageId", required = false,
-        defaultValue = "0") final int maxMessageId) {
+        defaultValue = "0") final int maxMessageId,
+    @RequestParam(value = "maxGroupCount", required = false,
+        defaultValue = "0") final int maxGroupCount, //
+    @RequestParam(value = "cpuCount", required = false, defaultValue = "0") final int cpuCount, //
+    @RequestParam(value = "freeMemory", required = false,
+        defaultValue = "0") final long freeMemory, //
+    @RequestParam(value = "maxMemory", required = false,
+        defaultValue = "0") final long maxMemory) {
     Map<String, Object> response = Collections.emptyMap();
     final BatchJobService batchJobService = this.batchJobService;
     if (batchJobService != null) {
       checkRunning();
       try {
         batchJobService.setWorkerConnectTime(workerId, workerStartTime);
+        final Worker worker = batchJobService.getWorker(workerId);
+        if (worker != null) {
+          worker.setMaxExecutingGroupCount(maxGroupCount);
+          worker.setCapacity(cpuCount, freeMemory, maxMemory);
+        }
         response = batchJobService.getNextBatchJobRequestExecutionGroup(workerId, maxMessageId,
           moduleNames);
       } catch (final Throwable e) {
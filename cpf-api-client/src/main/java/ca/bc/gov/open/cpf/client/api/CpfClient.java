@@ -16,27 +16,40 @@
 package ca.bc.gov.open.cpf.client.api;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 
 import javax.annotation.PreDestroy;
 
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.StatusLine;
+import org.apache.http.client.methods.HttpGet;
 import org.apache.http.util.EntityUtils;
 
 import ca.bc.gov.open.cpf.client.httpclient.CpfHttpClient;
 import ca.bc.gov.open.cpf.client.httpclient.CpfHttpClientPool;
 import ca.bc.gov.open.cpf.client.httpclient.HttpMultipartPost;
 import ca.bc.gov.open.cpf.client.httpclient.HttpStatusCodeException;
+import ca.bc.gov.open.cpf.client.httpclient.MapWriterEntity;
 
 import com.revolsys.collection.map.MapEx;
 import com.revolsys.io.BaseCloseable;
@@ -71,7 +84,9 @@ import com.revolsys.util.UrlUtil;
  * jobs will take a longer undetermined time to execute. Applications should use the
  * <a href="../../notificationCallback.html">notification callback</a> mechanism rather than polling the
  * server or if that is not possible something like the Java
- * <a href="http://docs.oracle.com/javase/7/docs/api/java/util/concurrent/ScheduledExecutorService.html">ScheduledExecutorService</a>.</p>
+ * <a href="http://docs.oracle.com/javase/7/docs/api/java/util/concurrent/ScheduledExecutorService.html">ScheduledExecutorService</a>.
+ * The {@link #getJobMonitor()} provides both of these and the asynchronous methods
+ * (e.g. {@link #awaitJobCompleted(String)}) that use it.</p>
  *
  * <pre class="prettyprint language-java">  String url = "https://apps.gov.bc.ca/pub/cpf";
   String consumerKey = "cpftest";
@@ -99,9 +114,20 @@ import com.revolsys.util.UrlUtil;
  * a .cpf file is provided in the shpz archive.</p>
  */
 public class CpfClient implements BaseCloseable {
+  /** The number of times a result file download is attempted, resuming after each failure. */
+  private static final int DOWNLOAD_ATTEMPTS = 3;
+
+  /**
+   * The maximum number of connections to the server, shared by the parallel result downloads and
+   * the asynchronous result processing. Each method holds at most one client at a time.
+   */
+  static final int MAX_CONNECTIONS = 10;
+
   /** DigestHttpClient using OAuth credentials */
   private CpfHttpClientPool httpClientPool;
 
+  private CpfJobMonitor jobMonitor;
+
   /**
    * <p>Construct a new CpfClient connected to the specified server using the
    * consumerKey and consumerSecret for authentication.</p>
@@ -122,7 +148,8 @@ public class CpfClient implements BaseCloseable {
    */
   public CpfClient(String url, final String consumerKey, final String consumerSecret) {
     url = url.replaceAll("(/ws)?/*$", "");
-    this.httpClientPool = new CpfHttpClientPool(url, consumerKey, consumerSecret, 1);
+    this.httpClientPool = new CpfHttpClientPool(url, consumerKey, consumerSecret,
+      MAX_CONNECTIONS);
   }
 
   private String addIntermediate(String resultUrl, final boolean intermediate) {
@@ -149,6 +176,25 @@ public class CpfClient implements BaseCloseable {
     }
   }
 
+  /**
+   * <p>Get a future that is completed with the <a href="../../jobStatus.html">job status</a> when
+   * the job's results have been created. The job status is checked by the
+   * {@link #getJobMonitor()} scheduler so no thread is blocked while waiting.</p>
+   *
+   * <pre class="prettyprint language-java">  try (CpfClient client = new CpfClient(url, consumerKey, consumerSecret)) {
+    client.awaitJobCompleted(jobId)
+      .thenAccept(status -&gt; System.out.println(status))
+      .join();
+  }</pre>
+   *
+   * @param jobIdUrl The job id URL.
+   * @return The future job status.
+   * @see CpfJobMonitor#awaitJobCompleted(String)
+   */
+  public CompletableFuture<Map<String, Object>> awaitJobCompleted(final String jobIdUrl) {
+    return getJobMonitor().awaitJobCompleted(jobIdUrl);
+  }
+
   /**
    * <p>Cancel the job
    * using the <a href="../rest-api/#ca.bc.gov.open.cpf.api.web.rest.ConcurrentProcessingFramework.cancelJob">Cancel Job</a> REST API.</p>
@@ -199,6 +245,12 @@ public class CpfClient implements BaseCloseable {
   @Override
   @PreDestroy
   public void close() {
+    synchronized (this) {
+      if (this.jobMonitor != null) {
+        this.jobMonitor.close();
+        this.jobMonitor = null;
+      }
+    }
     this.httpClientPool.close();
     this.httpClientPool = null;
   }
@@ -459,6 +511,80 @@ public class CpfClient implements BaseCloseable {
       inputDataContentType, resultContentType, Arrays.asList(inputDataUrls));
   }
 
+  /**
+   * <p>Construct a new new job on the CPF server for a business application that
+   * accepts <a href="../../structuredData.html">structured input data</a>
+   * using the <a href="../rest-api/#ca.bc.gov.open.cpf.api.web.rest.ConcurrentProcessingFramework.createJobWithMultipleRequests">Create Job With Multiple Requests</a> REST API.</p>
+   *
+   * <p>The content of the structured data is specified as an iterable of requests. Each request is
+   * specified as a map containing the request parameters. The requests are written to the
+   * body of the HTTP request as they are read from the iterable, so there is no limit on the
+   * number of requests and they are not all held in memory at once. A
+   * <code>java.util.stream.Stream</code> can be passed using <code>stream::iterator</code>
+   * if it is only read once; the iterable must be able to be read again if the server requests
+   * authentication.</p>
+   *
+   * <p>The following code fragment shows an example of using the API.</p>
+   *
+   * <pre class="prettyprint language-java">  String url = "https://apps.gov.bc.ca/pub/cpf";
+  String consumerKey = "cpftest";
+  String consumerSecret = "cpftest";
+  CpfClient client = new CpfClient(url, consumerKey, consumerSecret);
+  try {
+    Map&lt;String, Object&gt; jobParameters = new HashMap&lt;String, Object&gt;();
+    jobParameters.put("mapGridName", "BCGS 1:20 000");
+  
+    List&lt;Map&lt;String,?extends Object&gt;&gt; requests = new ArrayList&lt;Map&lt;String,?extends Object&gt;&gt;();
+    requests.add(Collections.singletonMap("mapTileId", "92j025"));
+    requests.add(Collections.singletonMap("mapTileId", "92j016"));
+  
+    String jobId = client.createJobWithStructuredMultipleRequestsIterable(
+      "MapTileByTileId", jobParameters, requests,"application/json");
+    try {
+      List&lt;Map&lt;String, Object&gt;&gt; results = client.getJobStructuredResults(
+        jobId, 5000);
+      for (Map&lt;String, Object&gt; result : results) {
+        System.out.println(result);
+      }
+    } finally {
+      client.closeJob(jobId);
+    }
+  } finally {
+    client.closeConnection();
+  }</pre>
+   *
+   * @param businessApplicationName The name of the web services business
+   * application.
+   * @param jobParameters A map of additional parameters specific to the
+   * requested Business Application.
+   * @param requests The data Maps of the requests.
+   * @param resultContentType The <a href="../../fileFormats.html">media type</a> of the result data.
+   * @return The job id (URL) of the created job.
+   */
+  public String createJobWithStructuredMultipleRequestsIterable(
+    final String businessApplicationName, final Map<String, ? extends Object> jobParameters,
+    final Iterable<? extends Map<String, ? extends Object>> requests,
+    final String resultContentType) {
+    final String inputDataType = Json.MIME_TYPE;
+    final CpfHttpClient httpClient = this.httpClientPool.getClient();
+    try {
+      final Map<String, Object> parameters = new LinkedHashMap<>();
+      if (jobParameters != null) {
+        parameters.putAll(jobParameters);
+      }
+      parameters.put("resultDataContentType", resultContentType);
+      parameters.put("inputDataContentType", inputDataType);
+      parameters.put("media", "application/json");
+      final String url = UrlUtil.getUrl(
+        httpClient.getUrl("/ws/apps/" + businessApplicationName + "/multiple/"), parameters);
+
+      final MapWriterEntity entity = new MapWriterEntity(requests, inputDataType);
+      return httpClient.postResourceRedirect(url, entity);
+    } finally {
+      this.httpClientPool.releaseClient(httpClient);
+    }
+  }
+
   /**
    * <p>Construct a new new job on the CPF server for a business application that
    * accepts <a href="../../structuredData.html">structured input data</a>
@@ -764,6 +890,140 @@ public class CpfClient implements BaseCloseable {
     }
   }
 
+  /**
+   * <p>Download all the result files for a job to a directory. The files are downloaded
+   * concurrently using up to threadCount connections. Each file is first written to a
+   * <code>.part</code> file which is renamed once the size of the downloaded data matches the
+   * size reported by the server. If a download is interrupted it is resumed from the end of the
+   * <code>.part</code> file using a HTTP Range request, both on retry and if this method is called
+   * again for the same directory. Files that were already downloaded are not downloaded
+   * again.</p>
+   *
+   * <p>The files are named result-<i>resultId</i>.<i>extension</i> where the extension is derived
+   * from the result's media type (e.g. result-1.png).</p>
+   *
+   * <pre class="prettyprint language-java">  try (CpfClient client = new CpfClient(url, consumerKey, consumerSecret)) {
+    List&lt;File&gt; files = client.downloadJobResultFiles(jobId, 10000, new File("results"), 4);
+  }</pre>
+   *
+   * @param jobIdUrl The job id URL.
+   * @param maxWait The maximum number of milliseconds to wait for the job to be completed.
+   * @param directory The directory to write the files to.
+   * @param threadCount The maximum number of files to download at the same time.
+   * @return The list of downloaded files in the same order as {@link #getJobResultFileList(String, long)}.
+   */
+  public List<File> downloadJobResultFiles(final String jobIdUrl, final long maxWait,
+    final File directory, final int threadCount) {
+    final List<Map<String, Object>> resultFiles = getJobResultFileList(jobIdUrl, maxWait);
+    directory.mkdirs();
+    final ExecutorService executor = Executors
+      .newFixedThreadPool(Math.max(1, Math.min(threadCount, MAX_CONNECTIONS)));
+    try {
+      final List<Future<File>> futures = new ArrayList<>();
+      for (final Map<String, Object> resultFile : resultFiles) {
+        futures.add(executor.submit(() -> downloadResultFile(resultFile, directory)));
+      }
+      final List<File> files = new ArrayList<>();
+      for (final Future<File> future : futures) {
+        try {
+          files.add(future.get());
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new RuntimeException("Interrupted downloading results for " + jobIdUrl, e);
+        } catch (final ExecutionException e) {
+          throw new RuntimeException("Unable to download results for " + jobIdUrl, e.getCause());
+        }
+      }
+      return files;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private File downloadResultFile(final Map<String, Object> resultFile, final File directory)
+    throws IOException {
+    final String resultUrl = (String)resultFile.get("resourceUri");
+    final String contentType = (String)resultFile.get("batchJobResultContentType");
+    final String fileName = getResultFileName(resultUrl, contentType);
+    final File file = new File(directory, fileName);
+    if (!file.exists()) {
+      final File partFile = new File(directory, fileName + ".part");
+      IOException lastException = null;
+      for (int attempt = 0; attempt < DOWNLOAD_ATTEMPTS; attempt++) {
+        try {
+          if (downloadResultFilePart(resultUrl, partFile)) {
+            if (!partFile.renameTo(file)) {
+              throw new IOException("Unable to rename " + partFile + " to " + file);
+            }
+            return file;
+          }
+        } catch (final IOException e) {
+          lastException = e;
+        }
+      }
+      if (lastException == null) {
+        throw new IOException("Downloaded size doesn't match the size of " + resultUrl);
+      } else {
+        throw lastException;
+      }
+    }
+    return file;
+  }
+
+  /**
+   * Download the remainder of the result file, appending to the part file.
+   *
+   * @param resultUrl The URL of the result file.
+   * @param partFile The partially downloaded file.
+   * @return True if the part file contains the complete result file.
+   * @throws IOException If the file could not be downloaded.
+   */
+  private boolean downloadResultFilePart(final String resultUrl, final File partFile)
+    throws IOException {
+    final CpfHttpClient httpClient = this.httpClientPool.getClient();
+    try {
+      final long offset = partFile.length();
+      final HttpGet request = new HttpGet(resultUrl);
+      if (offset > 0) {
+        request.addHeader("Range", "bytes=" + offset + "-");
+      }
+      final HttpResponse response = httpClient.execute(request);
+      final StatusLine statusLine = response.getStatusLine();
+      final int statusCode = statusLine.getStatusCode();
+      final HttpEntity entity = response.getEntity();
+      final long size;
+      final boolean append;
+      if (statusCode == HttpStatus.SC_OK) {
+        size = entity.getContentLength();
+        append = false;
+      } else if (statusCode == HttpStatus.SC_PARTIAL_CONTENT) {
+        final Header contentRange = response.getFirstHeader("Content-Range");
+        final String rangeValue = contentRange == null ? "" : contentRange.getValue();
+        if (!rangeValue.startsWith("bytes " + offset + "-")) {
+          // Not the requested range, download the whole file again
+          partFile.delete();
+          return false;
+        }
+        size = Long.parseLong(rangeValue.substring(rangeValue.lastIndexOf('/') + 1));
+        append = true;
+      } else if (statusCode == HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE) {
+        // The part file is larger than the result file, download the whole file again
+        partFile.delete();
+        return false;
+      } else {
+        throw new HttpStatusCodeException(statusCode, statusLine.getReasonPhrase());
+      }
+      try (
+        InputStream in = entity.getContent();
+        OutputStream out = new FileOutputStream(partFile, append)) {
+        in.transferTo(out);
+      }
+      return size < 0 || partFile.length() == size;
+    } finally {
+      this.httpClientPool.releaseClient(httpClient);
+    }
+  }
+
   /**
    * <p>Get the specification of the instant execution service for a business application
    * using the <a href="../rest-api/#ca.bc.gov.open.cpf.api.web.rest.ConcurrentProcessingFramework.getBusinessApplicationsInstant">Get Business Applications Instant</a> REST API.</p>
@@ -978,9 +1238,10 @@ public class CpfClient implements BaseCloseable {
     "unchecked", "rawtypes"
   })
   public List<Map<String, Object>> getJobErrorResults(final String jobIdUrl, final long maxWait) {
+    final List<Map<String, Object>> jobResultFileList = getJobResultFileList(jobIdUrl, maxWait);
     final CpfHttpClient httpClient = this.httpClientPool.getClient();
     try {
-      for (final Map<String, Object> resultFile : getJobResultFileList(jobIdUrl, maxWait)) {
+      for (final Map<String, Object> resultFile : jobResultFileList) {
         final String resultType = (String)resultFile.get("batchJobResultType");
         if ("errorResultData".equals(resultType)) {
           final String resultUrl = (String)resultFile.get("resourceUri");
@@ -1025,6 +1286,18 @@ public class CpfClient implements BaseCloseable {
     }
   }
 
+  /**
+   * Get the job monitor used to check the status of jobs without blocking the caller.
+   *
+   * @return The job monitor.
+   */
+  public synchronized CpfJobMonitor getJobMonitor() {
+    if (this.jobMonitor == null) {
+      this.jobMonitor = new CpfJobMonitor(this);
+    }
+    return this.jobMonitor;
+  }
+
   /**
    * <p>Get the list of result file descriptions for a completed job. See {@link #getJobResultFileList(String, long, boolean)}.
    *
@@ -1105,18 +1378,18 @@ public class CpfClient implements BaseCloseable {
   @SuppressWarnings("unchecked")
   public List<Map<String, Object>> getJobResultFileList(final String jobIdUrl, final long maxWait,
     final boolean intermediate) {
-    final CpfHttpClient httpClient = this.httpClientPool.getClient();
-    try {
-      if (intermediate || isJobCompleted(jobIdUrl, maxWait)) {
+    if (intermediate || isJobCompleted(jobIdUrl, maxWait)) {
+      final CpfHttpClient httpClient = this.httpClientPool.getClient();
+      try {
         final String resultsUrl = addIntermediate(jobIdUrl + "results/", intermediate);
         final Map<String, Object> jobResults = httpClient.getJsonResource(resultsUrl);
         return (List<Map<String, Object>>)jobResults.getOrDefault("resources",
           Collections.emptyList());
-      } else {
-        throw new IllegalStateException("Job results have not yet been created");
+      } finally {
+        this.httpClientPool.releaseClient(httpClient);
       }
-    } finally {
-      this.httpClientPool.releaseClient(httpClient);
+    } else {
+      throw new IllegalStateException("Job results have not yet been created");
     }
   }
 
@@ -1250,6 +1523,23 @@ public class CpfClient implements BaseCloseable {
     return results;
   }
 
+  private String getResultFileName(final String resultUrl, final String contentType) {
+    final String path = resultUrl.replaceAll("\\?.*", "").replaceAll("/+$", "");
+    final String resultId = path.substring(path.lastIndexOf('/') + 1);
+    String fileName = "result-" + resultId.replaceAll("[^A-Za-z0-9_-]", "_");
+    if (contentType != null) {
+      // e.g. image/png -> png, application/vnd.google-earth.kml+xml -> kml
+      String extension = contentType.replaceAll(";.*", "").trim();
+      extension = extension.substring(extension.indexOf('/') + 1);
+      extension = extension.replaceAll("\\+.*", "").replaceFirst("^x-", "");
+      extension = extension.substring(extension.lastIndexOf('.') + 1);
+      if (!extension.isEmpty()) {
+        fileName += "." + extension;
+      }
+    }
+    return fileName;
+  }
+
   /**
    * <p>Get the job id URLs for all the user's jobs using the
    * <a href="../rest-api/#ca.bc.gov.open.cpf.api.web.rest.ConcurrentProcessingFramework.getUsersJobs">Get Users Jobs</a> REST API.</p>
@@ -1481,13 +1771,26 @@ public class CpfClient implements BaseCloseable {
     return processJobErrorResults(jobIdUrl, maxWait, false, callback);
   }
 
+  /**
+   * <p>Process the error results for a job once it has completed. See
+   * {@link #processJobErrorResults(String, long, boolean,Callback)}.</p>
+   *
+   * @param jobIdUrl The job id (URL) of the job.
+   * @param callback The call back in the client application that will be called for each error record.
+   * @return The future number of error results processed.
+   */
+  public CompletableFuture<Integer> processJobErrorResultsAsync(final String jobIdUrl,
+    final Callback<Map<String, Object>> callback) {
+    return processJobResultsAsync(jobIdUrl, "errorResultData", callback);
+  }
+
   private int processJobResults(final String jobIdUrl, final long maxWait,
     final boolean intermediate, final String expectedResultType,
     final Callback<Map<String, Object>> callback) {
+    final List<Map<String, Object>> jobResultFileList = getJobResultFileList(jobIdUrl, maxWait,
+      intermediate);
     final CpfHttpClient httpClient = this.httpClientPool.getClient();
     try {
-      final List<Map<String, Object>> jobResultFileList = getJobResultFileList(jobIdUrl, maxWait,
-        intermediate);
       int i = 0;
       for (final Map<String, Object> resultFile : jobResultFileList) {
         final String resultType = (String)resultFile.get("batchJobResultType");
@@ -1509,6 +1812,15 @@ public class CpfClient implements BaseCloseable {
     }
   }
 
+  private CompletableFuture<Integer> processJobResultsAsync(final String jobIdUrl,
+    final String expectedResultType, final Callback<Map<String, Object>> callback) {
+    final CpfJobMonitor jobMonitor = getJobMonitor();
+    return jobMonitor.awaitJobCompleted(jobIdUrl)
+      .thenApplyAsync(
+        jobStatus -> processJobResults(jobIdUrl, 0, false, expectedResultType, callback),
+        jobMonitor.getResultExecutor());
+  }
+
   /**
    * <p>Process the list of structured data results for a job using the
    * using the <a href="../rest-api/#ca.bc.gov.open.cpf.api.web.rest.ConcurrentProcessingFramework.getUsersJobsResults">Get Users Job Results</a>  and
@@ -1571,6 +1883,29 @@ public class CpfClient implements BaseCloseable {
     return processJobStructuredResults(jobIdUrl, maxWait, false, callback);
   }
 
+  /**
+   * <p>Process the structured data results for a job once it has completed. The results are
+   * streamed to the callback on a background thread when the job monitor detects the job has
+   * completed. See {@link #processJobStructuredResults(String, long, boolean, Callback)}.</p>
+   *
+   * <pre class="prettyprint language-java">  try (CpfClient client = new CpfClient(url, consumerKey, consumerSecret)) {
+    CompletableFuture&lt;Integer&gt; future = client.submitJob(c -&gt; c.createJobWithStructuredSingleRequest(
+        "MapTileByTileId", parameters, "application/json"))
+      .thenCompose(jobId -&gt; client.processJobStructuredResultsAsync(jobId, result -&gt; {
+        System.out.println(result);
+      }));
+    System.out.println(future.join());
+  }</pre>
+   *
+   * @param jobIdUrl The job id (URL) of the job.
+   * @param callback The call back in the client application that will be called for each result record.
+   * @return The future number of results processed.
+   */
+  public CompletableFuture<Integer> processJobStructuredResultsAsync(final String jobIdUrl,
+    final Callback<Map<String, Object>> callback) {
+    return processJobResultsAsync(jobIdUrl, "structuredResultData", callback);
+  }
+
   /**
    * <p>Process the result file for a job using the
    * <a href="../rest-api/#ca.bc.gov.open.cpf.api.web.rest.ConcurrentProcessingFramework.getUsersJobsResult">Get Users Job Result</a> REST API.</p>
@@ -1639,4 +1974,18 @@ public class CpfClient implements BaseCloseable {
     }
   }
 
+  /**
+   * <p>Create a job on a background thread using any of the createJob methods of this client.</p>
+   *
+   * <pre class="prettyprint language-java">  CompletableFuture&lt;String&gt; jobId = client.submitJob(c -&gt; c.createJobWithStructuredSingleRequest(
+    "MapTileByTileId", parameters, "application/json"));</pre>
+   *
+   * @param createJob The function that creates the job and returns the job id URL.
+   * @return The future job id URL.
+   */
+  public CompletableFuture<String> submitJob(final Function<CpfClient, String> createJob) {
+    final CpfJobMonitor jobMonitor = getJobMonitor();
+    return CompletableFuture.supplyAsync(() -> createJob.apply(this),
+      jobMonitor.getResultExecutor());
+  }
 }
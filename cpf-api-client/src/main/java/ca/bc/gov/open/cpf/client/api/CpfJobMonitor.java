@@ -0,0 +1,310 @@
+/*
+ * Copyright © 2008-2016, Province of British Columbia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.bc.gov.open.cpf.client.api;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.jeometry.common.logging.Logs;
+
+import com.revolsys.io.BaseCloseable;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * <p>Track the completion of many jobs without a thread per job. All the outstanding jobs of a
+ * {@link CpfClient} are checked by a single scheduler thread. Each job's status is checked again
+ * after the <code>secondsToWaitForStatusCheck</code> returned by the server for that job.</p>
+ *
+ * <p>If the client can accept HTTP connections from the CPF server the polling can be replaced
+ * by <a href="../../notificationCallback.html">notification callbacks</a>. Call
+ * {@link #startNotificationListener(int)} and use the returned URL as the
+ * <code>notificationUrl</code> job parameter. When the server posts the notification the job's
+ * status is checked immediately. While the listener is running jobs are only polled every
+ * {@link #NOTIFICATION_POLL_SECONDS} seconds in case a notification is lost.</p>
+ *
+ * <p>The job monitor is created and closed by the {@link CpfClient}. Use
+ * {@link CpfClient#getJobMonitor()} to get the monitor.</p>
+ */
+public class CpfJobMonitor implements BaseCloseable {
+  private class MonitoredJob {
+    private final String jobIdUrl;
+
+    private final CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+
+    private ScheduledFuture<?> nextCheck;
+
+    /** True once the job has finished and the future's completion has been queued. */
+    private boolean finished;
+
+    private MonitoredJob(final String jobIdUrl) {
+      this.jobIdUrl = jobIdUrl;
+    }
+
+    /**
+     * Check the job status. This is only run on the scheduler thread and doesn't hold the lock
+     * on the job while waiting for the server.
+     */
+    private void checkStatus() {
+      if (!isFinished()) {
+        long delaySeconds = 0;
+        Runnable completion = null;
+        try {
+          final Map<String, Object> jobStatusMap = CpfJobMonitor.this.client
+            .getJobStatus(this.jobIdUrl);
+          final String jobStatus = (String)jobStatusMap.get("jobStatus");
+          if (jobStatusMap.isEmpty()) {
+            completion = () -> this.future
+              .completeExceptionally(new IllegalStateException("Job not found " + this.jobIdUrl));
+          } else if ("resultsCreated".equals(jobStatus)
+            || "downloadInitiated".equals(jobStatus)) {
+            completion = () -> this.future.complete(jobStatusMap);
+          } else if ("cancelled".equals(jobStatus)) {
+            completion = () -> this.future
+              .completeExceptionally(new IllegalStateException("Job cancelled " + this.jobIdUrl));
+          } else {
+            final Number secondsToWait = (Number)jobStatusMap.get("secondsToWaitForStatusCheck");
+            if (secondsToWait == null) {
+              delaySeconds = 1;
+            } else {
+              delaySeconds = Math.max(1, secondsToWait.longValue());
+            }
+          }
+        } catch (final Throwable e) {
+          Logs.debug(this, "Unable to get job status " + this.jobIdUrl + ": " + e);
+          delaySeconds = ERROR_RETRY_SECONDS;
+        }
+        if (completion == null) {
+          if (CpfJobMonitor.this.notificationServer != null) {
+            delaySeconds = Math.max(delaySeconds, NOTIFICATION_POLL_SECONDS);
+          }
+          schedule(delaySeconds);
+        } else {
+          finish(completion);
+        }
+      }
+    }
+
+    private synchronized void cancelNextCheck() {
+      if (this.nextCheck != null) {
+        this.nextCheck.cancel(false);
+        this.nextCheck = null;
+      }
+    }
+
+    /**
+     * Stop checking the job and complete the future on the result executor. The future's
+     * dependent actions then run on a result thread, not on the scheduler thread or while the
+     * lock on the job is held.
+     */
+    private void finish(final Runnable completion) {
+      synchronized (this) {
+        this.finished = true;
+        cancelNextCheck();
+      }
+      try {
+        CpfJobMonitor.this.resultExecutor.execute(completion);
+      } catch (final RejectedExecutionException e) {
+        // The monitor was closed
+        completion.run();
+      }
+    }
+
+    private synchronized boolean isFinished() {
+      return this.finished || this.future.isDone();
+    }
+
+    private synchronized void schedule(final long delaySeconds) {
+      if (!isFinished()) {
+        cancelNextCheck();
+        this.nextCheck = CpfJobMonitor.this.scheduler.schedule(this::checkStatus, delaySeconds,
+          TimeUnit.SECONDS);
+      }
+    }
+  }
+
+  /** The number of seconds to wait before retrying a job status check that failed. */
+  private static final long ERROR_RETRY_SECONDS = 10;
+
+  private static final Pattern JOB_ID_PATTERN = Pattern.compile("/jobs/(\\d+)/?(?:\\?.*)?$");
+
+  /** The number of seconds between status checks while notifications are being received. */
+  public static final long NOTIFICATION_POLL_SECONDS = 300;
+
+  private static final String NOTIFICATION_PATH = "/cpf/jobNotification";
+
+  private static String getBatchJobUrl(final String query) throws UnsupportedEncodingException {
+    if (query != null) {
+      for (final String parameter : query.split("&")) {
+        if (parameter.startsWith("batchJobUrl=")) {
+          return URLDecoder.decode(parameter.substring(12), "UTF-8");
+        }
+      }
+    }
+    return null;
+  }
+
+  private static String getJobId(final String jobUrl) {
+    final Matcher matcher = JOB_ID_PATTERN.matcher(jobUrl);
+    if (matcher.find()) {
+      return matcher.group(1);
+    } else {
+      return jobUrl;
+    }
+  }
+
+  private static ThreadFactory newThreadFactory(final String namePrefix) {
+    final AtomicInteger threadCount = new AtomicInteger();
+    return runnable -> {
+      final Thread thread = new Thread(runnable,
+        namePrefix + "-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  private final CpfClient client;
+
+  private final Map<String, MonitoredJob> jobsById = new ConcurrentHashMap<>();
+
+  private volatile HttpServer notificationServer;
+
+  /**
+   * Processes the job results, bounded below the client's connection pool size so the status
+   * checks can always get a connection.
+   */
+  private final ExecutorService resultExecutor = Executors.newFixedThreadPool(
+    CpfClient.MAX_CONNECTIONS - 1, newThreadFactory("cpfClient-results"));
+
+  private final ScheduledExecutorService scheduler = Executors
+    .newSingleThreadScheduledExecutor(newThreadFactory("cpfClient-jobMonitor"));
+
+  CpfJobMonitor(final CpfClient client) {
+    this.client = client;
+  }
+
+  /**
+   * Get a future that is completed with the <a href="../../jobStatus.html">job status</a> when
+   * the job's results have been created. The future is completed exceptionally if the job was
+   * cancelled or doesn't exist. Cancelling the returned future stops monitoring the job. The
+   * future is completed on one of the result threads, so dependent actions don't delay the
+   * status checks of other jobs.
+   *
+   * @param jobIdUrl The job id URL.
+   * @return The future job status.
+   */
+  public CompletableFuture<Map<String, Object>> awaitJobCompleted(final String jobIdUrl) {
+    final String jobId = getJobId(jobIdUrl);
+    final MonitoredJob job = this.jobsById.computeIfAbsent(jobId, id -> {
+      final MonitoredJob newJob = new MonitoredJob(jobIdUrl);
+      newJob.future.whenComplete((status, e) -> {
+        this.jobsById.remove(id, newJob);
+        newJob.cancelNextCheck();
+      });
+      newJob.schedule(0);
+      return newJob;
+    });
+    return job.future;
+  }
+
+  @Override
+  public synchronized void close() {
+    stopNotificationListener();
+    this.scheduler.shutdownNow();
+    this.resultExecutor.shutdownNow();
+    for (final MonitoredJob job : this.jobsById.values()) {
+      job.future.cancel(false);
+    }
+    this.jobsById.clear();
+  }
+
+  ExecutorService getResultExecutor() {
+    return this.resultExecutor;
+  }
+
+  private void handleNotification(final HttpExchange exchange) throws IOException {
+    try {
+      try (
+        InputStream in = exchange.getRequestBody()) {
+        in.transferTo(OutputStream.nullOutputStream());
+      }
+      final String batchJobUrl = getBatchJobUrl(exchange.getRequestURI().getRawQuery());
+      if (batchJobUrl != null) {
+        final MonitoredJob job = this.jobsById.get(getJobId(batchJobUrl));
+        if (job != null) {
+          job.schedule(0);
+        }
+      }
+      exchange.sendResponseHeaders(204, -1);
+    } finally {
+      exchange.close();
+    }
+  }
+
+  /**
+   * Start a HTTP listener that receives job completion notifications from the CPF server.
+   *
+   * @param port The port to listen on, or 0 to use any free port.
+   * @return The URL to use as the <code>notificationUrl</code> when creating a job.
+   * @throws IOException If the listener could not be started.
+   */
+  public synchronized String startNotificationListener(final int port) throws IOException {
+    if (this.notificationServer == null) {
+      final HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+      server.createContext(NOTIFICATION_PATH, this::handleNotification);
+      // Notifications are handled on the server thread so they aren't queued behind results
+      server.setExecutor(null);
+      server.start();
+      this.notificationServer = server;
+    }
+    final String hostName = InetAddress.getLocalHost().getCanonicalHostName();
+    return "http://" + hostName + ":" + this.notificationServer.getAddress().getPort()
+      + NOTIFICATION_PATH;
+  }
+
+  /**
+   * Stop the notification listener and go back to polling each job using the
+   * <code>secondsToWaitForStatusCheck</code> returned by the server.
+   */
+  public synchronized void stopNotificationListener() {
+    final HttpServer server = this.notificationServer;
+    if (server != null) {
+      this.notificationServer = null;
+      server.stop(0);
+      for (final MonitoredJob job : this.jobsById.values()) {
+        job.schedule(0);
+      }
+    }
+  }
+}
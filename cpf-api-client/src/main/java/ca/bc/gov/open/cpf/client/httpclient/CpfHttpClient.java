@@ -20,6 +20,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -39,10 +40,12 @@ import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.client.utils.URIUtils;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.FileEntity;
@@ -52,6 +55,7 @@ import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
 import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
 import org.apache.http.util.EntityUtils;
 import org.jeometry.common.exception.Exceptions;
 import org.jeometry.common.logging.Logs;
@@ -91,6 +95,9 @@ public class CpfHttpClient {
 
   private CloseableHttpClient httpClient;
 
+  /** The responses returned by this client, closed when the client is released to the pool. */
+  private final List<CloseableHttpResponse> responses = new ArrayList<>();
+
   public CpfHttpClient(final CpfHttpClientPool pool, final String serviceUrl, final String username,
     final String password) {
     this.pool = pool;
@@ -98,6 +105,12 @@ public class CpfHttpClient {
       this.context = new BasicHttpContext();
 
       final HttpClientBuilder clientBuilder = HttpClients.custom();
+      if (pool != null) {
+        this.context.setAttribute(HttpClientContext.AUTH_CACHE, pool.getAuthCache());
+        clientBuilder.setConnectionManager(pool.getConnectionManager());
+        clientBuilder.setConnectionManagerShared(true);
+        clientBuilder.setKeepAliveStrategy(pool);
+      }
       if (username != null) {
         final URI uri = new URI(serviceUrl);
         final String hostName = uri.getHost();
@@ -143,13 +156,43 @@ public class CpfHttpClient {
     this.pool.releaseClient(this);
   }
 
+  /**
+   * Close any responses that were not closed by the caller. A fully consumed response has
+   * already returned its connection to the pool; otherwise the connection is closed rather than
+   * reading the remainder of the response.
+   */
+  void closeResponses() {
+    synchronized (this.responses) {
+      for (final CloseableHttpResponse response : this.responses) {
+        try {
+          response.close();
+        } catch (final IOException e) {
+        }
+      }
+      this.responses.clear();
+    }
+  }
+
   public void deleteUrl(final String url) throws IOException, ClientProtocolException {
     final HttpDelete httpDelete = new HttpDelete(url);
-    final HttpResponse response = this.httpClient.execute(httpDelete, this.context);
+    final HttpResponse response = execute(httpDelete, this.context);
     final HttpEntity entity = response.getEntity();
     EntityUtils.consume(entity);
   }
 
+  public HttpResponse execute(final HttpUriRequest request) throws IOException {
+    return execute(request, this.context);
+  }
+
+  public HttpResponse execute(final HttpUriRequest request, final HttpContext context)
+    throws IOException {
+    final CloseableHttpResponse response = this.httpClient.execute(request, context);
+    synchronized (this.responses) {
+      this.responses.add(response);
+    }
+    return response;
+  }
+
   public CloseableHttpClient getHttpClient() {
     return this.httpClient;
   }
@@ -207,7 +250,7 @@ public class CpfHttpClient {
   public MapReader getMapReader(final String fileName, final String url) {
     try {
       final HttpGet request = new HttpGet(url);
-      final HttpResponse response = this.httpClient.execute(request, this.context);
+      final HttpResponse response = execute(request, this.context);
       final StatusLine statusLine = response.getStatusLine();
       final int httpStatusCode = statusLine.getStatusCode();
       final HttpEntity entity = response.getEntity();
@@ -234,10 +277,42 @@ public class CpfHttpClient {
     }
   }
 
+  @SuppressWarnings("deprecation")
+  private String getRedirectLocation(final String url, final HttpResponse response)
+    throws IOException {
+    try {
+      final StatusLine statusLine = response.getStatusLine();
+      final int statusCode = statusLine.getStatusCode();
+
+      if (statusCode >= HttpStatus.SC_BAD_REQUEST) {
+        final String statusMessage = statusLine.getReasonPhrase();
+        throw new RuntimeException(statusCode + " " + statusMessage);
+      } else if (statusCode == HttpStatus.SC_OK) {
+        final HttpEntity entity = response.getEntity();
+        try (
+          final InputStream in = entity.getContent()) {
+
+          final Map<String, Object> map = JsonParser.read(in);
+          return (String)map.get("id");
+        }
+      } else {
+        final Header[] header = response.getHeaders("Location");
+        if (header.length > 0) {
+          final String jobIdUrl = header[0].getValue();
+          return jobIdUrl;
+        } else {
+          throw new RuntimeException("Unable to get location header for " + url);
+        }
+      }
+    } finally {
+      response.getEntity().consumeContent();
+    }
+  }
+
   public HttpResponse getResource(final String url) {
     try {
       final HttpGet httpGet = new HttpGet(url);
-      final HttpResponse response = this.httpClient.execute(httpGet, this.context);
+      final HttpResponse response = execute(httpGet, this.context);
       return response;
     } catch (final Exception e) {
       return (HttpResponse)Exceptions.throwUncheckedException(e);
@@ -285,7 +360,7 @@ public class CpfHttpClient {
       final List<NameValuePair> parameters = Collections.emptyList();
       final UrlEncodedFormEntity entity = new UrlEncodedFormEntity(parameters);
       httpPost.setEntity(entity);
-      final HttpResponse response = this.httpClient.execute(httpPost, this.context);
+      final HttpResponse response = execute(httpPost, this.context);
       return response;
     } catch (final Throwable e) {
       return Exceptions.throwUncheckedException(e);
@@ -298,7 +373,7 @@ public class CpfHttpClient {
       final HttpPost httpPost = new HttpPost(url);
       final FileEntity entity = new FileEntity(file, ContentType.create(contentType));
       httpPost.setEntity(entity);
-      final HttpResponse response = this.httpClient.execute(httpPost, this.context);
+      final HttpResponse response = execute(httpPost, this.context);
       return response;
     } catch (final Throwable e) {
       return Exceptions.throwUncheckedException(e);
@@ -351,40 +426,34 @@ public class CpfHttpClient {
     }
   }
 
-  @SuppressWarnings("deprecation")
   public String postResourceRedirect(final String url) {
     try {
       final HttpResponse response = postResource(url);
-      try {
-        final StatusLine statusLine = response.getStatusLine();
-        final int statusCode = statusLine.getStatusCode();
-
-        if (statusCode >= HttpStatus.SC_BAD_REQUEST) {
-          final String statusMessage = statusLine.getReasonPhrase();
-          throw new RuntimeException(statusCode + " " + statusMessage);
-        } else if (statusCode == HttpStatus.SC_OK) {
-          final HttpEntity entity = response.getEntity();
-          try (
-            final InputStream in = entity.getContent()) {
-
-            final Map<String, Object> map = JsonParser.read(in);
-            return (String)map.get("id");
-          }
-        } else {
-          final Header[] header = response.getHeaders("Location");
-          if (header.length > 0) {
-            final String jobIdUrl = header[0].getValue();
-            return jobIdUrl;
-          } else {
-            throw new RuntimeException("Unable to get location header for " + url);
-          }
-        }
-      } finally {
-        response.getEntity().consumeContent();
-      }
+      return getRedirectLocation(url, response);
     } catch (final IOException e) {
       throw new RuntimeException("Unable to send POST request " + url, e);
     }
   }
 
+  /**
+   * Post the entity as the body of the request and return the redirect location. The request
+   * uses Expect: 100-continue so that a streamed entity isn't sent until the server has
+   * accepted the request (e.g. after an authentication challenge).
+   *
+   * @param url The URL to post to.
+   * @param entity The request body.
+   * @return The redirect location or id of the created resource.
+   */
+  public String postResourceRedirect(final String url, final HttpEntity entity) {
+    try {
+      final HttpPost httpPost = new HttpPost(url);
+      httpPost.addHeader("Accept", "application/json");
+      httpPost.addHeader("Expect", "100-continue");
+      httpPost.setEntity(entity);
+      final HttpResponse response = execute(httpPost);
+      return getRedirectLocation(url, response);
+    } catch (final IOException e) {
+      throw new RuntimeException("Unable to send POST request " + url, e);
+    }
+  }
 }
@@ -17,12 +17,43 @@ package ca.bc.gov.open.cpf.client.httpclient;
 
 import java.util.HashSet;
 import java.util.Set;
-
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HeaderElement;
+import org.apache.http.HeaderElementIterator;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.AuthCache;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.BasicAuthCache;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicHeaderElementIterator;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * A pool of {@link CpfHttpClient} instances that share a single pooling connection manager.
+ * Connections to the web service are kept alive between calls and reused by the next client
+ * instead of opening a new TCP/TLS connection for each call. Both the total number of
+ * connections and the number of connections to the web service host are limited to
+ * {@link #getMaxConnections()}. The clients also share an authentication cache so the
+ * challenge from the server is only answered once, rather than once for each client.
+ */
 @SuppressWarnings("javadoc")
-public class CpfHttpClientPool {
+public class CpfHttpClientPool implements ConnectionKeepAliveStrategy {
+
+  /** The time an idle connection is kept alive if the server doesn't specify a timeout. */
+  private static final long DEFAULT_KEEP_ALIVE_MILLIS = 30 * 1000;
+
+  /** Connections idle for longer than this are validated before they are reused. */
+  private static final int VALIDATE_AFTER_INACTIVITY_MILLIS = 2 * 1000;
+
+  /** The authentication schemes for the web service host, shared by all clients. */
+  private final AuthCache authCache = new BasicAuthCache();
 
   private Set<CpfHttpClient> clients = new HashSet<>();
 
+  private PoolingHttpClientConnectionManager connectionManager;
+
   private String consumerKey;
 
   private String consumerSecret;
@@ -45,14 +76,23 @@ public class CpfHttpClientPool {
   public void close() {
     synchronized (this.clients) {
       for (final CpfHttpClient client : this.clients) {
-        client.close();
+        client.closeResponses();
       }
       final Set<CpfHttpClient> oldClients = this.clients;
       this.clients = null;
       oldClients.notifyAll();
+      this.authCache.clear();
+      if (this.connectionManager != null) {
+        this.connectionManager.shutdown();
+        this.connectionManager = null;
+      }
     }
   }
 
+  protected AuthCache getAuthCache() {
+    return this.authCache;
+  }
+
   public CpfHttpClient getClient() {
     synchronized (this.clients) {
       while (this.clients != null && this.clients.size() >= this.maxConnections) {
@@ -64,13 +104,30 @@ public class CpfHttpClientPool {
       if (this.clients == null) {
         throw new IllegalStateException("Connection pool closed");
       } else {
+        final PoolingHttpClientConnectionManager connectionManager = getConnectionManager();
+        connectionManager.closeExpiredConnections();
         final CpfHttpClient client = new CpfHttpClient(this, this.webServiceUrl, this.consumerKey,
           this.consumerSecret);
+        this.clients.add(client);
         return client;
       }
     }
   }
 
+  protected PoolingHttpClientConnectionManager getConnectionManager() {
+    synchronized (this.clients) {
+      if (this.connectionManager == null) {
+        final PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(
+          DEFAULT_KEEP_ALIVE_MILLIS * 10, TimeUnit.MILLISECONDS);
+        connectionManager.setMaxTotal(this.maxConnections);
+        connectionManager.setDefaultMaxPerRoute(this.maxConnections);
+        connectionManager.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MILLIS);
+        this.connectionManager = connectionManager;
+      }
+      return this.connectionManager;
+    }
+  }
+
   public String getConsumerKey() {
     return this.consumerKey;
   }
@@ -79,6 +136,27 @@ public class CpfHttpClientPool {
     return this.consumerSecret;
   }
 
+  /**
+   * Keep connections alive for the time in the server's Keep-Alive timeout header or
+   * {@link #DEFAULT_KEEP_ALIVE_MILLIS} if the server doesn't send one.
+   */
+  @Override
+  public long getKeepAliveDuration(final HttpResponse response, final HttpContext context) {
+    final HeaderElementIterator iterator = new BasicHeaderElementIterator(
+      response.headerIterator(HTTP.CONN_KEEP_ALIVE));
+    while (iterator.hasNext()) {
+      final HeaderElement element = iterator.nextElement();
+      final String value = element.getValue();
+      if (value != null && "timeout".equalsIgnoreCase(element.getName())) {
+        try {
+          return Long.parseLong(value) * 1000;
+        } catch (final NumberFormatException e) {
+        }
+      }
+    }
+    return DEFAULT_KEEP_ALIVE_MILLIS;
+  }
+
   public int getMaxConnections() {
     return this.maxConnections;
   }
@@ -90,7 +168,7 @@ public class CpfHttpClientPool {
   public void releaseClient(final CpfHttpClient client) {
     synchronized (this.clients) {
       if (client != null) {
-        client.getHttpClient().getConnectionManager().shutdown();
+        client.closeResponses();
         if (this.clients != null) {
           this.clients.remove(client);
           this.clients.notifyAll();
@@ -110,6 +188,10 @@ public class CpfHttpClientPool {
   public void setMaxConnections(final int maxConnections) {
     synchronized (this.clients) {
       this.maxConnections = maxConnections;
+      if (this.connectionManager != null) {
+        this.connectionManager.setMaxTotal(maxConnections);
+        this.connectionManager.setDefaultMaxPerRoute(maxConnections);
+      }
       this.clients.notifyAll();
     }
   }
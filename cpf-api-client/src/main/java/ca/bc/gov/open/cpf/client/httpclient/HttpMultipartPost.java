@@ -122,7 +122,7 @@ public class HttpMultipartPost {
     this.httppost.setEntity(this.requestEntity);
 
     try {
-      this.response = this.httpclient.getHttpClient().execute(this.httppost, context);
+      this.response = this.httpclient.execute(this.httppost, context);
       statusCode = this.response.getStatusLine().getStatusCode();
       if (statusCode < HttpStatus.SC_BAD_REQUEST) {
         this.responseEntity = this.response.getEntity();
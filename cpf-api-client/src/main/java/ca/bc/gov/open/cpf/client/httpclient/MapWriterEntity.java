@@ -0,0 +1,100 @@
+/*
+ * Copyright © 2008-2016, Province of British Columbia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.bc.gov.open.cpf.client.httpclient;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+
+import org.apache.http.entity.AbstractHttpEntity;
+
+import com.revolsys.io.IoFactory;
+import com.revolsys.io.map.MapWriter;
+import com.revolsys.io.map.MapWriterFactory;
+
+/**
+ * A HTTP entity that writes each record from an {@link Iterable} to the request body as it is
+ * sent, using chunked transfer encoding. The records are never held in memory or written to a
+ * temporary file so there is no limit on the size of the data that can be sent.
+ */
+@SuppressWarnings("javadoc")
+public class MapWriterEntity extends AbstractHttpEntity {
+  private final Iterable<? extends Map<String, ? extends Object>> records;
+
+  private final MapWriterFactory writerFactory;
+
+  public MapWriterEntity(final Iterable<? extends Map<String, ? extends Object>> records,
+    final String contentType) {
+    this.records = records;
+    this.writerFactory = IoFactory.factoryByMediaType(MapWriterFactory.class, contentType);
+    if (this.writerFactory == null) {
+      throw new IllegalArgumentException("Unsupported media type " + contentType);
+    }
+    setContentType(contentType);
+    setChunked(true);
+  }
+
+  @Override
+  public InputStream getContent() {
+    throw new UnsupportedOperationException("Content can only be written using writeTo");
+  }
+
+  @Override
+  public long getContentLength() {
+    return -1;
+  }
+
+  /**
+   * The entity can be written again (e.g. after an authentication challenge) if the records
+   * {@link Iterable} returns a new iterator each time.
+   */
+  @Override
+  public boolean isRepeatable() {
+    return true;
+  }
+
+  @Override
+  public boolean isStreaming() {
+    return false;
+  }
+
+  @Override
+  public void writeTo(final OutputStream out) throws IOException {
+    // The HTTP client closes the output stream once the entity has been written
+    final OutputStream unclosableOut = new FilterOutputStream(out) {
+      @Override
+      public void close() throws IOException {
+        flush();
+      }
+
+      @Override
+      public void write(final byte[] bytes, final int offset, final int length)
+        throws IOException {
+        this.out.write(bytes, offset, length);
+      }
+    };
+    final MapWriter writer = this.writerFactory.newMapWriter(unclosableOut);
+    try {
+      for (final Map<String, ? extends Object> record : this.records) {
+        writer.write(record);
+      }
+    } finally {
+      writer.close();
+    }
+  }
+}
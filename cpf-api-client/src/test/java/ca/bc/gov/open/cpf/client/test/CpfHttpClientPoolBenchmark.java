@@ -0,0 +1,124 @@
+/*
+ * Copyright © 2008-2016, Province of British Columbia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.bc.gov.open.cpf.client.test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import ca.bc.gov.open.cpf.client.httpclient.CpfHttpClient;
+import ca.bc.gov.open.cpf.client.httpclient.CpfHttpClientPool;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Measure the calls per second of {@link CpfHttpClientPool} against a local stub server. The
+ * "new connection manager" run creates a pool per call, which is how every call behaved before
+ * the connection manager was shared. The "shared connection manager" run reuses a single pool
+ * and its kept alive connections.
+ *
+ * <pre>java ca.bc.gov.open.cpf.client.test.CpfHttpClientPoolBenchmark [threads] [calls]</pre>
+ */
+@SuppressWarnings("javadoc")
+public class CpfHttpClientPoolBenchmark {
+  private static final String consumerKey = "cpftest";
+
+  private static final String consumerSecret = "cpftest";
+
+  private static final byte[] RESPONSE = "{\"resourceUri\":\"/ws/\"}"
+    .getBytes(StandardCharsets.UTF_8);
+
+  private static double benchmark(final String name, final int threadCount, final int callCount,
+    final Supplier<CpfHttpClientPool> poolSupplier, final boolean closePool) throws Exception {
+    final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    try {
+      final long startTime = System.nanoTime();
+      final List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < threadCount; i++) {
+        futures.add(executor.submit(() -> {
+          for (int j = 0; j < callCount / threadCount; j++) {
+            final CpfHttpClientPool pool = poolSupplier.get();
+            final CpfHttpClient client = pool.getClient();
+            try {
+              client.getJsonResource(client.getUrl("/ws/"));
+            } finally {
+              pool.releaseClient(client);
+              if (closePool) {
+                pool.close();
+              }
+            }
+          }
+        }));
+      }
+      for (final Future<?> future : futures) {
+        future.get();
+      }
+      final double seconds = (System.nanoTime() - startTime) / 1e9;
+      final double callsPerSecond = callCount / seconds;
+      System.out.printf("%-28s %8.0f calls/sec%n", name, callsPerSecond);
+      return callsPerSecond;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  public static void main(final String[] args) throws Exception {
+    final int threadCount = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+    final int callCount = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+
+    final HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/ws/", exchange -> {
+      exchange.getResponseHeaders().add("Content-Type", "application/json");
+      exchange.sendResponseHeaders(200, RESPONSE.length);
+      try (
+        OutputStream out = exchange.getResponseBody()) {
+        out.write(RESPONSE);
+      }
+    });
+    server.setExecutor(Executors.newFixedThreadPool(threadCount));
+    server.start();
+    final String url = "http://localhost:" + server.getAddress().getPort();
+    try {
+      final CpfHttpClientPool sharedPool = new CpfHttpClientPool(url, consumerKey,
+        consumerSecret, threadCount);
+      try {
+        // Warm up both code paths before measuring
+        benchmark("warm up", threadCount, callCount / 10,
+          () -> new CpfHttpClientPool(url, consumerKey, consumerSecret, threadCount), true);
+        benchmark("warm up", threadCount, callCount / 10, () -> sharedPool, false);
+
+        final double before = benchmark("new connection manager", threadCount, callCount,
+          () -> new CpfHttpClientPool(url, consumerKey, consumerSecret, threadCount), true);
+        final double after = benchmark("shared connection manager", threadCount, callCount,
+          () -> sharedPool, false);
+        System.out.printf("%-28s %8.1fx%n", "speedup", after / before);
+      } finally {
+        sharedPool.close();
+      }
+    } catch (final IOException e) {
+      e.printStackTrace();
+    } finally {
+      server.stop(0);
+    }
+  }
+}
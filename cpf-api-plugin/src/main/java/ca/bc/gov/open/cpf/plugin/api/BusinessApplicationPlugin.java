@@ -61,6 +61,12 @@ import ca.bc.gov.open.cpf.plugin.api.BusinessApplicationPlugin;
   maxConcurrentRequests   = 10,
   batchModePermission     = "hasRoleRegex('DEMO_.*')")
   instantModePermission   = "hasRole('DEMO_USER')",
+  instantModeMaxConcurrentRequests = 10,
+  instantModeMaxQueuedRequests     = 10,
+  instantModeExecuteOnWorker       = true,
+  instantModeTimeout               = 30,
+  instantModeResultCacheSize       = 1000,
+  instantModeResultCacheTimeToLive = 3600,
   logLevel                = "INFO")
 public class Demo {
   :
@@ -103,6 +109,26 @@ public @interface BusinessApplicationPlugin {
    */
   String[] inputDataContentTypes() default {};
 
+  /**
+   * <p>Boolean flag indicating that instant mode requests will be sent to a worker for execution
+   * instead of being executed on the web server. The request is sent to the next available worker
+   * before any batch job execution groups.</p>
+   */
+  boolean instantModeExecuteOnWorker() default false;
+
+  /**
+   * <p>The maximum number of instant mode requests that will be executed at one time on the
+   * web server (or waiting for a worker) for this business application.</p>
+   */
+  int instantModeMaxConcurrentRequests() default 10;
+
+  /**
+   * <p>The maximum number of instant mode requests that will wait for one of the
+   * instantModeMaxConcurrentRequests to finish. Any further requests are rejected with a HTTP 503
+   * response and a Retry-After header.</p>
+   */
+  int instantModeMaxQueuedRequests() default 10;
+
   /**
    * <p>A <a href="http://static.springsource.org/spring-security/site/docs/3.0.x/reference/el-access.html">Spring security expression</a>
    * indicating if a user has permission to submit single request for instant execution.</p>
@@ -112,6 +138,26 @@ public @interface BusinessApplicationPlugin {
    */
   String instantModePermission() default "denyAll";
 
+  /**
+   * <p>The maximum number of instant mode results to cache for this business application. If
+   * enabled the results of a request with the same parameters as a previous request are returned
+   * from the cache without executing the plug-in. The cache is cleared when the module is
+   * restarted. Only enable this for plug-ins that always return the same results for the same
+   * parameters. Use 0 to disable the cache.</p>
+   */
+  int instantModeResultCacheSize() default 0;
+
+  /**
+   * <p>The time in seconds that instant mode results are kept in the cache.</p>
+   */
+  int instantModeResultCacheTimeToLive() default 3600;
+
+  /**
+   * <p>The maximum time in seconds to wait for the result of an instant mode request. If the
+   * time is exceeded a HTTP 504 response is returned. Use 0 to wait until the request finishes.</p>
+   */
+  int instantModeTimeout() default 60;
+
   /**
    * <p>The level of logging to include for requests processed by the plug-in.</p>
    *
@@ -17,10 +17,11 @@ package ca.bc.gov.open.cpf.plugin.api;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import ca.bc.gov.open.cpf.plugin.impl.geometry.GeometryFactoryKey;
 import ca.bc.gov.open.cpf.plugin.impl.geometry.JtsWktWriter;
 
 import com.vividsolutions.jts.geom.Coordinate;
@@ -49,7 +50,15 @@ public class GeometryFactory extends com.vividsolutions.jts.geom.GeometryFactory
   private static final long serialVersionUID = 1L;
 
   /** The cached geometry factories. */
-  private static Map<String, GeometryFactory> factories = new HashMap<>();
+  private static final Map<GeometryFactoryKey, GeometryFactory> factories = //
+    new ConcurrentHashMap<>();
+
+  /** The maximum number of cached revolsys factories, the scale factors are user supplied. */
+  private static final int MAX_REVOLSYS_FACTORIES = 1000;
+
+  /** The cached revolsys geometry factories. */
+  private static final Map<GeometryFactoryKey, com.revolsys.geometry.model.GeometryFactory> //
+  revolsysFactories = new ConcurrentHashMap<>();
 
   /**
    * <p>Get a GeometryFactory with no coordinate system, 3D axis (x, y &amp; z) and a floating precision model.</p>
@@ -158,15 +167,41 @@ public class GeometryFactory extends com.vividsolutions.jts.geom.GeometryFactory
    */
   public static GeometryFactory getFactory(final int srid, final int axisCount,
     final double scaleXy, final double scaleZ) {
-    synchronized (factories) {
-      final String key = srid + "-" + axisCount + "-" + scaleXy + "-" + scaleZ;
-      GeometryFactory factory = factories.get(key);
-      if (factory == null) {
-        factory = new GeometryFactory(srid, axisCount, scaleXy, scaleZ);
-        factories.put(key, factory);
+    final GeometryFactoryKey key = new GeometryFactoryKey(srid, axisCount, scaleXy, scaleZ);
+    GeometryFactory factory = factories.get(key);
+    if (factory == null) {
+      factory = factories.computeIfAbsent(key,
+        k -> new GeometryFactory(srid, axisCount, scaleXy, scaleZ));
+    }
+    return factory;
+  }
+
+  /**
+   * <p>Get a cached fixed precision revolsys GeometryFactory for plug-ins that use the
+   * <code>com.revolsys.geometry</code> geometries. A scale factor of 0 gives a floating
+   * precision model. Once the cache is full new combinations of the parameters aren't cached.</p>
+   *
+   * @param srid The <a href="http://spatialreference.org/ref/epsg/">EPSG coordinate system id</a>.
+   * @param axisCount The number of coordinate axis. 2 for 2D x &amp; y coordinates. 3 for 3D x, y &amp; z coordinates.
+   * @param scaleXy The scale factor used to round the x, y coordinates. The precision is 1 / scaleXy.
+   * @param scaleZ The scale factor used to round the z coordinates. The precision is 1 / scaleZ.
+   * @return The geometry factory.
+   */
+  public static com.revolsys.geometry.model.GeometryFactory getRevolsysFactory(final int srid,
+    final int axisCount, final double scaleXy, final double scaleZ) {
+    final GeometryFactoryKey key = new GeometryFactoryKey(srid, axisCount, scaleXy, scaleZ);
+    com.revolsys.geometry.model.GeometryFactory factory = revolsysFactories.get(key);
+    if (factory == null) {
+      if (revolsysFactories.size() < MAX_REVOLSYS_FACTORIES) {
+        factory = revolsysFactories.computeIfAbsent(key,
+          k -> com.revolsys.geometry.model.GeometryFactory.fixed(srid, axisCount, scaleXy,
+            scaleXy, scaleZ));
+      } else {
+        factory = com.revolsys.geometry.model.GeometryFactory.fixed(srid, axisCount, scaleXy,
+          scaleXy, scaleZ);
       }
-      return factory;
     }
+    return factory;
   }
 
   private static PrecisionModel getPrecisionModel(final double scaleXY) {
@@ -0,0 +1,51 @@
+/*
+ * Copyright © 2008-2016, Province of British Columbia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.bc.gov.open.cpf.plugin.api;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import ca.bc.gov.open.cpf.plugin.api.spatial.SpatialIndex;
+import ca.bc.gov.open.cpf.plugin.api.spatial.SpatialIndexFactory;
+import ca.bc.gov.open.cpf.plugin.api.spatial.SpatialIndexes;
+
+/**
+ * <p>The <code>SharedSpatialIndex</code> annotation can be used on a set method of a
+ * {@link BusinessApplicationPlugin} class to request read-only {@link SpatialIndex}es that are
+ * constructed once per module start and shared by all the requests executed by the module. This
+ * is much faster than re-calculating the same data for each request when a group contains
+ * thousands of requests against the same data.</p>
+ *
+ * <p>The method must have a single {@link SpatialIndexes} parameter. The CPF will invoke the
+ * method before the execute method. The indexes are created using the {@link SpatialIndexFactory}
+ * specified in the annotation. The method is not invoked if the plug-in is executed outside of a
+ * module so the plug-in must handle a null value.</p>
+ *
+ * <figure><pre class="prettyprint language-java">private SpatialIndexes&lt;MapTile&gt; mapTileIndexes;
+
+&#064;SharedSpatialIndex(MapTileIndexFactory.class)
+public void setMapTileIndexes(SpatialIndexes&lt;MapTile&gt; mapTileIndexes) {
+  this.mapTileIndexes = mapTileIndexes;
+}</pre></figure>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(value = ElementType.METHOD)
+public @interface SharedSpatialIndex {
+  /** The factory used to construct the spatial indexes. */
+  Class<? extends SpatialIndexFactory<?>> value();
+}
@@ -15,6 +15,8 @@
  */
 package ca.bc.gov.open.cpf.plugin.api.log;
 
+import java.util.Objects;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -41,6 +43,37 @@ public void setAppLog(final AppLog appLog) {
  *
  */
 public class AppLog {
+  /** The last AppLog returned by getAppLog for each thread. */
+  private static final ThreadLocal<AppLog> THREAD_APP_LOG = new ThreadLocal<>();
+
+  /**
+   * <p>Get an AppLog for the group, reusing the AppLog last returned to the current thread if it
+   * has the same name and logging level. This avoids creating a new logger and setting its level
+   * for each request in a group. It must be called on the thread that executes the group's
+   * requests for the plug-ins created on that thread to reuse the AppLog.</p>
+   *
+   * @param moduleName The module name.
+   * @param businessApplicationName The business application name.
+   * @param groupId The group or execution identifier.
+   * @param logLevel The logging level (ERROR, INFO, DEBUG).
+   * @return The AppLog.
+   */
+  public static AppLog getAppLog(final String moduleName, final String businessApplicationName,
+    final String groupId, final String logLevel) {
+    if (groupId == null || groupId.trim().length() == 0) {
+      return new AppLog(moduleName, businessApplicationName, groupId, logLevel);
+    } else {
+      final String name = getName(moduleName, businessApplicationName, groupId);
+      final AppLog appLog = THREAD_APP_LOG.get();
+      if (appLog != null && appLog.name.equals(name) && Objects.equals(appLog.logLevel, logLevel)) {
+        return appLog;
+      } else {
+        final AppLog newAppLog = new AppLog(name, logLevel);
+        THREAD_APP_LOG.set(newAppLog);
+        return newAppLog;
+      }
+    }
+  }
 
   private static String getName(final String moduleName, final String businessApplicationName,
     String groupId) {
@@ -54,6 +87,10 @@ public class AppLog {
   /** The logging level (ERROR, INFO, WARN, DEBUG). */
   private String logLevel = "ERROR";
 
+  private boolean infoEnabled;
+
+  private boolean debugEnabled;
+
   private final Logger log;
 
   private final String name;
@@ -79,11 +116,38 @@ public class AppLog {
    * @param message The message.
    */
   public void debug(final String message) {
-    if (isDebugEnabled()) {
+    if (this.debugEnabled) {
       this.log.debug(message);
     }
   }
 
+  /**
+   * <p>Record the debug message in the log if {@link #isDebugEnabled()} is true. The message is
+   * only created if it will be logged, the {} in the format is replaced by the argument.</p>
+   *
+   * @param format The message format.
+   * @param argument The argument.
+   */
+  public void debug(final String format, final Object argument) {
+    if (this.debugEnabled) {
+      this.log.debug(format, argument);
+    }
+  }
+
+  /**
+   * <p>Record the debug message in the log if {@link #isDebugEnabled()} is true. The message is
+   * only created if it will be logged, each {} in the format is replaced by the next argument.</p>
+   *
+   * @param format The message format.
+   * @param argument1 The first argument.
+   * @param argument2 The second argument.
+   */
+  public void debug(final String format, final Object argument1, final Object argument2) {
+    if (this.debugEnabled) {
+      this.log.debug(format, argument1, argument2);
+    }
+  }
+
   /**
    * <p>Record the error message in the log.</p>
    *
@@ -117,11 +181,38 @@ public class AppLog {
    * @param message The message.
    */
   public void info(final String message) {
-    if (isInfoEnabled()) {
+    if (this.infoEnabled) {
       this.log.info(message);
     }
   }
 
+  /**
+   * <p>Record the info message in the log if {@link #isInfoEnabled()} is true. The message is
+   * only created if it will be logged, the {} in the format is replaced by the argument.</p>
+   *
+   * @param format The message format.
+   * @param argument The argument.
+   */
+  public void info(final String format, final Object argument) {
+    if (this.infoEnabled) {
+      this.log.info(format, argument);
+    }
+  }
+
+  /**
+   * <p>Record the info message in the log if {@link #isInfoEnabled()} is true. The message is
+   * only created if it will be logged, each {} in the format is replaced by the next argument.</p>
+   *
+   * @param format The message format.
+   * @param argument1 The first argument.
+   * @param argument2 The second argument.
+   */
+  public void info(final String format, final Object argument1, final Object argument2) {
+    if (this.infoEnabled) {
+      this.log.info(format, argument1, argument2);
+    }
+  }
+
   /**
    * <p>Check to see if debug level logging is enabled. Use this in an if block around
    * logging operations that create large amounts of log data to prevent that data from being
@@ -130,7 +221,7 @@ public class AppLog {
    * @return True if debug level logging is enabled.
    */
   public boolean isDebugEnabled() {
-    return this.logLevel.equals("DEBUG");
+    return this.debugEnabled;
   }
 
   /**
@@ -141,7 +232,7 @@ public class AppLog {
    * @return True if info or debug level logging is enabled.
    */
   public boolean isInfoEnabled() {
-    return this.logLevel.equals("DEBUG") || this.logLevel.equals("INFO");
+    return this.infoEnabled;
   }
 
   /**
@@ -151,6 +242,8 @@ public class AppLog {
    */
   public void setLogLevel(final String level) {
     this.logLevel = level;
+    this.debugEnabled = "DEBUG".equals(level);
+    this.infoEnabled = this.debugEnabled || "INFO".equals(level);
     LogAppender.setLevel(this.name, level);
   }
 
@@ -0,0 +1,264 @@
+/*
+ * Copyright © 2008-2016, Province of British Columbia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.bc.gov.open.cpf.plugin.api.spatial;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import com.revolsys.geometry.model.BoundingBox;
+
+/**
+ * <p>An immutable in-memory spatial index of items with a rectangular extent. The index is bulk
+ * loaded using the Sort-Tile-Recursive (STR) algorithm so it can be built once (e.g. when a module
+ * is started) and then queried concurrently by any number of threads without locking.</p>
+ *
+ * <p>The items are sorted into vertical slices by the x of their centre and then within each
+ * slice by the y of their centre and packed into leaf nodes of {@link #NODE_CAPACITY} items. The
+ * higher levels of the tree group consecutive nodes of the level below.</p>
+ *
+ * @param <T> The type of item stored in the index.
+ */
+public final class SpatialIndex<T> {
+  /** The maximum number of children of each node. */
+  public static final int NODE_CAPACITY = 16;
+
+  private static final Object[] EMPTY_ITEMS = new Object[0];
+
+  private static final double[] EMPTY_BOUNDS = new double[0];
+
+  public static <V> SpatialIndex<V> empty() {
+    return new SpatialIndex<>(EMPTY_ITEMS, EMPTY_BOUNDS);
+  }
+
+  private static boolean intersects(final double[] bounds, final int index, final double minX,
+    final double minY, final double maxX, final double maxY) {
+    final int offset = index * 4;
+    return bounds[offset] <= maxX && bounds[offset + 1] <= maxY && bounds[offset + 2] >= minX
+      && bounds[offset + 3] >= minY;
+  }
+
+  /**
+   * Construct a new spatial index for the items.
+   *
+   * @param <V> The type of item stored in the index.
+   * @param items The items to index.
+   * @param boundingBoxFunction The function to get the bounding box of an item.
+   * @return The spatial index.
+   */
+  public static <V> SpatialIndex<V> newSpatialIndex(final Collection<? extends V> items,
+    final Function<? super V, BoundingBox> boundingBoxFunction) {
+    final int itemCount = items.size();
+    final Object[] unsortedItems = new Object[itemCount];
+    final double[] unsortedBounds = new double[itemCount * 4];
+    int i = 0;
+    for (final V item : items) {
+      final BoundingBox boundingBox = boundingBoxFunction.apply(item);
+      unsortedItems[i] = item;
+      final int offset = i * 4;
+      unsortedBounds[offset] = boundingBox.getMinX();
+      unsortedBounds[offset + 1] = boundingBox.getMinY();
+      unsortedBounds[offset + 2] = boundingBox.getMaxX();
+      unsortedBounds[offset + 3] = boundingBox.getMaxY();
+      i++;
+    }
+
+    final Integer[] order = new Integer[itemCount];
+    for (int index = 0; index < itemCount; index++) {
+      order[index] = index;
+    }
+    final Comparator<Integer> xComparator = Comparator.comparingDouble(
+      index -> unsortedBounds[index * 4] + unsortedBounds[index * 4 + 2]);
+    final Comparator<Integer> yComparator = Comparator.comparingDouble(
+      index -> unsortedBounds[index * 4 + 1] + unsortedBounds[index * 4 + 3]);
+    Arrays.sort(order, xComparator);
+    final int leafCount = (itemCount + NODE_CAPACITY - 1) / NODE_CAPACITY;
+    final int sliceCount = (int)Math.ceil(Math.sqrt(leafCount));
+    final int sliceSize = Math.max(1, sliceCount) * NODE_CAPACITY;
+    for (int start = 0; start < itemCount; start += sliceSize) {
+      Arrays.sort(order, start, Math.min(start + sliceSize, itemCount), yComparator);
+    }
+
+    final Object[] sortedItems = new Object[itemCount];
+    final double[] sortedBounds = new double[itemCount * 4];
+    for (int index = 0; index < itemCount; index++) {
+      final int itemIndex = order[index];
+      sortedItems[index] = unsortedItems[itemIndex];
+      System.arraycopy(unsortedBounds, itemIndex * 4, sortedBounds, index * 4, 4);
+    }
+    return new SpatialIndex<>(sortedItems, sortedBounds);
+  }
+
+  private final Object[] items;
+
+  private final double[] itemBounds;
+
+  /** The bounds of the nodes for each level, level 0 contains the leaf nodes. */
+  private final double[][] nodeBounds;
+
+  private SpatialIndex(final Object[] items, final double[] itemBounds) {
+    this.items = items;
+    this.itemBounds = itemBounds;
+    final List<double[]> levels = new ArrayList<>();
+    double[] childBounds = itemBounds;
+    int childCount = items.length;
+    while (childCount > 0 && (levels.isEmpty() || childCount > NODE_CAPACITY)) {
+      final int nodeCount = (childCount + NODE_CAPACITY - 1) / NODE_CAPACITY;
+      final double[] bounds = new double[nodeCount * 4];
+      for (int node = 0; node < nodeCount; node++) {
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        final int start = node * NODE_CAPACITY;
+        final int end = Math.min(start + NODE_CAPACITY, childCount);
+        for (int child = start; child < end; child++) {
+          final int offset = child * 4;
+          minX = Math.min(minX, childBounds[offset]);
+          minY = Math.min(minY, childBounds[offset + 1]);
+          maxX = Math.max(maxX, childBounds[offset + 2]);
+          maxY = Math.max(maxY, childBounds[offset + 3]);
+        }
+        final int offset = node * 4;
+        bounds[offset] = minX;
+        bounds[offset + 1] = minY;
+        bounds[offset + 2] = maxX;
+        bounds[offset + 3] = maxY;
+      }
+      levels.add(bounds);
+      childBounds = bounds;
+      childCount = nodeCount;
+    }
+    this.nodeBounds = levels.toArray(new double[levels.size()][]);
+  }
+
+  /**
+   * Find the first item whose extent contains the point and matches the filter.
+   *
+   * @param x The x coordinate.
+   * @param y The y coordinate.
+   * @param filter The filter the item must match.
+   * @return The item or null if there was no matching item.
+   */
+  @SuppressWarnings("unchecked")
+  public T find(final double x, final double y, final Predicate<? super T> filter) {
+    final Object[] found = new Object[1];
+    visit(x, y, x, y, item -> {
+      if (filter.test(item)) {
+        found[0] = item;
+        return false;
+      } else {
+        return true;
+      }
+    });
+    return (T)found[0];
+  }
+
+  /**
+   * Perform the action on each item whose extent intersects the query rectangle.
+   *
+   * @param minX The minimum x of the query rectangle.
+   * @param minY The minimum y of the query rectangle.
+   * @param maxX The maximum x of the query rectangle.
+   * @param maxY The maximum y of the query rectangle.
+   * @param action The action to perform.
+   */
+  public void forEach(final double minX, final double minY, final double maxX, final double maxY,
+    final Consumer<? super T> action) {
+    visit(minX, minY, maxX, maxY, item -> {
+      action.accept(item);
+      return true;
+    });
+  }
+
+  /**
+   * Get the items whose extent intersects the query rectangle.
+   *
+   * @param minX The minimum x of the query rectangle.
+   * @param minY The minimum y of the query rectangle.
+   * @param maxX The maximum x of the query rectangle.
+   * @param maxY The maximum y of the query rectangle.
+   * @return The items.
+   */
+  public List<T> getItems(final double minX, final double minY, final double maxX,
+    final double maxY) {
+    final List<T> items = new ArrayList<>();
+    forEach(minX, minY, maxX, maxY, items::add);
+    return items;
+  }
+
+  public boolean isEmpty() {
+    return this.items.length == 0;
+  }
+
+  public int size() {
+    return this.items.length;
+  }
+
+  @Override
+  public String toString() {
+    return "SpatialIndex(" + this.items.length + ")";
+  }
+
+  private boolean visit(final double minX, final double minY, final double maxX,
+    final double maxY, final Predicate<? super T> visitor) {
+    final int topLevel = this.nodeBounds.length - 1;
+    if (topLevel >= 0) {
+      final double[] topBounds = this.nodeBounds[topLevel];
+      final int nodeCount = topBounds.length / 4;
+      for (int node = 0; node < nodeCount; node++) {
+        if (intersects(topBounds, node, minX, minY, maxX, maxY)) {
+          if (!visitNode(topLevel, node, minX, minY, maxX, maxY, visitor)) {
+            return false;
+          }
+        }
+      }
+    }
+    return true;
+  }
+
+  @SuppressWarnings("unchecked")
+  private boolean visitNode(final int level, final int node, final double minX, final double minY,
+    final double maxX, final double maxY, final Predicate<? super T> visitor) {
+    final int start = node * NODE_CAPACITY;
+    if (level == 0) {
+      final int end = Math.min(start + NODE_CAPACITY, this.items.length);
+      for (int i = start; i < end; i++) {
+        if (intersects(this.itemBounds, i, minX, minY, maxX, maxY)) {
+          if (!visitor.test((T)this.items[i])) {
+            return false;
+          }
+        }
+      }
+    } else {
+      final double[] childBounds = this.nodeBounds[level - 1];
+      final int end = Math.min(start + NODE_CAPACITY, childBounds.length / 4);
+      for (int child = start; child < end; child++) {
+        if (intersects(childBounds, child, minX, minY, maxX, maxY)) {
+          if (!visitNode(level - 1, child, minX, minY, maxX, maxY, visitor)) {
+            return false;
+          }
+        }
+      }
+    }
+    return true;
+  }
+}
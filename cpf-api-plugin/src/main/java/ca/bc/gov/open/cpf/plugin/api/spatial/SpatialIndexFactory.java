@@ -0,0 +1,37 @@
+/*
+ * Copyright © 2008-2016, Province of British Columbia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.bc.gov.open.cpf.plugin.api.spatial;
+
+import ca.bc.gov.open.cpf.plugin.api.SharedSpatialIndex;
+
+/**
+ * <p>A factory used to construct the {@link SpatialIndex} for a {@link SharedSpatialIndex}. The
+ * factory must have a public no argument constructor.</p>
+ *
+ * <p>The factory is called at most once for each index name while a module is started. The
+ * index is then shared read-only by all the plug-in instances of the module.</p>
+ *
+ * @param <T> The type of item stored in the index.
+ */
+public interface SpatialIndexFactory<T> {
+  /**
+   * Construct a new spatial index.
+   *
+   * @param name The name of the index (e.g. the name of a map grid).
+   * @return The spatial index or null if there is no index for the name.
+   */
+  SpatialIndex<T> newSpatialIndex(String name);
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright © 2008-2016, Province of British Columbia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.bc.gov.open.cpf.plugin.api.spatial;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ca.bc.gov.open.cpf.plugin.api.SharedSpatialIndex;
+
+/**
+ * The module scoped spatial indexes for a {@link SharedSpatialIndex}. Each index is constructed
+ * by the {@link SpatialIndexFactory} the first time it is requested and is then shared by all
+ * the threads executing plug-ins in the module.
+ *
+ * @param <T> The type of item stored in the indexes.
+ */
+public class SpatialIndexes<T> {
+  private static final SpatialIndex<Object> NO_INDEX = SpatialIndex.empty();
+
+  private final SpatialIndexFactory<T> factory;
+
+  private final Map<String, SpatialIndex<?>> indexesByName = new ConcurrentHashMap<>();
+
+  public SpatialIndexes(final SpatialIndexFactory<T> factory) {
+    this.factory = factory;
+  }
+
+  /**
+   * Get the spatial index, constructing it if this is the first time it was requested.
+   *
+   * @param name The name of the index.
+   * @return The spatial index or null if there is no index for the name.
+   */
+  @SuppressWarnings("unchecked")
+  public SpatialIndex<T> getIndex(final String name) {
+    final SpatialIndex<?> index = this.indexesByName.computeIfAbsent(name, key -> {
+      final SpatialIndex<T> newIndex = this.factory.newSpatialIndex(key);
+      if (newIndex == null) {
+        return NO_INDEX;
+      } else {
+        return newIndex;
+      }
+    });
+    if (index == NO_INDEX) {
+      return null;
+    } else {
+      return (SpatialIndex<T>)index;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return this.factory.getClass().getName();
+  }
+}
@@ -153,6 +153,18 @@ public class BusinessApplication extends BaseObjectWithProperties
 
   private Expression instantModeExpression;
 
+  private boolean instantModeExecuteOnWorker;
+
+  private int instantModeMaxConcurrentRequests = 10;
+
+  private int instantModeMaxQueuedRequests = 10;
+
+  private int instantModeTimeout = 60;
+
+  private int instantModeResultCacheSize = 0;
+
+  private int instantModeResultCacheTimeToLive = 3600;
+
   private String instantModePermission;
 
   private AppLog log;
@@ -218,6 +230,9 @@ public class BusinessApplication extends BaseObjectWithProperties
 
   private boolean securityServiceRequired;
 
+  /** The set methods with the SharedSpatialIndex annotation. */
+  private final List<Method> sharedSpatialIndexMethods = new ArrayList<>();
+
   private boolean testModeEnabled = false;
 
   /**
@@ -455,6 +470,10 @@ public class BusinessApplication extends BaseObjectWithProperties
     }
   }
 
+  public void addSharedSpatialIndexMethod(final Method method) {
+    this.sharedSpatialIndexMethods.add(method);
+  }
+
   /**
    * Compare the business applications, return in alphabetical order (ignoring
    * case), followed by versions with the lowest version number first.
@@ -551,6 +570,26 @@ public class BusinessApplication extends BaseObjectWithProperties
     return this.instantModeExpression;
   }
 
+  public int getInstantModeMaxConcurrentRequests() {
+    return this.instantModeMaxConcurrentRequests;
+  }
+
+  public int getInstantModeMaxQueuedRequests() {
+    return this.instantModeMaxQueuedRequests;
+  }
+
+  public int getInstantModeResultCacheSize() {
+    return this.instantModeResultCacheSize;
+  }
+
+  public int getInstantModeResultCacheTimeToLive() {
+    return this.instantModeResultCacheTimeToLive;
+  }
+
+  public int getInstantModeTimeout() {
+    return this.instantModeTimeout;
+  }
+
   public String getInstantModePermission() {
     return this.instantModePermission;
   }
@@ -708,6 +747,10 @@ public class BusinessApplication extends BaseObjectWithProperties
     return this.resultRecordDefinition;
   }
 
+  public List<Method> getSharedSpatialIndexMethods() {
+    return this.sharedSpatialIndexMethods;
+  }
+
   public String getTitle() {
     if (this.title == null && this.name != null) {
       this.title = CaseConverter.toCapitalizedWords(this.name);
@@ -769,6 +812,10 @@ public class BusinessApplication extends BaseObjectWithProperties
     return this.inputDataContentTypes.contains(contentType);
   }
 
+  public boolean isInstantModeExecuteOnWorker() {
+    return this.instantModeExecuteOnWorker;
+  }
+
   public boolean isJobParameter(final String fieldName) {
     final FieldDefinition attribute = this.requestRecordDefinition.getField(fieldName);
     if (attribute == null) {
@@ -954,6 +1001,18 @@ public class BusinessApplication extends BaseObjectWithProperties
     this.id = id;
   }
 
+  public void setInstantModeExecuteOnWorker(final boolean instantModeExecuteOnWorker) {
+    this.instantModeExecuteOnWorker = instantModeExecuteOnWorker;
+  }
+
+  public void setInstantModeMaxConcurrentRequests(final int instantModeMaxConcurrentRequests) {
+    this.instantModeMaxConcurrentRequests = instantModeMaxConcurrentRequests;
+  }
+
+  public void setInstantModeMaxQueuedRequests(final int instantModeMaxQueuedRequests) {
+    this.instantModeMaxQueuedRequests = instantModeMaxQueuedRequests;
+  }
+
   public void setInstantModePermission(final String instantModePermission) {
     if (Property.hasValue(instantModePermission)) {
       this.instantModePermission = instantModePermission;
@@ -964,6 +1023,18 @@ public class BusinessApplication extends BaseObjectWithProperties
       .parseExpression(this.instantModePermission);
   }
 
+  public void setInstantModeResultCacheSize(final int instantModeResultCacheSize) {
+    this.instantModeResultCacheSize = instantModeResultCacheSize;
+  }
+
+  public void setInstantModeResultCacheTimeToLive(final int instantModeResultCacheTimeToLive) {
+    this.instantModeResultCacheTimeToLive = instantModeResultCacheTimeToLive;
+  }
+
+  public void setInstantModeTimeout(final int instantModeTimeout) {
+    this.instantModeTimeout = instantModeTimeout;
+  }
+
   public void setLogLevel(final String level) {
     this.log.setLogLevel(level);
     final String moduleName = getModuleName();
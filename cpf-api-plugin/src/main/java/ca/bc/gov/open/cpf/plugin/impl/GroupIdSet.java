@@ -0,0 +1,126 @@
+/*
+ * Copyright © 2008-2016, Province of British Columbia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.bc.gov.open.cpf.plugin.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The set of group identifiers executing on a worker with an order independent digest of the
+ * identifiers. The digest is updated as identifiers are added and removed, so the worker and the
+ * server can check that their copies of the set are the same by comparing the digests instead of
+ * the identifiers. The set is not synchronized.
+ */
+public class GroupIdSet {
+  private static long hash(final String groupId) {
+    // 64 bit FNV-1a followed by the MurmurHash3 finalizer to spread the bits
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < groupId.length(); i++) {
+      hash ^= groupId.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+
+  private final Set<String> groupIds = new LinkedHashSet<>();
+
+  private long digest;
+
+  public GroupIdSet() {
+  }
+
+  public GroupIdSet(final Collection<String> groupIds) {
+    addAll(groupIds);
+  }
+
+  public boolean add(final String groupId) {
+    if (groupId != null && this.groupIds.add(groupId)) {
+      this.digest += hash(groupId);
+      return true;
+    } else {
+      return false;
+    }
+  }
+
+  public void addAll(final Collection<String> groupIds) {
+    if (groupIds != null) {
+      for (final String groupId : groupIds) {
+        add(groupId);
+      }
+    }
+  }
+
+  public void clear() {
+    this.groupIds.clear();
+    this.digest = 0;
+  }
+
+  public boolean contains(final String groupId) {
+    return this.groupIds.contains(groupId);
+  }
+
+  /**
+   * Get the digest of the group identifiers as a hex string so it can be sent in a JSON message
+   * without losing precision.
+   *
+   * @return The digest.
+   */
+  public String getDigest() {
+    return Long.toHexString(this.digest);
+  }
+
+  public boolean isEmpty() {
+    return this.groupIds.isEmpty();
+  }
+
+  public boolean remove(final String groupId) {
+    if (groupId != null && this.groupIds.remove(groupId)) {
+      this.digest -= hash(groupId);
+      return true;
+    } else {
+      return false;
+    }
+  }
+
+  public void removeAll(final Collection<String> groupIds) {
+    if (groupIds != null) {
+      for (final String groupId : groupIds) {
+        remove(groupId);
+      }
+    }
+  }
+
+  public int size() {
+    return this.groupIds.size();
+  }
+
+  public List<String> toList() {
+    return new ArrayList<>(this.groupIds);
+  }
+
+  @Override
+  public String toString() {
+    return this.groupIds.toString();
+  }
+}
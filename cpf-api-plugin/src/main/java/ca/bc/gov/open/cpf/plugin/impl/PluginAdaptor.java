@@ -32,6 +32,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.function.Consumer;
 
 import org.apache.commons.beanutils.BeanUtils;
 import org.jeometry.common.exception.Exceptions;
@@ -41,6 +42,7 @@ import org.jeometry.coordinatesystem.model.systems.EpsgId;
 
 import ca.bc.gov.open.cpf.plugin.api.log.AppLog;
 import ca.bc.gov.open.cpf.plugin.api.security.SecurityService;
+import ca.bc.gov.open.cpf.plugin.impl.geometry.GeometryConverter;
 
 import com.revolsys.collection.map.Maps;
 import com.revolsys.geometry.model.BoundingBox;
@@ -212,8 +214,8 @@ public class PluginAdaptor {
     if (!Property.hasValue(logLevel)) {
       executionId = String.valueOf(System.currentTimeMillis());
     }
-    this.appLog = new AppLog(application.getModuleName(), application.getName(), executionId,
-      logLevel);
+    this.appLog = AppLog.getAppLog(application.getModuleName(), application.getName(),
+      executionId, logLevel);
     try {
       final Class<? extends Object> pluginClass = plugin.getClass();
       final Method setAppLogMethod = pluginClass.getMethod("setAppLog", AppLog.class);
@@ -232,8 +234,18 @@ public class PluginAdaptor {
     this.testParameters.put(name, value);
   }
 
-  @SuppressWarnings("unchecked")
   public void execute() {
+    execute(this.results::add);
+  }
+
+  /**
+   * Execute the plugin, passing each result to the consumer as soon as it has been converted
+   * rather than collecting all of the results into {@link #getResults()}.
+   *
+   * @param resultConsumer The consumer for the results.
+   */
+  @SuppressWarnings("unchecked")
+  public void execute(final Consumer<Map<String, Object>> resultConsumer) {
     final String resultListProperty = this.application.getResultListProperty();
 
     final boolean testMode = this.application.isTestModeEnabled()
@@ -280,7 +292,7 @@ public class PluginAdaptor {
     }
     if (resultListProperty == null) {
       this.responseFields = getResult(this.plugin, false, testMode);
-      this.results.add(this.responseFields);
+      resultConsumer.accept(this.responseFields);
     } else {
       final List<Object> resultObjects = Property.getSimple(this.plugin, resultListProperty);
       if (resultObjects == null || resultObjects.isEmpty()) {
@@ -291,13 +303,13 @@ public class PluginAdaptor {
             .round(Randoms.randomGaussian(meanNumResults, meanNumResults / 5));
           for (int i = 0; i < numResults; i++) {
             final Map<String, Object> result = getResult(this.plugin, true, testMode);
-            this.results.add(result);
+            resultConsumer.accept(result);
           }
         }
       } else {
         for (final Object resultObject : resultObjects) {
           final Map<String, Object> result = getResult(resultObject, true, false);
-          this.results.add(result);
+          resultConsumer.accept(result);
         }
       }
     }
@@ -350,8 +362,8 @@ public class PluginAdaptor {
             final double scaleZ = Maps.getDouble(this.parameters, "resultScaleFactorZ",
               geometryFactory.getScaleZ());
 
-            geometryFactory = GeometryFactory.fixed(srid, axisCount, scaleXY, scaleXY, scaleZ);
-            geometry = geometryFactory.geometry(geometry);
+            geometryFactory = GeometryConverter.fixed(srid, axisCount, scaleXY, scaleZ);
+            geometry = GeometryConverter.convert(geometry, geometryFactory);
             if (geometry.getHorizontalCoordinateSystemId() == 0) {
               throw new IllegalArgumentException(
                 "Geometry does not have a coordinate system (SRID) specified");
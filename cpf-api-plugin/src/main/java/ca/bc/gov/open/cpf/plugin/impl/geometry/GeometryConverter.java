@@ -0,0 +1,74 @@
+/*
+ * Copyright © 2008-2016, Province of British Columbia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.bc.gov.open.cpf.plugin.impl.geometry;
+
+import com.revolsys.geometry.model.Geometry;
+import com.revolsys.geometry.model.GeometryFactory;
+
+/**
+ * <p>Convert result and request geometries to the geometry factory requested by the user.</p>
+ *
+ * <p>The target geometry factories are cached by the plug-in API
+ * {@link ca.bc.gov.open.cpf.plugin.api.GeometryFactory#getRevolsysFactory} so parallel
+ * requests and plug-ins don't construct a new factory for each geometry. The projection from
+ * a source factory to a target factory is only performed if the factories differ, so the same
+ * target factory instance is reused for all the requests in a group that use the same result
+ * parameters.</p>
+ */
+public class GeometryConverter {
+  /**
+   * Convert the geometry to the target geometry factory (coordinate system, axis count and
+   * scale factors) if it doesn't already use that factory.
+   *
+   * @param geometry The geometry to convert.
+   * @param geometryFactory The target geometry factory.
+   * @return The converted geometry.
+   */
+  public static <G extends Geometry> G convert(final G geometry,
+    final GeometryFactory geometryFactory) {
+    if (geometry == null || geometry.getGeometryFactory() == geometryFactory) {
+      return geometry;
+    } else {
+      return geometryFactory.geometry(geometry);
+    }
+  }
+
+  /**
+   * Get a cached fixed precision geometry factory. Once the cache is full new combinations of
+   * the parameters aren't cached.
+   *
+   * @param srid The coordinate system id.
+   * @param axisCount The number of axis.
+   * @param scaleXy The x, y scale factor.
+   * @param scaleZ The z scale factor.
+   * @return The geometry factory.
+   */
+  public static GeometryFactory fixed(final int srid, final int axisCount, final double scaleXy,
+    final double scaleZ) {
+    return ca.bc.gov.open.cpf.plugin.api.GeometryFactory.getRevolsysFactory(srid, axisCount,
+      scaleXy, scaleZ);
+  }
+
+  /**
+   * Get a cached floating precision 3D geometry factory.
+   *
+   * @param srid The coordinate system id.
+   * @return The geometry factory.
+   */
+  public static GeometryFactory floating3d(final int srid) {
+    return fixed(srid, 3, 0.0, 0.0);
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright © 2008-2016, Province of British Columbia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.bc.gov.open.cpf.plugin.impl.geometry;
+
+/**
+ * The key for a cached geometry factory built from the primitive coordinate system id, axis
+ * count and scale factors, avoiding the string concatenation of a text key on each lookup.
+ */
+public final class GeometryFactoryKey {
+  private final int srid;
+
+  private final int axisCount;
+
+  private final double scaleXy;
+
+  private final double scaleZ;
+
+  public GeometryFactoryKey(final int srid, final int axisCount, final double scaleXy,
+    final double scaleZ) {
+    this.srid = srid;
+    this.axisCount = axisCount;
+    this.scaleXy = scaleXy;
+    this.scaleZ = scaleZ;
+  }
+
+  @Override
+  public boolean equals(final Object object) {
+    if (object == this) {
+      return true;
+    } else if (object instanceof GeometryFactoryKey) {
+      final GeometryFactoryKey key = (GeometryFactoryKey)object;
+      return this.srid == key.srid && this.axisCount == key.axisCount
+        && Double.compare(this.scaleXy, key.scaleXy) == 0
+        && Double.compare(this.scaleZ, key.scaleZ) == 0;
+    } else {
+      return false;
+    }
+  }
+
+  public int getAxisCount() {
+    return this.axisCount;
+  }
+
+  public double getScaleXy() {
+    return this.scaleXy;
+  }
+
+  public double getScaleZ() {
+    return this.scaleZ;
+  }
+
+  public int getSrid() {
+    return this.srid;
+  }
+
+  @Override
+  public int hashCode() {
+    int hash = 31 * this.srid + this.axisCount;
+    hash = 31 * hash + Double.hashCode(this.scaleXy);
+    hash = 31 * hash + Double.hashCode(this.scaleZ);
+    return hash;
+  }
+
+  @Override
+  public String toString() {
+    return this.srid + "-" + this.axisCount + "-" + this.scaleXy + "-" + this.scaleZ;
+  }
+}
@@ -0,0 +1,695 @@
+/*
+ * Copyright © 2008-2016, Province of British Columbia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.bc.gov.open.cpf.plugin.impl.geometry;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.jeometry.common.data.type.DataTypes;
+
+import com.revolsys.geometry.model.Geometry;
+import com.revolsys.geometry.model.GeometryFactory;
+import com.revolsys.geometry.model.LineString;
+import com.revolsys.geometry.model.Lineal;
+import com.revolsys.geometry.model.LinearRing;
+import com.revolsys.geometry.model.Point;
+import com.revolsys.geometry.model.Polygon;
+import com.revolsys.geometry.model.Polygonal;
+import com.revolsys.geometry.model.Punctual;
+import com.revolsys.record.Record;
+import com.revolsys.record.Records;
+import com.revolsys.record.schema.FieldDefinition;
+import com.revolsys.record.schema.RecordDefinition;
+import com.revolsys.record.schema.RecordDefinitionImpl;
+
+/**
+ * <p>Encode geometries as a compact binary form for the tab separated group input and result
+ * files passed between the server and workers, instead of WKT text. The value is written as
+ * <code>TWKB;srid;base64</code> or <code>WKB;srid;base64</code> so it can be stored in a text
+ * column.</p>
+ *
+ * <p><a href="https://github.com/TWKB/Specification">TWKB</a> is used if the geometry
+ * factory has a fixed scale that is a power of 10. The coordinates are stored as variable length
+ * integer deltas so no precision is lost. Geometries with a floating or other scale
+ * are encoded as big endian ISO WKB.</p>
+ */
+public class WkbGeometryCodec {
+  private static final int MAX_PRECISION = 7;
+
+  private static final String TWKB_PREFIX = "TWKB;";
+
+  private static final int TYPE_GEOMETRY_COLLECTION = 7;
+
+  private static final int TYPE_LINE_STRING = 2;
+
+  private static final int TYPE_MULTI_LINE_STRING = 5;
+
+  private static final int TYPE_MULTI_POINT = 4;
+
+  private static final int TYPE_MULTI_POLYGON = 6;
+
+  private static final int TYPE_POINT = 1;
+
+  private static final int TYPE_POLYGON = 3;
+
+  private static final String WKB_PREFIX = "WKB;";
+
+  private static final class TwkbReader {
+    private final byte[] bytes;
+
+    private int offset;
+
+    private int axisCount;
+
+    private final double[] scales = new double[3];
+
+    private final long[] previous = new long[3];
+
+    private GeometryFactory geometryFactory;
+
+    private final int srid;
+
+    private TwkbReader(final int srid, final byte[] bytes) {
+      this.srid = srid;
+      this.bytes = bytes;
+    }
+
+    private double[] readCoordinates(final int vertexCount) {
+      final int axisCount = this.axisCount;
+      final double[] coordinates = new double[vertexCount * axisCount];
+      int coordinateIndex = 0;
+      for (int i = 0; i < vertexCount; i++) {
+        for (int axisIndex = 0; axisIndex < axisCount; axisIndex++) {
+          final long value = this.previous[axisIndex] + readSignedVarLong();
+          this.previous[axisIndex] = value;
+          coordinates[coordinateIndex++] = value / this.scales[axisIndex];
+        }
+      }
+      return coordinates;
+    }
+
+    private Geometry readGeometry() {
+      final int typeAndPrecision = this.bytes[this.offset++] & 0xff;
+      final int type = typeAndPrecision & 0x0f;
+      final int precisionXy = unZigZag(typeAndPrecision >> 4);
+      final int metadata = this.bytes[this.offset++] & 0xff;
+      int precisionZ = 0;
+      boolean hasZ = false;
+      if ((metadata & 0x08) != 0) {
+        final int extendedDimensions = this.bytes[this.offset++] & 0xff;
+        hasZ = (extendedDimensions & 0x01) != 0;
+        precisionZ = extendedDimensions >> 2 & 0x07;
+      }
+      if ((metadata & 0x07) != 0) {
+        throw new IllegalArgumentException("TWKB bounding box, size and id lists not supported");
+      }
+      final boolean empty = (metadata & 0x10) != 0;
+      if (hasZ) {
+        this.axisCount = 3;
+      } else {
+        this.axisCount = 2;
+      }
+      final double scaleXy = Math.pow(10, precisionXy);
+      final double scaleZ = Math.pow(10, precisionZ);
+      this.scales[0] = scaleXy;
+      this.scales[1] = scaleXy;
+      this.scales[2] = scaleZ;
+      this.previous[0] = 0;
+      this.previous[1] = 0;
+      this.previous[2] = 0;
+      final GeometryFactory geometryFactory = GeometryFactory.fixed(this.srid, this.axisCount,
+        scaleXy, scaleXy, scaleZ);
+      this.geometryFactory = geometryFactory;
+      switch (type) {
+        case TYPE_POINT:
+          if (empty) {
+            return geometryFactory.point();
+          } else {
+            return geometryFactory.point(readCoordinates(1));
+          }
+        case TYPE_LINE_STRING:
+          if (empty) {
+            return geometryFactory.lineString(this.axisCount, new double[0]);
+          } else {
+            return readLineString();
+          }
+        case TYPE_POLYGON:
+          if (empty) {
+            return geometryFactory.polygon(new LinearRing[0]);
+          } else {
+            return readPolygon();
+          }
+        case TYPE_MULTI_POINT: {
+          final int partCount = empty ? 0 : readVarInt();
+          final Point[] points = new Point[partCount];
+          for (int i = 0; i < partCount; i++) {
+            points[i] = geometryFactory.point(readCoordinates(1));
+          }
+          return geometryFactory.punctual(points);
+        }
+        case TYPE_MULTI_LINE_STRING: {
+          final int partCount = empty ? 0 : readVarInt();
+          final LineString[] lines = new LineString[partCount];
+          for (int i = 0; i < partCount; i++) {
+            lines[i] = readLineString();
+          }
+          return geometryFactory.lineal(lines);
+        }
+        case TYPE_MULTI_POLYGON: {
+          final int partCount = empty ? 0 : readVarInt();
+          final Polygon[] polygons = new Polygon[partCount];
+          for (int i = 0; i < partCount; i++) {
+            polygons[i] = readPolygon();
+          }
+          return geometryFactory.polygonal(polygons);
+        }
+        case TYPE_GEOMETRY_COLLECTION: {
+          final int partCount = empty ? 0 : readVarInt();
+          final Geometry[] geometries = new Geometry[partCount];
+          for (int i = 0; i < partCount; i++) {
+            geometries[i] = readGeometry();
+          }
+          return geometryFactory.geometryCollection(geometries);
+        }
+        default:
+          throw new IllegalArgumentException("Unsupported TWKB geometry type " + type);
+      }
+    }
+
+    private LineString readLineString() {
+      final int vertexCount = readVarInt();
+      final double[] coordinates = readCoordinates(vertexCount);
+      return this.geometryFactory.lineString(this.axisCount, coordinates);
+    }
+
+    private Polygon readPolygon() {
+      final int ringCount = readVarInt();
+      final LinearRing[] rings = new LinearRing[ringCount];
+      for (int i = 0; i < ringCount; i++) {
+        final int vertexCount = readVarInt();
+        final double[] coordinates = readCoordinates(vertexCount);
+        rings[i] = this.geometryFactory.linearRing(this.axisCount, coordinates);
+      }
+      return this.geometryFactory.polygon(rings);
+    }
+
+    private long readSignedVarLong() {
+      final long value = readUnsignedVarLong();
+      return value >>> 1 ^ -(value & 1);
+    }
+
+    private long readUnsignedVarLong() {
+      long value = 0;
+      int shift = 0;
+      int b;
+      do {
+        b = this.bytes[this.offset++] & 0xff;
+        value |= (long)(b & 0x7f) << shift;
+        shift += 7;
+      } while ((b & 0x80) != 0);
+      return value;
+    }
+
+    private int readVarInt() {
+      return (int)readUnsignedVarLong();
+    }
+  }
+
+  private static final class TwkbWriter {
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    private final int axisCount;
+
+    private final int precisionXy;
+
+    private final int precisionZ;
+
+    private final double[] scales;
+
+    private final long[] previous = new long[3];
+
+    private TwkbWriter(final int axisCount, final int precisionXy, final int precisionZ) {
+      this.axisCount = axisCount;
+      this.precisionXy = precisionXy;
+      this.precisionZ = precisionZ;
+      final double scaleXy = Math.pow(10, precisionXy);
+      this.scales = new double[] {
+        scaleXy, scaleXy, Math.pow(10, precisionZ)
+      };
+    }
+
+    private void writeCoordinates(final LineString line) {
+      final int vertexCount = line.getVertexCount();
+      writeVarLong(vertexCount);
+      for (int vertexIndex = 0; vertexIndex < vertexCount; vertexIndex++) {
+        for (int axisIndex = 0; axisIndex < this.axisCount; axisIndex++) {
+          writeOrdinate(axisIndex, line.getCoordinate(vertexIndex, axisIndex));
+        }
+      }
+    }
+
+    private void writeCoordinates(final Point point) {
+      for (int axisIndex = 0; axisIndex < this.axisCount; axisIndex++) {
+        writeOrdinate(axisIndex, point.getCoordinate(axisIndex));
+      }
+    }
+
+    private void writeGeometry(final Geometry geometry) {
+      final int type = getType(geometry);
+      final boolean empty = geometry.isEmpty();
+      this.out.write(zigZag(this.precisionXy) << 4 | type);
+      int metadata = 0;
+      if (this.axisCount > 2) {
+        metadata |= 0x08;
+      }
+      if (empty) {
+        metadata |= 0x10;
+      }
+      this.out.write(metadata);
+      if (this.axisCount > 2) {
+        this.out.write(this.precisionZ << 2 | 0x01);
+      }
+      this.previous[0] = 0;
+      this.previous[1] = 0;
+      this.previous[2] = 0;
+      if (!empty) {
+        switch (type) {
+          case TYPE_POINT:
+            writeCoordinates((Point)geometry);
+          break;
+          case TYPE_LINE_STRING:
+            writeCoordinates((LineString)geometry);
+          break;
+          case TYPE_POLYGON:
+            writePolygon((Polygon)geometry);
+          break;
+          default:
+            final int partCount = geometry.getGeometryCount();
+            writeVarLong(partCount);
+            for (int i = 0; i < partCount; i++) {
+              final Geometry part = geometry.getGeometry(i);
+              if (type == TYPE_MULTI_POINT) {
+                writeCoordinates((Point)part);
+              } else if (type == TYPE_MULTI_LINE_STRING) {
+                writeCoordinates((LineString)part);
+              } else if (type == TYPE_MULTI_POLYGON) {
+                writePolygon((Polygon)part);
+              } else {
+                writeGeometry(part);
+              }
+            }
+          break;
+        }
+      }
+    }
+
+    private void writeOrdinate(final int axisIndex, final double value) {
+      final long scaledValue = Math.round(value * this.scales[axisIndex]);
+      final long delta = scaledValue - this.previous[axisIndex];
+      this.previous[axisIndex] = scaledValue;
+      writeVarLong(delta << 1 ^ delta >> 63);
+    }
+
+    private void writePolygon(final Polygon polygon) {
+      final int ringCount = polygon.getRingCount();
+      writeVarLong(ringCount);
+      for (int i = 0; i < ringCount; i++) {
+        writeCoordinates(polygon.getRing(i));
+      }
+    }
+
+    private void writeVarLong(long value) {
+      while ((value & ~0x7fL) != 0) {
+        this.out.write((int)(value & 0x7f | 0x80));
+        value >>>= 7;
+      }
+      this.out.write((int)value);
+    }
+  }
+
+  /**
+   * Decode the value if the field is a geometry field and the value is an encoded geometry.
+   * Values of other fields are returned unchanged even if they look like an encoded geometry.
+   *
+   * @param field The field definition.
+   * @param value The value to decode.
+   * @return The geometry or the original value.
+   */
+  public static Object decodeValue(final FieldDefinition field, final Object value) {
+    if (field != null && isGeometryField(field) && isEncoded(value)) {
+      return toGeometry((String)value);
+    } else {
+      return value;
+    }
+  }
+
+  /**
+   * Replace the encoded values of the geometry fields in the map with the decoded geometry.
+   *
+   * @param recordDefinition The record definition with the field types.
+   * @param values The values to decode.
+   */
+  public static void decodeValues(final RecordDefinition recordDefinition,
+    final Map<String, Object> values) {
+    for (final Entry<String, Object> entry : values.entrySet()) {
+      final Object value = entry.getValue();
+      if (isEncoded(value)) {
+        final FieldDefinition field = recordDefinition.getField(entry.getKey());
+        entry.setValue(decodeValue(field, value));
+      }
+    }
+  }
+
+  /**
+   * Get the value to write to a group file, encoding geometries.
+   *
+   * @param value The value.
+   * @return The encoded geometry or the original value.
+   */
+  public static Object encodeValue(final Object value) {
+    if (value instanceof Geometry) {
+      return toString((Geometry)value);
+    } else {
+      return value;
+    }
+  }
+
+  /**
+   * Get the number of decimal places for a scale factor if it is a power of 10 supported by
+   * TWKB.
+   *
+   * @param scale The scale factor.
+   * @param minPrecision The minimum supported precision.
+   * @return The precision or {@link Integer#MIN_VALUE} if the scale cannot be used.
+   */
+  private static int getPrecision(final double scale, final int minPrecision) {
+    if (scale > 0) {
+      final int precision = (int)Math.round(Math.log10(scale));
+      if (precision >= minPrecision && precision <= MAX_PRECISION) {
+        final double precisionScale = Math.pow(10, precision);
+        if (Math.abs(precisionScale - scale) <= scale * 1e-12) {
+          return precision;
+        }
+      }
+    }
+    return Integer.MIN_VALUE;
+  }
+
+  private static int getType(final Geometry geometry) {
+    if (geometry instanceof Point) {
+      return TYPE_POINT;
+    } else if (geometry instanceof LineString) {
+      return TYPE_LINE_STRING;
+    } else if (geometry instanceof Polygon) {
+      return TYPE_POLYGON;
+    } else if (geometry instanceof Punctual) {
+      return TYPE_MULTI_POINT;
+    } else if (geometry instanceof Lineal) {
+      return TYPE_MULTI_LINE_STRING;
+    } else if (geometry instanceof Polygonal) {
+      return TYPE_MULTI_POLYGON;
+    } else {
+      return TYPE_GEOMETRY_COLLECTION;
+    }
+  }
+
+  private static boolean isGeometryField(final FieldDefinition field) {
+    final Class<?> dataClass = field.getDataType().getJavaClass();
+    return Geometry.class.isAssignableFrom(dataClass);
+  }
+
+  public static boolean isEncoded(final Object value) {
+    if (value instanceof String) {
+      final String string = (String)value;
+      return string.startsWith(TWKB_PREFIX) || string.startsWith(WKB_PREFIX);
+    } else {
+      return false;
+    }
+  }
+
+  /**
+   * Construct a new record for a group file with the geometry values encoded.
+   *
+   * @param encodedRecordDefinition The record definition from
+   * {@link #newEncodedRecordDefinition(RecordDefinition)}.
+   * @param values The values for the record.
+   * @return The record.
+   */
+  public static Record newEncodedRecord(final RecordDefinition encodedRecordDefinition,
+    final Map<String, ? extends Object> values) {
+    final Map<String, Object> encodedValues = new LinkedHashMap<>();
+    for (final String fieldName : encodedRecordDefinition.getFieldNames()) {
+      final Object value = values.get(fieldName);
+      encodedValues.put(fieldName, encodeValue(value));
+    }
+    return Records.newRecord(encodedRecordDefinition, encodedValues);
+  }
+
+  /**
+   * Construct a copy of the record definition with the geometry fields replaced by string fields
+   * so that encoded geometries are written unchanged.
+   *
+   * @param recordDefinition The record definition.
+   * @return The record definition for the group file.
+   */
+  public static RecordDefinition newEncodedRecordDefinition(
+    final RecordDefinition recordDefinition) {
+    final RecordDefinitionImpl encodedRecordDefinition = new RecordDefinitionImpl(
+      recordDefinition.getPathName());
+    for (final FieldDefinition field : recordDefinition.getFields()) {
+      if (isGeometryField(field)) {
+        encodedRecordDefinition.addField(field.getName(), DataTypes.STRING);
+      } else {
+        encodedRecordDefinition.addField(field.clone());
+      }
+    }
+    return encodedRecordDefinition;
+  }
+
+  private static Geometry readWkb(final ByteBuffer buffer, final int srid) {
+    final byte byteOrder = buffer.get();
+    if (byteOrder == 0) {
+      buffer.order(ByteOrder.BIG_ENDIAN);
+    } else {
+      buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+    final int typeCode = buffer.getInt();
+    final int type = typeCode % 1000;
+    final int dimensions = typeCode / 1000;
+    int axisCount = 2;
+    if (dimensions == 1 || dimensions == 2) {
+      axisCount = 3;
+    } else if (dimensions == 3) {
+      axisCount = 4;
+    }
+    final GeometryFactory geometryFactory = GeometryFactory.fixed(srid, axisCount, 0.0, 0.0,
+      0.0);
+    switch (type) {
+      case TYPE_POINT: {
+        final double[] coordinates = readWkbCoordinates(buffer, 1, axisCount);
+        if (Double.isNaN(coordinates[0])) {
+          return geometryFactory.point();
+        } else {
+          return geometryFactory.point(coordinates);
+        }
+      }
+      case TYPE_LINE_STRING: {
+        final int vertexCount = buffer.getInt();
+        final double[] coordinates = readWkbCoordinates(buffer, vertexCount, axisCount);
+        return geometryFactory.lineString(axisCount, coordinates);
+      }
+      case TYPE_POLYGON: {
+        final int ringCount = buffer.getInt();
+        final LinearRing[] rings = new LinearRing[ringCount];
+        for (int i = 0; i < ringCount; i++) {
+          final int vertexCount = buffer.getInt();
+          final double[] coordinates = readWkbCoordinates(buffer, vertexCount, axisCount);
+          rings[i] = geometryFactory.linearRing(axisCount, coordinates);
+        }
+        return geometryFactory.polygon(rings);
+      }
+      case TYPE_MULTI_POINT: {
+        final Point[] points = new Point[buffer.getInt()];
+        for (int i = 0; i < points.length; i++) {
+          points[i] = (Point)readWkb(buffer, srid);
+        }
+        return geometryFactory.punctual(points);
+      }
+      case TYPE_MULTI_LINE_STRING: {
+        final LineString[] lines = new LineString[buffer.getInt()];
+        for (int i = 0; i < lines.length; i++) {
+          lines[i] = (LineString)readWkb(buffer, srid);
+        }
+        return geometryFactory.lineal(lines);
+      }
+      case TYPE_MULTI_POLYGON: {
+        final Polygon[] polygons = new Polygon[buffer.getInt()];
+        for (int i = 0; i < polygons.length; i++) {
+          polygons[i] = (Polygon)readWkb(buffer, srid);
+        }
+        return geometryFactory.polygonal(polygons);
+      }
+      case TYPE_GEOMETRY_COLLECTION: {
+        final Geometry[] geometries = new Geometry[buffer.getInt()];
+        for (int i = 0; i < geometries.length; i++) {
+          geometries[i] = readWkb(buffer, srid);
+        }
+        return geometryFactory.geometryCollection(geometries);
+      }
+      default:
+        throw new IllegalArgumentException("Unsupported WKB geometry type " + typeCode);
+    }
+  }
+
+  private static double[] readWkbCoordinates(final ByteBuffer buffer, final int vertexCount,
+    final int axisCount) {
+    final double[] coordinates = new double[vertexCount * axisCount];
+    for (int i = 0; i < coordinates.length; i++) {
+      coordinates[i] = buffer.getDouble();
+    }
+    return coordinates;
+  }
+
+  /**
+   * Decode a geometry encoded using {@link #toString(Geometry)}.
+   *
+   * @param text The encoded geometry.
+   * @return The geometry.
+   */
+  public static Geometry toGeometry(final String text) {
+    final int sridIndex = text.indexOf(';') + 1;
+    final int dataIndex = text.indexOf(';', sridIndex) + 1;
+    final int srid = Integer.parseInt(text.substring(sridIndex, dataIndex - 1));
+    final byte[] bytes = Base64.getDecoder().decode(text.substring(dataIndex));
+    if (text.startsWith(TWKB_PREFIX)) {
+      return new TwkbReader(srid, bytes).readGeometry();
+    } else if (text.startsWith(WKB_PREFIX)) {
+      return readWkb(ByteBuffer.wrap(bytes), srid);
+    } else {
+      throw new IllegalArgumentException("Not a TWKB or WKB encoded geometry");
+    }
+  }
+
+  /**
+   * Encode the geometry as TWKB if the geometry factory has a power of 10 scale, otherwise as
+   * WKB.
+   *
+   * @param geometry The geometry.
+   * @return The encoded geometry.
+   */
+  public static String toString(final Geometry geometry) {
+    final GeometryFactory geometryFactory = geometry.getGeometryFactory();
+    final int srid = geometry.getHorizontalCoordinateSystemId();
+    final int axisCount = Math.min(geometry.getAxisCount(), 4);
+    final int precisionXy = getPrecision(geometryFactory.getScaleXY(), -MAX_PRECISION - 1);
+    int precisionZ = 0;
+    if (axisCount == 3) {
+      precisionZ = getPrecision(geometryFactory.getScaleZ(), 0);
+    }
+    final Base64.Encoder encoder = Base64.getEncoder();
+    if (precisionXy != Integer.MIN_VALUE && precisionZ != Integer.MIN_VALUE && axisCount < 4) {
+      final TwkbWriter writer = new TwkbWriter(axisCount, precisionXy, precisionZ);
+      writer.writeGeometry(geometry);
+      return TWKB_PREFIX + srid + ";" + encoder.encodeToString(writer.out.toByteArray());
+    } else {
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      writeWkb(out, geometry, axisCount);
+      return WKB_PREFIX + srid + ";" + encoder.encodeToString(out.toByteArray());
+    }
+  }
+
+  private static int unZigZag(final int value) {
+    return value >>> 1 ^ -(value & 1);
+  }
+
+  private static void writeWkb(final ByteArrayOutputStream out, final Geometry geometry,
+    final int axisCount) {
+    final int type = getType(geometry);
+    final ByteBuffer header = ByteBuffer.allocate(5);
+    header.put((byte)0);
+    int dimensions = 0;
+    if (axisCount == 3) {
+      dimensions = 1;
+    } else if (axisCount == 4) {
+      dimensions = 3;
+    }
+    header.putInt(dimensions * 1000 + type);
+    out.write(header.array(), 0, 5);
+    switch (type) {
+      case TYPE_POINT: {
+        final Point point = (Point)geometry;
+        final ByteBuffer buffer = ByteBuffer.allocate(axisCount * 8);
+        for (int axisIndex = 0; axisIndex < axisCount; axisIndex++) {
+          if (point.isEmpty()) {
+            buffer.putDouble(Double.NaN);
+          } else {
+            buffer.putDouble(point.getCoordinate(axisIndex));
+          }
+        }
+        out.write(buffer.array(), 0, buffer.capacity());
+      }
+      break;
+      case TYPE_LINE_STRING:
+        writeWkbCoordinates(out, (LineString)geometry, axisCount);
+      break;
+      case TYPE_POLYGON: {
+        final Polygon polygon = (Polygon)geometry;
+        final int ringCount = polygon.getRingCount();
+        writeWkbInt(out, ringCount);
+        for (int i = 0; i < ringCount; i++) {
+          writeWkbCoordinates(out, polygon.getRing(i), axisCount);
+        }
+      }
+      break;
+      default: {
+        final int partCount = geometry.isEmpty() ? 0 : geometry.getGeometryCount();
+        writeWkbInt(out, partCount);
+        for (int i = 0; i < partCount; i++) {
+          writeWkb(out, geometry.getGeometry(i), axisCount);
+        }
+      }
+      break;
+    }
+  }
+
+  private static void writeWkbCoordinates(final ByteArrayOutputStream out, final LineString line,
+    final int axisCount) {
+    final int vertexCount = line.getVertexCount();
+    final ByteBuffer buffer = ByteBuffer.allocate(4 + vertexCount * axisCount * 8);
+    buffer.putInt(vertexCount);
+    for (int vertexIndex = 0; vertexIndex < vertexCount; vertexIndex++) {
+      for (int axisIndex = 0; axisIndex < axisCount; axisIndex++) {
+        buffer.putDouble(line.getCoordinate(vertexIndex, axisIndex));
+      }
+    }
+    out.write(buffer.array(), 0, buffer.capacity());
+  }
+
+  private static void writeWkbInt(final ByteArrayOutputStream out, final int value) {
+    final ByteBuffer buffer = ByteBuffer.allocate(4);
+    buffer.putInt(value);
+    out.write(buffer.array(), 0, 4);
+  }
+
+  private static int zigZag(final int value) {
+    return value << 1 ^ value >> 31;
+  }
+}
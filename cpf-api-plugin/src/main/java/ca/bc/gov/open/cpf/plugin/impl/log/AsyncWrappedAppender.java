@@ -0,0 +1,177 @@
+/*
+ * Copyright © 2008-2016, Province of British Columbia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.bc.gov.open.cpf.plugin.impl.log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.Appender;
+import org.apache.logging.log4j.core.ErrorHandler;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.impl.Log4jLogEvent;
+import org.apache.logging.log4j.message.SimpleMessage;
+
+/**
+ * An appender that adds the log events to a bounded ring buffer and writes them to the wrapped
+ * appender on a background thread, so the request threads never wait for the log file to be
+ * written. If the buffer is full DEBUG and INFO events are discarded and WARN and ERROR events
+ * wait for space in the buffer. Stopping the appender writes the events still in the buffer.
+ *
+ * The number of discarded events is written to the wrapped appender as a WARN event at most once
+ * every {@link #DISCARDED_REPORT_INTERVAL} milliseconds and when the appender is stopped. Events
+ * that can't be written are reported to the appender's {@link ErrorHandler} and the remaining
+ * events in the batch are still written.
+ */
+public class AsyncWrappedAppender extends WrappedAppender {
+  /** The default maximum number of events waiting to be written. */
+  public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+  /** The minimum time in milliseconds between reports of the discarded events. */
+  public static final long DISCARDED_REPORT_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+  private static final int BATCH_SIZE = 256;
+
+  private final ArrayBlockingQueue<LogEvent> events;
+
+  private Thread thread;
+
+  private volatile boolean running;
+
+  private final LongAdder discardedCount = new LongAdder();
+
+  /** The discarded count at the last report, only used by the background thread. */
+  private long reportedDiscardedCount;
+
+  private long lastDiscardedReportTime;
+
+  public AsyncWrappedAppender(final Appender appender) {
+    this(appender, DEFAULT_BUFFER_SIZE);
+  }
+
+  public AsyncWrappedAppender(final Appender appender, final int bufferSize) {
+    super(appender);
+    this.events = new ArrayBlockingQueue<>(bufferSize);
+  }
+
+  @Override
+  public void append(final LogEvent event) {
+    if (this.running) {
+      final LogEvent immutableEvent = event.toImmutable();
+      if (!this.events.offer(immutableEvent)) {
+        if (immutableEvent.getLevel().isMoreSpecificThan(Level.WARN)) {
+          try {
+            this.events.put(immutableEvent);
+          } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        } else {
+          this.discardedCount.increment();
+        }
+      }
+    } else {
+      super.append(event);
+    }
+  }
+
+  /**
+   * Get the number of DEBUG and INFO events that were discarded because the buffer was full.
+   *
+   * @return The number of discarded events.
+   */
+  public long getDiscardedCount() {
+    return this.discardedCount.sum();
+  }
+
+  private void reportDiscarded(final boolean force) {
+    final long discardedCount = getDiscardedCount();
+    if (discardedCount > this.reportedDiscardedCount) {
+      final long time = System.currentTimeMillis();
+      if (force || time - this.lastDiscardedReportTime >= DISCARDED_REPORT_INTERVAL) {
+        final long count = discardedCount - this.reportedDiscardedCount;
+        this.reportedDiscardedCount = discardedCount;
+        this.lastDiscardedReportTime = time;
+        final LogEvent event = Log4jLogEvent.newBuilder()
+          .setLoggerName(getClass().getName())
+          .setLevel(Level.WARN)
+          .setMessage(new SimpleMessage(
+            count + " DEBUG and INFO log events discarded because the log buffer was full"))
+          .setTimeMillis(time)
+          .build();
+        write(event);
+      }
+    }
+  }
+
+  private void run() {
+    final List<LogEvent> batch = new ArrayList<>(BATCH_SIZE);
+    while (this.running || !this.events.isEmpty()) {
+      try {
+        final LogEvent event = this.events.poll(1, TimeUnit.SECONDS);
+        if (event != null) {
+          batch.add(event);
+          this.events.drainTo(batch, BATCH_SIZE - 1);
+          for (final LogEvent batchEvent : batch) {
+            write(batchEvent);
+          }
+          batch.clear();
+        }
+        reportDiscarded(false);
+      } catch (final InterruptedException e) {
+        // Exit once the remaining events are written
+      }
+    }
+    reportDiscarded(true);
+  }
+
+  @Override
+  public synchronized void start() {
+    if (!this.running) {
+      super.start();
+      this.running = true;
+      this.thread = new Thread(this::run, "cpfLog-" + getName());
+      this.thread.setDaemon(true);
+      this.thread.start();
+    }
+  }
+
+  @Override
+  public synchronized void stop() {
+    if (this.running) {
+      this.running = false;
+      try {
+        this.thread.join(TimeUnit.SECONDS.toMillis(5));
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      super.stop();
+    }
+  }
+
+  private void write(final LogEvent event) {
+    try {
+      super.append(event);
+    } catch (final Throwable e) {
+      final ErrorHandler handler = getHandler();
+      if (handler != null) {
+        handler.error("Unable to write log event to " + getName(), event, e);
+      }
+    }
+  }
+}
@@ -35,6 +35,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
@@ -70,13 +71,17 @@ import ca.bc.gov.open.cpf.plugin.api.RequestParameter;
 import ca.bc.gov.open.cpf.plugin.api.Required;
 import ca.bc.gov.open.cpf.plugin.api.ResultAttribute;
 import ca.bc.gov.open.cpf.plugin.api.ResultList;
+import ca.bc.gov.open.cpf.plugin.api.SharedSpatialIndex;
 import ca.bc.gov.open.cpf.plugin.api.log.AppLog;
 import ca.bc.gov.open.cpf.plugin.api.security.SecurityService;
+import ca.bc.gov.open.cpf.plugin.api.spatial.SpatialIndexFactory;
+import ca.bc.gov.open.cpf.plugin.api.spatial.SpatialIndexes;
 import ca.bc.gov.open.cpf.plugin.impl.BusinessApplication;
 import ca.bc.gov.open.cpf.plugin.impl.BusinessApplicationRegistry;
 import ca.bc.gov.open.cpf.plugin.impl.ConfigPropertyLoader;
 import ca.bc.gov.open.cpf.plugin.impl.PluginAdaptor;
 import ca.bc.gov.open.cpf.plugin.impl.log.AppLogUtil;
+import ca.bc.gov.open.cpf.plugin.impl.log.AsyncWrappedAppender;
 import ca.bc.gov.open.cpf.plugin.impl.log.WrappedAppender;
 
 import com.revolsys.beans.Classes;
@@ -147,9 +152,10 @@ public class ClassLoaderModule implements Module {
         )//
       )//
       .build();
-    appender.start();
+    final AsyncWrappedAppender asyncAppender = new AsyncWrappedAppender(appender);
+    asyncAppender.start();
 
-    logger.addAppender(appender);
+    logger.addAppender(asyncAppender);
   }
 
   private GenericApplicationContext applicationContext;
@@ -194,6 +200,9 @@ public class ClassLoaderModule implements Module {
 
   private Date startedDate;
 
+  /** The spatial indexes shared by the plug-ins while the module is started. */
+  private final Map<Class<?>, SpatialIndexes<?>> spatialIndexesByFactoryClass = new ConcurrentHashMap<>();
+
   {
     // Prime the JTS Geometry factory
     ca.bc.gov.open.cpf.plugin.api.GeometryFactory.getFactory();
@@ -323,6 +332,9 @@ public class ClassLoaderModule implements Module {
     synchronized (logger) {
       for (final Appender appender : logger.getAppenders().values()) {
         logger.removeAppender(appender);
+        if (appender instanceof AsyncWrappedAppender) {
+          appender.stop();
+        }
       }
       logger.setAdditive(true);
     }
@@ -405,6 +417,7 @@ public class ClassLoaderModule implements Module {
         try {
           final String beanName = this.businessApplicationsToBeanNames.get(application);
           plugin = applicationContext.getBean(beanName);
+          setSharedSpatialIndexes(application, plugin);
           return plugin;
         } catch (final Throwable t) {
           throw new IllegalArgumentException(
@@ -444,6 +457,7 @@ public class ClassLoaderModule implements Module {
         try {
           final String beanName = this.businessApplicationsToBeanNames.get(application);
           plugin = applicationContext.getBean(beanName);
+          setSharedSpatialIndexes(application, plugin);
           final PluginAdaptor pluginAdaptor = new PluginAdaptor(application, plugin, executionId,
             logLevel);
           return pluginAdaptor;
@@ -531,6 +545,26 @@ public class ClassLoaderModule implements Module {
       final String instantModePermission = pluginAnnotation.instantModePermission();
       businessApplication.setInstantModePermission(instantModePermission);
 
+      final int instantModeMaxConcurrentRequests = pluginAnnotation
+        .instantModeMaxConcurrentRequests();
+      businessApplication.setInstantModeMaxConcurrentRequests(instantModeMaxConcurrentRequests);
+
+      final int instantModeMaxQueuedRequests = pluginAnnotation.instantModeMaxQueuedRequests();
+      businessApplication.setInstantModeMaxQueuedRequests(instantModeMaxQueuedRequests);
+
+      final boolean instantModeExecuteOnWorker = pluginAnnotation.instantModeExecuteOnWorker();
+      businessApplication.setInstantModeExecuteOnWorker(instantModeExecuteOnWorker);
+
+      final int instantModeTimeout = pluginAnnotation.instantModeTimeout();
+      businessApplication.setInstantModeTimeout(instantModeTimeout);
+
+      final int instantModeResultCacheSize = pluginAnnotation.instantModeResultCacheSize();
+      businessApplication.setInstantModeResultCacheSize(instantModeResultCacheSize);
+
+      final int instantModeResultCacheTimeToLive = pluginAnnotation
+        .instantModeResultCacheTimeToLive();
+      businessApplication.setInstantModeResultCacheTimeToLive(instantModeResultCacheTimeToLive);
+
       final String batchModePermission = pluginAnnotation.batchModePermission();
       businessApplication.setBatchModePermission(batchModePermission);
 
@@ -580,6 +614,7 @@ public class ClassLoaderModule implements Module {
         } else {
           processParameter(pluginClass, businessApplication, method);
           processResultAttribute(pluginClass, businessApplication, method, false);
+          processSharedSpatialIndex(businessApplication, method);
           if (method.isAnnotationPresent(ResultList.class)) {
             if (resultListMethod == null) {
               resultListMethod = method;
@@ -1514,6 +1549,22 @@ public class ClassLoaderModule implements Module {
     }
   }
 
+  private void processSharedSpatialIndex(final BusinessApplication businessApplication,
+    final Method method) {
+    final SharedSpatialIndex sharedSpatialIndex = method.getAnnotation(SharedSpatialIndex.class);
+    if (sharedSpatialIndex != null) {
+      final Class<?>[] parameterTypes = method.getParameterTypes();
+      if (parameterTypes.length == 1 && parameterTypes[0].equals(SpatialIndexes.class)
+        && Modifier.isPublic(method.getModifiers())) {
+        businessApplication.addSharedSpatialIndexMethod(method);
+      } else {
+        throw new IllegalArgumentException("Business Application " + businessApplication.getName()
+          + " method " + method.getName() + " with the annotation " + SharedSpatialIndex.class
+          + " must match public void setXXX(SpatialIndexes indexes)");
+      }
+    }
+  }
+
   private void processTestExecute(final BusinessApplication businessApplication,
     final Method method) {
     boolean hasError = false;
@@ -1583,6 +1634,25 @@ public class ClassLoaderModule implements Module {
     this.remoteable = remoteable;
   }
 
+  private void setSharedSpatialIndexes(final BusinessApplication application,
+    final Object plugin) throws Exception {
+    for (final Method method : application.getSharedSpatialIndexMethods()) {
+      final SharedSpatialIndex sharedSpatialIndex = method.getAnnotation(SharedSpatialIndex.class);
+      final Class<? extends SpatialIndexFactory<?>> factoryClass = sharedSpatialIndex.value();
+      final SpatialIndexes<?> spatialIndexes = this.spatialIndexesByFactoryClass
+        .computeIfAbsent(factoryClass, key -> {
+          try {
+            final SpatialIndexFactory<?> factory = factoryClass.getConstructor().newInstance();
+            return new SpatialIndexes<>(factory);
+          } catch (final Exception e) {
+            throw new IllegalArgumentException(
+              "Unable to create spatial index factory " + factoryClass.getName(), e);
+          }
+        });
+      method.invoke(plugin, spatialIndexes);
+    }
+  }
+
   public void setStartedDate(final Date date) {
     this.startedDate = date;
   }
@@ -1663,6 +1733,7 @@ public class ClassLoaderModule implements Module {
     }
     final List<String> names = this.businessApplicationNames;
     this.applicationContext = null;
+    this.spatialIndexesByFactoryClass.clear();
     this.businessApplicationsByName = Collections.emptyMap();
     this.businessApplicationsToBeanNames = Collections.emptyMap();
     this.businessApplicationNames = Collections.emptyList();
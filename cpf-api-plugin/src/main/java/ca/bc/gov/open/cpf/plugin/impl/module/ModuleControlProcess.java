@@ -15,17 +15,29 @@
  */
 package ca.bc.gov.open.cpf.plugin.impl.module;
 
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.jeometry.common.logging.Logs;
 
 import ca.bc.gov.open.cpf.plugin.impl.BusinessApplicationRegistry;
 
+import com.revolsys.parallel.NamedThreadFactory;
 import com.revolsys.parallel.ThreadUtil;
 import com.revolsys.parallel.channel.Channel;
 import com.revolsys.parallel.channel.ClosedException;
 import com.revolsys.parallel.process.AbstractProcess;
 
+/**
+ * Reads module start, restart and stop requests from the module control channel and performs
+ * them on a bounded pool of threads. Different modules are started in parallel so a slow module
+ * (e.g. one whose Maven dependencies must be downloaded) does not delay the others, while the
+ * requests for a single module are always performed in the order they were received.
+ */
 public class ModuleControlProcess extends AbstractProcess {
   private Channel<Map<String, Object>> in;
 
@@ -33,37 +45,69 @@ public class ModuleControlProcess extends AbstractProcess {
 
   private boolean running;
 
+  private final int threadCount;
+
+  /** The last action requested for each module, used to run actions for a module in order. */
+  private final Map<String, CompletableFuture<Void>> lastActionByModuleName = new HashMap<>();
+
   public ModuleControlProcess(final BusinessApplicationRegistry businessApplicationRegistry,
     final Channel<Map<String, Object>> in) {
+    this(businessApplicationRegistry, in, Math.max(2, Runtime.getRuntime().availableProcessors()));
+  }
+
+  public ModuleControlProcess(final BusinessApplicationRegistry businessApplicationRegistry,
+    final Channel<Map<String, Object>> in, final int threadCount) {
     this.businessApplicationRegistry = businessApplicationRegistry;
     this.in = in;
+    this.threadCount = Math.max(1, threadCount);
     in.readConnect();
   }
 
+  private void doAction(final Map<String, Object> control) {
+    try {
+      final BusinessApplicationRegistry businessApplicationRegistry = this.businessApplicationRegistry;
+      if (businessApplicationRegistry != null) {
+        final String moduleName = (String)control.get("moduleName");
+        final String action = (String)control.get("action");
+        final ClassLoaderModule module = (ClassLoaderModule)businessApplicationRegistry
+          .getModule(moduleName);
+        if (module != null) {
+          if ("start".equals(action)) {
+            module.startDo();
+          } else if ("restart".equals(action)) {
+            module.restartDo();
+          } else if ("stop".equals(action)) {
+            module.stopDo();
+          }
+        }
+      }
+    } catch (final Throwable t) {
+      Logs.error(this, "Unable to perform module action: " + control, t);
+    }
+  }
+
   @Override
   public void run() {
     this.running = true;
+    final ThreadPoolExecutor executor = new ThreadPoolExecutor(this.threadCount,
+      this.threadCount, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+      new NamedThreadFactory().setNamePrefix("ModuleControl"));
+    executor.allowCoreThreadTimeOut(true);
     try {
       while (this.running && !ThreadUtil.isInterrupted()) {
         final Map<String, Object> control = this.in.read(5000);
+        this.lastActionByModuleName.values().removeIf(CompletableFuture::isDone);
         if (control != null) {
-          try {
-            final String moduleName = (String)control.get("moduleName");
-            final String action = (String)control.get("action");
-            final ClassLoaderModule module = (ClassLoaderModule)this.businessApplicationRegistry
-              .getModule(moduleName);
-            if (module != null) {
-              if ("start".equals(action)) {
-                module.startDo();
-              } else if ("restart".equals(action)) {
-                module.restartDo();
-              } else if ("stop".equals(action)) {
-                module.stopDo();
-              }
-            }
-          } catch (final Throwable t) {
-            Logs.error(this, "Unable to perform module action: " + control, t);
+          final String moduleName = (String)control.get("moduleName");
+          final Runnable action = () -> doAction(control);
+          final CompletableFuture<Void> lastAction = this.lastActionByModuleName.get(moduleName);
+          final CompletableFuture<Void> nextAction;
+          if (lastAction == null) {
+            nextAction = CompletableFuture.runAsync(action, executor);
+          } else {
+            nextAction = lastAction.thenRunAsync(action, executor);
           }
+          this.lastActionByModuleName.put(moduleName, nextAction);
         }
       }
 
@@ -71,6 +115,8 @@ public class ModuleControlProcess extends AbstractProcess {
       return;
     } finally {
       this.running = false;
+      executor.shutdownNow();
+      this.lastActionByModuleName.clear();
       try {
         this.in.readDisconnect();
       } finally {
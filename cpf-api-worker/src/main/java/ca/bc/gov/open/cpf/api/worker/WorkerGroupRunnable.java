@@ -26,6 +26,7 @@ import java.io.StringWriter;
 import java.net.HttpURLConnection;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -47,6 +48,8 @@ import ca.bc.gov.open.cpf.plugin.api.log.AppLog;
 import ca.bc.gov.open.cpf.plugin.api.security.SecurityService;
 import ca.bc.gov.open.cpf.plugin.impl.BusinessApplication;
 import ca.bc.gov.open.cpf.plugin.impl.PluginAdaptor;
+import ca.bc.gov.open.cpf.plugin.impl.geometry.GeometryConverter;
+import ca.bc.gov.open.cpf.plugin.impl.geometry.WkbGeometryCodec;
 import ca.bc.gov.open.cpf.plugin.impl.module.Module;
 import ca.bc.gov.open.cpf.plugin.impl.security.SecurityServiceFactory;
 
@@ -91,7 +94,7 @@ public class WorkerGroupRunnable implements Runnable {
 
   private final WorkerHttpClient httpClient;
 
-  private final AppLog log;
+  private AppLog log;
 
   private final String logLevel;
 
@@ -103,6 +106,8 @@ public class WorkerGroupRunnable implements Runnable {
 
   private SecurityService securityService;
 
+  private final WorkerGroupStageTimes stageTimes;
+
   private final RangeSet successRequests = new RangeSet();
 
   private final String userId;
@@ -120,8 +125,7 @@ public class WorkerGroupRunnable implements Runnable {
     this.batchJobId = groupIdMap.getLong("batchJobId");
     this.userId = groupIdMap.getString("consumerKey");
     this.logLevel = groupIdMap.getString("logLevel");
-    this.log = new AppLog(this.moduleName, this.businessApplicationName, this.groupId,
-      this.logLevel);
+    this.stageTimes = new WorkerGroupStageTimes(scheduler.isStageTimesEnabled());
   }
 
   public void addError(final Integer sequenceNumber, final String logPrefix, final String errorCode,
@@ -151,38 +155,45 @@ public class WorkerGroupRunnable implements Runnable {
     final Integer requestSequenceNumber, final Object plugin, final MapEx parameters) {
     final String resultListProperty = this.businessApplication.getResultListProperty();
 
+    final long executeStartTime = this.stageTimes.start();
     final Map<String, Object> testParameters = null;
     final boolean testMode = Maps.getBool(parameters, "cpfPluginTest");
-    if (testMode) {
-      double testMinTime = Maps.getDouble(parameters, "cpfMinExecutionTime", -1.0);
-      double testMaxTime = Maps.getDouble(parameters, "cpfMaxExecutionTime", -1.0);
-      final double testMeanTime = Maps.getDouble(parameters, "cpfMeanExecutionTime", -1.0);
-      final double testStandardDeviation = Maps.getDouble(parameters, "cpfStandardDeviation", -1.0);
-      double executionTime;
-      if (testStandardDeviation <= 0) {
-        if (testMinTime < 0) {
-          testMinTime = 0.0;
+    final long encodeStartTime;
+    try {
+      if (testMode) {
+        double testMinTime = Maps.getDouble(parameters, "cpfMinExecutionTime", -1.0);
+        double testMaxTime = Maps.getDouble(parameters, "cpfMaxExecutionTime", -1.0);
+        final double testMeanTime = Maps.getDouble(parameters, "cpfMeanExecutionTime", -1.0);
+        final double testStandardDeviation = Maps.getDouble(parameters, "cpfStandardDeviation",
+          -1.0);
+        double executionTime;
+        if (testStandardDeviation <= 0) {
+          if (testMinTime < 0) {
+            testMinTime = 0.0;
+          }
+          if (testMaxTime < testMinTime) {
+            testMaxTime = testMinTime + 10;
+          }
+          executionTime = Randoms.randomRange(testMinTime, testMaxTime);
+        } else {
+          executionTime = Randoms.randomGaussian(testMeanTime, testStandardDeviation);
+        }
+        if (testMinTime >= 0 && executionTime < testMinTime) {
+          executionTime = testMinTime;
         }
-        if (testMaxTime < testMinTime) {
-          testMaxTime = testMinTime + 10;
+        if (testMaxTime > 0 && testMaxTime > testMinTime && executionTime > testMaxTime) {
+          executionTime = testMaxTime;
         }
-        executionTime = Randoms.randomRange(testMinTime, testMaxTime);
+        final long milliSeconds = (long)(executionTime * 1000);
+        if (milliSeconds > 1) {
+          ThreadUtil.pause(milliSeconds);
+        }
+        this.businessApplication.pluginTestExecute(plugin);
       } else {
-        executionTime = Randoms.randomGaussian(testMeanTime, testStandardDeviation);
-      }
-      if (testMinTime >= 0 && executionTime < testMinTime) {
-        executionTime = testMinTime;
+        this.businessApplication.pluginExecute(plugin);
       }
-      if (testMaxTime > 0 && testMaxTime > testMinTime && executionTime > testMaxTime) {
-        executionTime = testMaxTime;
-      }
-      final long milliSeconds = (long)(executionTime * 1000);
-      if (milliSeconds > 1) {
-        ThreadUtil.pause(milliSeconds);
-      }
-      this.businessApplication.pluginTestExecute(plugin);
-    } else {
-      this.businessApplication.pluginExecute(plugin);
+    } finally {
+      encodeStartTime = this.stageTimes.stop(WorkerGroupStageTimes.EXECUTE, executeStartTime);
     }
     Map<String, Object> customizationProperties = null;
     if (this.businessApplication.isHasCustomizationProperties()) {
@@ -217,6 +228,7 @@ public class WorkerGroupRunnable implements Runnable {
         }
       }
     }
+    this.stageTimes.stop(WorkerGroupStageTimes.ENCODE, encodeStartTime);
   }
 
   /**
@@ -252,17 +264,19 @@ public class WorkerGroupRunnable implements Runnable {
     if (requestSequenceNumber > -1) {
       boolean hasError = true;
       try {
+        long time = this.stageTimes.start();
         final MapEx parameters = getParameters(this.businessApplication, requestRecordDefinition,
           applicationParameters, requestParameters);
+        time = this.stageTimes.stop(WorkerGroupStageTimes.BIND, time);
         final Object plugin = this.module.getBusinessApplicationPlugin(this.businessApplicationName,
           this.groupId, this.logLevel);
+        time = this.stageTimes.stop(WorkerGroupStageTimes.INSTANTIATE, time);
         if (plugin == null) {
           addError(requestSequenceNumber,
             "Unable to create plugin " + this.businessApplicationName + " ",
             "ERROR_PROCESSING_REQUEST", null);
         } else {
-          final AppLog appLog = new AppLog(this.moduleName, this.businessApplicationName,
-            this.groupId, this.logLevel);
+          final AppLog appLog = this.log;
           File resultFile = null;
           OutputStream resultData = null;
           if (this.businessApplication.isPerRequestInputData()) {
@@ -277,18 +291,13 @@ public class WorkerGroupRunnable implements Runnable {
           }
           try {
             setParameters(plugin, parameters);
+            this.stageTimes.stop(WorkerGroupStageTimes.BIND, time);
 
-            if (appLog.isDebugEnabled()) {
-              appLog
-                .debug("Start\tRequest Execution\t" + this.groupId + "\t" + requestSequenceNumber);
-            }
+            appLog.debug("Start\tRequest Execution\t{}\t{}", this.groupId, requestSequenceNumber);
             try {
               execute(resultWriter, appLog, requestSequenceNumber, plugin, parameters);
             } finally {
-              if (appLog.isDebugEnabled()) {
-                appLog
-                  .debug("End\tRequest Execution\t" + this.groupId + "\t" + requestSequenceNumber);
-              }
+              appLog.debug("End\tRequest Execution\t{}\t{}", this.groupId, requestSequenceNumber);
             }
             sendResultData(requestSequenceNumber, parameters, resultFile, resultData);
 
@@ -323,7 +332,7 @@ public class WorkerGroupRunnable implements Runnable {
         this.successRequests.add(requestSequenceNumber);
       }
     }
-    this.applicationExecutionTime = requestStopWatch.getTotalTimeMillis();
+    this.applicationExecutionTime += requestStopWatch.getTotalTimeMillis();
   }
 
   public String getGroupId() {
@@ -343,7 +352,8 @@ public class WorkerGroupRunnable implements Runnable {
         if (value != null) {
           final FieldDefinition fieldDefinition = requestRecordDefinition.getField(name);
           if (fieldDefinition != null) {
-            final Object convertedValue = fieldDefinition.toFieldValue(value);
+            final Object decodedValue = WkbGeometryCodec.decodeValue(fieldDefinition, value);
+            final Object convertedValue = fieldDefinition.toFieldValue(decodedValue);
             entry.setValue(convertedValue);
           }
         }
@@ -374,7 +384,9 @@ public class WorkerGroupRunnable implements Runnable {
    */
   @Override
   public void run() {
-    this.log.info("Start\tGroup Execution\t" + this.groupId);
+    this.log = AppLog.getAppLog(this.moduleName, this.businessApplicationName, this.groupId,
+      this.logLevel);
+    this.log.info("Start\tGroup Execution\t{}", this.groupId);
     final File resultFile = FileUtil.newTempFile("group-" + this.groupId, ".tsv");
     try {
       final StopWatch groupStopWatch = new StopWatch("Group");
@@ -420,21 +432,28 @@ public class WorkerGroupRunnable implements Runnable {
           }
           final String groupPath = "/worker/workers/" + this.workerId + "/jobs/" + this.batchJobId
             + "/groups/" + this.groupId;
+          long time = this.stageTimes.start();
           try (
             CloseableHttpResponse groupInputResponse = this.httpClient.execute(groupPath)) {
             final HttpEntity entity = groupInputResponse.getEntity();
             try (
               InputStream requestIn = entity.getContent()) {
+              time = this.stageTimes.stop(WorkerGroupStageTimes.DOWNLOAD, time);
               try (
                 MapReader requestReader = Tsv.mapReader(requestIn)) {
-                for (final MapEx requestParameters : requestReader) {
+                final Iterator<MapEx> requests = requestReader.iterator();
+                while (requests.hasNext()) {
+                  final MapEx requestParameters = requests.next();
+                  this.stageTimes.stop(WorkerGroupStageTimes.DECODE, time);
                   if (ThreadUtil.isInterrupted() || !this.module.isStarted()) {
                     this.scheduler.addFailedGroup(this.groupId);
                     return;
                   }
                   executeRequest(resultWriter, requestRecordDefinition, applicationParameters,
                     requestParameters);
+                  time = this.stageTimes.start();
                 }
+                this.stageTimes.stop(WorkerGroupStageTimes.DECODE, time);
               }
             }
           }
@@ -454,6 +473,7 @@ public class WorkerGroupRunnable implements Runnable {
         final TsvWriter errorWriter = this.errorWriter;
         this.errorWriter = null;
         if (errorWriter != null) {
+          final long uploadStartTime = this.stageTimes.start();
           try {
             errorWriter.close();
             final String errorPath = "/worker/workers/" + this.workerId + "/jobs/" + this.batchJobId
@@ -473,6 +493,7 @@ public class WorkerGroupRunnable implements Runnable {
           } finally {
             FileUtil.delete(this.errorFile);
             this.errorFile = null;
+            this.stageTimes.stop(WorkerGroupStageTimes.UPLOAD, uploadStartTime);
           }
         }
         if (resultFile.exists()) {
@@ -481,6 +502,9 @@ public class WorkerGroupRunnable implements Runnable {
           parameters.put("applicationExecutedTime", this.applicationExecutionTime);
           parameters.put("completedRequestRange", this.successRequests.toString());
           parameters.put("failedRequestRange", this.errorRequests.toString());
+          if (this.stageTimes.isEnabled()) {
+            parameters.put("stageTimes", Json.toString(this.stageTimes.toMap()));
+          }
           final String path = "/worker/workers/" + this.workerId + "/jobs/" + this.batchJobId
             + "/groups/" + this.groupId + "/results";
           try (
@@ -500,7 +524,7 @@ public class WorkerGroupRunnable implements Runnable {
     } finally {
       try {
         this.scheduler.removeExecutingGroupId(this.groupId);
-        this.log.info("End\tGroup execution\t" + this.groupId);
+        this.log.info("End\tGroup execution\t{}", this.groupId);
         FileUtil.delete(this.errorFile);
         final TsvWriter errorWriter = this.errorWriter;
         this.errorWriter = null;
@@ -520,6 +544,7 @@ public class WorkerGroupRunnable implements Runnable {
   protected void sendResultData(final Integer requestSequenceNumber, final MapEx parameters,
     final File resultFile, final OutputStream resultData) {
     if (resultData != null) {
+      final long uploadStartTime = this.stageTimes.start();
       try {
         resultData.flush();
         FileUtil.closeSilent(resultData);
@@ -541,6 +566,8 @@ public class WorkerGroupRunnable implements Runnable {
         this.log.error("Error sending result data", e);
         addError(requestSequenceNumber, "Unable to send result data", "RECOVERABLE_EXCEPTION",
           null);
+      } finally {
+        this.stageTimes.stop(WorkerGroupStageTimes.UPLOAD, uploadStartTime);
       }
     }
   }
@@ -639,8 +666,8 @@ public class WorkerGroupRunnable implements Runnable {
             final double scaleZ = Maps.getDouble(parameters, "resultScaleFactorZ",
               geometryFactory.getScaleZ());
 
-            geometryFactory = GeometryFactory.fixed(srid, axisCount, scaleXY, scaleXY, scaleZ);
-            geometry = geometryFactory.geometry(geometry);
+            geometryFactory = GeometryConverter.fixed(srid, axisCount, scaleXY, scaleZ);
+            geometry = GeometryConverter.convert(geometry, geometryFactory);
             if (geometry.getHorizontalCoordinateSystemId() == 0) {
               throw new IllegalArgumentException(
                 "Geometry does not have a coordinate system (SRID) specified");
@@ -655,7 +682,7 @@ public class WorkerGroupRunnable implements Runnable {
             value = geometry;
           }
         }
-        result.add(value);
+        result.add(WkbGeometryCodec.encodeValue(value));
       }
     }
     if (resultIndex != 0 && this.businessApplication.isHasResultListCustomizationProperties()) {
@@ -0,0 +1,111 @@
+/*
+ * Copyright © 2008-2016, Province of British Columbia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.bc.gov.open.cpf.api.worker;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The total time spent in each stage of executing the requests in a group on a worker. The
+ * times are sent to the server with the group results so slow groups can be attributed to a
+ * stage. When disabled {@link #start()} and {@link #stop(int, long)} don't read the clock so
+ * the overhead is a boolean check.
+ *
+ * <dl>
+ * <dt>download</dt><dd>Opening the group input data.</dd>
+ * <dt>decode</dt><dd>Reading and parsing the request rows from the group input data.</dd>
+ * <dt>bind</dt><dd>Converting the request parameters and setting them on the plugin.</dd>
+ * <dt>instantiate</dt><dd>Creating the plugin instance.</dd>
+ * <dt>execute</dt><dd>The plugin's execute method, including reading any per request input
+ * data.</dd>
+ * <dt>encode</dt><dd>Converting and writing the results to the group result file.</dd>
+ * <dt>upload</dt><dd>Sending per request result data and errors to the server.</dd>
+ * </dl>
+ */
+public class WorkerGroupStageTimes {
+  public static final int DOWNLOAD = 0;
+
+  public static final int DECODE = 1;
+
+  public static final int BIND = 2;
+
+  public static final int INSTANTIATE = 3;
+
+  public static final int EXECUTE = 4;
+
+  public static final int ENCODE = 5;
+
+  public static final int UPLOAD = 6;
+
+  private static final String[] STAGE_NAMES = {
+    "download", "decode", "bind", "instantiate", "execute", "encode", "upload"
+  };
+
+  private final boolean enabled;
+
+  private final long[] times = new long[STAGE_NAMES.length];
+
+  public WorkerGroupStageTimes(final boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public boolean isEnabled() {
+    return this.enabled;
+  }
+
+  /**
+   * Get the start time for a stage.
+   *
+   * @return The current time in nanoseconds, or 0 if disabled.
+   */
+  public long start() {
+    if (this.enabled) {
+      return System.nanoTime();
+    } else {
+      return 0;
+    }
+  }
+
+  /**
+   * Add the time since the start time to the stage.
+   *
+   * @param stage The stage index.
+   * @param startTime The start time returned from {@link #start()}.
+   * @return The current time so it can be used as the start time of the next stage.
+   */
+  public long stop(final int stage, final long startTime) {
+    if (this.enabled) {
+      final long time = System.nanoTime();
+      this.times[stage] += time - startTime;
+      return time;
+    } else {
+      return 0;
+    }
+  }
+
+  /**
+   * Get the total time in milliseconds for each stage.
+   *
+   * @return The map from stage name to the time in milliseconds.
+   */
+  public Map<String, Object> toMap() {
+    final Map<String, Object> times = new LinkedHashMap<>();
+    for (int i = 0; i < STAGE_NAMES.length; i++) {
+      times.put(STAGE_NAMES[i], this.times[i] / 1000000);
+    }
+    return times;
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright © 2008-2016, Province of British Columbia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.bc.gov.open.cpf.api.worker;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.jeometry.common.logging.Logs;
+
+import ca.bc.gov.open.cpf.plugin.api.log.AppLog;
+
+import com.revolsys.io.BaseCloseable;
+import com.revolsys.io.FileUtil;
+import com.revolsys.parallel.NamedThreadFactory;
+import com.revolsys.util.Hex;
+
+/**
+ * A worker local cache of module jars named by the SHA-256 digest of their content. The
+ * cache directory is kept between restarts so a worker only downloads the jars that have
+ * changed since it last loaded a module. The jars to download are found using the module's
+ * jar manifest and the missing jars are downloaded in parallel. Jars that have not been used
+ * for {@link #MAX_UNUSED_DAYS} days are removed when the cache is opened.
+ */
+public class WorkerJarCache implements BaseCloseable {
+  private static final int MAX_UNUSED_DAYS = 30;
+
+  private static String getDigest(final File file) throws Exception {
+    final MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+    try (
+      InputStream in = new FileInputStream(file)) {
+      final byte[] buffer = new byte[8192];
+      for (int count = in.read(buffer); count != -1; count = in.read(buffer)) {
+        messageDigest.update(buffer, 0, count);
+      }
+    }
+    return Hex.toHex(messageDigest.digest());
+  }
+
+  private final File directory;
+
+  private final ExecutorService executor;
+
+  private final WorkerScheduler scheduler;
+
+  public WorkerJarCache(final WorkerScheduler scheduler, final File directory,
+    final int downloadThreadCount) {
+    this.scheduler = scheduler;
+    this.directory = directory;
+    final ThreadPoolExecutor executor = new ThreadPoolExecutor(downloadThreadCount,
+      downloadThreadCount, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+      new NamedThreadFactory().setNamePrefix("cpfWorker-jarDownload"));
+    executor.allowCoreThreadTimeOut(true);
+    this.executor = executor;
+    if (directory.mkdirs() || directory.isDirectory()) {
+      removeUnusedJars();
+    } else {
+      Logs.error(this, "Unable to create jar cache directory " + directory);
+    }
+  }
+
+  @Override
+  public void close() {
+    this.executor.shutdownNow();
+  }
+
+  private File downloadJar(final String jarPath, final String digest, final long size)
+    throws Exception {
+    final File jarFile = new File(this.directory, digest + ".jar");
+    if (jarFile.length() != size) {
+      final File tempFile = File.createTempFile(digest, ".tmp", this.directory);
+      try {
+        final WorkerHttpClient httpClient = this.scheduler.getHttpClient();
+        httpClient.getResource(jarPath, tempFile);
+        final String downloadedDigest = getDigest(tempFile);
+        if (!digest.equals(downloadedDigest)) {
+          throw new IllegalStateException(
+            "Jar digest " + downloadedDigest + " doesn't match manifest digest " + digest);
+        }
+        try {
+          Files.move(tempFile.toPath(), jarFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (final Exception e) {
+          if (jarFile.length() != size) {
+            throw e;
+          }
+        }
+      } finally {
+        FileUtil.delete(tempFile);
+      }
+    }
+    return jarFile;
+  }
+
+  /**
+   * Get the URLs of the module's jars in the cache, downloading any missing jars.
+   *
+   * @param log The module log.
+   * @param moduleName The name of the module.
+   * @param moduleTime The time the module was started on the server.
+   * @return The jar URLs or null if the server doesn't provide a manifest for the module or a
+   * jar couldn't be downloaded.
+   */
+  @SuppressWarnings("unchecked")
+  public List<URL> getJarUrls(final AppLog log, final String moduleName, final long moduleTime) {
+    final String modulePath = "/worker/modules/" + moduleName + "/" + moduleTime;
+    List<Map<String, Object>> jars;
+    try {
+      final WorkerHttpClient httpClient = this.scheduler.getHttpClient();
+      final Map<String, Object> manifest = httpClient.getJsonResource(modulePath + "/jars");
+      jars = (List<Map<String, Object>>)manifest.get("jars");
+    } catch (final Throwable e) {
+      log.debug("Jar manifest not available, downloading all jars\t" + e.getMessage());
+      return null;
+    }
+    if (jars == null) {
+      return null;
+    } else {
+      final List<Future<File>> futures = new ArrayList<>();
+      int downloadCount = 0;
+      for (final Map<String, Object> jar : jars) {
+        final int jarIndex = ((Number)jar.get("index")).intValue();
+        final String digest = (String)jar.get("sha256");
+        final long size = ((Number)jar.get("size")).longValue();
+        final String jarPath = modulePath + "/jar/" + jarIndex;
+        final File jarFile = new File(this.directory, digest + ".jar");
+        if (jarFile.length() == size) {
+          jarFile.setLastModified(System.currentTimeMillis());
+          futures.add(null);
+        } else {
+          downloadCount++;
+          futures.add(this.executor.submit(() -> downloadJar(jarPath, digest, size)));
+        }
+      }
+      final List<URL> urls = new ArrayList<>();
+      for (int i = 0; i < jars.size(); i++) {
+        final Map<String, Object> jar = jars.get(i);
+        final Future<File> future = futures.get(i);
+        final String digest = (String)jar.get("sha256");
+        File jarFile = new File(this.directory, digest + ".jar");
+        if (future != null) {
+          try {
+            jarFile = future.get();
+          } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+          } catch (final ExecutionException e) {
+            log.error("Unable to download jar file, downloading all jars\t" + modulePath + "/jar/"
+              + jar.get("index"), e.getCause());
+            return null;
+          }
+        }
+        urls.add(FileUtil.toUrl(jarFile));
+      }
+      log.info("Module jars\tcached=" + (jars.size() - downloadCount) + "\tdownloaded="
+        + downloadCount);
+      return urls;
+    }
+  }
+
+  private void removeUnusedJars() {
+    final long minTime = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(MAX_UNUSED_DAYS);
+    final File[] files = this.directory.listFiles();
+    if (files != null) {
+      for (final File file : files) {
+        final String fileName = file.getName();
+        if (fileName.endsWith(".tmp") || fileName.endsWith(".jar")) {
+          if (file.lastModified() < minTime) {
+            FileUtil.delete(file);
+          }
+        }
+      }
+    }
+  }
+}
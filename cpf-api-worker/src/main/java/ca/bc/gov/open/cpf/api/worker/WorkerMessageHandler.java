@@ -285,6 +285,32 @@ public class WorkerMessageHandler implements ModuleEventListener, BaseCloseable
     }
   }
 
+  private List<URL> downloadModuleJars(final AppLog log, final String moduleName,
+    final long moduleTime, final int moduleJarCount) {
+    final File moduleDir = new File(this.tempDir, moduleName + "-" + moduleTime);
+    moduleDir.mkdir();
+    moduleDir.deleteOnExit();
+    final List<URL> urls = new ArrayList<>();
+    for (int jarIndex = 0; jarIndex < moduleJarCount; jarIndex++) {
+      final String jarPath = "/worker/modules/" + moduleName + "/" + moduleTime + "/jar/"
+        + jarIndex;
+      try {
+        final File jarFile = new File(moduleDir, jarIndex + ".jar");
+        jarFile.deleteOnExit();
+        final WorkerHttpClient httpClient = this.scheduler.getHttpClient();
+        httpClient.getResource(jarPath, jarFile);
+        if (jarFile.length() > 0) {
+          urls.add(FileUtil.toUrl(jarFile));
+        } else {
+          log.error("Empty jar file " + jarPath);
+        }
+      } catch (final Throwable e) {
+        log.error("Unable to download jar file " + jarPath, e);
+      }
+    }
+    return urls;
+  }
+
   protected void moduleStart(final MapEx message) {
     final String moduleName = (String)message.get("moduleName");
     final Long moduleTime = message.getLong("moduleTime");
@@ -308,26 +334,13 @@ public class WorkerMessageHandler implements ModuleEventListener, BaseCloseable
         }
       }
       try {
-        final File moduleDir = new File(this.tempDir, moduleName + "-" + moduleTime);
-        moduleDir.mkdir();
-        moduleDir.deleteOnExit();
-        final List<URL> urls = new ArrayList<>();
-        for (int jarIndex = 0; jarIndex < moduleJarCount; jarIndex++) {
-          final String jarPath = "/worker/modules/" + moduleName + "/" + moduleTime + "/jar/"
-            + jarIndex;
-          try {
-            final File jarFile = new File(moduleDir, jarIndex + ".jar");
-            jarFile.deleteOnExit();
-            final WorkerHttpClient httpClient = this.scheduler.getHttpClient();
-            httpClient.getResource(jarPath, jarFile);
-            if (jarFile.length() > 0) {
-              urls.add(FileUtil.toUrl(jarFile));
-            } else {
-              log.error("Empty jar file " + jarPath);
-            }
-          } catch (final Throwable e) {
-            log.error("Unable to download jar file " + jarPath, e);
-          }
+        List<URL> urls = null;
+        final WorkerJarCache jarCache = this.scheduler.getJarCache();
+        if (jarCache != null) {
+          urls = jarCache.getJarUrls(log, moduleName, moduleTime);
+        }
+        if (urls == null) {
+          urls = downloadModuleJars(log, moduleName, moduleTime, moduleJarCount);
         }
         final ClassLoader parentClassLoader = getClass().getClassLoader();
         final ClassLoader classLoader = ClassLoaderFactoryBean.newClassLoader(parentClassLoader,
@@ -415,6 +428,8 @@ public class WorkerMessageHandler implements ModuleEventListener, BaseCloseable
       moduleSecurityChanged(message);
     } else if ("cancelGroup".equals(type)) {
       this.scheduler.cancelGroup(message);
+    } else if ("executingGroupIdsRequest".equals(type)) {
+      this.scheduler.addExecutingGroupsFullSyncMessage();
     } else {
       final JsonAsyncSender messageSender = getMessageSender();
       messageSender.setResult(message);
@@ -427,6 +442,7 @@ public class WorkerMessageHandler implements ModuleEventListener, BaseCloseable
     this.reconnectDelay = 0;
     this.messageSender.setSession(session);
     Logs.info(this, "Master connected " + this.webSocketUrl);
+    this.scheduler.addExecutingGroupsFullSyncMessage();
   }
 
   public void sendMessage(final MapEx message) {
@@ -56,6 +56,7 @@ import ca.bc.gov.open.cpf.client.httpclient.HttpStatusCodeException;
 import ca.bc.gov.open.cpf.plugin.api.log.AppLog;
 import ca.bc.gov.open.cpf.plugin.impl.BusinessApplication;
 import ca.bc.gov.open.cpf.plugin.impl.BusinessApplicationRegistry;
+import ca.bc.gov.open.cpf.plugin.impl.GroupIdSet;
 import ca.bc.gov.open.cpf.plugin.impl.module.ClassLoaderModule;
 
 import com.revolsys.collection.map.LinkedHashMapEx;
@@ -104,12 +105,38 @@ public class WorkerScheduler extends ThreadPoolExecutor
 
   private String environmentName = "default";
 
-  private final Set<String> executingGroupIds = new LinkedHashSet<>();
+  /** The groups executing on the worker, also the monitor for the started and finished groups. */
+  private final GroupIdSet executingGroupIds = new GroupIdSet();
+
+  /** The groups started since the last executing groups message. */
+  private final Set<String> startedGroupIds = new LinkedHashSet<>();
+
+  /** The groups finished since the last executing groups message. */
+  private final Set<String> finishedGroupIds = new LinkedHashSet<>();
+
+  /** The sequence number of the last executing groups message. */
+  private long executingGroupsSequence;
+
+  /** Flag indicating if the next executing groups message must contain all the groups. */
+  private boolean executingGroupsFullSync = true;
+
+  private long lastFullSyncTime;
+
+  private final long maxTimeBetweenFullSyncs = 10 * 60 * 1000;
 
   private WorkerHttpClient httpClient;
 
   private String id;
 
+  private WorkerJarCache jarCache;
+
+  /** The directory module jars are cached in between restarts of the worker. */
+  private File jarCacheDirectory = new File(System.getProperty("java.io.tmpdir"),
+    "cpf-worker-jars");
+
+  /** The number of module jars downloaded in parallel when a module is loaded. */
+  private int jarDownloadThreadCount = 4;
+
   private long lastPingTime;
 
   private final long maxTimeBetweenPings = 60 * 1000;
@@ -126,6 +153,9 @@ public class WorkerScheduler extends ThreadPoolExecutor
 
   private WorkerSecurityServiceFactory securityServiceFactory;
 
+  /** Flag indicating if the time spent in each stage of a group is sent with the results. */
+  private boolean stageTimesEnabled = true;
+
   private int timeout = 0;
 
   private final int timeoutStep = 10;
@@ -164,18 +194,39 @@ public class WorkerScheduler extends ThreadPoolExecutor
 
   protected void addExecutingGroupId(final String groupId) {
     synchronized (this.executingGroupIds) {
-      this.executingGroupIds.add(groupId);
+      if (this.executingGroupIds.add(groupId)) {
+        if (!this.finishedGroupIds.remove(groupId)) {
+          this.startedGroupIds.add(groupId);
+        }
+      }
     }
   }
 
+  /**
+   * Send the groups started and finished since the last message to the server. All the
+   * executing groups are sent if the server requested them or it has been more than 10 minutes
+   * since they were last sent. No message is sent if no groups have changed and the server was
+   * sent a message in the last minute.
+   */
   public void addExecutingGroupsMessage() {
     final MapEx message = newExecutingGroupsMessage();
     final WorkerMessageHandler messageHandler = this.messageHandler;
-    if (messageHandler != null) {
+    if (message != null && messageHandler != null) {
       messageHandler.sendMessage(message);
     }
   }
 
+  /**
+   * Send all the executing groups to the server in the next executing groups message, for example
+   * after connecting to the server or if the server's copy of the groups is not the same.
+   */
+  public void addExecutingGroupsFullSyncMessage() {
+    synchronized (this.executingGroupIds) {
+      this.executingGroupsFullSync = true;
+    }
+    addExecutingGroupsMessage();
+  }
+
   public void addFailedGroup(final String groupId) {
     final MapEx message = new LinkedHashMapEx();
     message.put("type", "failedGroupId");
@@ -225,6 +276,8 @@ public class WorkerScheduler extends ThreadPoolExecutor
 
     initConfig();
     initLogging();
+    this.jarCache = new WorkerJarCache(this, this.jarCacheDirectory,
+      this.jarDownloadThreadCount);
     try {
       this.httpClient = new WorkerHttpClient(this.webServiceUrl, this.username, this.password,
         getMaximumPoolSize() + 1);
@@ -266,6 +319,10 @@ public class WorkerScheduler extends ThreadPoolExecutor
       this.client.shutdown();
       this.client = null;
     }
+    if (this.jarCache != null) {
+      this.jarCache.close();
+      this.jarCache = null;
+    }
     if (this.httpClient != null) {
       this.httpClient.close();
     }
@@ -334,6 +391,18 @@ public class WorkerScheduler extends ThreadPoolExecutor
     return this.id;
   }
 
+  public WorkerJarCache getJarCache() {
+    return this.jarCache;
+  }
+
+  public File getJarCacheDirectory() {
+    return this.jarCacheDirectory;
+  }
+
+  public int getJarDownloadThreadCount() {
+    return this.jarDownloadThreadCount;
+  }
+
   public String getPassword() {
     return this.password;
   }
@@ -399,6 +468,8 @@ public class WorkerScheduler extends ThreadPoolExecutor
           key = key.substring(10);
           if ("appLogDirectory".equals(key)) {
             setAppLogDirectory(new File(value.toString()));
+          } else if ("jarCacheDirectory".equals(key)) {
+            setJarCacheDirectory(new File(value.toString()));
           } else {
             Property.setSimple(this, key, value);
           }
@@ -426,6 +497,10 @@ public class WorkerScheduler extends ThreadPoolExecutor
     return this.running;
   }
 
+  public boolean isStageTimesEnabled() {
+    return this.stageTimesEnabled;
+  }
+
   public void logError(final String message) {
     Logs.error(this, message);
   }
@@ -437,13 +512,30 @@ public class WorkerScheduler extends ThreadPoolExecutor
   }
 
   protected MapEx newExecutingGroupsMessage() {
+    final long time = System.currentTimeMillis();
     final MapEx message = new LinkedHashMapEx();
-    message.put("type", "executingGroupIds");
     message.put("workerId", this.id);
     synchronized (this.executingGroupIds) {
-      message.put("executingGroupIds", new ArrayList<>(this.executingGroupIds));
+      final long nextFullSyncTime = this.lastFullSyncTime + this.maxTimeBetweenFullSyncs;
+      if (this.executingGroupsFullSync || time > nextFullSyncTime) {
+        message.put("type", "executingGroupIds");
+        message.put("executingGroupIds", this.executingGroupIds.toList());
+        this.executingGroupsFullSync = false;
+        this.lastFullSyncTime = time;
+      } else if (this.startedGroupIds.isEmpty() && this.finishedGroupIds.isEmpty()
+        && time <= this.lastPingTime + this.maxTimeBetweenPings) {
+        return null;
+      } else {
+        message.put("type", "executingGroupDelta");
+        message.put("startedGroupIds", new ArrayList<>(this.startedGroupIds));
+        message.put("finishedGroupIds", new ArrayList<>(this.finishedGroupIds));
+      }
+      this.startedGroupIds.clear();
+      this.finishedGroupIds.clear();
+      message.put("sequence", ++this.executingGroupsSequence);
+      message.put("digest", this.executingGroupIds.getDigest());
     }
-    this.lastPingTime = System.currentTimeMillis();
+    this.lastPingTime = time;
     return message;
   }
 
@@ -469,6 +561,12 @@ public class WorkerScheduler extends ThreadPoolExecutor
         }
         final Set<String> loadedModuleNames = messageHandler.getLoadedModuleNames();
         parameters.put("moduleName", loadedModuleNames);
+        parameters.put("maxGroupCount", getMaximumPoolSize());
+        final Runtime runtime = Runtime.getRuntime();
+        final long maxMemory = runtime.maxMemory();
+        parameters.put("cpuCount", runtime.availableProcessors());
+        parameters.put("freeMemory", maxMemory - runtime.totalMemory() + runtime.freeMemory());
+        parameters.put("maxMemory", maxMemory);
 
         if (isRunning()) {
           response = this.httpClient.postGetJsonResource(this.nextIdPath, parameters);
@@ -526,7 +624,11 @@ public class WorkerScheduler extends ThreadPoolExecutor
 
   protected void removeExecutingGroupId(final String groupId) {
     synchronized (this.executingGroupIds) {
-      this.executingGroupIds.remove(groupId);
+      if (this.executingGroupIds.remove(groupId)) {
+        if (!this.startedGroupIds.remove(groupId)) {
+          this.finishedGroupIds.add(groupId);
+        }
+      }
     }
   }
 
@@ -606,6 +708,14 @@ public class WorkerScheduler extends ThreadPoolExecutor
     super.setMaximumPoolSize(maximumPoolSize);
   }
 
+  public void setJarCacheDirectory(final File jarCacheDirectory) {
+    this.jarCacheDirectory = jarCacheDirectory;
+  }
+
+  public void setJarDownloadThreadCount(final int jarDownloadThreadCount) {
+    this.jarDownloadThreadCount = Math.max(1, jarDownloadThreadCount);
+  }
+
   public void setModuleNames(final List<String> moduleNames) {
     final WorkerMessageHandler messageHandler = this.messageHandler;
     if (messageHandler != null) {
@@ -621,6 +731,10 @@ public class WorkerScheduler extends ThreadPoolExecutor
     ((NamedThreadFactory)getThreadFactory()).setPriority(priority);
   }
 
+  public void setStageTimesEnabled(final boolean stageTimesEnabled) {
+    this.stageTimesEnabled = stageTimesEnabled;
+  }
+
   public void setUsername(final String username) {
     this.username = username;
   }
@@ -230,6 +230,92 @@
                     </tbody>
                   </table></td>
             </tr>
+            <tr>
+              <th>Group Time Percentiles</th>
+              <td><div class="table-responsive">
+                  <table cellspacing="0" cellpadding="0" class="table table-striped table-condensed">
+                    <thead>
+                      <tr>
+                        <th style="width: 100px">&nbsp;</th>
+                        <th style="width: 100px">p50 (ms)</th>
+                        <th style="width: 100px">p95 (ms)</th>
+                        <th style="width: 100px">p99 (ms)</th>
+                      </tr>
+                    </thead>
+                    <tbody>
+                      <tr>
+                        <th>Application</th>
+                        <td style="text-align: right"><c:out
+                            value="${statisitcs.applicationExecutedGroupsTimeP50}" /></td>
+                        <td style="text-align: right"><c:out
+                            value="${statisitcs.applicationExecutedGroupsTimeP95}" /></td>
+                        <td style="text-align: right"><c:out
+                            value="${statisitcs.applicationExecutedGroupsTimeP99}" /></td>
+                      </tr>
+                      <tr>
+                        <th>Scheduled to Completed</th>
+                        <td style="text-align: right"><c:out
+                            value="${statisitcs.executedGroupsTimeP50}" /></td>
+                        <td style="text-align: right"><c:out
+                            value="${statisitcs.executedGroupsTimeP95}" /></td>
+                        <td style="text-align: right"><c:out
+                            value="${statisitcs.executedGroupsTimeP99}" /></td>
+                      </tr>
+                    </tbody>
+                  </table></td>
+            </tr>
+            <c:if test="${statisitcs.workerStageTimesGroupsCount != 0}">
+            <tr>
+              <th>Worker Stage Times</th>
+              <td><div class="table-responsive">
+                  <table cellspacing="0" cellpadding="0" class="table table-striped table-condensed">
+                    <thead>
+                      <tr>
+                        <th style="width: 100px">&nbsp;</th>
+                        <th style="width: 100px">Avg Time per Group (HH:MM:SS.SSS)</th>
+                        <th style="width: 100px">Total Time (HH:MM:SS.SSS)</th>
+                        <th style="width: 100px">% of Time</th>
+                      </tr>
+                    </thead>
+                    <tbody>
+                      <c:forEach items="${statisitcs.workerStageTimes}" var="stageTime">
+                      <tr>
+                        <th><c:out value="${stageTime.name}" /></th>
+                        <td style="text-align: right"><c:out value="${stageTime.averageTime}" /></td>
+                        <td style="text-align: right"><c:out value="${stageTime.totalTime}" /></td>
+                        <td style="text-align: right"><c:out value="${stageTime.percent}" /></td>
+                      </tr>
+                      </c:forEach>
+                    </tbody>
+                  </table></td>
+            </tr>
+            </c:if>
+            <tr>
+              <th>Instant Mode Cache</th>
+              <td><div class="table-responsive">
+                  <table cellspacing="0" cellpadding="0" class="table table-striped table-condensed">
+                    <thead>
+                      <tr>
+                        <th style="width: 100px">Hits</th>
+                        <th style="width: 100px">Misses</th>
+                        <th style="width: 100px">Hit Rate (%)</th>
+                        <th style="width: 100px">Bytes Served</th>
+                      </tr>
+                    </thead>
+                    <tbody>
+                      <tr>
+                        <td style="text-align: right"><c:out
+                            value="${statisitcs.instantModeCacheHitsCount}" /></td>
+                        <td style="text-align: right"><c:out
+                            value="${statisitcs.instantModeCacheMissesCount}" /></td>
+                        <td style="text-align: right"><c:out
+                            value="${statisitcs.instantModeCacheHitPercent}" /></td>
+                        <td style="text-align: right"><c:out
+                            value="${statisitcs.instantModeCacheHitBytes}" /></td>
+                      </tr>
+                    </tbody>
+                  </table></td>
+            </tr>
           </tbody>
       </table>
       </div>
@@ -94,10 +94,12 @@ public class GeometryValidatorPlugin {
       if (this.resultScaleFactorZ == 0) {
         this.resultScaleFactorZ = sourceGeometryFactory.getScaleZ();
       }
-      final GeometryFactory geometryFactory = GeometryFactory.fixed(this.resultSrid,
-        this.resultNumAxis, this.resultScaleFactorXy, this.resultScaleFactorXy,
-        this.resultScaleFactorZ);
-      this.geometry = geometryFactory.geometry(this.geometry);
+      final GeometryFactory geometryFactory = ca.bc.gov.open.cpf.plugin.api.GeometryFactory
+        .getRevolsysFactory(this.resultSrid, this.resultNumAxis, this.resultScaleFactorXy,
+          this.resultScaleFactorZ);
+      if (sourceGeometryFactory != geometryFactory) {
+        this.geometry = geometryFactory.geometry(this.geometry);
+      }
 
       final IsValidOp validOp = new IsValidOp(this.geometry);
       this.isValid = validOp.isValid();
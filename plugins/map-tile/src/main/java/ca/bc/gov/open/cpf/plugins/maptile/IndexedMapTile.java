@@ -0,0 +1,102 @@
+/*
+ * Copyright © 2008-2016, Province of British Columbia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.bc.gov.open.cpf.plugins.maptile;
+
+import com.revolsys.geometry.model.BoundingBox;
+import com.revolsys.geometry.model.Polygon;
+import com.revolsys.gis.grid.RectangularMapTile;
+
+/**
+ * A map tile stored in the shared {@link MapTileIndexFactory} index. The formatted name and the
+ * last boundary polygon created for the tile are cached so that requests for locations in the
+ * same tile don't re-create them.
+ */
+public class IndexedMapTile {
+  private static class Boundary {
+    private final int numBoundaryPoints;
+
+    private final Polygon polygon;
+
+    private Boundary(final int numBoundaryPoints, final Polygon polygon) {
+      this.numBoundaryPoints = numBoundaryPoints;
+      this.polygon = polygon;
+    }
+  }
+
+  private final RectangularMapTile tile;
+
+  private final String formattedName;
+
+  private final double minX;
+
+  private final double minY;
+
+  private final double maxX;
+
+  private final double maxY;
+
+  private volatile Boundary boundary;
+
+  public IndexedMapTile(final RectangularMapTile tile) {
+    this.tile = tile;
+    this.formattedName = tile.getFormattedName();
+    final BoundingBox boundingBox = tile.getBoundingBox();
+    this.minX = boundingBox.getMinX();
+    this.minY = boundingBox.getMinY();
+    this.maxX = boundingBox.getMaxX();
+    this.maxY = boundingBox.getMaxY();
+  }
+
+  /**
+   * Check if the location is within the tile. The minimum edges are included in the tile and the
+   * maximum edges are included in the adjacent tile.
+   *
+   * @param x The x coordinate.
+   * @param y The y coordinate.
+   * @return True if the location is in the tile.
+   */
+  public boolean covers(final double x, final double y) {
+    return this.minX <= x && x < this.maxX && this.minY <= y && y < this.maxY;
+  }
+
+  public BoundingBox getBoundingBox() {
+    return this.tile.getBoundingBox();
+  }
+
+  public String getFormattedName() {
+    return this.formattedName;
+  }
+
+  public Polygon getPolygon(final int numBoundaryPoints) {
+    final Boundary boundary = this.boundary;
+    if (boundary != null && boundary.numBoundaryPoints == numBoundaryPoints) {
+      return boundary.polygon;
+    } else {
+      final Polygon polygon = this.tile.getPolygon(numBoundaryPoints);
+      this.boundary = new Boundary(numBoundaryPoints, polygon);
+      return polygon;
+    }
+  }
+
+  public RectangularMapTile getTile() {
+    return this.tile;
+  }
+
+  @Override
+  public String toString() {
+    return this.formattedName;
+  }
+}
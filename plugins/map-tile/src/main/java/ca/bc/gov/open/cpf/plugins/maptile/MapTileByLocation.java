@@ -24,6 +24,9 @@ import ca.bc.gov.open.cpf.plugin.api.JobParameter;
 import ca.bc.gov.open.cpf.plugin.api.RequestParameter;
 import ca.bc.gov.open.cpf.plugin.api.Required;
 import ca.bc.gov.open.cpf.plugin.api.ResultAttribute;
+import ca.bc.gov.open.cpf.plugin.api.SharedSpatialIndex;
+import ca.bc.gov.open.cpf.plugin.api.spatial.SpatialIndex;
+import ca.bc.gov.open.cpf.plugin.api.spatial.SpatialIndexes;
 
 import com.revolsys.geometry.model.Polygon;
 import com.revolsys.gis.grid.RectangularMapGrid;
@@ -46,21 +49,41 @@ public class MapTileByLocation {
 
   private short numBoundaryPoints = 50;
 
+  private SpatialIndexes<IndexedMapTile> mapTileIndexes;
+
   public void execute() {
-    final RectangularMapGrid grid = RectangularMapGridFactory.getGrid(this.mapGridName);
-    if (grid == null) {
-      throw new IllegalArgumentException("Grid not supported " + this.mapGridName);
+    final IndexedMapTile indexedTile = getIndexedTile();
+    if (indexedTile != null) {
+      this.mapTileId = indexedTile.getFormattedName();
+      this.mapTileBoundary = indexedTile.getPolygon(this.numBoundaryPoints);
     } else {
-      final RectangularMapTile tile = grid.getTileByLocation(this.longitude, this.latitude);
-      if (tile == null) {
-        throw new IllegalArgumentException("tile not found");
+      final RectangularMapGrid grid = RectangularMapGridFactory.getGrid(this.mapGridName);
+      if (grid == null) {
+        throw new IllegalArgumentException("Grid not supported " + this.mapGridName);
       } else {
-        this.mapTileId = tile.getFormattedName();
-        this.mapTileBoundary = tile.getPolygon(this.numBoundaryPoints);
+        final RectangularMapTile tile = grid.getTileByLocation(this.longitude, this.latitude);
+        if (tile == null) {
+          throw new IllegalArgumentException("tile not found");
+        } else {
+          this.mapTileId = tile.getFormattedName();
+          this.mapTileBoundary = tile.getPolygon(this.numBoundaryPoints);
+        }
       }
     }
   }
 
+  private IndexedMapTile getIndexedTile() {
+    if (this.mapTileIndexes != null) {
+      final SpatialIndex<IndexedMapTile> index = this.mapTileIndexes.getIndex(this.mapGridName);
+      if (index != null) {
+        final double x = this.longitude;
+        final double y = this.latitude;
+        return index.find(x, y, mapTile -> mapTile.covers(x, y));
+      }
+    }
+    return null;
+  }
+
   @ResultAttribute(index = 2)
   public double getLatitude() {
     return this.latitude;
@@ -114,6 +137,11 @@ public class MapTileByLocation {
     this.mapGridName = StringUtils.trimWhitespace(mapGridName);
   }
 
+  @SharedSpatialIndex(MapTileIndexFactory.class)
+  public void setMapTileIndexes(final SpatialIndexes<IndexedMapTile> mapTileIndexes) {
+    this.mapTileIndexes = mapTileIndexes;
+  }
+
   @JobParameter
   @RequestParameter(index = 4, minValue = "1", maxValue = "100",
       description = "The number of points to include on each edge of the polygon created for the map tile's bounding box.")
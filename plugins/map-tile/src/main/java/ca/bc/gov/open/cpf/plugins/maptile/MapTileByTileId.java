@@ -25,7 +25,11 @@ import ca.bc.gov.open.cpf.plugin.api.JobParameter;
 import ca.bc.gov.open.cpf.plugin.api.RequestParameter;
 import ca.bc.gov.open.cpf.plugin.api.Required;
 import ca.bc.gov.open.cpf.plugin.api.ResultAttribute;
+import ca.bc.gov.open.cpf.plugin.api.SharedSpatialIndex;
+import ca.bc.gov.open.cpf.plugin.api.spatial.SpatialIndex;
+import ca.bc.gov.open.cpf.plugin.api.spatial.SpatialIndexes;
 
+import com.revolsys.geometry.model.BoundingBox;
 import com.revolsys.geometry.model.Polygon;
 import com.revolsys.gis.grid.RectangularMapGrid;
 import com.revolsys.gis.grid.RectangularMapGridFactory;
@@ -46,6 +50,8 @@ public class MapTileByTileId {
 
   private short numBoundaryPoints = 20;
 
+  private SpatialIndexes<IndexedMapTile> mapTileIndexes;
+
   public void execute() {
     final RectangularMapGrid grid = RectangularMapGridFactory.getGrid(this.mapGridName);
     if (grid == null) {
@@ -55,12 +61,36 @@ public class MapTileByTileId {
       if (tile == null) {
         throw new IllegalArgumentException("tile not found");
       } else {
-        this.mapTileId = tile.getFormattedName();
-        this.mapTileBoundary = tile.getPolygon(this.numBoundaryPoints);
+        final IndexedMapTile indexedTile = getIndexedTile(tile);
+        if (indexedTile != null) {
+          this.mapTileId = indexedTile.getFormattedName();
+          this.mapTileBoundary = indexedTile.getPolygon(this.numBoundaryPoints);
+        } else {
+          this.mapTileId = tile.getFormattedName();
+          this.mapTileBoundary = tile.getPolygon(this.numBoundaryPoints);
+        }
       }
     }
   }
 
+  /**
+   * Get the shared indexed tile for the tile so the boundary polygon cached for the tile is
+   * reused. The tile is found by name in the grid and then looked up in the index at its centre.
+   */
+  private IndexedMapTile getIndexedTile(final RectangularMapTile tile) {
+    if (this.mapTileIndexes != null) {
+      final SpatialIndex<IndexedMapTile> index = this.mapTileIndexes.getIndex(this.mapGridName);
+      if (index != null) {
+        final BoundingBox boundingBox = tile.getBoundingBox();
+        final double x = (boundingBox.getMinX() + boundingBox.getMaxX()) / 2;
+        final double y = (boundingBox.getMinY() + boundingBox.getMaxY()) / 2;
+        final String name = tile.getFormattedName();
+        return index.find(x, y, mapTile -> name.equals(mapTile.getFormattedName()));
+      }
+    }
+    return null;
+  }
+
   @ResultAttribute(index = 1)
   public String getMapGridName() {
     return this.mapGridName;
@@ -97,6 +127,11 @@ public class MapTileByTileId {
     this.mapTileId = StringUtils.trimWhitespace(mapTileId);
   }
 
+  @SharedSpatialIndex(MapTileIndexFactory.class)
+  public void setMapTileIndexes(final SpatialIndexes<IndexedMapTile> mapTileIndexes) {
+    this.mapTileIndexes = mapTileIndexes;
+  }
+
   @JobParameter
   @RequestParameter(index = 3, minValue = "1", maxValue = "100",
       description = "The number of points to include on each edge of the polygon created for the map tile's bounding box.")
@@ -0,0 +1,91 @@
+/*
+ * Copyright © 2008-2016, Province of British Columbia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.bc.gov.open.cpf.plugins.maptile;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.jeometry.common.logging.Logs;
+
+import ca.bc.gov.open.cpf.plugin.api.spatial.SpatialIndex;
+import ca.bc.gov.open.cpf.plugin.api.spatial.SpatialIndexFactory;
+
+import com.revolsys.geometry.model.BoundingBox;
+import com.revolsys.gis.grid.RectangularMapGrid;
+import com.revolsys.gis.grid.RectangularMapGridFactory;
+import com.revolsys.gis.grid.RectangularMapTile;
+
+/**
+ * Construct a spatial index of the tiles of a map grid that cover British Columbia. Grids that
+ * would have more than {@link #MAX_TILE_COUNT} tiles are not indexed, the plug-ins calculate the
+ * tile for each location for those grids.
+ */
+public class MapTileIndexFactory implements SpatialIndexFactory<IndexedMapTile> {
+  /** The maximum number of tiles in an index. */
+  public static final int MAX_TILE_COUNT = 50000;
+
+  /** The extent (longitude/latitude) of the tiles to include in the index. */
+  private static final double MIN_X = -139.5;
+
+  private static final double MIN_Y = 48.0;
+
+  private static final double MAX_X = -114.0;
+
+  private static final double MAX_Y = 60.5;
+
+  /** The offset from a tile edge used to get the next tile. */
+  private static final double EDGE_OFFSET = 1e-7;
+
+  @Override
+  public SpatialIndex<IndexedMapTile> newSpatialIndex(final String mapGridName) {
+    final RectangularMapGrid grid = RectangularMapGridFactory.getGrid(mapGridName);
+    if (grid == null) {
+      return null;
+    } else {
+      final Map<String, IndexedMapTile> tiles = new LinkedHashMap<>();
+      double y = MIN_Y;
+      while (y < MAX_Y) {
+        double nextY = Double.POSITIVE_INFINITY;
+        double x = MIN_X;
+        while (x < MAX_X) {
+          final RectangularMapTile tile = grid.getTileByLocation(x + EDGE_OFFSET,
+            y + EDGE_OFFSET);
+          if (tile == null) {
+            return null;
+          }
+          final BoundingBox boundingBox = tile.getBoundingBox();
+          final double tileMaxX = boundingBox.getMaxX();
+          final double tileMaxY = boundingBox.getMaxY();
+          if (tileMaxX <= x || tileMaxY <= y) {
+            Logs.debug(this, "Map grid " + mapGridName + " cannot be indexed");
+            return null;
+          }
+          final String name = tile.getFormattedName();
+          if (!tiles.containsKey(name)) {
+            tiles.put(name, new IndexedMapTile(tile));
+            if (tiles.size() > MAX_TILE_COUNT) {
+              return null;
+            }
+          }
+          nextY = Math.min(nextY, tileMaxY);
+          x = tileMaxX;
+        }
+        y = nextY;
+      }
+      return SpatialIndex.newSpatialIndex(tiles.values(), IndexedMapTile::getBoundingBox);
+    }
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright © 2008-2016, Province of British Columbia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.bc.gov.open.cpf.plugins.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import ca.bc.gov.open.cpf.plugin.api.spatial.SpatialIndexes;
+import ca.bc.gov.open.cpf.plugins.maptile.IndexedMapTile;
+import ca.bc.gov.open.cpf.plugins.maptile.MapTileByLocation;
+import ca.bc.gov.open.cpf.plugins.maptile.MapTileIndexFactory;
+
+/**
+ * Compare the throughput of {@link MapTileByLocation} for groups of random locations in BC
+ * calculating the tile for each request and using the module scoped tile index, from several
+ * threads like the workers.
+ */
+public class MapTileIndexBenchmark {
+  private static final int GROUP_SIZE = 10000;
+
+  private static final int ITERATIONS = 5;
+
+  private static final int THREAD_COUNT = 8;
+
+  public static void main(final String[] args) throws Exception {
+    final Random random = new Random(42);
+    final double[] locations = new double[GROUP_SIZE * 2];
+    for (int i = 0; i < GROUP_SIZE; i++) {
+      locations[i * 2] = -138 + random.nextDouble() * 23;
+      locations[i * 2 + 1] = 48.5 + random.nextDouble() * 11;
+    }
+
+    final ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+    try {
+      for (final String mapGridName : new String[] {
+        "NTS 1:250 000", "NTS 1:50 000", "BCGS 1:20 000"
+      }) {
+        final SpatialIndexes<IndexedMapTile> indexes = new SpatialIndexes<>(
+          new MapTileIndexFactory());
+        final long start = System.nanoTime();
+        indexes.getIndex(mapGridName);
+        final double buildMs = (System.nanoTime() - start) / 1000000.0;
+
+        final double calculatedMs = time(executor, locations, () -> {
+          final MapTileByLocation plugin = new MapTileByLocation();
+          plugin.setMapGridName(mapGridName);
+          return plugin;
+        });
+        final double indexedMs = time(executor, locations, () -> {
+          final MapTileByLocation plugin = new MapTileByLocation();
+          plugin.setMapGridName(mapGridName);
+          plugin.setMapTileIndexes(indexes);
+          return plugin;
+        });
+        System.out.println(mapGridName + "\tbuild=" + buildMs + "ms\tcalculated=" + calculatedMs
+          + "ms\tindexed=" + indexedMs + "ms");
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static double time(final ExecutorService executor, final double[] locations,
+    final Supplier<MapTileByLocation> pluginFactory) throws Exception {
+    long total = 0;
+    for (int iteration = -1; iteration < ITERATIONS; iteration++) {
+      final long start = System.nanoTime();
+      final List<Future<?>> futures = new ArrayList<>();
+      final int batchSize = GROUP_SIZE / THREAD_COUNT;
+      for (int thread = 0; thread < THREAD_COUNT; thread++) {
+        final int startIndex = thread * batchSize;
+        futures.add(executor.submit(() -> {
+          for (int i = startIndex; i < startIndex + batchSize; i++) {
+            final MapTileByLocation plugin = pluginFactory.get();
+            plugin.setLongitude(locations[i * 2]);
+            plugin.setLatitude(locations[i * 2 + 1]);
+            plugin.setNumBoundaryPoints((short)20);
+            plugin.execute();
+          }
+        }));
+      }
+      for (final Future<?> future : futures) {
+        future.get();
+      }
+      if (iteration >= 0) {
+        total += System.nanoTime() - start;
+      }
+    }
+    return total / ITERATIONS / 1000000.0;
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright © 2008-2016, Province of British Columbia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.bc.gov.open.cpf.plugins.test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.Appender;
+import org.apache.logging.log4j.core.Logger;
+import org.apache.logging.log4j.core.appender.FileAppender;
+import org.apache.logging.log4j.core.layout.PatternLayout;
+
+import ca.bc.gov.open.cpf.plugin.api.log.AppLog;
+import ca.bc.gov.open.cpf.plugin.impl.log.AsyncWrappedAppender;
+
+/**
+ * Compare the request throughput of the per request {@link AppLog} messages written by the workers
+ * using a file appender on the request threads and the {@link AsyncWrappedAppender}, with
+ * concatenated and parameterised messages at the INFO and DEBUG levels.
+ */
+public class AppLogBenchmark {
+  private static final int ITERATIONS = 5;
+
+  private static final int REQUEST_COUNT = 50000;
+
+  private static final int THREAD_COUNT = 8;
+
+  private static Appender newFileAppender(final File directory, final String name) {
+    final FileAppender appender = FileAppender.newBuilder() //
+      .withName(name) //
+      .withFileName(new File(directory, name + ".log").getAbsolutePath()) //
+      .withLayout(PatternLayout.newBuilder().withPattern("%d\t%p\t%c\t%m%n").build()) //
+      .build();
+    return appender;
+  }
+
+  public static void main(final String[] args) throws Exception {
+    final File directory = Files.createTempDirectory("cpf-applog").toFile();
+    final ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+    try {
+      for (final String logLevel : new String[] {
+        "INFO", "DEBUG"
+      }) {
+        for (final boolean async : new boolean[] {
+          false, true
+        }) {
+          final String name = logLevel + (async ? ".async" : ".sync");
+          Appender appender = newFileAppender(directory, name);
+          if (async) {
+            appender = new AsyncWrappedAppender(appender);
+          }
+          appender.start();
+          final Logger logger = (Logger)LogManager.getLogger("benchmark." + name);
+          logger.setAdditive(false);
+          logger.setLevel(Level.ALL);
+          logger.addAppender(appender);
+          try {
+            final double concatenatedMs = time(executor, name, logLevel, false);
+            final double parameterisedMs = time(executor, name, logLevel, true);
+            System.out.println(logLevel + "\t" + (async ? "async" : "sync") + "\tconcatenated="
+              + concatenatedMs + "ms\tparameterised=" + parameterisedMs + "ms");
+          } finally {
+            logger.removeAppender(appender);
+            appender.stop();
+            if (appender instanceof AsyncWrappedAppender) {
+              final long discardedCount = ((AsyncWrappedAppender)appender).getDiscardedCount();
+              System.out.println("\tdiscarded=" + discardedCount);
+            }
+          }
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static double time(final ExecutorService executor, final String name,
+    final String logLevel, final boolean parameterised) throws Exception {
+    long total = 0;
+    for (int iteration = -1; iteration < ITERATIONS; iteration++) {
+      final long start = System.nanoTime();
+      final List<Future<?>> futures = new ArrayList<>();
+      for (int thread = 0; thread < THREAD_COUNT; thread++) {
+        final String groupId = "1-" + thread;
+        futures.add(executor.submit(() -> {
+          final AppLog log = AppLog.getAppLog("benchmark", name, groupId, logLevel);
+          for (int i = 0; i < REQUEST_COUNT / THREAD_COUNT; i++) {
+            final Integer sequenceNumber = i;
+            if (parameterised) {
+              log.debug("Start\tRequest Execution\t{}\t{}", groupId, sequenceNumber);
+              log.info("Result\t{}\t{}", groupId, sequenceNumber);
+              log.debug("End\tRequest Execution\t{}\t{}", groupId, sequenceNumber);
+            } else {
+              log.debug("Start\tRequest Execution\t" + groupId + "\t" + sequenceNumber);
+              log.info("Result\t" + groupId + "\t" + sequenceNumber);
+              log.debug("End\tRequest Execution\t" + groupId + "\t" + sequenceNumber);
+            }
+          }
+        }));
+      }
+      for (final Future<?> future : futures) {
+        future.get();
+      }
+      if (iteration >= 0) {
+        total += System.nanoTime() - start;
+      }
+    }
+    return total / ITERATIONS / 1000000.0;
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright © 2008-2016, Province of British Columbia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.bc.gov.open.cpf.plugins.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+
+import ca.bc.gov.open.cpf.plugin.impl.geometry.GeometryConverter;
+
+import com.revolsys.geometry.model.Geometry;
+import com.revolsys.geometry.model.GeometryFactory;
+
+/**
+ * Compare projecting batches of {@link GeometryResult} geometries between BC Albers (3005) and
+ * WGS84 (4326) using a new target factory for each geometry and the cached
+ * {@link GeometryConverter} factories, from several threads like the workers.
+ */
+public class GeometryConverterBenchmark {
+  private static final int BATCH_SIZE = 10000;
+
+  private static final int ITERATIONS = 5;
+
+  private static final int THREAD_COUNT = 8;
+
+  public static void main(final String[] args) throws Exception {
+    final GeometryFactory albers = GeometryFactory.fixed(3005, 2, 1000.0, 1000.0, 1.0);
+    final Random random = new Random(42);
+    final List<Geometry> geometries = new ArrayList<>();
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      final double x = 1000000 + random.nextDouble() * 500000;
+      final double y = 400000 + random.nextDouble() * 1000000;
+      final GeometryResult result = new GeometryResult(albers.point(x, y).buffer(100));
+      geometries.add(result.getGeometry());
+    }
+
+    final ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+    try {
+      int sourceSrid = 3005;
+      for (final int srid : new int[] {
+        4326, 3005
+      }) {
+        final double scaleXy = srid == 4326 ? 10000000.0 : 1000.0;
+        final BiFunction<Geometry, Integer, Geometry> uncached = (geometry, targetSrid) -> {
+          final GeometryFactory geometryFactory = GeometryFactory.fixed(targetSrid, 2, scaleXy,
+            scaleXy, 1.0);
+          return geometryFactory.geometry(geometry);
+        };
+        final BiFunction<Geometry, Integer, Geometry> cached = (geometry, targetSrid) -> {
+          final GeometryFactory geometryFactory = GeometryConverter.fixed(targetSrid, 2, scaleXy,
+            1.0);
+          return GeometryConverter.convert(geometry, geometryFactory);
+        };
+        final double uncachedMs = time(executor, geometries, srid, uncached);
+        final double cachedMs = time(executor, geometries, srid, cached);
+        System.out.println(sourceSrid + " -> " + srid + "\tuncached=" + uncachedMs + "ms\tcached="
+          + cachedMs + "ms");
+        final List<Geometry> projected = new ArrayList<>();
+        for (final Geometry geometry : geometries) {
+          projected.add(cached.apply(geometry, srid));
+        }
+        geometries.clear();
+        geometries.addAll(projected);
+        sourceSrid = srid;
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static double time(final ExecutorService executor, final List<Geometry> geometries,
+    final int targetSrid, final BiFunction<Geometry, Integer, Geometry> projection)
+    throws Exception {
+    long total = 0;
+    for (int iteration = -1; iteration < ITERATIONS; iteration++) {
+      final long start = System.nanoTime();
+      final List<Future<?>> futures = new ArrayList<>();
+      final int batchSize = geometries.size() / THREAD_COUNT;
+      for (int thread = 0; thread < THREAD_COUNT; thread++) {
+        final List<Geometry> batch = geometries.subList(thread * batchSize,
+          (thread + 1) * batchSize);
+        futures.add(executor.submit(() -> {
+          for (final Geometry geometry : batch) {
+            projection.apply(geometry, targetSrid);
+          }
+        }));
+      }
+      for (final Future<?> future : futures) {
+        future.get();
+      }
+      if (iteration >= 0) {
+        total += System.nanoTime() - start;
+      }
+    }
+    return total / ITERATIONS / 1000000.0;
+  }
+}
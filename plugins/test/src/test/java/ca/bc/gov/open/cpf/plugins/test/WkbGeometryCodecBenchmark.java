@@ -0,0 +1,80 @@
+/*
+ * Copyright © 2008-2016, Province of British Columbia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.bc.gov.open.cpf.plugins.test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.jeometry.common.data.type.DataTypes;
+
+import ca.bc.gov.open.cpf.plugin.impl.geometry.WkbGeometryCodec;
+
+import com.revolsys.geometry.model.Geometry;
+import com.revolsys.geometry.model.GeometryDataTypes;
+import com.revolsys.geometry.model.GeometryFactory;
+import com.revolsys.geometry.model.LinearRing;
+
+/**
+ * Compare the size and parse time of WKT and the {@link WkbGeometryCodec} encoding used in the
+ * group files for {@link GeometryResult} polygons of increasing size.
+ */
+public class WkbGeometryCodecBenchmark {
+  private static final int ITERATIONS = 20;
+
+  public static void main(final String[] args) {
+    final GeometryFactory geometryFactory = GeometryFactory.fixed(3005, 2, 1000.0, 1000.0, 1.0);
+    final Random random = new Random(42);
+    System.out.println("vertices\twktBytes\ttwkbBytes\twktParseMs\ttwkbParseMs");
+    for (final int vertexCount : new int[] {
+      100, 1000, 10000, 50000
+    }) {
+      final double[] coordinates = new double[(vertexCount + 1) * 2];
+      for (int i = 0; i < vertexCount; i++) {
+        final double angle = 2 * Math.PI * i / vertexCount;
+        final double radius = 5000 + random.nextDouble() * 500;
+        coordinates[i * 2] = 1200000 + radius * Math.cos(angle);
+        coordinates[i * 2 + 1] = 500000 + radius * Math.sin(angle);
+      }
+      coordinates[vertexCount * 2] = coordinates[0];
+      coordinates[vertexCount * 2 + 1] = coordinates[1];
+      final LinearRing ring = geometryFactory.linearRing(2, coordinates);
+      final GeometryResult result = new GeometryResult(geometryFactory.polygon(ring));
+      final Geometry geometry = result.getGeometry();
+
+      final String wkt = DataTypes.toString(geometry);
+      final String encoded = WkbGeometryCodec.toString(geometry);
+
+      final long wktTime = time(() -> GeometryDataTypes.GEOMETRY.toObject(wkt));
+      final long twkbTime = time(() -> WkbGeometryCodec.toGeometry(encoded));
+      if (!geometry.equals(WkbGeometryCodec.toGeometry(encoded))) {
+        System.err.println("Decoded geometry does not match for " + vertexCount + " vertices");
+      }
+      System.out.println(vertexCount + "\t" + wkt.getBytes(StandardCharsets.UTF_8).length + "\t"
+        + encoded.length() + "\t" + wktTime / 1000000.0 + "\t" + twkbTime / 1000000.0);
+    }
+  }
+
+  private static long time(final Runnable action) {
+    for (int i = 0; i < ITERATIONS; i++) {
+      action.run();
+    }
+    final long start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; i++) {
+      action.run();
+    }
+    return (System.nanoTime() - start) / ITERATIONS;
+  }
+}
@@ -7,6 +7,8 @@ CREATE TABLE CPF_APPLICATION_STATISTICS (
   CONSTRAINT APPLICATION_STATISTICS_PK PRIMARY KEY (APPLICATION_STATISTIC_ID)
 );
 
+CREATE INDEX APPLICATION_STATISTICS_APP_IDX ON CPF.CPF_APPLICATION_STATISTICS (BUSINESS_APPLICATION_NAME, DURATION_TYPE, START_TIMESTAMP);
+
 -- Sequence
 
 CREATE SEQUENCE CPF_AS_SEQ;
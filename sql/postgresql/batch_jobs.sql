@@ -14,6 +14,8 @@ CREATE TABLE CPF_BATCH_JOBS (
   NUM_SUBMITTED_REQUESTS          INTEGER         NOT NULL,
   NUM_SUBMITTED_GROUPS            INTEGER         NOT NULL,
   GROUP_SIZE                      SMALLINT        NOT NULL,
+  NUM_COMPLETED_REQUESTS          INTEGER         DEFAULT 0,
+  NUM_FAILED_REQUESTS             INTEGER         DEFAULT 0,
   COMPLETED_REQUEST_RANGE         TEXT,
   COMPLETED_GROUP_RANGE           TEXT,
   FAILED_REQUEST_RANGE            TEXT,
@@ -27,6 +29,10 @@ CREATE TABLE CPF_BATCH_JOBS (
 
 CREATE INDEX BATCH_JOBS_STATUS_APP_IDX ON CPF.CPF_BATCH_JOBS (JOB_STATUS, BUSINESS_APPLICATION_NAME);
 
+CREATE INDEX BATCH_JOBS_USER_IDX ON CPF.CPF_BATCH_JOBS (USER_ID, BATCH_JOB_ID);
+
+CREATE INDEX BATCH_JOBS_USER_APP_IDX ON CPF.CPF_BATCH_JOBS (USER_ID, BUSINESS_APPLICATION_NAME, BATCH_JOB_ID);
+
 -- Sequence
 
 CREATE SEQUENCE CPF_BJ_SEQ;
@@ -73,6 +79,10 @@ COMMENT ON COLUMN CPF_BATCH_JOBS.NUM_SUBMITTED_GROUPS IS 'This is the number of
 
 COMMENT ON COLUMN CPF_BATCH_JOBS.GROUP_SIZE IS 'This is the number of requests per group.';
 
+COMMENT ON COLUMN CPF_BATCH_JOBS.NUM_COMPLETED_REQUESTS IS 'This is the number of requests in the COMPLETED REQUEST RANGE, stored so job lists do not read the range.';
+
+COMMENT ON COLUMN CPF_BATCH_JOBS.NUM_FAILED_REQUESTS IS 'This is the number of requests in the FAILED REQUEST RANGE, stored so job lists do not read the range.';
+
 COMMENT ON COLUMN CPF_BATCH_JOBS.COMPLETED_REQUEST_RANGE IS 'This is the range of requests which have been completed successfully for the BATCH JOB.';
 
 COMMENT ON COLUMN CPF_BATCH_JOBS.COMPLETED_GROUP_RANGE IS 'This is the range of groups which have been completed successfully for the BATCH JOB.';
@@ -0,0 +1,200 @@
+/*
+ * Copyright © 2008-2016, Province of British Columbia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.bc.gov.open.cpf.api.scheduler.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import org.jeometry.common.data.type.DataTypes;
+import org.jeometry.common.io.PathName;
+import org.junit.Assert;
+import org.junit.Test;
+
+import ca.bc.gov.open.cpf.api.scheduler.GeometryUrlResolver;
+
+import com.revolsys.geometry.model.GeometryDataTypes;
+import com.revolsys.record.ArrayRecord;
+import com.revolsys.record.Record;
+import com.revolsys.record.schema.RecordDefinitionImpl;
+
+public class GeometryUrlResolverTest {
+  /**
+   * Record the URLs fetched instead of connecting to a server. If blocked the fetches wait until
+   * the resolver is released.
+   */
+  private static class TestResolver extends GeometryUrlResolver {
+    private final List<String> fetchedUrls = Collections.synchronizedList(new ArrayList<>());
+
+    private final Set<String> failingUrls = ConcurrentHashMap.newKeySet();
+
+    private final CountDownLatch released;
+
+    private TestResolver(final boolean blocked) {
+      if (blocked) {
+        this.released = new CountDownLatch(1);
+      } else {
+        this.released = new CountDownLatch(0);
+      }
+    }
+
+    @Override
+    protected String fetchWkt(final String url) {
+      this.fetchedUrls.add(url);
+      try {
+        this.released.await();
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      if (this.failingUrls.remove(url)) {
+        throw new IllegalStateException("Unable to connect to " + url);
+      } else {
+        return toWkt(url);
+      }
+    }
+  }
+
+  private static final String URL = "http://localhost/geomark/gm-1";
+
+  private static String toWkt(final String url) {
+    return "SRID=3005;POINT(1200000 " + (500000 + url.hashCode() % 1000) + ")";
+  }
+
+  @Test
+  public void testDuplicateUrlsFetchedOnce() {
+    final TestResolver resolver = new TestResolver(true);
+    try {
+      for (int i = 0; i < 10; i++) {
+        resolver.prefetch(URL);
+      }
+      resolver.released.countDown();
+      Assert.assertEquals(toWkt(URL), resolver.getWkt(URL));
+      Assert.assertEquals(toWkt(URL), resolver.getWkt(URL));
+      Assert.assertEquals(Collections.singletonList(URL), resolver.fetchedUrls);
+    } finally {
+      resolver.close();
+    }
+  }
+
+  @Test
+  public void testFailureNotCached() {
+    final TestResolver resolver = new TestResolver(false);
+    try {
+      resolver.failingUrls.add(URL);
+      try {
+        resolver.getWkt(URL);
+        Assert.fail("Expected the fetch to fail");
+      } catch (final IllegalArgumentException e) {
+        Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+      }
+      Assert.assertEquals(toWkt(URL), resolver.getWkt(URL));
+      Assert.assertEquals(toWkt(URL), resolver.getWkt(URL));
+      Assert.assertEquals(Arrays.asList(URL, URL), resolver.fetchedUrls);
+    } finally {
+      resolver.close();
+    }
+  }
+
+  @Test
+  public void testPrefetchOrder() {
+    final RecordDefinitionImpl recordDefinition = new RecordDefinitionImpl(
+      PathName.newPathName("/Request"));
+    recordDefinition.addField("id", DataTypes.INT);
+    recordDefinition.addField("geometry", GeometryDataTypes.GEOMETRY);
+    final int recordCount = 10;
+    final int failedIndex = 5;
+    final Set<String> urls = new HashSet<>();
+    final List<Record> records = new ArrayList<>();
+    for (int i = 0; i < recordCount; i++) {
+      final Record record = new ArrayRecord(recordDefinition);
+      record.setValue("id", i);
+      if (i % 2 == 0) {
+        final String url = "http://localhost/geomark/gm-" + i;
+        record.setValue("geometry", " " + url + " ");
+        urls.add(url);
+      } else {
+        record.setValue("geometry", "POINT(1200000 500000)");
+      }
+      records.add(record);
+    }
+    final int[] readCount = new int[1];
+    final Iterator<Record> source = new Iterator<Record>() {
+      @Override
+      public boolean hasNext() {
+        return readCount[0] < recordCount;
+      }
+
+      @Override
+      public Record next() {
+        final int index = readCount[0]++;
+        if (index == failedIndex) {
+          throw new IllegalStateException("Unable to read record " + index);
+        } else {
+          return records.get(index);
+        }
+      }
+    };
+
+    final TestResolver resolver = new TestResolver(false);
+    try {
+      final Iterator<Record> iterator = resolver.prefetch(source, recordDefinition);
+      Assert.assertTrue(iterator.hasNext());
+      Assert.assertEquals(recordCount, readCount[0]);
+
+      final List<Object> ids = new ArrayList<>();
+      while (iterator.hasNext()) {
+        try {
+          ids.add(iterator.next().getInteger("id"));
+        } catch (final IllegalStateException e) {
+          ids.add(e.getMessage());
+        }
+      }
+      Assert.assertEquals(
+        Arrays.asList(0, 1, 2, 3, 4, "Unable to read record 5", 6, 7, 8, 9), ids);
+
+      for (final String url : urls) {
+        Assert.assertEquals(toWkt(url), resolver.getWkt(url));
+      }
+      Assert.assertEquals(urls, new HashSet<>(resolver.fetchedUrls));
+      Assert.assertEquals(urls.size(), resolver.fetchedUrls.size());
+    } finally {
+      resolver.close();
+    }
+  }
+
+  @Test
+  public void testTimeToLive() {
+    final TestResolver resolver = new TestResolver(false);
+    try {
+      resolver.getWkt(URL);
+      resolver.getWkt(URL);
+      Assert.assertEquals(1, resolver.fetchedUrls.size());
+
+      resolver.setTimeToLiveSeconds(0);
+      resolver.getWkt(URL);
+      resolver.getWkt(URL);
+      Assert.assertEquals(3, resolver.fetchedUrls.size());
+    } finally {
+      resolver.close();
+    }
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright © 2008-2016, Province of British Columbia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.bc.gov.open.cpf.plugin.impl.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.appender.AbstractAppender;
+import org.apache.logging.log4j.core.impl.Log4jLogEvent;
+import org.apache.logging.log4j.message.SimpleMessage;
+import org.junit.Assert;
+import org.junit.Test;
+
+import ca.bc.gov.open.cpf.plugin.impl.log.AsyncWrappedAppender;
+
+public class AsyncWrappedAppenderTest {
+  /**
+   * Record the events written by the background thread. If blocked the first event waits until
+   * the appender is released.
+   */
+  private static class RecordingAppender extends AbstractAppender {
+    private final List<String> messages = Collections.synchronizedList(new ArrayList<>());
+
+    private final CountDownLatch writing = new CountDownLatch(1);
+
+    private final CountDownLatch released;
+
+    private RecordingAppender(final boolean blocked) {
+      super("test", null, null);
+      if (blocked) {
+        this.released = new CountDownLatch(1);
+      } else {
+        this.released = new CountDownLatch(0);
+      }
+    }
+
+    @Override
+    public void append(final LogEvent event) {
+      this.writing.countDown();
+      try {
+        this.released.await();
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      this.messages.add(event.getMessage().getFormattedMessage());
+    }
+
+    private List<String> getMessages(final Level level) {
+      final List<String> messages = new ArrayList<>();
+      synchronized (this.messages) {
+        for (final String message : this.messages) {
+          if (message.startsWith(level.name())) {
+            messages.add(message);
+          }
+        }
+      }
+      return messages;
+    }
+  }
+
+  private static LogEvent newEvent(final Level level, final int index) {
+    return Log4jLogEvent.newBuilder()
+      .setLoggerName("test")
+      .setLevel(level)
+      .setMessage(new SimpleMessage(level.name() + " " + index))
+      .build();
+  }
+
+  @Test
+  public void testFlushOnStop() {
+    final RecordingAppender recorder = new RecordingAppender(false);
+    final AsyncWrappedAppender appender = new AsyncWrappedAppender(recorder, 100000);
+    appender.start();
+    final List<String> expected = new ArrayList<>();
+    for (int i = 0; i < 10000; i++) {
+      final LogEvent event = newEvent(Level.INFO, i);
+      appender.append(event);
+      expected.add(event.getMessage().getFormattedMessage());
+    }
+    appender.stop();
+
+    Assert.assertEquals(expected, recorder.messages);
+    Assert.assertEquals(0, appender.getDiscardedCount());
+    Assert.assertFalse(recorder.isStarted());
+  }
+
+  @Test
+  public void testWarnKeptWhenFull() throws Exception {
+    final int bufferSize = 4;
+    final int warnCount = 20;
+    final RecordingAppender recorder = new RecordingAppender(true);
+    final AsyncWrappedAppender appender = new AsyncWrappedAppender(recorder, bufferSize);
+    appender.start();
+    try {
+      appender.append(newEvent(Level.INFO, 0));
+      Assert.assertTrue(recorder.writing.await(10, TimeUnit.SECONDS));
+
+      for (int i = 1; i <= bufferSize; i++) {
+        appender.append(newEvent(Level.INFO, i));
+      }
+      for (int i = 0; i < 10; i++) {
+        appender.append(newEvent(Level.DEBUG, i));
+        appender.append(newEvent(Level.INFO, bufferSize + 1 + i));
+      }
+      Assert.assertEquals(20, appender.getDiscardedCount());
+
+      final Thread warnThread = new Thread(() -> {
+        for (int i = 0; i < warnCount; i++) {
+          appender.append(newEvent(Level.WARN, i));
+        }
+      });
+      warnThread.start();
+      recorder.released.countDown();
+      warnThread.join(TimeUnit.SECONDS.toMillis(10));
+      Assert.assertFalse(warnThread.isAlive());
+    } finally {
+      recorder.released.countDown();
+      appender.stop();
+    }
+
+    Assert.assertEquals(warnCount, recorder.getMessages(Level.WARN).size());
+    Assert.assertEquals(bufferSize + 1, recorder.getMessages(Level.INFO).size());
+    Assert.assertEquals(0, recorder.getMessages(Level.DEBUG).size());
+    Assert.assertEquals(20, appender.getDiscardedCount());
+    Assert.assertTrue(recorder.messages
+      .contains("20 DEBUG and INFO log events discarded because the log buffer was full"));
+  }
+
+  @Test
+  public void testWriteFailureSkipped() {
+    final RecordingAppender recorder = new RecordingAppender(false) {
+      @Override
+      public void append(final LogEvent event) {
+        if ("INFO 1".equals(event.getMessage().getFormattedMessage())) {
+          throw new IllegalStateException("Disk full");
+        } else {
+          super.append(event);
+        }
+      }
+    };
+    final AsyncWrappedAppender appender = new AsyncWrappedAppender(recorder);
+    appender.start();
+    for (int i = 0; i < 3; i++) {
+      appender.append(newEvent(Level.INFO, i));
+    }
+    appender.stop();
+
+    Assert.assertEquals(Arrays.asList("INFO 0", "INFO 2"), recorder.messages);
+  }
+}
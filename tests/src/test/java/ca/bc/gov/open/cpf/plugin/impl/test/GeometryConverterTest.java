@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2008-2016, Province of British Columbia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.bc.gov.open.cpf.plugin.impl.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import ca.bc.gov.open.cpf.plugin.impl.geometry.GeometryConverter;
+
+import com.revolsys.geometry.model.Geometry;
+import com.revolsys.geometry.model.GeometryFactory;
+
+public class GeometryConverterTest {
+  private static final GeometryFactory ALBERS = GeometryFactory.fixed(3005, 2, 1000.0, 1000.0,
+    1.0);
+
+  private void assertProjection(final List<Geometry> geometries, final int srid,
+    final double scaleXy) {
+    final GeometryFactory cachedFactory = GeometryConverter.fixed(srid, 2, scaleXy, 1.0);
+    final GeometryFactory uncachedFactory = GeometryFactory.fixed(srid, 2, scaleXy, scaleXy,
+      1.0);
+    for (final Geometry geometry : geometries) {
+      final Geometry uncached = uncachedFactory.geometry(geometry);
+      final Geometry cached = GeometryConverter.convert(geometry, cachedFactory);
+      Assert.assertEquals(srid, cached.getHorizontalCoordinateSystemId());
+      Assert.assertEquals(uncached.getVertexCount(), cached.getVertexCount());
+      Assert.assertEquals(uncached, cached);
+    }
+  }
+
+  private List<Geometry> newGeometries() {
+    final Random random = new Random(42);
+    final List<Geometry> geometries = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      final double x = 1000000 + random.nextDouble() * 500000;
+      final double y = 400000 + random.nextDouble() * 1000000;
+      geometries.add(ALBERS.point(x, y));
+      geometries.add(ALBERS.point(x, y).buffer(100));
+    }
+    return geometries;
+  }
+
+  @Test
+  public void testConvertSameFactory() {
+    final GeometryFactory geometryFactory = GeometryConverter.fixed(3005, 2, 1000.0, 1.0);
+    final Geometry geometry = geometryFactory.point(1200000.123, 500000.456);
+    Assert.assertSame(geometry, GeometryConverter.convert(geometry, geometryFactory));
+    Assert.assertNull(GeometryConverter.convert(null, geometryFactory));
+  }
+
+  @Test
+  public void testFixedCached() {
+    Assert.assertSame(GeometryConverter.fixed(4326, 2, 10000000.0, 1.0),
+      GeometryConverter.fixed(4326, 2, 10000000.0, 1.0));
+    Assert.assertSame(GeometryConverter.floating3d(3005), GeometryConverter.floating3d(3005));
+    Assert.assertSame(GeometryConverter.fixed(3005, 2, 1000.0, 1.0),
+      ca.bc.gov.open.cpf.plugin.api.GeometryFactory.getRevolsysFactory(3005, 2, 1000.0, 1.0));
+    Assert.assertEquals(GeometryFactory.fixed(3005, 3, 1000.0, 1000.0, 100.0),
+      GeometryConverter.fixed(3005, 3, 1000.0, 100.0));
+  }
+
+  @Test
+  public void testProjectAlbersToWgs84() {
+    assertProjection(newGeometries(), 4326, 10000000.0);
+  }
+
+  @Test
+  public void testProjectWgs84ToAlbers() {
+    final GeometryFactory wgs84 = GeometryFactory.fixed(4326, 2, 10000000.0, 10000000.0, 1.0);
+    final List<Geometry> geometries = new ArrayList<>();
+    for (final Geometry geometry : newGeometries()) {
+      geometries.add(wgs84.geometry(geometry));
+    }
+    assertProjection(geometries, 3005, 1000.0);
+  }
+
+  @Test
+  public void testScaleOnly() {
+    assertProjection(newGeometries(), 3005, 1.0);
+  }
+}
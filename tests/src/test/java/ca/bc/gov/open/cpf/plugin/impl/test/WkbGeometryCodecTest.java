@@ -0,0 +1,136 @@
+/*
+ * Copyright © 2008-2016, Province of British Columbia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.bc.gov.open.cpf.plugin.impl.test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.jeometry.common.data.type.DataTypes;
+import org.jeometry.common.io.PathName;
+import org.junit.Assert;
+import org.junit.Test;
+
+import ca.bc.gov.open.cpf.plugin.impl.geometry.WkbGeometryCodec;
+
+import com.revolsys.geometry.model.Geometry;
+import com.revolsys.geometry.model.GeometryDataTypes;
+import com.revolsys.geometry.model.GeometryFactory;
+import com.revolsys.geometry.model.LinearRing;
+import com.revolsys.record.schema.RecordDefinitionImpl;
+
+public class WkbGeometryCodecTest {
+  private static final GeometryFactory ALBERS = GeometryFactory.fixed(3005, 2, 1000.0, 1000.0,
+    1.0);
+
+  private static final GeometryFactory ALBERS_3D = GeometryFactory.fixed(3005, 3, 1000.0, 1000.0,
+    100.0);
+
+  /** A scale that is not a power of 10 so the geometries are encoded as WKB. */
+  private static final GeometryFactory ALBERS_HALF_METRE = GeometryFactory.fixed(3005, 2, 2.0,
+    2.0, 1.0);
+
+  private static final GeometryFactory WGS84 = GeometryFactory.fixed(4326, 2, 10000000.0,
+    10000000.0, 1.0);
+
+  private void assertRoundTrip(final String prefix, final Geometry geometry) {
+    final String encoded = WkbGeometryCodec.toString(geometry);
+    Assert.assertTrue(encoded, encoded.startsWith(prefix));
+    Assert.assertTrue(WkbGeometryCodec.isEncoded(encoded));
+
+    final Geometry decoded = WkbGeometryCodec.toGeometry(encoded);
+    Assert.assertEquals(geometry.getHorizontalCoordinateSystemId(),
+      decoded.getHorizontalCoordinateSystemId());
+    Assert.assertEquals(geometry.getAxisCount(), decoded.getAxisCount());
+    Assert.assertEquals(geometry.getVertexCount(), decoded.getVertexCount());
+    Assert.assertEquals(geometry, decoded);
+    Assert.assertEquals(encoded, WkbGeometryCodec.toString(decoded));
+  }
+
+  private Geometry newCircle(final GeometryFactory geometryFactory, final double centreX,
+    final double centreY, final double radius, final int vertexCount) {
+    final double[] coordinates = new double[(vertexCount + 1) * 2];
+    for (int i = 0; i < vertexCount; i++) {
+      final double angle = 2 * Math.PI * i / vertexCount;
+      coordinates[i * 2] = centreX + radius * Math.cos(angle);
+      coordinates[i * 2 + 1] = centreY + radius * Math.sin(angle);
+    }
+    coordinates[vertexCount * 2] = coordinates[0];
+    coordinates[vertexCount * 2 + 1] = coordinates[1];
+    final LinearRing ring = geometryFactory.linearRing(2, coordinates);
+    return geometryFactory.polygon(ring);
+  }
+
+  @Test
+  public void testDecodeValuesOnlyGeometryFields() {
+    final RecordDefinitionImpl recordDefinition = new RecordDefinitionImpl(
+      PathName.newPathName("/Test"));
+    recordDefinition.addField("comment", DataTypes.STRING);
+    recordDefinition.addField("geometry", GeometryDataTypes.GEOMETRY);
+
+    final Geometry geometry = ALBERS.point(1200000.123, 500000.456);
+    final String encoded = WkbGeometryCodec.toString(geometry);
+    final Map<String, Object> values = new LinkedHashMap<>();
+    values.put("comment", encoded);
+    values.put("geometry", encoded);
+    values.put("other", encoded);
+    WkbGeometryCodec.decodeValues(recordDefinition, values);
+
+    Assert.assertEquals(encoded, values.get("comment"));
+    Assert.assertEquals(geometry, values.get("geometry"));
+    Assert.assertEquals(encoded, values.get("other"));
+  }
+
+  @Test
+  public void testTwkbLineString() {
+    assertRoundTrip("TWKB;", ALBERS.lineString(2, 1200000.123, 500000.456, 1200100.789,
+      500050.001, 1199950.5, 500200.25));
+    assertRoundTrip("TWKB;", WGS84.lineString(2, -123.1234567, 49.7654321, -122.9876543,
+      49.1234567));
+  }
+
+  @Test
+  public void testTwkbLineString3d() {
+    assertRoundTrip("TWKB;", ALBERS_3D.lineString(3, 1200000.123, 500000.456, 12.34,
+      1200100.789, 500050.001, 56.78));
+  }
+
+  @Test
+  public void testTwkbPoint() {
+    assertRoundTrip("TWKB;", ALBERS.point(1200000.123, 500000.456));
+    assertRoundTrip("TWKB;", WGS84.point(-123.1234567, 49.7654321));
+  }
+
+  @Test
+  public void testTwkbPolygon() {
+    assertRoundTrip("TWKB;", newCircle(ALBERS, 1200000, 500000, 5000.123, 1000));
+  }
+
+  @Test
+  public void testWkbLineString() {
+    assertRoundTrip("WKB;", ALBERS_HALF_METRE.lineString(2, 1200000.5, 500000.0, 1200100.0,
+      500050.5));
+  }
+
+  @Test
+  public void testWkbPoint() {
+    assertRoundTrip("WKB;", ALBERS_HALF_METRE.point(1200000.5, 500000.0));
+  }
+
+  @Test
+  public void testWkbPolygon() {
+    assertRoundTrip("WKB;", newCircle(ALBERS_HALF_METRE, 1200000, 500000, 5000, 100));
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright © 2008-2016, Province of British Columbia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.bc.gov.open.cpf.plugins.test;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import ca.bc.gov.open.cpf.plugin.api.spatial.SpatialIndex;
+import ca.bc.gov.open.cpf.plugin.api.spatial.SpatialIndexes;
+import ca.bc.gov.open.cpf.plugins.maptile.IndexedMapTile;
+import ca.bc.gov.open.cpf.plugins.maptile.MapTileByLocation;
+import ca.bc.gov.open.cpf.plugins.maptile.MapTileByTileId;
+import ca.bc.gov.open.cpf.plugins.maptile.MapTileIndexFactory;
+
+import com.revolsys.geometry.model.BoundingBox;
+import com.revolsys.gis.grid.RectangularMapGrid;
+import com.revolsys.gis.grid.RectangularMapGridFactory;
+import com.revolsys.gis.grid.RectangularMapTile;
+
+public class MapTileIndexTest {
+  private static final String[] MAP_GRID_NAMES = {
+    "NTS 1:250 000", "NTS 1:50 000", "BCGS 1:20 000"
+  };
+
+  private static final int TILE_COUNT = 500;
+
+  private final SpatialIndexes<IndexedMapTile> indexes = new SpatialIndexes<>(
+    new MapTileIndexFactory());
+
+  private void assertSameTile(final String mapGridName, final RectangularMapGrid grid,
+    final SpatialIndex<IndexedMapTile> index, final double x, final double y) {
+    final RectangularMapTile expected = grid.getTileByLocation(x, y);
+    final IndexedMapTile actual = index.find(x, y, mapTile -> mapTile.covers(x, y));
+    final String message = mapGridName + " POINT(" + x + " " + y + ")";
+    Assert.assertNotNull(message, expected);
+    Assert.assertNotNull(message, actual);
+    Assert.assertEquals(message, expected.getFormattedName(), actual.getFormattedName());
+  }
+
+  private SpatialIndex<IndexedMapTile> getIndex(final String mapGridName) {
+    final SpatialIndex<IndexedMapTile> index = this.indexes.getIndex(mapGridName);
+    Assert.assertNotNull(mapGridName, index);
+    return index;
+  }
+
+  @Test
+  public void testPluginIndexed() {
+    final Random random = new Random(42);
+    for (final String mapGridName : MAP_GRID_NAMES) {
+      for (int i = 0; i < TILE_COUNT; i++) {
+        final double longitude = -138 + random.nextDouble() * 23;
+        final double latitude = 48.5 + random.nextDouble() * 11;
+
+        final MapTileByLocation calculated = new MapTileByLocation();
+        calculated.setMapGridName(mapGridName);
+        calculated.setLongitude(longitude);
+        calculated.setLatitude(latitude);
+        calculated.execute();
+
+        final MapTileByLocation indexed = new MapTileByLocation();
+        indexed.setMapGridName(mapGridName);
+        indexed.setMapTileIndexes(this.indexes);
+        indexed.setLongitude(longitude);
+        indexed.setLatitude(latitude);
+        indexed.execute();
+
+        Assert.assertEquals(calculated.getMapTileId(), indexed.getMapTileId());
+        Assert.assertEquals(calculated.getMapTileBoundary(), indexed.getMapTileBoundary());
+      }
+    }
+  }
+
+  @Test
+  public void testPluginIndexedByTileId() {
+    final Random random = new Random(42);
+    for (final String mapGridName : MAP_GRID_NAMES) {
+      final RectangularMapGrid grid = RectangularMapGridFactory.getGrid(mapGridName);
+      for (int i = 0; i < TILE_COUNT; i++) {
+        final double longitude = -138 + random.nextDouble() * 23;
+        final double latitude = 48.5 + random.nextDouble() * 11;
+        final String mapTileId = grid.getTileByLocation(longitude, latitude).getFormattedName();
+
+        final MapTileByTileId calculated = new MapTileByTileId();
+        calculated.setMapGridName(mapGridName);
+        calculated.setMapTileId(mapTileId);
+        calculated.execute();
+
+        final MapTileByTileId indexed = new MapTileByTileId();
+        indexed.setMapGridName(mapGridName);
+        indexed.setMapTileIndexes(this.indexes);
+        indexed.setMapTileId(mapTileId);
+        indexed.execute();
+
+        Assert.assertEquals(calculated.getMapTileId(), indexed.getMapTileId());
+        Assert.assertEquals(calculated.getMapTileBoundary(), indexed.getMapTileBoundary());
+      }
+    }
+  }
+
+  @Test
+  public void testTileEdges() {
+    final Random random = new Random(42);
+    for (final String mapGridName : MAP_GRID_NAMES) {
+      final RectangularMapGrid grid = RectangularMapGridFactory.getGrid(mapGridName);
+      final SpatialIndex<IndexedMapTile> index = getIndex(mapGridName);
+      for (int i = 0; i < TILE_COUNT; i++) {
+        final double longitude = -138 + random.nextDouble() * 23;
+        final double latitude = 48.5 + random.nextDouble() * 11;
+        final RectangularMapTile tile = grid.getTileByLocation(longitude, latitude);
+        final BoundingBox boundingBox = tile.getBoundingBox();
+        final double minX = boundingBox.getMinX();
+        final double minY = boundingBox.getMinY();
+        final double maxX = boundingBox.getMaxX();
+        final double maxY = boundingBox.getMaxY();
+        final double centreX = (minX + maxX) / 2;
+        final double centreY = (minY + maxY) / 2;
+
+        assertSameTile(mapGridName, grid, index, longitude, latitude);
+        assertSameTile(mapGridName, grid, index, minX, minY);
+        assertSameTile(mapGridName, grid, index, minX, centreY);
+        assertSameTile(mapGridName, grid, index, centreX, minY);
+        assertSameTile(mapGridName, grid, index, maxX, centreY);
+        assertSameTile(mapGridName, grid, index, centreX, maxY);
+        assertSameTile(mapGridName, grid, index, maxX, maxY);
+        assertSameTile(mapGridName, grid, index, Math.nextDown(maxX), Math.nextDown(maxY));
+      }
+    }
+  }
+}